@@ -0,0 +1,79 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.ra4king.gameutils.util.Animation;
+import com.ra4king.gameutils.util.AnimationClip;
+import com.ra4king.gameutils.util.AnimationCursors;
+
+/**
+ * Advancing many sprites by one frame: one Animation each, one Cursor each on a shared clip, and AnimationCursors.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnimationBenchmark {
+	@Param({ "1000", "10000" })
+	private int sprites;
+	
+	private Animation[] animations;
+	private AnimationClip.Cursor[] cursors;
+	private AnimationCursors bulk;
+	
+	@Setup
+	public void setup() {
+		Image[] frames = new Image[8];
+		long[] times = new long[frames.length];
+		for(int a = 0; a < frames.length; a++) {
+			frames[a] = new BufferedImage(1,1,BufferedImage.TYPE_INT_ARGB);
+			times[a] = 50 + a*10;
+		}
+		
+		AnimationClip clip = new AnimationClip(frames,times,true);
+		
+		animations = new Animation[sprites];
+		cursors = new AnimationClip.Cursor[sprites];
+		bulk = new AnimationCursors(sprites);
+		
+		for(int a = 0; a < sprites; a++) {
+			animations[a] = new Animation(true);
+			for(int b = 0; b < frames.length; b++)
+				animations[a].addFrame(frames[b],times[b]);
+			
+			cursors[a] = clip.createCursor();
+			bulk.add(clip);
+		}
+	}
+	
+	@Benchmark
+	public Animation[] animationUpdate() {
+		for(Animation a : animations)
+			a.update(16);
+		return animations;
+	}
+	
+	@Benchmark
+	public AnimationClip.Cursor[] cursorUpdate() {
+		for(AnimationClip.Cursor c : cursors)
+			c.update(16);
+		return cursors;
+	}
+	
+	@Benchmark
+	public AnimationCursors bulkUpdate() {
+		bulk.update(16);
+		return bulk;
+	}
+}
\ No newline at end of file
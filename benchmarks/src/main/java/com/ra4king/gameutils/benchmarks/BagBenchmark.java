@@ -0,0 +1,65 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ra4king.gameutils.util.Bag;
+
+/**
+ * Bag add, remove and iteration.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BagBenchmark {
+	@Param({ "100", "10000" })
+	private int size;
+	
+	private Bag<Integer> bag;
+	private Integer[] values;
+	
+	@Setup
+	public void setup() {
+		values = new Integer[size];
+		for(int a = 0; a < size; a++)
+			values[a] = a;
+		
+		bag = new Bag<Integer>();
+		for(Integer i : values)
+			bag.add(i);
+	}
+	
+	@Benchmark
+	public Bag<Integer> addAll() {
+		Bag<Integer> b = new Bag<Integer>();
+		for(Integer i : values)
+			b.add(i);
+		return b;
+	}
+	
+	@Benchmark
+	public Bag<Integer> addThenRemoveAll() {
+		Bag<Integer> b = new Bag<Integer>();
+		for(Integer i : values)
+			b.add(i);
+		for(Integer i : values)
+			b.remove(i);
+		return b;
+	}
+	
+	@Benchmark
+	public void iterate(Blackhole bh) {
+		for(Integer i : bag)
+			bh.consume(i);
+	}
+}
\ No newline at end of file
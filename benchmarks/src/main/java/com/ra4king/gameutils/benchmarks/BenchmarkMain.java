@@ -0,0 +1,29 @@
+package com.ra4king.gameutils.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks and writes the results as JSON to jmh-results.json unless another result file or format
+ * is given. Accepts every JMH command line option, for example a regular expression to select benchmarks.
+ * @author Roi Atalla
+ */
+public class BenchmarkMain {
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		
+		OptionsBuilder builder = new OptionsBuilder();
+		if(!cmd.getResultFormat().hasValue())
+			builder.resultFormat(ResultFormatType.JSON);
+		if(!cmd.getResult().hasValue())
+			builder.result("jmh-results.json");
+		
+		Options options = builder.parent(cmd).build();
+		new Runner(options).run();
+	}
+}
\ No newline at end of file
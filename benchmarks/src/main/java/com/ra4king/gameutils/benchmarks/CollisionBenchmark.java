@@ -0,0 +1,141 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.awt.Graphics2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.ra4king.gameutils.Entity;
+import com.ra4king.gameutils.gameworld.GameComponent;
+import com.ra4king.gameutils.gameworld.GameWorld;
+import com.ra4king.gameutils.tiledmap.CollisionLayer;
+
+/**
+ * One GameWorld.update with N entities moving through a 64x64 maze of 16x16 cells, colliding against walls that are
+ * either an Entity per wall cell with a collision listener, or the solid cells of a CollisionLayer.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CollisionBenchmark {
+	private static final int SIZE = 64, CELL = 16;
+	
+	@Param({ "100", "1000" })
+	private int entities;
+	
+	@Param({ "false", "true" })
+	private boolean layer;
+	
+	private GameWorld world;
+	private int collisions;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		
+		world = new GameWorld();
+		
+		CollisionLayer walls = new CollisionLayer(SIZE,SIZE,CELL,CELL);
+		for(int y = 0; y < SIZE; y++) {
+			for(int x = 0; x < SIZE; x++) {
+				boolean wall = (x % 8 == 0 && y % 8 != 4) || (y % 8 == 0 && x % 8 != 4) || random.nextInt(20) == 0;
+				if(wall && !layer)
+					world.add(new Wall(x * CELL,y * CELL));
+				walls.setSolid(x,y,wall);
+			}
+		}
+		
+		if(layer)
+			world.setCollisionLayer(walls);
+		
+		for(int a = 0; a < entities; a++) {
+			double x, y;
+			do {
+				x = random.nextDouble() * (SIZE - 1) * CELL;
+				y = random.nextDouble() * (SIZE - 1) * CELL;
+			} while(walls.isSolid(x,y,10,10));
+			
+			final Mover m = (Mover)world.add(new Mover(x,y,random,layer ? world : null));
+			
+			if(layer)
+				world.registerTileCollision(m,(cx, cy) -> collisions++);
+			else
+				world.registerCollision(m,Wall.class,w -> {
+					collisions++;
+					m.bounce();
+				});
+		}
+	}
+	
+	@Benchmark
+	public int update() {
+		world.update(16);
+		return collisions;
+	}
+	
+	static class Wall extends Entity {
+		Wall(double x, double y) {
+			super(x,y,CELL,CELL);
+		}
+		
+		@Override
+		public void update(long deltaTime) {}
+		
+		@Override
+		public void draw(Graphics2D g) {}
+	}
+	
+	/**
+	 * Moves in a straight line, bouncing off walls. The world is never initialized, so the Mover keeps it rather than
+	 * using getParent.
+	 */
+	static class Mover extends GameComponent {
+		private final GameWorld world;
+		private double dx, dy, lastX, lastY;
+		
+		/**
+		 * @param world The world moving this entity through its CollisionLayer, or null to move it freely.
+		 */
+		Mover(double x, double y, Random random, GameWorld world) {
+			super(x,y,10,10);
+			
+			this.world = world;
+			dx = random.nextDouble() * 0.2 - 0.1;
+			dy = random.nextDouble() * 0.2 - 0.1;
+		}
+		
+		void bounce() {
+			setLocation(lastX,lastY);
+			dx = -dx;
+			dy = -dy;
+		}
+		
+		@Override
+		public void update(long deltaTime) {
+			lastX = getX();
+			lastY = getY();
+			
+			if(world != null) {
+				int blocked = world.move(this,dx * deltaTime,dy * deltaTime);
+				if((blocked & CollisionLayer.BLOCKED_X) != 0)
+					dx = -dx;
+				if((blocked & CollisionLayer.BLOCKED_Y) != 0)
+					dy = -dy;
+			}
+			else
+				translate(dx * deltaTime,dy * deltaTime);
+		}
+		
+		@Override
+		public void draw(Graphics2D g) {}
+	}
+}
\ No newline at end of file
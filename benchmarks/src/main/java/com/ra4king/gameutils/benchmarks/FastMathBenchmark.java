@@ -0,0 +1,144 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ra4king.gameutils.util.FastMath;
+
+/**
+ * FastMath against java.lang.Math over the same 4096 random inputs, scalar and batch.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FastMathBenchmark {
+	private static final int COUNT = 4096;
+	
+	private double[] angles, xs, ys, positives, out;
+	private float[] anglesF, xsF, ysF, outF;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		
+		angles = new double[COUNT];
+		xs = new double[COUNT];
+		ys = new double[COUNT];
+		positives = new double[COUNT];
+		out = new double[COUNT];
+		anglesF = new float[COUNT];
+		xsF = new float[COUNT];
+		ysF = new float[COUNT];
+		outF = new float[COUNT];
+		
+		for(int a = 0; a < COUNT; a++) {
+			angles[a] = random.nextDouble() * 20 - 10;
+			xs[a] = random.nextGaussian();
+			ys[a] = random.nextGaussian();
+			positives[a] = random.nextDouble() * 1000 + 0.001;
+			anglesF[a] = (float)angles[a];
+			xsF[a] = (float)xs[a];
+			ysF[a] = (float)ys[a];
+		}
+	}
+	
+	@Benchmark
+	public void mathSin(Blackhole bh) {
+		for(double d : angles)
+			bh.consume(Math.sin(d));
+	}
+	
+	@Benchmark
+	public void fastSin(Blackhole bh) {
+		for(double d : angles)
+			bh.consume(FastMath.sin(d));
+	}
+	
+	@Benchmark
+	public void fastSinLerp(Blackhole bh) {
+		for(double d : angles)
+			bh.consume(FastMath.sinLerp(d));
+	}
+	
+	@Benchmark
+	public double[] fastSinBatch() {
+		FastMath.sin(angles,out,COUNT);
+		return out;
+	}
+	
+	@Benchmark
+	public float[] fastSinBatchFloat() {
+		FastMath.sin(anglesF,outF,COUNT);
+		return outF;
+	}
+	
+	@Benchmark
+	public void mathAtan2(Blackhole bh) {
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(Math.atan2(ys[a],xs[a]));
+	}
+	
+	@Benchmark
+	public void fastAtan2(Blackhole bh) {
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(FastMath.atan2(ys[a],xs[a]));
+	}
+	
+	@Benchmark
+	public double[] fastAtan2Batch() {
+		FastMath.atan2(ys,xs,out,COUNT);
+		return out;
+	}
+	
+	@Benchmark
+	public float[] fastAtan2BatchFloat() {
+		FastMath.atan2(ysF,xsF,outF,COUNT);
+		return outF;
+	}
+	
+	@Benchmark
+	public void mathInvSqrt(Blackhole bh) {
+		for(double d : positives)
+			bh.consume(1.0 / Math.sqrt(d));
+	}
+	
+	@Benchmark
+	public void fastInvSqrt(Blackhole bh) {
+		for(double d : positives)
+			bh.consume(FastMath.invSqrt(d));
+	}
+	
+	@Benchmark
+	public void mathExp(Blackhole bh) {
+		for(double d : angles)
+			bh.consume(Math.exp(d));
+	}
+	
+	@Benchmark
+	public void fastExp(Blackhole bh) {
+		for(double d : angles)
+			bh.consume(FastMath.exp(d));
+	}
+	
+	@Benchmark
+	public void mathPow(Blackhole bh) {
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(Math.pow(positives[a],angles[a]));
+	}
+	
+	@Benchmark
+	public void fastPow(Blackhole bh) {
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(FastMath.pow(positives[a],angles[a]));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.ra4king.gameutils.pathfinding.FlowField;
+import com.ra4king.gameutils.pathfinding.NavGrid;
+
+/**
+ * Computing a FlowField from scratch on the same map as PathfindingBenchmark, and updating it after a wall is toggled
+ * next to the goal, which changes the paths of a large part of the map, or far from it.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FlowFieldBenchmark {
+	@Param({ "256", "1024" })
+	private int size;
+	
+	private NavGrid grid;
+	private FlowField field;
+	private int goal;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		
+		grid = new NavGrid(size,size);
+		for(int y = 0; y < size; y++) {
+			for(int x = 0; x < size; x++) {
+				boolean wall = (x % 32 == 0 && y % 32 != 16) || (y % 32 == 0 && x % 32 != 16);
+				grid.setBlocked(x,y,wall || random.nextInt(10) == 0);
+			}
+		}
+		
+		goal = size / 2 + 2;
+		grid.setBlocked(goal,goal,false);
+		field = new FlowField(grid,goal,goal);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		field.dispose();
+	}
+	
+	@Benchmark
+	public FlowField compute() {
+		FlowField f = new FlowField(grid,goal,goal);
+		f.dispose();
+		return f;
+	}
+	
+	@Benchmark
+	public FlowField toggleNextToGoal() {
+		return toggle(goal + 1,goal);
+	}
+	
+	@Benchmark
+	public FlowField toggleFarFromGoal() {
+		return toggle(goal + size / 4,goal + 3);
+	}
+	
+	private FlowField toggle(int x, int y) {
+		grid.setBlocked(x,y,grid.isWalkable(x,y));
+		field.update();
+		return field;
+	}
+}
\ No newline at end of file
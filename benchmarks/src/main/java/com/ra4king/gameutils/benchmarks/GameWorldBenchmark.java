@@ -0,0 +1,99 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.awt.Graphics2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.ra4king.gameutils.gameworld.GameComponent;
+import com.ra4king.gameutils.gameworld.GameWorld;
+import com.ra4king.gameutils.gameworld.WorldProfiler;
+
+/**
+ * One GameWorld.update with N moving entities, M of which have a collision listener against every other entity,
+ * optionally with a WorldProfiler attached to measure its overhead.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GameWorldBenchmark {
+	@Param({ "100", "1000", "5000" })
+	private int entities;
+	
+	@Param({ "0", "10", "100" })
+	private int listeners;
+	
+	@Param({ "false", "true" })
+	private boolean profiled;
+	
+	private GameWorld world;
+	private int collisions;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		
+		world = new GameWorld();
+		
+		if(profiled)
+			world.setProfiler(new WorldProfiler());
+		
+		Mover[] movers = new Mover[entities];
+		for(int a = 0; a < entities; a++)
+			movers[a] = (Mover)world.add(new Mover(random));
+		
+		for(int a = 0; a < Math.min(listeners,entities); a++) {
+			world.registerCollision(movers[a],Mover.class,new GameWorld.CollisionListener<Mover>() {
+				@Override
+				public void collide(Mover m) {
+					collisions++;
+				}
+			});
+		}
+	}
+	
+	@Benchmark
+	public int update() {
+		world.update(16);
+		return collisions;
+	}
+	
+	/**
+	 * Bounces around a 1000x1000 area.
+	 */
+	static class Mover extends GameComponent {
+		private double dx, dy;
+		
+		Mover(Random random) {
+			super(random.nextDouble() * 1000,random.nextDouble() * 1000,10,10);
+			
+			dx = random.nextDouble() * 0.2 - 0.1;
+			dy = random.nextDouble() * 0.2 - 0.1;
+		}
+		
+		@Override
+		public void update(long deltaTime) {
+			double x = getX() + dx * deltaTime;
+			double y = getY() + dy * deltaTime;
+			
+			if(x < 0 || x > 1000)
+				dx = -dx;
+			if(y < 0 || y > 1000)
+				dy = -dy;
+			
+			setLocation(x,y);
+		}
+		
+		@Override
+		public void draw(Graphics2D g) {}
+	}
+}
\ No newline at end of file
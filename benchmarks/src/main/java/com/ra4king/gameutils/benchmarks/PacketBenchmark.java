@@ -0,0 +1,191 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ra4king.gameutils.networking.Packet;
+
+/**
+ * Writing and reading 64 values of each primitive type, and strings, through a reused Packet.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PacketBenchmark {
+	private static final int COUNT = 64;
+	private static final String STRING = "The quick brown fox jumps over the lazy dog";
+	
+	private Packet packet;
+	private Packet bytes, shorts, chars, ints, longs, floats, doubles, booleans, strings;
+	
+	@Setup
+	public void setup() {
+		packet = new Packet();
+		
+		bytes = new Packet();
+		shorts = new Packet();
+		chars = new Packet();
+		ints = new Packet();
+		longs = new Packet();
+		floats = new Packet();
+		doubles = new Packet();
+		booleans = new Packet();
+		strings = new Packet();
+		
+		for(int a = 0; a < COUNT; a++) {
+			bytes.writeByte((byte)a);
+			shorts.writeShort((short)a);
+			chars.writeChar((char)a);
+			ints.writeInt(a);
+			longs.writeLong(a);
+			floats.writeFloat(a);
+			doubles.writeDouble(a);
+			booleans.writeBoolean((a & 1) == 0);
+			strings.writeString(STRING);
+		}
+	}
+	
+	@Benchmark
+	public Packet writeByte() {
+		packet.clear();
+		for(int a = 0; a < COUNT; a++)
+			packet.writeByte((byte)a);
+		return packet;
+	}
+	
+	@Benchmark
+	public Packet writeShort() {
+		packet.clear();
+		for(int a = 0; a < COUNT; a++)
+			packet.writeShort((short)a);
+		return packet;
+	}
+	
+	@Benchmark
+	public Packet writeChar() {
+		packet.clear();
+		for(int a = 0; a < COUNT; a++)
+			packet.writeChar((char)a);
+		return packet;
+	}
+	
+	@Benchmark
+	public Packet writeInt() {
+		packet.clear();
+		for(int a = 0; a < COUNT; a++)
+			packet.writeInt(a);
+		return packet;
+	}
+	
+	@Benchmark
+	public Packet writeLong() {
+		packet.clear();
+		for(int a = 0; a < COUNT; a++)
+			packet.writeLong(a);
+		return packet;
+	}
+	
+	@Benchmark
+	public Packet writeFloat() {
+		packet.clear();
+		for(int a = 0; a < COUNT; a++)
+			packet.writeFloat(a);
+		return packet;
+	}
+	
+	@Benchmark
+	public Packet writeDouble() {
+		packet.clear();
+		for(int a = 0; a < COUNT; a++)
+			packet.writeDouble(a);
+		return packet;
+	}
+	
+	@Benchmark
+	public Packet writeBoolean() {
+		packet.clear();
+		for(int a = 0; a < COUNT; a++)
+			packet.writeBoolean((a & 1) == 0);
+		return packet;
+	}
+	
+	@Benchmark
+	public Packet writeString() {
+		packet.clear();
+		for(int a = 0; a < COUNT; a++)
+			packet.writeString(STRING);
+		return packet;
+	}
+	
+	@Benchmark
+	public void readByte(Blackhole bh) {
+		bytes.reset();
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(bytes.readByte());
+	}
+	
+	@Benchmark
+	public void readShort(Blackhole bh) {
+		shorts.reset();
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(shorts.readShort());
+	}
+	
+	@Benchmark
+	public void readChar(Blackhole bh) {
+		chars.reset();
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(chars.readChar());
+	}
+	
+	@Benchmark
+	public void readInt(Blackhole bh) {
+		ints.reset();
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(ints.readInt());
+	}
+	
+	@Benchmark
+	public void readLong(Blackhole bh) {
+		longs.reset();
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(longs.readLong());
+	}
+	
+	@Benchmark
+	public void readFloat(Blackhole bh) {
+		floats.reset();
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(floats.readFloat());
+	}
+	
+	@Benchmark
+	public void readDouble(Blackhole bh) {
+		doubles.reset();
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(doubles.readDouble());
+	}
+	
+	@Benchmark
+	public void readBoolean(Blackhole bh) {
+		booleans.reset();
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(booleans.readBoolean());
+	}
+	
+	@Benchmark
+	public void readString(Blackhole bh) {
+		strings.reset();
+		for(int a = 0; a < COUNT; a++)
+			bh.consume(strings.readString());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.ra4king.gameutils.pathfinding.NavGrid;
+import com.ra4king.gameutils.pathfinding.PathRequest;
+import com.ra4king.gameutils.pathfinding.Pathfinder;
+
+/**
+ * A batch of 100 random queries on a square NavGrid with rooms and scattered walls, with each algorithm.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PathfindingBenchmark {
+	@Param({ "256", "1024" })
+	private int size;
+	
+	@Param({ "ASTAR", "JPS", "HIERARCHICAL" })
+	private Pathfinder.Algorithm algorithm;
+	
+	@Param({ "1", "4" })
+	private int threads;
+	
+	private Pathfinder pathfinder;
+	private ArrayList<PathRequest> requests;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		
+		NavGrid grid = new NavGrid(size,size);
+		for(int y = 0; y < size; y++) {
+			for(int x = 0; x < size; x++) {
+				boolean wall = (x % 32 == 0 && y % 32 != 16) || (y % 32 == 0 && x % 32 != 16);
+				grid.setBlocked(x,y,wall || random.nextInt(10) == 0);
+			}
+		}
+		
+		pathfinder = new Pathfinder(grid,algorithm,threads);
+		
+		requests = new ArrayList<>();
+		while(requests.size() < 100) {
+			int sx = random.nextInt(size), sy = random.nextInt(size);
+			int gx = random.nextInt(size), gy = random.nextInt(size);
+			if(grid.isWalkable(sx,sy) && grid.isWalkable(gx,gy))
+				requests.add(new PathRequest(sx,sy,gx,gy));
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		pathfinder.close();
+	}
+	
+	@Benchmark
+	public ArrayList<PathRequest> findPaths() {
+		pathfinder.findPaths(requests);
+		return requests;
+	}
+}
\ No newline at end of file
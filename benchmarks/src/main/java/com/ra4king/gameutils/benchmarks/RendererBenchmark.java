@@ -0,0 +1,91 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.ra4king.gameutils.SoftwareRenderer;
+
+/**
+ * Drawing a frame of 32x32 sprites with SoftwareRenderer against Graphics2D.drawImage into the same size image.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RendererBenchmark {
+	private static final int WIDTH = 800, HEIGHT = 600, SIZE = 32;
+	
+	@Param({ "opaque", "translucent" })
+	private String sprite;
+	
+	@Param({ "1000" })
+	private int count;
+	
+	private int[] xs, ys;
+	
+	private BufferedImage image, target;
+	private Graphics2D g;
+	
+	private SoftwareRenderer renderer;
+	private SoftwareRenderer.Sprite compiled;
+	
+	@Setup
+	public void setup() {
+		boolean opaque = sprite.equals("opaque");
+		
+		image = new BufferedImage(SIZE,SIZE,opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+		Graphics2D ig = image.createGraphics();
+		ig.setColor(new Color(255,128,0,opaque ? 255 : 128));
+		ig.fillOval(0,0,SIZE,SIZE);
+		ig.dispose();
+		
+		target = new BufferedImage(WIDTH,HEIGHT,BufferedImage.TYPE_INT_RGB);
+		g = target.createGraphics();
+		
+		renderer = new SoftwareRenderer(WIDTH,HEIGHT);
+		compiled = SoftwareRenderer.createSprite(image);
+		
+		Random random = new Random(42);
+		xs = new int[count];
+		ys = new int[count];
+		for(int a = 0; a < count; a++) {
+			xs[a] = random.nextInt(WIDTH + SIZE) - SIZE;
+			ys[a] = random.nextInt(HEIGHT + SIZE) - SIZE;
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		g.dispose();
+	}
+	
+	@Benchmark
+	public BufferedImage drawImage() {
+		g.setColor(Color.black);
+		g.fillRect(0,0,WIDTH,HEIGHT);
+		for(int a = 0; a < count; a++)
+			g.drawImage(image,xs[a],ys[a],null);
+		return target;
+	}
+	
+	@Benchmark
+	public SoftwareRenderer softwareRenderer() {
+		renderer.clear(0);
+		for(int a = 0; a < count; a++)
+			renderer.draw(compiled,xs[a],ys[a]);
+		return renderer;
+	}
+}
\ No newline at end of file
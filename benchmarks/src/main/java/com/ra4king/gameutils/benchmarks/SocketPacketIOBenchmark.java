@@ -0,0 +1,64 @@
+package com.ra4king.gameutils.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.ra4king.gameutils.networking.Packet;
+import com.ra4king.gameutils.networking.SocketPacketIO;
+
+/**
+ * Length-prefixed framing of SocketPacketIO: one Packet written by a client and read by the server over loopback.
+ * @author Roi Atalla
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SocketPacketIOBenchmark {
+	@Param({ "16", "1024" })
+	private int payload;
+	
+	private ServerSocketChannel server;
+	private SocketPacketIO client, accepted;
+	private Packet packet;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("127.0.0.1",0));
+		
+		client = new SocketPacketIO(server.getLocalAddress(),true);
+		accepted = new SocketPacketIO(server.accept(),true);
+		
+		packet = new Packet();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		client.close();
+		accepted.close();
+		server.close();
+	}
+	
+	@Benchmark
+	public Packet roundTrip() throws IOException {
+		packet.clear();
+		for(int a = 0; a < payload; a += 4)
+			packet.writeInt(a);
+		
+		client.write(packet);
+		return accepted.read();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package com.ra4king.gameutils.benchmarks.scenes;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Random;
+
+import com.ra4king.gameutils.gameworld.GameComponent;
+import com.ra4king.gameutils.gameworld.GameWorld;
+
+/**
+ * A GameWorld of moving entities, some of which have a collision listener against all the others.
+ * @author Roi Atalla
+ */
+public class EntityScene implements Scene {
+	private final String name;
+	private final int entities, listeners;
+	
+	private GameWorld world;
+	private int width, height, collisions;
+	
+	/**
+	 * Initializes this object.
+	 * @param name The name of the scene.
+	 * @param entities The number of moving entities.
+	 * @param listeners The number of entities with a collision listener.
+	 */
+	public EntityScene(String name, int entities, int listeners) {
+		this.name = name;
+		this.entities = entities;
+		this.listeners = listeners;
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public void setup(int width, int height) {
+		this.width = width;
+		this.height = height;
+		
+		Random random = new Random(42);
+		
+		// The background is cleared by frame, a GameWorld without a Game cannot stretch a background image
+		world = new GameWorld();
+		world.setBackground((String)null);
+		
+		Mover[] movers = new Mover[entities];
+		for(int a = 0; a < entities; a++)
+			movers[a] = (Mover)world.add(new Mover(random,width,height));
+		
+		for(int a = 0; a < Math.min(listeners,entities); a++) {
+			world.registerCollision(movers[a],Mover.class,new GameWorld.CollisionListener<Mover>() {
+				@Override
+				public void collide(Mover m) {
+					collisions++;
+				}
+			});
+		}
+	}
+	
+	@Override
+	public void frame(long deltaTime, Graphics2D g) {
+		world.update(deltaTime);
+		
+		g.setColor(Color.black);
+		g.fillRect(0,0,width,height);
+		world.draw(g);
+	}
+	
+	private static class Mover extends GameComponent {
+		private final int width, height;
+		private double dx, dy;
+		
+		Mover(Random random, int width, int height) {
+			super(random.nextDouble() * width,random.nextDouble() * height,8,8);
+			
+			this.width = width;
+			this.height = height;
+			
+			dx = random.nextDouble() * 0.4 - 0.2;
+			dy = random.nextDouble() * 0.4 - 0.2;
+		}
+		
+		@Override
+		public void update(long deltaTime) {
+			double x = getX() + dx * deltaTime;
+			double y = getY() + dy * deltaTime;
+			
+			if(x < 0 || x > width)
+				dx = -dx;
+			if(y < 0 || y > height)
+				dy = -dy;
+			
+			setLocation(x,y);
+		}
+		
+		@Override
+		public void draw(Graphics2D g) {
+			g.setColor(Color.orange);
+			g.fillRect(getIntX(),getIntY(),getIntWidth(),getIntHeight());
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.ra4king.gameutils.benchmarks.scenes;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Random;
+
+import com.ra4king.gameutils.SoftwareRenderer;
+import com.ra4king.gameutils.util.FastMath;
+
+/**
+ * Particles orbiting emitters, stored in parallel arrays, advanced with the FastMath batch functions
+ * and drawn with a SoftwareRenderer.
+ * @author Roi Atalla
+ */
+public class ParticleScene implements Scene {
+	private final String name;
+	private final int particles;
+	
+	private float[] angles, speeds, radii, sin, cos;
+	private float[] centerX, centerY;
+	private SoftwareRenderer renderer;
+	
+	/**
+	 * Initializes this object.
+	 * @param name The name of the scene.
+	 * @param particles The number of particles.
+	 */
+	public ParticleScene(String name, int particles) {
+		this.name = name;
+		this.particles = particles;
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public void setup(int width, int height) {
+		Random random = new Random(42);
+		
+		angles = new float[particles];
+		speeds = new float[particles];
+		radii = new float[particles];
+		sin = new float[particles];
+		cos = new float[particles];
+		centerX = new float[particles];
+		centerY = new float[particles];
+		
+		for(int a = 0; a < particles; a++) {
+			angles[a] = random.nextFloat() * 6.28f;
+			speeds[a] = random.nextFloat() * 0.01f - 0.005f;
+			radii[a] = random.nextFloat() * 100;
+			centerX[a] = random.nextFloat() * width;
+			centerY[a] = random.nextFloat() * height;
+		}
+		
+		renderer = new SoftwareRenderer(width,height);
+	}
+	
+	@Override
+	public void frame(long deltaTime, Graphics2D g) {
+		for(int a = 0; a < particles; a++)
+			angles[a] += speeds[a] * deltaTime;
+		
+		FastMath.sinCos(angles,sin,cos,particles);
+		
+		renderer.clear(0);
+		int color = Color.cyan.getRGB();
+		for(int a = 0; a < particles; a++)
+			renderer.fillRect((int)(centerX[a] + cos[a] * radii[a]),(int)(centerY[a] + sin[a] * radii[a]),2,2,color);
+		
+		renderer.present(g);
+	}
+}
\ No newline at end of file
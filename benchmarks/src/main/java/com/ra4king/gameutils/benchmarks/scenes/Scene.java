@@ -0,0 +1,28 @@
+package com.ra4king.gameutils.benchmarks.scenes;
+
+import java.awt.Graphics2D;
+
+/**
+ * A synthetic scene that SceneRunner drives headless for a fixed number of frames.
+ * @author Roi Atalla
+ */
+public interface Scene {
+	/**
+	 * @return The name used in reports and baseline files.
+	 */
+	String getName();
+	
+	/**
+	 * Builds the scene. Called once before the warmup frames.
+	 * @param width The width of the frame.
+	 * @param height The height of the frame.
+	 */
+	void setup(int width, int height);
+	
+	/**
+	 * Updates and draws one frame.
+	 * @param deltaTime The simulated time of the frame in milliseconds.
+	 * @param g The Graphics context of an offscreen frame.
+	 */
+	void frame(long deltaTime, Graphics2D g);
+}
\ No newline at end of file
@@ -0,0 +1,215 @@
+package com.ra4king.gameutils.benchmarks.scenes;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Runs the synthetic scenes headless for a fixed number of frames and reports the frame time distribution and
+ * the bytes allocated per frame. The results can be saved as a baseline and later runs compared against it.<br>
+ * <br>
+ * <code>
+ * java -Djava.awt.headless=true -cp target/benchmarks.jar com.ra4king.gameutils.benchmarks.scenes.SceneRunner [options]<br>
+ * --frames N          measured frames per scene (600)<br>
+ * --warmup N          unmeasured frames per scene (300)<br>
+ * --scene NAME        only run the named scene, may be repeated<br>
+ * --entities N        entities in the entity scenes (2000)<br>
+ * --listeners N       collision listeners in the collision scene (20)<br>
+ * --particles N       particles in the particle scene (50000)<br>
+ * --map N             cells on each side of the tile map (512)<br>
+ * --out FILE          write the results to FILE<br>
+ * --baseline FILE     compare against FILE and exit with status 1 on a regression<br>
+ * --threshold X       allowed relative slowdown before a regression is reported (0.10)<br>
+ * </code>
+ * Results and baselines are Properties files with one key per scene and metric, for example <code>tilemap.p99.ms</code>.
+ * @author Roi Atalla
+ */
+public class SceneRunner {
+	private static final int WIDTH = 800, HEIGHT = 600;
+	private static final long DELTA = 16;
+	
+	private static final String[] COMPARED = { "mean.ms", "p50.ms", "p99.ms", "alloc.bytes" };
+	
+	public static void main(String[] args) throws IOException {
+		int frames = 600, warmup = 300;
+		int entities = 2000, listeners = 20, particles = 50000, mapSize = 512;
+		List<String> only = new ArrayList<String>();
+		File out = null, baseline = null;
+		double threshold = 0.10;
+		
+		for(int a = 0; a < args.length; a++) {
+			String arg = args[a];
+			if(a+1 >= args.length)
+				usage("Missing value for " + arg);
+			
+			String value = args[++a];
+			
+			switch(arg) {
+				case "--frames": frames = Integer.parseInt(value); break;
+				case "--warmup": warmup = Integer.parseInt(value); break;
+				case "--scene": only.add(value); break;
+				case "--entities": entities = Integer.parseInt(value); break;
+				case "--listeners": listeners = Integer.parseInt(value); break;
+				case "--particles": particles = Integer.parseInt(value); break;
+				case "--map": mapSize = Integer.parseInt(value); break;
+				case "--out": out = new File(value); break;
+				case "--baseline": baseline = new File(value); break;
+				case "--threshold": threshold = Double.parseDouble(value); break;
+				default: usage("Unknown option " + arg);
+			}
+		}
+		
+		List<Scene> scenes = new ArrayList<Scene>();
+		scenes.add(new EntityScene("entities",entities,0));
+		scenes.add(new EntityScene("collisions",entities,listeners));
+		scenes.add(new ParticleScene("particles",particles));
+		scenes.add(new TileMapScene("tilemap",mapSize));
+		
+		Properties results = new Properties();
+		
+		System.out.printf("%-12s %10s %10s %10s %10s %10s %14s%n","scene","mean ms","p50 ms","p90 ms","p99 ms","max ms","alloc B/frame");
+		
+		for(Scene scene : scenes) {
+			if(!only.isEmpty() && !only.contains(scene.getName()))
+				continue;
+			
+			run(scene,warmup,frames,results);
+		}
+		
+		if(out != null) {
+			try(OutputStream os = new FileOutputStream(out)) {
+				results.store(os,"GameUtils scene benchmark, " + frames + " frames");
+			}
+		}
+		
+		if(baseline != null && !compare(results,load(baseline),threshold))
+			System.exit(1);
+	}
+	
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("See the SceneRunner documentation for the options.");
+		System.exit(2);
+	}
+	
+	private static void run(Scene scene, int warmup, int frames, Properties results) {
+		scene.setup(WIDTH,HEIGHT);
+		
+		BufferedImage image = new BufferedImage(WIDTH,HEIGHT,BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		
+		try{
+			for(int a = 0; a < warmup; a++)
+				scene.frame(DELTA,g);
+			
+			long[] times = new long[frames];
+			long allocated = 0;
+			
+			for(int a = 0; a < frames; a++) {
+				long bytes = allocatedBytes();
+				long start = System.nanoTime();
+				
+				scene.frame(DELTA,g);
+				
+				times[a] = System.nanoTime() - start;
+				allocated += allocatedBytes() - bytes;
+			}
+			
+			Arrays.sort(times);
+			
+			long total = 0;
+			for(long t : times)
+				total += t;
+			
+			String name = scene.getName();
+			double mean = total / (double)frames / 1e6;
+			double p50 = percentile(times,0.50), p90 = percentile(times,0.90), p99 = percentile(times,0.99);
+			double max = times[frames-1] / 1e6;
+			long alloc = allocated < 0 ? -1 : allocated / frames;
+			
+			results.setProperty(name + ".mean.ms",format(mean));
+			results.setProperty(name + ".p50.ms",format(p50));
+			results.setProperty(name + ".p90.ms",format(p90));
+			results.setProperty(name + ".p99.ms",format(p99));
+			results.setProperty(name + ".max.ms",format(max));
+			results.setProperty(name + ".alloc.bytes",String.valueOf(alloc));
+			
+			System.out.printf(Locale.ROOT,"%-12s %10.3f %10.3f %10.3f %10.3f %10.3f %14d%n",name,mean,p50,p90,p99,max,alloc);
+		}
+		finally {
+			g.dispose();
+		}
+	}
+	
+	private static double percentile(long[] sorted, double p) {
+		int index = (int)Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0,Math.min(sorted.length-1,index))] / 1e6;
+	}
+	
+	private static String format(double d) {
+		return String.format(Locale.ROOT,"%.4f",d);
+	}
+	
+	/**
+	 * Returns the bytes allocated by the current thread so far, or a negative number if the JVM cannot measure it.
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		
+		return Long.MIN_VALUE / 2;
+	}
+	
+	private static Properties load(File file) throws IOException {
+		Properties p = new Properties();
+		try(InputStream in = new FileInputStream(file)) {
+			p.load(in);
+		}
+		return p;
+	}
+	
+	/**
+	 * Compares the results against the baseline. Each compared metric may be at most (1 + threshold) times the baseline.
+	 * @return True if there is no regression.
+	 */
+	private static boolean compare(Properties results, Properties baseline, double threshold) {
+		boolean passed = true;
+		
+		for(String key : results.stringPropertyNames()) {
+			boolean compared = false;
+			for(String metric : COMPARED)
+				compared |= key.endsWith("." + metric);
+			
+			String base = baseline.getProperty(key);
+			if(!compared || base == null)
+				continue;
+			
+			double was = Double.parseDouble(base), now = Double.parseDouble(results.getProperty(key));
+			if(was < 0 || now < 0)
+				continue;
+			
+			// Allocation is compared with a small absolute allowance so that a zero baseline can absorb noise
+			double limit = was * (1 + threshold) + (key.endsWith(".alloc.bytes") ? 64 : 0);
+			
+			if(now > limit) {
+				passed = false;
+				System.out.printf(Locale.ROOT,"REGRESSION %s: %s -> %s (limit %.4f)%n",key,base,results.getProperty(key),limit);
+			}
+		}
+		
+		System.out.println(passed ? "No regressions against the baseline." : "Regressions found against the baseline.");
+		return passed;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.ra4king.gameutils.benchmarks.scenes;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import com.ra4king.gameutils.tiledmap.Camera;
+import com.ra4king.gameutils.tiledmap.Cell;
+import com.ra4king.gameutils.tiledmap.TiledMap;
+
+/**
+ * A large, fully populated TiledMap of static, sleeping tiles drawn through a Camera that sweeps across it.
+ * @author Roi Atalla
+ */
+public class TileMapScene implements Scene {
+	private static final int CELL_SIZE = 32;
+	private static final Color[] COLORS = { Color.darkGray, Color.gray, new Color(0,96,0), new Color(96,64,0) };
+	
+	private final String name;
+	private final int size;
+	
+	private TiledMap map;
+	private Camera camera;
+	private int width, height;
+	private long time;
+	
+	/**
+	 * Initializes this object.
+	 * @param name The name of the scene.
+	 * @param size The number of cells on each side of the map.
+	 */
+	public TileMapScene(String name, int size) {
+		this.name = name;
+		this.size = size;
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public void setup(int width, int height) {
+		this.width = width;
+		this.height = height;
+		
+		map = new TiledMap(size,size,CELL_SIZE,CELL_SIZE);
+		camera = new Camera(width,height);
+		map.setCamera(camera);
+		map.setChunkBackground(Color.black);
+		
+		for(int x = 0; x < size; x++)
+			for(int y = 0; y < size; y++)
+				map.set(x,y,new Tile(COLORS[(x*31 + y*17) % COLORS.length]));
+	}
+	
+	@Override
+	public void frame(long deltaTime, Graphics2D g) {
+		time += deltaTime;
+		
+		// Sweep a circle around the middle of the map
+		double radius = size * CELL_SIZE / 3.0;
+		double angle = time * 0.0005;
+		int center = size * CELL_SIZE / 2;
+		camera.centerAt(center + (int)(Math.cos(angle) * radius),center + (int)(Math.sin(angle) * radius));
+		
+		map.update(deltaTime);
+		
+		g.setColor(Color.black);
+		g.fillRect(0,0,width,height);
+		map.draw(g);
+	}
+	
+	private static class Tile extends Cell {
+		private final Color color;
+		
+		Tile(Color color) {
+			this.color = color;
+			setSize(CELL_SIZE,CELL_SIZE);
+			
+			// Ground tiles never need an update
+			sleep();
+		}
+		
+		@Override
+		public boolean isStatic() {
+			return true;
+		}
+		
+		@Override
+		public void update(long deltaTime) {}
+		
+		@Override
+		public void draw(Graphics2D g) {
+			g.setColor(color);
+			g.fillRect(getCellX() * CELL_SIZE,getCellY() * CELL_SIZE,CELL_SIZE,CELL_SIZE);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,261 @@
+package com.ra4king.gameutils.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Samples every approximation of FastMath against java.lang.Math and checks the error bounds documented in FastMath.
+ * @author Roi Atalla
+ */
+public class FastMathTest {
+	private static final int SAMPLES = 200000;
+	private static final int[][] PRECISIONS = { { 4, 2 }, { 8, 4 }, { 12, 7 }, { 16, 10 }, { 20, 10 } };
+	
+	private final Random random = new Random(42);
+	
+	@After
+	public void resetPrecision() {
+		FastMath.setPrecision(FastMath.DEFAULT_SIN_BITS,FastMath.DEFAULT_ATAN2_BITS);
+	}
+	
+	// The messages are only built on failure, as the checks run millions of times. A NaN error fails too.
+	
+	private static void assertRelative(String function, double x, double expected, double actual, double bound) {
+		double error = Math.abs(actual - expected) / Math.abs(expected);
+		if(!(error <= bound))
+			fail(function + "(" + x + "): expected " + expected + " but was " + actual + ", relative error " + error + " > " + bound);
+	}
+	
+	private static void assertRelative(String function, double x, double y, double expected, double actual, double bound) {
+		double error = Math.abs(actual - expected) / Math.abs(expected);
+		if(!(error <= bound))
+			fail(function + "(" + x + "," + y + "): expected " + expected + " but was " + actual + ", relative error " + error + " > " + bound);
+	}
+	
+	/**
+	 * @param size The size of the table used, or 0 if there is none.
+	 */
+	private static void assertAbsolute(String function, double x, int size, double expected, double actual, double bound) {
+		double error = Math.abs(actual - expected);
+		if(!(error <= bound))
+			fail(function + "(" + x + ")" + (size == 0 ? "" : " at " + size) + ": expected " + expected + " but was " + actual + ", error " + error + " > " + bound);
+	}
+	
+	/**
+	 * @param size The size of the table used, or 0 if there is none.
+	 */
+	private static void assertAbsolute(String function, double x, double y, int size, double expected, double actual, double bound) {
+		double error = Math.abs(actual - expected);
+		if(!(error <= bound))
+			fail(function + "(" + x + "," + y + ")" + (size == 0 ? "" : " at " + size) + ": expected " + expected + " but was " + actual + ", error " + error + " > " + bound);
+	}
+	
+	@Test
+	public void exp() {
+		for(int a = 0; a < SAMPLES; a++) {
+			double x = random.nextDouble() * 1418.1 - 708.39;
+			assertRelative("exp",x,Math.exp(x),FastMath.exp(x),1e-9);
+		}
+		
+		for(int a = 0; a < SAMPLES; a++) {
+			double x = random.nextDouble() * 20 - 10;
+			assertRelative("exp",x,Math.exp(x),FastMath.exp(x),1e-9);
+		}
+	}
+	
+	@Test
+	public void expRangeEdges() {
+		double maxExp = Math.log(Double.MAX_VALUE);
+		
+		double[] edges = { 0.0, -0.0, 1e-300, -1e-300, 0.5 * Math.log(2), -0.5 * Math.log(2), 709.0, 709.44, 709.5,
+		                   709.7, 709.78, maxExp, Math.nextDown(maxExp), -708.0, -708.39 };
+		for(double x : edges)
+			assertRelative("exp",x,Math.exp(x),FastMath.exp(x),1e-9);
+		
+		for(int a = 0; a < 10000; a++) {
+			double x = maxExp - random.nextDouble() * 2;
+			assertRelative("exp",x,Math.exp(x),FastMath.exp(x),1e-9);
+		}
+		
+		assertEquals(Double.POSITIVE_INFINITY,FastMath.exp(Math.nextUp(maxExp)),0);
+		assertEquals(Double.POSITIVE_INFINITY,FastMath.exp(1000),0);
+		assertEquals(Double.POSITIVE_INFINITY,FastMath.exp(Double.POSITIVE_INFINITY),0);
+		assertEquals(0.0,FastMath.exp(-1000),0);
+		assertEquals(0.0,FastMath.exp(Double.NEGATIVE_INFINITY),0);
+		assertTrue(Double.isNaN(FastMath.exp(Double.NaN)));
+	}
+	
+	@Test
+	public void pow() {
+		for(int a = 0; a < SAMPLES; a++) {
+			double x = Math.exp(random.nextDouble() * 100 - 50);
+			double y = random.nextDouble() * 20 - 10;
+			
+			double expected = Math.pow(x,y);
+			double bound = 1e-9 * (1 + Math.abs(y * Math.log(x)));
+			assertRelative("pow",x,y,expected,FastMath.pow(x,y),bound);
+		}
+		
+		for(int a = 0; a < SAMPLES; a++) {
+			double x = random.nextDouble() * 10;
+			double y = random.nextDouble() * 6 - 3;
+			if(x < Double.MIN_NORMAL)
+				continue;
+			
+			double expected = Math.pow(x,y);
+			double bound = 1e-9 * (1 + Math.abs(y * Math.log(x)));
+			assertRelative("pow",x,y,expected,FastMath.pow(x,y),bound);
+		}
+		
+		assertEquals(Math.pow(-2,3),FastMath.pow(-2,3),0);
+		assertEquals(Math.pow(0,2),FastMath.pow(0,2),0);
+		assertTrue(Double.isNaN(FastMath.pow(2,Double.NaN)));
+	}
+	
+	@Test
+	public void sqrt() {
+		for(int a = 0; a < SAMPLES; a++) {
+			double x = Math.exp(random.nextDouble() * 1400 - 700);
+			double expected = Math.sqrt(x);
+			assertAbsolute("sqrt",x,0,expected,FastMath.sqrt(x),Math.ulp(expected));
+			
+			double y = Math.exp(random.nextDouble() * 600 - 300);
+			expected = Math.hypot(x,y);
+			if(x < 1e150 && y < 1e150 && x > 1e-150 && y > 1e-150)
+				assertAbsolute("hypot",x,y,0,expected,FastMath.hypot(x,y),Math.ulp(expected));
+		}
+	}
+	
+	@Test
+	public void invSqrt() {
+		for(int a = 0; a < SAMPLES; a++) {
+			double x = Math.exp(random.nextDouble() * 1400 - 700);
+			assertRelative("invSqrt",x,1 / Math.sqrt(x),FastMath.invSqrt(x),5e-6);
+			
+			float f = (float)Math.exp(random.nextDouble() * 160 - 80);
+			assertRelative("invSqrt(float)",f,1 / Math.sqrt(f),FastMath.invSqrt(f),1.8e-3);
+		}
+	}
+	
+	@Test
+	public void sinCos() {
+		for(int[] precision : PRECISIONS) {
+			FastMath.setPrecision(precision[0],precision[1]);
+			
+			int size = FastMath.getSinTableSize();
+			double positive = 2 * Math.PI / size, negative = 3 * Math.PI / size;
+			
+			for(int a = 0; a < SAMPLES; a++) {
+				double x = random.nextDouble() * 100;
+				assertAbsolute("sin",x,size,Math.sin(x),FastMath.sin(x),positive);
+				assertAbsolute("cos",x,size,Math.cos(x),FastMath.cos(x),positive);
+				assertAbsolute("sin",-x,size,Math.sin(-x),FastMath.sin(-x),negative);
+				assertAbsolute("cos",-x,size,Math.cos(-x),FastMath.cos(-x),negative);
+				
+				double deg = random.nextDouble() * 720 - 360;
+				double rad = Math.toRadians(deg);
+				assertAbsolute("sinDeg",deg,size,Math.sin(rad),FastMath.sinDeg(deg),negative);
+				assertAbsolute("cosDeg",deg,size,Math.cos(rad),FastMath.cosDeg(deg),negative);
+			}
+			
+			for(int deg = -360; deg <= 360; deg += 90) {
+				assertEquals(Math.round(Math.sin(Math.toRadians(deg))),FastMath.sinDeg(deg),1e-15);
+				assertEquals(Math.round(Math.cos(Math.toRadians(deg))),FastMath.cosDeg(deg),1e-15);
+			}
+		}
+	}
+	
+	@Test
+	public void sinCosLerp() {
+		for(int[] precision : PRECISIONS) {
+			FastMath.setPrecision(precision[0],precision[1]);
+			
+			int size = FastMath.getSinTableSize();
+			double step = 2 * Math.PI / size;
+			double bound = step * step / 8 + 1e-15;
+			
+			for(int a = 0; a < SAMPLES; a++) {
+				double x = random.nextDouble() * 200 - 100;
+				assertAbsolute("sinLerp",x,size,Math.sin(x),FastMath.sinLerp(x),bound);
+				assertAbsolute("cosLerp",x,size,Math.cos(x),FastMath.cosLerp(x),bound);
+			}
+		}
+	}
+	
+	@Test
+	public void atan2() {
+		for(int[] precision : PRECISIONS) {
+			FastMath.setPrecision(precision[0],precision[1]);
+			
+			int size = FastMath.getAtan2GridSize();
+			double bound = 1.0 / (size - 1);
+			
+			for(int a = 0; a < SAMPLES; a++) {
+				double x = random.nextDouble() * 20 - 10, y = random.nextDouble() * 20 - 10;
+				assertAbsolute("atan2",y,x,size,Math.atan2(y,x),FastMath.atan2(y,x),bound);
+			}
+			
+			assertAbsolute("atan2",1,0,size,Math.PI / 2,FastMath.atan2(1,0),bound);
+			assertAbsolute("atan2",0,1,size,0,FastMath.atan2(0,1),bound);
+			assertAbsolute("atan2",-1,-1e-9,size,Math.atan2(-1,-1e-9),FastMath.atan2(-1,-1e-9),bound);
+		}
+	}
+	
+	@Test
+	public void batches() {
+		for(int[] precision : PRECISIONS) {
+			FastMath.setPrecision(precision[0],precision[1]);
+			
+			int size = FastMath.getSinTableSize();
+			double trigBound = 3 * Math.PI / size;
+			double atan2Bound = 1.0 / (FastMath.getAtan2GridSize() - 1);
+			
+			int n = 10000;
+			double[] in = new double[n], y = new double[n], sin = new double[n], cos = new double[n], out = new double[n];
+			float[] inF = new float[n], yF = new float[n], sinF = new float[n], cosF = new float[n], outF = new float[n];
+			for(int a = 0; a < n; a++) {
+				inF[a] = (float)(in[a] = random.nextDouble() * 4 * Math.PI - 2 * Math.PI);
+				yF[a] = (float)(y[a] = random.nextDouble() * 20 - 10);
+			}
+			
+			FastMath.sinCos(in,sin,cos,n);
+			FastMath.sin(in,out,n);
+			for(int a = 0; a < n; a++) {
+				assertEquals(FastMath.sin(in[a]),sin[a],0);
+				assertEquals(FastMath.cos(in[a]),cos[a],0);
+				assertEquals(sin[a],out[a],0);
+			}
+			
+			FastMath.cos(in,out,n);
+			for(int a = 0; a < n; a++)
+				assertEquals(cos[a],out[a],0);
+			
+			FastMath.atan2(y,in,out,n);
+			for(int a = 0; a < n; a++)
+				assertEquals(FastMath.atan2(y[a],in[a]),out[a],0);
+			
+			// The float tables add float rounding to the table error
+			FastMath.sinCos(inF,sinF,cosF,n);
+			FastMath.atan2(yF,inF,outF,n);
+			for(int a = 0; a < n; a++) {
+				assertAbsolute("sin(float[])",inF[a],size,Math.sin(inF[a]),sinF[a],trigBound + 1e-6);
+				assertAbsolute("cos(float[])",inF[a],size,Math.cos(inF[a]),cosF[a],trigBound + 1e-6);
+				assertAbsolute("atan2(float[])",yF[a],inF[a],FastMath.getAtan2GridSize(),Math.atan2(yF[a],inF[a]),outF[a],atan2Bound + 1e-6);
+			}
+			
+			FastMath.sin(inF,outF,n);
+			for(int a = 0; a < n; a++)
+				assertEquals(sinF[a],outF[a],0);
+			
+			FastMath.cos(inF,outF,n);
+			for(int a = 0; a < n; a++)
+				assertEquals(cosF[a],outF[a],0);
+		}
+	}
+}
\ No newline at end of file
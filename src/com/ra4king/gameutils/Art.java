@@ -5,6 +5,8 @@ import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
 
@@ -15,19 +17,77 @@ import javax.imageio.ImageIO;
  * @author Roi Atalla
  */
 public class Art extends Assets<Image> {
+	private volatile PixelCache pixelCache;
+	
 	Art() {}
 	
+	/**
+	 * Sets the persistent cache of decoded pixels. When set, images are decoded through the cache so that
+	 * unchanged images are not decoded again on the next start.
+	 * @param pixelCache The PixelCache to use, or null to always decode with ImageIO.
+	 */
+	public void setPixelCache(PixelCache pixelCache) {
+		this.pixelCache = pixelCache;
+	}
+	
+	public PixelCache getPixelCache() {
+		return pixelCache;
+	}
+	
 	public Image add(Image i, String name) {
 		return super.add(name,createCompatibleImage(i));
 	}
 	
 	@Override
 	public Image extract(URL url) throws IOException {
+		if(pixelCache != null)
+			return decode(readBytes(url));
+		
 		return ImageIO.read(url);
 	}
 	
+	@Override
+	protected boolean supportsDecode() {
+		return true;
+	}
+	
+	@Override
+	protected Image decode(byte[] data) throws IOException {
+		PixelCache pixelCache = this.pixelCache;
+		if(pixelCache != null)
+			return pixelCache.decode(data);
+		
+		return ImageIO.read(new ByteArrayInputStream(data));
+	}
+	
+	/**
+	 * Returns the number of bytes used by the pixels of the image. Images that are not BufferedImages are assumed to use 4 bytes per pixel.
+	 * @param image The image.
+	 * @return The number of bytes used by the pixels of the image.
+	 */
+	@Override
+	protected long sizeOf(Image image) {
+		if(image instanceof BufferedImage) {
+			DataBuffer buffer = ((BufferedImage)image).getRaster().getDataBuffer();
+			return (long)buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+		}
+		
+		return 4L * Math.max(0,image.getWidth(null)) * Math.max(0,image.getHeight(null));
+	}
+	
+	/**
+	 * Loads the image, from the asset packs or the classpath, then splits it and adds the pieces to the map.
+	 * @param file The path of the image relative to res/.
+	 * @param width The width of each quadrant inside the image.
+	 * @param height the height of each quadrant inside the image.
+	 * @return The images split from the image.
+	 */
 	public BufferedImage[][] splitAndAdd(String file, int width, int height) throws IOException {
-		return splitAndAdd(extract(getClass().getClassLoader().getResource("res/" + file)),width,height,getFileName(file));
+		URL url = getResource(file);
+		if(url == null)
+			throw new IOException("Resource not found: " + file);
+		
+		return splitAndAdd(extract(url),width,height,getFileName(file));
 	}
 	
 	/**
@@ -97,9 +157,12 @@ public class Art extends Assets<Image> {
 	 * @param width The width of the image.
 	 * @param height The height of the image.
 	 * @param translucency the translucency of the image. It can be any integer from the java.awt.Transparency class.
-	 * @return The compatible BufferedImage.
+	 * @return The compatible BufferedImage. Without a display, an int RGB or ARGB image is returned.
 	 */
 	public static BufferedImage createCompatibleImage(int width, int height, int translucency) {
+		if(GraphicsEnvironment.isHeadless())
+			return new BufferedImage(width,height,translucency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+		
 		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration().createCompatibleImage(width,height,translucency);
 	}
 	
@@ -0,0 +1,368 @@
+package com.ra4king.gameutils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A single file archive of assets that is memory-mapped when opened.<br>
+ * <br>
+ * The format is a header followed by the raw file contents:<br>
+ * <code>
+ * int magic, int version, int entry count<br>
+ * for each entry: short name length, UTF-8 name, byte type, long offset, int size<br>
+ * file data<br>
+ * </code>
+ * <br>
+ * Names are paths relative to the res/ directory with '/' separators, the same strings passed to Assets.add(String).
+ * A pack is built from a res/ directory with pack(File,File), or by running this class with the directory and output file as arguments.
+ * @author Roi Atalla
+ */
+public class AssetPack {
+	public static final int MAGIC = 0x47555041;
+	public static final int VERSION = 1;
+	
+	public static final byte TYPE_OTHER = 0;
+	public static final byte TYPE_IMAGE = 1;
+	public static final byte TYPE_SOUND = 2;
+	
+	private final ByteBuffer data;
+	private final Map<String,Entry> entries;
+	private final URLStreamHandler handler;
+	
+	private AssetPack(ByteBuffer data) throws IOException {
+		this.data = data.order(ByteOrder.BIG_ENDIAN);
+		
+		if(data.capacity() < 12 || data.getInt(0) != MAGIC)
+			throw new IOException("Not an asset pack.");
+		if(data.getInt(4) != VERSION)
+			throw new IOException("Unsupported asset pack version: " + data.getInt(4));
+		
+		// Every entry takes at least 15 bytes of the header
+		int count = data.getInt(8);
+		if(count < 0 || count > (data.capacity() - 12) / 15)
+			throw new IOException("Corrupt asset pack.");
+		
+		entries = new HashMap<String,Entry>(count*2);
+		
+		ByteBuffer index = data.duplicate();
+		index.position(12);
+		try{
+			for(int a = 0; a < count; a++) {
+				byte[] name = new byte[index.getShort() & 0xffff];
+				index.get(name);
+				byte type = index.get();
+				long offset = index.getLong();
+				int size = index.getInt();
+				
+				if(offset < 0 || size < 0 || offset > data.capacity() - (long)size)
+					throw new IOException("Corrupt asset pack entry.");
+				
+				entries.put(new String(name,StandardCharsets.UTF_8),new Entry(type,(int)offset,size));
+			}
+		}
+		catch(BufferUnderflowException exc) {
+			throw new IOException("Corrupt asset pack.",exc);
+		}
+		
+		handler = new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(final URL url) throws IOException {
+				final String name;
+				try{
+					name = url.toURI().getPath().substring(1);
+				}
+				catch(URISyntaxException exc) {
+					throw new IOException("Invalid asset pack URL: " + url,exc);
+				}
+				
+				if(!contains(name))
+					throw new IOException(name + " is not in this asset pack.");
+				
+				return new URLConnection(url) {
+					@Override
+					public void connect() {}
+					
+					@Override
+					public InputStream getInputStream() {
+						return open(name);
+					}
+					
+					@Override
+					public int getContentLength() {
+						return getSize(name);
+					}
+				};
+			}
+		};
+	}
+	
+	/**
+	 * Opens and memory-maps the asset pack.
+	 * @param file The asset pack file.
+	 * @return The opened AssetPack.
+	 * @throws IOException
+	 */
+	public static AssetPack open(File file) throws IOException {
+		try(RandomAccessFile raf = new RandomAccessFile(file,"r"); FileChannel channel = raf.getChannel()) {
+			if(channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Asset pack is larger than 2GB.");
+			
+			return new AssetPack(channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size()));
+		}
+	}
+	
+	/**
+	 * Returns true if the pack contains the specified file.
+	 * @param name The path of the file relative to res/.
+	 * @return True if the pack contains the file, false otherwise.
+	 */
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+	
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+	
+	public int getSize(String name) {
+		Entry e = entries.get(name);
+		return e == null ? -1 : e.size;
+	}
+	
+	public byte getType(String name) {
+		Entry e = entries.get(name);
+		return e == null ? TYPE_OTHER : e.type;
+	}
+	
+	/**
+	 * Returns a read-only view of the file's bytes inside the mapped pack. No data is copied.
+	 * @param name The path of the file relative to res/.
+	 * @return A read-only view of the file's bytes, or null if it is not in the pack.
+	 */
+	public ByteBuffer get(String name) {
+		Entry e = entries.get(name);
+		if(e == null)
+			return null;
+		
+		ByteBuffer b = data.asReadOnlyBuffer();
+		b.limit(e.offset + e.size);
+		b.position(e.offset);
+		return b.slice();
+	}
+	
+	/**
+	 * Returns an InputStream that reads the file directly from the mapped pack.
+	 * @param name The path of the file relative to res/.
+	 * @return An InputStream of the file, or null if it is not in the pack.
+	 */
+	public InputStream open(String name) {
+		final ByteBuffer b = get(name);
+		if(b == null)
+			return null;
+		
+		return new InputStream() {
+			private int mark;
+			
+			@Override
+			public int read() {
+				return b.hasRemaining() ? b.get() & 0xff : -1;
+			}
+			
+			@Override
+			public int read(byte[] bytes, int off, int len) {
+				if(len == 0)
+					return 0;
+				if(!b.hasRemaining())
+					return -1;
+				
+				len = Math.min(len,b.remaining());
+				b.get(bytes,off,len);
+				return len;
+			}
+			
+			@Override
+			public long skip(long n) {
+				int skipped = (int)Math.max(0,Math.min(n,b.remaining()));
+				b.position(b.position() + skipped);
+				return skipped;
+			}
+			
+			@Override
+			public int available() {
+				return b.remaining();
+			}
+			
+			@Override
+			public boolean markSupported() {
+				return true;
+			}
+			
+			@Override
+			public synchronized void mark(int limit) {
+				mark = b.position();
+			}
+			
+			@Override
+			public synchronized void reset() {
+				b.position(mark);
+			}
+		};
+	}
+	
+	/**
+	 * Returns a URL that reads the file from this pack, so it can be passed to Assets.extract(URL).
+	 * @param name The path of the file relative to res/.
+	 * @return A URL of the file, or null if it is not in the pack.
+	 */
+	public URL getURL(String name) {
+		if(!contains(name))
+			return null;
+		
+		// Names are percent-encoded so that a '?' or '#' stays part of the path
+		try{
+			return new URL(null,new URI("assetpack",null,"/" + name,null).toASCIIString(),handler);
+		}
+		catch(MalformedURLException | URISyntaxException exc) {
+			throw new IllegalArgumentException("Invalid name: " + name, exc);
+		}
+	}
+	
+	/**
+	 * Returns the type of the file according to its extension.
+	 * @param name The file name.
+	 * @return One of TYPE_IMAGE, TYPE_SOUND, or TYPE_OTHER.
+	 */
+	public static byte getTypeOf(String name) {
+		String ext = name.substring(name.lastIndexOf('.')+1).toLowerCase();
+		
+		switch(ext) {
+			case "png":
+			case "jpg":
+			case "jpeg":
+			case "gif":
+			case "bmp":
+				return TYPE_IMAGE;
+			case "wav":
+			case "ogg":
+			case "au":
+			case "aiff":
+				return TYPE_SOUND;
+			default:
+				return TYPE_OTHER;
+		}
+	}
+	
+	/**
+	 * Packs every file under the directory into a single asset pack.
+	 * @param resDir The res/ directory. File names in the pack are relative to this directory.
+	 * @param out The asset pack file to write.
+	 * @throws IOException
+	 */
+	public static void pack(File resDir, File out) throws IOException {
+		if(!resDir.isDirectory())
+			throw new IOException(resDir + " is not a directory.");
+		
+		ArrayList<String> names = new ArrayList<String>();
+		list(resDir,"",names);
+		Collections.sort(names);
+		
+		byte[][] encoded = new byte[names.size()][];
+		long headerSize = 12;
+		for(int a = 0; a < names.size(); a++) {
+			encoded[a] = names.get(a).getBytes(StandardCharsets.UTF_8);
+			if(encoded[a].length > 0xffff)
+				throw new IOException("File name too long: " + names.get(a));
+			
+			headerSize += 2 + encoded[a].length + 1 + 8 + 4;
+		}
+		
+		ByteBuffer header = ByteBuffer.allocate((int)headerSize);
+		header.putInt(MAGIC).putInt(VERSION).putInt(names.size());
+		
+		long offset = headerSize;
+		for(int a = 0; a < names.size(); a++) {
+			long size = new File(resDir,names.get(a)).length();
+			if(size > Integer.MAX_VALUE)
+				throw new IOException("File too large: " + names.get(a));
+			
+			header.putShort((short)encoded[a].length).put(encoded[a]);
+			header.put(getTypeOf(names.get(a))).putLong(offset).putInt((int)size);
+			offset += size;
+		}
+		
+		if(offset > Integer.MAX_VALUE)
+			throw new IOException("Asset pack would be larger than 2GB.");
+		
+		header.flip();
+		
+		try(RandomAccessFile raf = new RandomAccessFile(out,"rw"); FileChannel channel = raf.getChannel()) {
+			channel.truncate(0);
+			
+			while(header.hasRemaining())
+				channel.write(header);
+			
+			for(String name : names) {
+				try(FileInputStream in = new FileInputStream(new File(resDir,name)); FileChannel src = in.getChannel()) {
+					long size = src.size(), pos = 0;
+					while(pos < size)
+						pos += src.transferTo(pos,size-pos,channel);
+				}
+			}
+		}
+	}
+	
+	private static void list(File dir, String prefix, ArrayList<String> names) {
+		File[] files = dir.listFiles();
+		if(files == null)
+			return;
+		
+		for(File f : files) {
+			if(f.isDirectory())
+				list(f,prefix + f.getName() + "/",names);
+			else
+				names.add(prefix + f.getName());
+		}
+	}
+	
+	/**
+	 * Build-time entry point: <code>java com.ra4king.gameutils.AssetPack res/ assets.pack</code>
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2) {
+			System.err.println("Usage: AssetPack <res directory> <output file>");
+			System.exit(1);
+		}
+		
+		pack(new File(args[0]),new File(args[1]));
+	}
+	
+	private static class Entry {
+		private final byte type;
+		private final int offset, size;
+		
+		Entry(byte type, int offset, int size) {
+			this.type = type;
+			this.offset = offset;
+			this.size = size;
+		}
+	}
+}
\ No newline at end of file
@@ -1,15 +1,83 @@
 package com.ra4king.gameutils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import com.ra4king.gameutils.jfr.AssetLoadEvent;
+import com.ra4king.gameutils.jfr.JFR;
+
+/**
+ * A named store of assets with an optional memory budget.<br>
+ * When a budget is set with setMemoryBudget(long), assets loaded from a URL keep their compressed bytes and the least
+ * recently used ones are evicted once the decoded assets use more than the budget. An evicted asset is decoded again on
+ * the next get(String). Pinned assets and assets added directly as objects are never evicted.<br>
+ * The methods that read or change the stored assets are synchronized on this object, so a Loader can publish while
+ * the game reads. Subclasses that access the assets map directly must hold the same lock.
+ * @author Roi Atalla
+ */
 public abstract class Assets<T> {
 	protected Map<String,T> assets;
 	
+	private List<AssetPack> packs;
+	private Map<String,byte[]> sources;
+	private LinkedHashMap<String,Long> sizes;
+	private Set<String> pinned;
+	private volatile long budget = Long.MAX_VALUE;
+	private long usage;
+	private int evictedCount;
+	
+	private Map<T,String> names;
+	private Map<String,Integer> slotIndices;
+	private ArrayList<String> slotNames;
+	private ArrayList<Handle> handles, mergedHandles;
+	// Read by handles without locking
+	private volatile AtomicReferenceArray<T> slots;
+	
+	// Handle accesses by slot index, applied to the LRU order of sizes before it is next used by name
+	private long[] slotAccesses;
+	private int[] touchedSlots;
+	private long[] touchOrder;
+	private int touchedCount;
+	private long accessClock, flushedClock;
+	
 	public Assets() {
 		assets = new HashMap<String,T>();
+		packs = new CopyOnWriteArrayList<AssetPack>();
+		sources = new HashMap<String,byte[]>();
+		sizes = new LinkedHashMap<String,Long>(16,0.75f,true);
+		pinned = new HashSet<String>();
+		
+		names = new IdentityHashMap<T,String>();
+		slotIndices = new HashMap<String,Integer>();
+		slotNames = new ArrayList<String>();
+		handles = new ArrayList<Handle>();
+		mergedHandles = new ArrayList<Handle>();
+		slots = new AtomicReferenceArray<T>(16);
+		slotAccesses = new long[16];
+		touchedSlots = new int[16];
+		touchOrder = new long[16];
 	}
 	
 	public static String getFileName(String file) {
@@ -17,95 +85,661 @@ public abstract class Assets<T> {
 		return file.substring(file.lastIndexOf("/")+1,file.lastIndexOf("."));
 	}
 	
+	/**
+	 * Reads the entire contents of the URL.
+	 * @param url The URL to read.
+	 * @return The bytes read.
+	 * @throws IOException
+	 */
+	public static byte[] readBytes(URL url) throws IOException {
+		if(url == null)
+			throw new IOException("Resource not found.");
+		
+		try(InputStream in = url.openStream()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(),8192));
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1)
+				out.write(buffer,0,read);
+			return out.toByteArray();
+		}
+	}
+	
 	public T add(String file) throws IOException {
 		return add(file,getFileName(file));
 	}
 	
 	public T add(String file, String name) throws IOException {
-		return add(getClass().getClassLoader().getResource("res/"+file),name);
+		return add(getResource(file),name);
 	}
 	
 	public T add(URL url, String name) throws IOException {
-		return add(name,extract(url));
+		Decoded<T> d = load(url);
+		put(name,d.asset,d.source);
+		return d.asset;
+	}
+	
+	/**
+	 * Resolves the file from the added asset packs, then from the res/ directory on the classpath.
+	 * @param file The path of the file relative to res/.
+	 * @return The URL of the file, or null if it was not found.
+	 */
+	protected URL getResource(String file) {
+		for(AssetPack pack : packs) {
+			URL url = pack.getURL(file.replace("\\","/"));
+			if(url != null)
+				return url;
+		}
+		
+		return getClass().getClassLoader().getResource("res/"+file);
+	}
+	
+	/**
+	 * Adds an asset pack that is searched before the classpath whenever a file is added by name.
+	 * Packs are searched in the order they were added.
+	 * @param pack The AssetPack to search.
+	 */
+	public void addPack(AssetPack pack) {
+		if(pack == null)
+			throw new IllegalArgumentException("AssetPack cannot be null.");
+		
+		packs.add(pack);
+	}
+	
+	public boolean removePack(AssetPack pack) {
+		return packs.remove(pack);
+	}
+	
+	/**
+	 * Decodes the asset without publishing it, this is safe to call from any thread.
+	 */
+	private Decoded<T> load(URL url) throws IOException {
+		AssetLoadEvent event = JFR.AVAILABLE ? new AssetLoadEvent() : null;
+		if(event != null)
+			event.begin();
+		
+		Decoded<T> d;
+		if(budget != Long.MAX_VALUE && supportsDecode()) {
+			byte[] data = readBytes(url);
+			d = new Decoded<T>(decode(data),data);
+		}
+		else
+			d = new Decoded<T>(extract(url),null);
+		
+		if(event != null) {
+			event.end();
+			if(event.shouldCommit()) {
+				event.store = getClass();
+				event.url = String.valueOf(url);
+				event.size = d.asset == null ? 0 : sizeOf(d.asset);
+				event.commit();
+			}
+		}
+		
+		return d;
 	}
 	
 	public abstract T extract(URL url) throws IOException;
 	
-	public T add(String name, T t) {
+	/**
+	 * Returns true if this store can decode assets from their compressed bytes, which is required for eviction.
+	 * @return True if decode(byte[]) is supported, false otherwise.
+	 */
+	protected boolean supportsDecode() {
+		return false;
+	}
+	
+	/**
+	 * Decodes an asset from its compressed bytes.
+	 * @param data The compressed bytes, as read from the asset's file.
+	 * @return The decoded asset.
+	 * @throws IOException
+	 */
+	protected T decode(byte[] data) throws IOException {
+		throw new UnsupportedOperationException("Decoding from bytes is not supported.");
+	}
+	
+	/**
+	 * Returns the number of bytes the decoded asset occupies in memory.
+	 * @param t The asset.
+	 * @return The number of bytes used by the asset, or 0 if unknown.
+	 */
+	protected long sizeOf(T t) {
+		return 0;
+	}
+	
+	/**
+	 * Called after an asset has been evicted so that any native resources can be released.
+	 * @param t The evicted asset.
+	 */
+	protected void evicted(T t) {}
+	
+	/**
+	 * Returns false for assets that cannot be evicted right now, such as a Clip that is playing. They are skipped until
+	 * a later trim.
+	 * @param t The asset.
+	 * @return True by default.
+	 */
+	protected boolean isEvictable(T t) {
+		return true;
+	}
+	
+	public synchronized T add(String name, T t) {
+		put(name,t,null);
+		return t;
+	}
+	
+	private synchronized void put(String name, T t, byte[] source) {
+		flushTouches();
+		discard(name);
+		
+		store(name,t);
+		
+		if(source != null)
+			sources.put(name,source);
+		
+		long size = t == null ? 0 : sizeOf(t);
+		sizes.put(name,size);
+		usage += size;
+		
+		trim(name);
+	}
+	
+	private void discard(String name) {
+		Long size = sizes.remove(name);
+		if(size != null)
+			usage -= size;
+		
+		if(sources.remove(name) != null && !assets.containsKey(name))
+			evictedCount--;
+		
+		unstore(name);
+	}
+	
+	private void store(String name, T t) {
 		assets.put(name,t);
+		
+		if(t != null)
+			names.put(t,name);
+		
+		Integer index = slotIndices.get(name);
+		if(index != null)
+			slots.set(index,t);
+	}
+	
+	private T unstore(String name) {
+		T t = assets.remove(name);
+		
+		if(t != null && name.equals(names.get(t)))
+			names.remove(t);
+		
+		Integer index = slotIndices.get(name);
+		if(index != null)
+			slots.set(index,null);
+		
 		return t;
 	}
 	
-	public T get(String name) {
-		return assets.get(name);
+	public synchronized T get(String name) {
+		flushTouches();
+		
+		T t = assets.get(name);
+		
+		// A null asset, such as an image in an unsupported format, stays resident rather than being decoded again
+		if(t == null && !assets.containsKey(name)) {
+			byte[] data = sources.get(name);
+			if(data == null)
+				return null;
+			
+			try{
+				t = decode(data);
+			}
+			catch(IOException exc) {
+				new Exception("Error decoding asset: ".concat(name), exc).printStackTrace();
+				return null;
+			}
+			
+			evictedCount--;
+			store(name,t);
+			
+			long size = t == null ? 0 : sizeOf(t);
+			sizes.put(name,size);
+			usage += size;
+			
+			trim(name);
+		}
+		else if(budget != Long.MAX_VALUE)
+			sizes.get(name);
+		
+		return t;
+	}
+	
+	/**
+	 * Evicts the least recently used assets until the memory usage is within the budget.
+	 */
+	public synchronized void trim() {
+		trim(null);
+	}
+	
+	private void trim(String keep) {
+		if(usage <= budget)
+			return;
+		
+		flushTouches();
+		
+		Iterator<Map.Entry<String,Long>> it = sizes.entrySet().iterator();
+		while(usage > budget && it.hasNext()) {
+			Map.Entry<String,Long> entry = it.next();
+			String name = entry.getKey();
+			
+			if(name.equals(keep) || pinned.contains(name) || !sources.containsKey(name))
+				continue;
+			
+			T t = assets.get(name);
+			if(t != null && !isEvictable(t))
+				continue;
+			
+			it.remove();
+			usage -= entry.getValue();
+			evictedCount++;
+			evicted(unstore(name));
+		}
+	}
+	
+	/**
+	 * Records an access through a handle without hashing its name.
+	 */
+	private void touch(int index) {
+		// Keeps the access times since the last flush within the upper half of a touchOrder key
+		if(accessClock - flushedClock == Integer.MAX_VALUE)
+			flushTouches();
+		
+		if(slotAccesses[index] <= flushedClock)
+			touchedSlots[touchedCount++] = index;
+		slotAccesses[index] = ++accessClock;
+	}
+	
+	/**
+	 * Moves the assets accessed through handles since the last flush to the end of the LRU order, in the order they
+	 * were last accessed.
+	 */
+	private void flushTouches() {
+		if(touchedCount == 0)
+			return;
+		
+		// Sorts the slot indices by access time, as keys holding the time since the last flush above the index
+		for(int a = 0; a < touchedCount; a++) {
+			int index = touchedSlots[a];
+			touchOrder[a] = (slotAccesses[index] - flushedClock) << 32 | index;
+		}
+		Arrays.sort(touchOrder,0,touchedCount);
+		
+		for(int a = 0; a < touchedCount; a++) {
+			int index = (int)touchOrder[a];
+			String name = slotNames.get(index);
+			if(name != null && slots.get(index) != null)
+				sizes.get(name);
+		}
+		
+		touchedCount = 0;
+		flushedClock = accessClock;
+	}
+	
+	/**
+	 * Sets the maximum number of bytes the decoded assets should occupy. Only assets added after a budget is set
+	 * can be evicted, since their compressed bytes are retained.
+	 * @param bytes The memory budget in bytes, or Long.MAX_VALUE for no budget.
+	 */
+	public synchronized void setMemoryBudget(long bytes) {
+		if(bytes < 0)
+			throw new IllegalArgumentException("Budget cannot be negative.");
+		
+		budget = bytes;
+		trim();
+	}
+	
+	public long getMemoryBudget() {
+		return budget;
+	}
+	
+	/**
+	 * Returns the number of bytes used by all currently decoded assets.
+	 * @return The number of bytes used by all currently decoded assets.
+	 */
+	public synchronized long getMemoryUsage() {
+		return usage;
+	}
+	
+	/**
+	 * Returns the number of bytes used by the retained compressed bytes of evictable assets.
+	 * @return The number of bytes used by the compressed sources.
+	 */
+	public synchronized long getSourceMemoryUsage() {
+		long total = 0;
+		for(byte[] b : sources.values())
+			total += b.length;
+		return total;
+	}
+	
+	/**
+	 * Returns true if the asset is currently decoded in memory.
+	 * @param name The name of the asset.
+	 * @return True if the asset is decoded, false if it was evicted or does not exist.
+	 */
+	public synchronized boolean isResident(String name) {
+		return assets.containsKey(name);
+	}
+	
+	/**
+	 * Pins the asset so it is never evicted.
+	 * @param name The name of the asset.
+	 */
+	public synchronized void pin(String name) {
+		pinned.add(name);
 	}
 	
-	public String getName(T t) {
-		for(String s : assets.keySet()) {
-			if(assets.get(s) == t)
-				return s;
+	/**
+	 * Unpins the asset, making it evictable again.
+	 * @param name The name of the asset.
+	 */
+	public synchronized void unpin(String name) {
+		pinned.remove(name);
+		trim();
+	}
+	
+	public synchronized boolean isPinned(String name) {
+		return pinned.contains(name);
+	}
+	
+	/**
+	 * Returns the handle of the specified name, creating it if needed. The name does not have to exist yet.<br>
+	 * A handle is resolved once and then dereferenced by array index, which avoids hashing the name on every get.
+	 * It keeps pointing to the same name across replace and swap, and follows the asset when it is renamed. If the new
+	 * name already has a handle, both handles then point to the new name.
+	 * @param name The name of the asset.
+	 * @return The handle of the name.
+	 */
+	public synchronized Handle getHandle(String name) {
+		if(name == null)
+			throw new IllegalArgumentException("Name cannot be null.");
+		
+		Integer index = slotIndices.get(name);
+		if(index != null)
+			return handles.get(index);
+		
+		if(handles.size() == slots.length()) {
+			AtomicReferenceArray<T> grown = new AtomicReferenceArray<T>(slots.length()*2);
+			for(int a = 0; a < slots.length(); a++)
+				grown.set(a,slots.get(a));
+			slots = grown;
+			
+			slotAccesses = Arrays.copyOf(slotAccesses,grown.length());
+			touchedSlots = Arrays.copyOf(touchedSlots,grown.length());
+			touchOrder = Arrays.copyOf(touchOrder,grown.length());
+		}
+		
+		index = handles.size();
+		slotIndices.put(name,index);
+		slotNames.add(name);
+		slots.set(index,assets.get(name));
+		
+		Handle handle = new Handle(index);
+		handles.add(handle);
+		return handle;
+	}
+	
+	public synchronized String getName(T t) {
+		String name = names.get(t);
+		if(name != null && assets.get(name) == t)
+			return name;
+		
+		for(Map.Entry<String,T> entry : assets.entrySet()) {
+			if(entry.getValue() == t)
+				return entry.getKey();
 		}
 		
 		return null;
 	}
 	
-	public void rename(String oldName, String newName) {
-		add(newName,remove(oldName));
+	public synchronized void rename(String oldName, String newName) {
+		byte[] source = sources.get(oldName);
+		boolean isPinned = pinned.remove(oldName);
+		
+		T t = remove(oldName);
+		if(t == null)
+			return;
+		
+		put(newName,t,source);
+		
+		if(isPinned)
+			pin(newName);
+		
+		Integer index = slotIndices.remove(oldName);
+		if(index != null) {
+			Integer existing = slotIndices.get(newName);
+			if(existing == null) {
+				slotIndices.put(newName,index);
+				slotNames.set(index,newName);
+				slots.set(index,t);
+			}
+			else {
+				// There is one slot per name, so the handles of the old name follow the asset into the existing slot
+				slotNames.set(index,null);
+				slots.set(index,null);
+				
+				for(Handle handle : mergedHandles)
+					if(handle.index == index)
+						handle.index = existing;
+				
+				Handle handle = handles.get(index);
+				handle.index = existing;
+				mergedHandles.add(handle);
+			}
+		}
 	}
 	
-	public T replace(String oldName, T t) {
+	public synchronized T replace(String oldName, T t) {
 		if(get(oldName) == null)
 			throw new IllegalArgumentException("Invalid name");
 		
 		return add(oldName,t);
 	}
 	
-	public void swap(String first, String second) {
-		if(get(first) == null)
+	public synchronized void swap(String first, String second) {
+		T f = get(first);
+		if(f == null)
 			throw new IllegalArgumentException("First name is invalid.");
-		if(get(second) == null)
+		byte[] fSource = sources.get(first);
+		boolean fPinned = pinned.contains(first);
+		
+		T s = get(second);
+		if(s == null)
 			throw new IllegalArgumentException("Second name is invalid");
+		byte[] sSource = sources.get(second);
+		boolean sPinned = pinned.contains(second);
+		
+		put(first,s,sSource);
+		put(second,f,fSource);
 		
-		add(second,assets.put(first,get(second)));
+		if(sPinned)
+			pinned.add(first);
+		else
+			pinned.remove(first);
+		
+		if(fPinned)
+			pinned.add(second);
+		else
+			pinned.remove(second);
 	}
 	
-	public T remove(String name) {
-		T t = assets.get(name);
-		assets.remove(name);
+	public synchronized T remove(String name) {
+		T t = get(name);
+		discard(name);
+		pinned.remove(name);
 		return t;
 	}
 	
-	public int size() {
-		return assets.size();
+	public synchronized int size() {
+		return assets.size() + evictedCount;
 	}
 	
+	/**
+	 * A resolved reference to a named asset. See getHandle(String).
+	 */
+	public class Handle {
+		private volatile int index;
+		
+		private Handle(int index) {
+			this.index = index;
+		}
+		
+		/**
+		 * Returns the asset currently stored under this handle's name.
+		 * @return The asset, or null if there is no asset with this name.
+		 */
+		public T get() {
+			// Without a budget a stored asset is returned without locking, since reading it changes nothing
+			if(budget == Long.MAX_VALUE) {
+				T t = slots.get(index);
+				if(t != null)
+					return t;
+			}
+			
+			synchronized(Assets.this) {
+				T t = slots.get(index);
+				
+				// Only evicted assets go through the name, to be decoded again
+				if(t == null) {
+					String name = slotNames.get(index);
+					return name == null ? null : Assets.this.get(name);
+				}
+				
+				if(budget != Long.MAX_VALUE)
+					touch(index);
+				
+				return t;
+			}
+		}
+		
+		/**
+		 * @return The name this handle points to.
+		 */
+		public String getName() {
+			synchronized(Assets.this) {
+				return slotNames.get(index);
+			}
+		}
+	}
+	
+	private static class Decoded<T> {
+		private final T asset;
+		private final byte[] source;
+		
+		Decoded(T asset, byte[] source) {
+			this.asset = asset;
+			this.source = source;
+		}
+	}
+	
+	/**
+	 * Loads a set of files in parallel on an ExecutorService.<br>
+	 * Files are decoded concurrently but published into this Assets in the order they were added, on the thread
+	 * running the Loader. Decoding happens outside the lock of this Assets and publishing holds it, so the game may
+	 * keep reading assets while a Loader runs. Each file has a CompletableFuture that completes once it has been
+	 * published, its callbacks run on the thread running the Loader.
+	 */
 	public class Loader implements Runnable {
-		private Map<String,String> files;
-		private int status;
-		private boolean error;
+		private final Map<String,String> files;
+		private final Map<String,CompletableFuture<T>> futures;
+		private final CompletableFuture<Void> done;
+		private final ExecutorService executor;
+		private volatile int status, completed;
+		private volatile boolean error, cancelled, started;
 		
+		/**
+		 * Initializes this object. A fixed thread pool with one thread per available processor is used when loading.
+		 */
 		public Loader() {
-			files = new HashMap<String,String>();
+			this(null);
+		}
+		
+		/**
+		 * Initializes this object.
+		 * @param executor The ExecutorService used to decode files. It is not shut down after loading. If null, a temporary pool is used.
+		 */
+		public Loader(ExecutorService executor) {
+			this.executor = executor;
+			files = new LinkedHashMap<String,String>();
+			futures = new HashMap<String,CompletableFuture<T>>();
+			done = new CompletableFuture<Void>();
 		}
 		
 		public int getTotal() {
 			return files.size();
 		}
 		
+		/**
+		 * @return The number of files successfully loaded and published.
+		 */
 		public int getStatus() {
 			return status;
 		}
 		
+		/**
+		 * Returns the fraction of files that have finished loading, successfully or not. Files skipped after cancel()
+		 * count as finished, so this reaches 1.0 once the Loader is done.
+		 * @return A value from 0.0 to 1.0.
+		 */
+		public double getProgress() {
+			int total = getTotal();
+			return total == 0 ? (started ? 1.0 : 0.0) : completed / (double)total;
+		}
+		
 		public boolean isLoadingError() {
 			return error;
 		}
 		
+		public boolean isDone() {
+			return done.isDone();
+		}
+		
+		public boolean isCancelled() {
+			return cancelled;
+		}
+		
+		/**
+		 * Cancels loading. Files that have already been published stay in the Assets, the futures of the rest are cancelled.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+		
+		/**
+		 * Returns the future of the specified file, which completes once the file is published.
+		 * @param name The name of the file.
+		 * @return The future of the file, or null if no file was added with this name.
+		 */
+		public CompletableFuture<T> getFuture(String name) {
+			return futures.get(name);
+		}
+		
+		/**
+		 * @return A future that completes when the Loader has finished, whether files failed or not.
+		 */
+		public CompletableFuture<Void> getFuture() {
+			return done;
+		}
+		
 		public void addFile(String file) {
 			addFile(file,getFileName(file));
 		}
 		
 		public void addFile(String file, String name) {
+			if(started)
+				throw new IllegalStateException("Loader has already started.");
+			
 			files.put(name,file);
+			futures.put(name,new CompletableFuture<T>());
 		}
 		
 		public void addFiles(String ... files) {
@@ -120,20 +754,91 @@ public abstract class Assets<T> {
 		}
 		
 		public void start() {
-			new Thread(this).start();
+			new Thread(this,"Asset Loader Thread").start();
 		}
 		
 		public void run() {
-			for(String s : files.keySet()) {
-				try{
-					add(files.get(s),s);
-					status++;
+			if(started)
+				throw new IllegalStateException("Loader has already started.");
+			
+			started = true;
+			
+			ExecutorService executor = this.executor;
+			if(executor == null) {
+				final int threads = Math.max(1,Math.min(files.size(),Runtime.getRuntime().availableProcessors()));
+				executor = Executors.newFixedThreadPool(threads,new ThreadFactory() {
+					private int count;
+					
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r,"Asset Loader Worker " + (count++));
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			}
+			
+			try{
+				ArrayList<Future<Decoded<T>>> pending = new ArrayList<Future<Decoded<T>>>(files.size());
+				for(final String file : files.values()) {
+					pending.add(executor.submit(new Callable<Decoded<T>>() {
+						@Override
+						public Decoded<T> call() throws Exception {
+							if(cancelled)
+								throw new CancellationException();
+							
+							return load(getResource(file));
+						}
+					}));
 				}
-				catch(Exception exc) {
-					error = true;
-					new Exception("Error loading file: ".concat(s), exc).printStackTrace();
+				
+				int index = 0;
+				for(String s : files.keySet()) {
+					Future<Decoded<T>> f = pending.get(index++);
+					CompletableFuture<T> future = futures.get(s);
+					
+					if(cancelled) {
+						f.cancel(true);
+						future.cancel(false);
+						completed++;
+						continue;
+					}
+					
+					try{
+						Decoded<T> d = f.get();
+						put(s,d.asset,d.source);
+						status++;
+						future.complete(d.asset);
+					}
+					catch(InterruptedException exc) {
+						cancelled = true;
+						f.cancel(true);
+						future.cancel(false);
+						Thread.currentThread().interrupt();
+					}
+					catch(CancellationException exc) {
+						future.cancel(false);
+					}
+					catch(ExecutionException exc) {
+						Throwable cause = exc.getCause();
+						if(cause instanceof CancellationException)
+							future.cancel(false);
+						else {
+							error = true;
+							new Exception("Error loading file: ".concat(s), cause).printStackTrace();
+							future.completeExceptionally(cause);
+						}
+					}
+					
+					completed++;
 				}
 			}
+			finally {
+				if(executor != this.executor)
+					executor.shutdownNow();
+				
+				done.complete(null);
+			}
 		}
 	}
 }
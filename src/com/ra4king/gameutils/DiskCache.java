@@ -0,0 +1,182 @@
+package com.ra4king.gameutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The storage shared by the persistent caches of decoded assets.<br>
+ * Each entry is a memory-mappable file in the cache directory, named after the SHA-1 hash of the compressed source
+ * bytes and the format of the decoded data. It starts with a magic number and a version, followed by the data written
+ * by the subclass. Entries are written to a temporary file that is then renamed, so a crash never leaves a partial entry.
+ * @author Roi Atalla
+ */
+abstract class DiskCache<T> {
+	private static final int HEADER_SIZE = 8;
+	
+	private final File dir;
+	private final String extension, prefix;
+	private final int magic, version;
+	
+	/**
+	 * Initializes this object.
+	 * @param dir The directory where entries are stored. It is created if it does not exist.
+	 * @param extension The extension of the entry files, including the dot.
+	 * @param prefix The prefix of the temporary files, at least 3 characters long.
+	 * @throws IOException If the directory cannot be created.
+	 */
+	DiskCache(File dir, String extension, String prefix, int magic, int version) throws IOException {
+		if(!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Cannot create cache directory: " + dir);
+		
+		this.dir = dir;
+		this.extension = extension;
+		this.prefix = prefix;
+		this.magic = magic;
+		this.version = version;
+	}
+	
+	public File getDirectory() {
+		return dir;
+	}
+	
+	/**
+	 * Returns the decoded form of the compressed bytes, reading it from the cache if present.
+	 * On a miss, the bytes are decoded with load(byte[]) and the result is written to the cache.
+	 * @param source The compressed bytes.
+	 * @return The decoded data.
+	 * @throws IOException If the bytes cannot be decoded.
+	 */
+	public T decode(byte[] source) throws IOException {
+		File file = new File(dir,getKey(source));
+		
+		if(file.isFile()) {
+			try{
+				T t = read(file);
+				if(t != null)
+					return t;
+			}
+			catch(IOException exc) {
+				// A corrupt or truncated entry is decoded and written again below
+			}
+		}
+		
+		T t = load(source);
+		
+		try{
+			write(file,t);
+		}
+		catch(IOException exc) {
+			new Exception("Error writing cache entry: " + file, exc).printStackTrace();
+		}
+		
+		return t;
+	}
+	
+	/**
+	 * Deletes every entry in the cache.
+	 */
+	public void clear() {
+		File[] files = dir.listFiles();
+		if(files == null)
+			return;
+		
+		for(File f : files)
+			if(f.getName().endsWith(extension))
+				f.delete();
+	}
+	
+	/**
+	 * @return The part of the entry names that identifies the format of the decoded data, such as the pixel formats.
+	 */
+	abstract String getFormat();
+	
+	/**
+	 * Decodes the compressed bytes without the cache.
+	 */
+	abstract T load(byte[] source) throws IOException;
+	
+	/**
+	 * Reads an entry.
+	 * @param buffer The mapped entry, positioned after the magic number and version.
+	 * @return The decoded data, or null if the entry does not match.
+	 */
+	abstract T read(ByteBuffer buffer) throws IOException;
+	
+	/**
+	 * @return The number of bytes write(T, ByteBuffer) writes, or -1 if the data cannot be cached.
+	 */
+	abstract int getSize(T t);
+	
+	/**
+	 * Writes the data of an entry, after the magic number and version.
+	 */
+	abstract void write(T t, ByteBuffer buffer);
+	
+	private String getKey(byte[] source) {
+		try{
+			byte[] hash = MessageDigest.getInstance("SHA-1").digest(source);
+			
+			StringBuilder key = new StringBuilder(hash.length*2 + 16);
+			for(byte b : hash) {
+				key.append(Character.forDigit((b >> 4) & 0xf,16));
+				key.append(Character.forDigit(b & 0xf,16));
+			}
+			
+			return key.append(getFormat()).append(extension).toString();
+		}
+		catch(NoSuchAlgorithmException exc) {
+			throw new IllegalStateException("SHA-1 is not available.", exc);
+		}
+	}
+	
+	private T read(File file) throws IOException {
+		try(RandomAccessFile raf = new RandomAccessFile(file,"r"); FileChannel channel = raf.getChannel()) {
+			if(channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+				return null;
+			
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+			
+			if(buffer.getInt() != magic || buffer.getInt() != version)
+				return null;
+			
+			return read(buffer);
+		}
+	}
+	
+	private void write(File file, T t) throws IOException {
+		int size = getSize(t);
+		if(size < 0)
+			return;
+		
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size);
+		buffer.putInt(magic).putInt(version);
+		write(t,buffer);
+		buffer.rewind();
+		
+		File temp = File.createTempFile(prefix,".tmp",dir);
+		try{
+			try(RandomAccessFile raf = new RandomAccessFile(temp,"rw"); FileChannel channel = raf.getChannel()) {
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+			}
+			
+			try{
+				Files.move(temp.toPath(),file.toPath(),StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException exc) {
+				Files.move(temp.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			temp.delete();
+		}
+	}
+}
\ No newline at end of file
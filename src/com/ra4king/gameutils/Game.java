@@ -35,6 +35,9 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
+import com.ra4king.gameutils.jfr.FrameEvent;
+import com.ra4king.gameutils.jfr.JFR;
+
 /**
  * Game is the main class that must be extended by the user. It handles the game loop and certain other functions.<br>
  * Game extends Applet but also supports being a desktop app.<br>
@@ -165,6 +168,7 @@ public abstract class Game extends Applet {
 	
 	private final Art art;
 	private final Sound sound;
+	private SoundMixer soundMixer;
 	
 	private final ArrayList<Callback> callbacks;
 	
@@ -173,6 +177,7 @@ public abstract class Game extends Applet {
 	
 	private final Canvas canvas;
 	private BufferStrategy strategy;
+	private volatile SoftwareRenderer renderer;
 	
 	private final Input input;
 	private ConcurrentLinkedQueue<Event> events;
@@ -478,6 +483,15 @@ public abstract class Game extends Applet {
 		canvas.requestFocus();
 		
 		while(true) {
+			// Phases are only timed while a recording has the event enabled
+			FrameEvent frameEvent = JFR.AVAILABLE ? new FrameEvent() : null;
+			boolean profiling = frameEvent != null && frameEvent.isEnabled();
+			long phaseTime = 0;
+			if(profiling) {
+				frameEvent.begin();
+				phaseTime = System.nanoTime();
+			}
+			
 			try {
 				processCallbacks();
 			}
@@ -492,6 +506,12 @@ public abstract class Game extends Applet {
 				exc.printStackTrace();
 			}
 			
+			if(profiling) {
+				long now = System.nanoTime();
+				frameEvent.eventsTime = now-phaseTime;
+				phaseTime = now;
+			}
+			
 			long diffTime = System.nanoTime()-lastTime;
 			lastTime += diffTime;
 			
@@ -508,22 +528,50 @@ public abstract class Game extends Applet {
 					}
 					
 					diffTime -= deltaTime;
+					
+					if(profiling)
+						frameEvent.updates++;
 				}
 			}
 			
+			if(profiling) {
+				long now = System.nanoTime();
+				frameEvent.updateTime = now-phaseTime;
+				phaseTime = now;
+			}
+			
 			try{
 				do{
 					do{
 						Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
-						g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
+						
+						final SoftwareRenderer renderer = this.renderer;
+						Graphics2D rg = g;
+						if(renderer != null) {
+							// A minimized or not yet laid out window has a size of 0
+							int width = Math.max(1,getWidth()), height = Math.max(1,getHeight());
+							if(width != renderer.getWidth() || height != renderer.getHeight())
+								renderer.resize(width,height);
+							else
+								renderer.resetClip();
+							
+							rg = renderer.createGraphics();
+						}
+						
+						rg.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
 						
 						try{
-							paint(g);
+							paint(rg);
 						}
 						catch(Exception exc) {
 							exc.printStackTrace();
 						}
 						
+						if(renderer != null) {
+							rg.dispose();
+							renderer.present(g);
+						}
+						
 						if(showFPS) {
 							g.setFont(fpsFont);
 							g.drawString("Version " + version + "    " + currentFPS + " FPS",2,getHeight()-2);
@@ -532,7 +580,19 @@ public abstract class Game extends Applet {
 						g.dispose();
 					}while(strategy.contentsRestored());
 					
+					if(profiling) {
+						long now = System.nanoTime();
+						frameEvent.drawTime += now-phaseTime;
+						phaseTime = now;
+					}
+					
 					strategy.show();
+					
+					if(profiling) {
+						long now = System.nanoTime();
+						frameEvent.presentTime += now-phaseTime;
+						phaseTime = now;
+					}
 				}while(strategy.contentsLost());
 			}
 			catch(Exception exc) {
@@ -541,6 +601,9 @@ public abstract class Game extends Applet {
 			
 			frames++;
 			
+			if(profiling)
+				frameEvent.commit();
+			
 			if(System.nanoTime()-time >= ONE_SECOND) {
 				time += ONE_SECOND;
 				currentFPS = frames;
@@ -857,6 +920,11 @@ public abstract class Game extends Applet {
 	@Override
 	public final void stop() {
 		sound.setOn(false);
+		
+		SoundMixer soundMixer = this.soundMixer;
+		if(soundMixer != null)
+			soundMixer.setOn(false);
+		
 		isActive = false;
 	}
 	
@@ -1156,6 +1224,35 @@ public abstract class Game extends Applet {
 		return showFPS;
 	}
 	
+	/**
+	 * Switches the render target between the BufferStrategy and a SoftwareRenderer framebuffer.
+	 * When enabled, paint(Graphics2D) receives a Graphics context of the framebuffer and the framebuffer is
+	 * presented to the BufferStrategy with a single drawImage after each frame.
+	 * @param softwareRendering If true, frames are rendered through a SoftwareRenderer, else they are drawn directly to the BufferStrategy.
+	 */
+	public void setSoftwareRendering(boolean softwareRendering) {
+		if(softwareRendering && renderer == null)
+			renderer = new SoftwareRenderer(Math.max(1,getWidth()),Math.max(1,getHeight()));
+		else if(!softwareRendering)
+			renderer = null;
+	}
+	
+	/**
+	 * Returns true if frames are rendered through a SoftwareRenderer.
+	 * @return True if frames are rendered through a SoftwareRenderer, false otherwise.
+	 */
+	public boolean isSoftwareRendering() {
+		return renderer != null;
+	}
+	
+	/**
+	 * Returns the SoftwareRenderer used as the render target, or null if software rendering is disabled.
+	 * @return The SoftwareRenderer used as the render target.
+	 */
+	public SoftwareRenderer getSoftwareRenderer() {
+		return renderer;
+	}
+	
 	/**
 	 * Sets the optimal FPS of this game.
 	 * @param FPS Specifies the number of updates and frames shown per second.
@@ -1196,6 +1293,18 @@ public abstract class Game extends Applet {
 		return sound;
 	}
 	
+	/**
+	 * Returns a reference to the SoundMixer, creating it on the first call.
+	 * The mixer's thread and output line are started the first time a sound is played.
+	 * @return A reference to the SoundMixer.
+	 */
+	public synchronized SoundMixer getSoundMixer() {
+		if(soundMixer == null)
+			soundMixer = new SoundMixer();
+		
+		return soundMixer;
+	}
+	
 	/**
 	 * Returns a reference to the Input object.
 	 * @return A reference to the Input object.
@@ -0,0 +1,233 @@
+package com.ra4king.gameutils;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Music streamed from an Ogg Vorbis file through a SoundMixer.<br>
+ * A background thread decodes the file with OggStream into a small ring of PCM frames that the mixing thread drains,
+ * so only a fraction of a second of audio is ever in memory. Looping reopens the file on the decoding thread and
+ * keeps filling the same ring, so there is no gap at the loop point. Music is created with SoundMixer.playMusic.
+ * @author Roi Atalla
+ */
+public class Music {
+	private static final int DECODE_FRAMES = 2048;
+	
+	private final URL url;
+	private final boolean looping;
+	
+	private final short[] ring;
+	private final int capacity;
+	private volatile long written, read;
+	private volatile boolean finished, closed;
+	
+	// Fade state, only accessed while holding the SoundMixer's lock
+	private float gain = 1, fadeStep;
+	private int fadeRemaining;
+	private boolean stopAfterFade;
+	
+	private double resamplePos;
+	private short prevLeft, prevRight;
+	
+	Music(URL url, boolean looping, int bufferFrames) {
+		if(url == null)
+			throw new IllegalArgumentException("URL cannot be null.");
+		
+		this.url = url;
+		this.looping = looping;
+		
+		capacity = bufferFrames;
+		ring = new short[bufferFrames*SoundMixer.CHANNELS];
+	}
+	
+	void start() {
+		Thread t = new Thread("Music Decoder Thread") {
+			@Override
+			public void run() {
+				decode();
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	public URL getURL() {
+		return url;
+	}
+	
+	public boolean isLooping() {
+		return looping;
+	}
+	
+	/**
+	 * @return True if the music has finished playing or was stopped.
+	 */
+	public boolean isDone() {
+		return closed || (finished && written == read);
+	}
+	
+	void close() {
+		closed = true;
+	}
+	
+	private void decode() {
+		OggStream ogg = null;
+		
+		try{
+			short[] decoded = new short[DECODE_FRAMES*SoundMixer.CHANNELS];
+			short[] resampled = null;
+			
+			ogg = new OggStream(url.openStream());
+			
+			while(!closed) {
+				int frames = ogg.read(decoded,0,DECODE_FRAMES);
+				
+				if(frames == -1) {
+					ogg.close();
+					ogg = null;
+					
+					if(!looping)
+						break;
+					
+					ogg = new OggStream(url.openStream());
+					continue;
+				}
+				
+				int rate = ogg.getSampleRate();
+				if(rate == SoundMixer.SAMPLE_RATE)
+					push(decoded,frames);
+				else {
+					int max = (int)Math.ceil(frames * (double)SoundMixer.SAMPLE_RATE / rate) + 2;
+					if(resampled == null || resampled.length < max*SoundMixer.CHANNELS)
+						resampled = new short[max*SoundMixer.CHANNELS];
+					
+					push(resampled,resample(decoded,frames,rate,resampled));
+				}
+			}
+		}
+		catch(Exception exc) {
+			if(!closed)
+				new Exception("Error streaming music: " + url, exc).printStackTrace();
+		}
+		finally {
+			finished = true;
+			
+			if(ogg != null) {
+				try{
+					ogg.close();
+				}
+				catch(IOException exc) {}
+			}
+		}
+	}
+	
+	/**
+	 * Streaming linear resampler. Its state carries across chunks and across the loop point.
+	 */
+	private int resample(short[] in, int frames, int rate, short[] out) {
+		final double step = rate / (double)SoundMixer.SAMPLE_RATE;
+		int count = 0;
+		
+		while(resamplePos < frames-1) {
+			int i = (int)Math.floor(resamplePos);
+			double t = resamplePos-i;
+			
+			double al = i < 0 ? prevLeft : in[i*2], ar = i < 0 ? prevRight : in[i*2+1];
+			double bl = in[(i+1)*2], br = in[(i+1)*2+1];
+			
+			out[count*2] = (short)(al + (bl-al)*t);
+			out[count*2+1] = (short)(ar + (br-ar)*t);
+			count++;
+			
+			resamplePos += step;
+		}
+		
+		resamplePos -= frames;
+		if(frames > 0) {
+			prevLeft = in[(frames-1)*2];
+			prevRight = in[(frames-1)*2+1];
+		}
+		
+		return count;
+	}
+	
+	private void push(short[] data, int frames) throws InterruptedException {
+		int offset = 0;
+		
+		while(offset < frames && !closed) {
+			int free = (int)(capacity - (written - read));
+			if(free == 0) {
+				Thread.sleep(2);
+				continue;
+			}
+			
+			int n = Math.min(free,frames-offset);
+			int pos = (int)(written % capacity);
+			int first = Math.min(n,capacity-pos);
+			
+			System.arraycopy(data,offset*2,ring,pos*2,first*2);
+			System.arraycopy(data,(offset+first)*2,ring,0,(n-first)*2);
+			
+			offset += n;
+			written += n;
+		}
+	}
+	
+	/**
+	 * Fades the gain linearly to the target.
+	 * @param target The target gain.
+	 * @param frames The duration of the fade in frames. If 0, the gain is set immediately.
+	 * @param stop If true, the music is stopped once the fade finishes.
+	 */
+	void fade(float target, int frames, boolean stop) {
+		stopAfterFade = stop;
+		
+		if(frames <= 0) {
+			gain = target;
+			fadeRemaining = 0;
+			
+			if(stop)
+				close();
+		}
+		else {
+			fadeStep = (target-gain)/frames;
+			fadeRemaining = frames;
+		}
+	}
+	
+	/**
+	 * Mixes the next buffered frames into the accumulator. Missing frames are left silent.
+	 * @return False once the music is done and should be removed from the mixer.
+	 */
+	boolean mix(int[] acc, int frames, float master) {
+		if(closed)
+			return false;
+		
+		final short[] ring = this.ring;
+		final int n = (int)Math.min(written-read,frames);
+		int pos = (int)(read % capacity);
+		
+		for(int f = 0, dst = 0; f < n; f++) {
+			if(fadeRemaining > 0) {
+				gain += fadeStep;
+				fadeRemaining--;
+			}
+			
+			float g = gain * master;
+			acc[dst++] += (int)(ring[pos*2] * g);
+			acc[dst++] += (int)(ring[pos*2+1] * g);
+			
+			if(++pos == capacity)
+				pos = 0;
+		}
+		
+		read += n;
+		
+		if(stopAfterFade && fadeRemaining == 0) {
+			close();
+			return false;
+		}
+		
+		return !(finished && written == read);
+	}
+}
\ No newline at end of file
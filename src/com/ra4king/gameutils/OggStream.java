@@ -0,0 +1,180 @@
+package com.ra4king.gameutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.jcraft.jogg.Packet;
+import com.jcraft.jogg.Page;
+import com.jcraft.jogg.StreamState;
+import com.jcraft.jogg.SyncState;
+import com.jcraft.jorbis.Block;
+import com.jcraft.jorbis.Comment;
+import com.jcraft.jorbis.DspState;
+import com.jcraft.jorbis.Info;
+
+/**
+ * An incremental Ogg Vorbis decoder built on JOrbis. Only as much of the stream as is needed to fill
+ * each read is decoded, so the whole file is never held in memory.<br>
+ * Output is interleaved signed 16-bit stereo at the stream's own sample rate: mono is duplicated into both
+ * channels and extra channels are dropped.
+ * @author Roi Atalla
+ */
+public class OggStream implements Closeable {
+	private static final int READ_SIZE = 4096;
+	
+	private final InputStream in;
+	
+	private final SyncState sync = new SyncState();
+	private final StreamState stream = new StreamState();
+	private final Page page = new Page();
+	private final Packet packet = new Packet();
+	private final Info info = new Info();
+	private final Comment comment = new Comment();
+	private final DspState dsp = new DspState();
+	private final Block block = new Block(dsp);
+	
+	private final float[][][] pcm = new float[1][][];
+	private final int[] index;
+	
+	private boolean endOfStream;
+	
+	/**
+	 * Reads the Vorbis headers from the stream.
+	 * @param in The Ogg Vorbis data. It is closed when this OggStream is closed.
+	 * @throws IOException If the stream is not Ogg Vorbis.
+	 */
+	public OggStream(InputStream in) throws IOException {
+		this.in = in;
+		
+		sync.init();
+		info.init();
+		comment.init();
+		
+		if(!nextPage())
+			throw new IOException("Not an Ogg stream.");
+		
+		stream.init(page.serialno());
+		stream.pagein(page);
+		
+		if(stream.packetout(packet) != 1 || info.synthesis_headerin(comment,packet) < 0)
+			throw new IOException("Not a Vorbis stream.");
+		
+		int headers = 1;
+		while(headers < 3) {
+			int result = stream.packetout(packet);
+			
+			if(result == 0) {
+				if(!nextPage())
+					throw new IOException("End of stream in Vorbis headers.");
+				
+				stream.pagein(page);
+			}
+			else if(result < 0 || info.synthesis_headerin(comment,packet) < 0)
+				throw new IOException("Corrupt Vorbis header.");
+			else
+				headers++;
+		}
+		
+		if(info.channels <= 0)
+			throw new IOException("Invalid channel count.");
+		
+		dsp.synthesis_init(info);
+		block.init(dsp);
+		
+		index = new int[info.channels];
+	}
+	
+	public int getSampleRate() {
+		return info.rate;
+	}
+	
+	public int getChannels() {
+		return info.channels;
+	}
+	
+	private boolean nextPage() throws IOException {
+		while(true) {
+			int result = sync.pageout(page);
+			
+			if(result == 1)
+				return true;
+			
+			if(result == 0) {
+				int offset = sync.buffer(READ_SIZE);
+				int read = in.read(sync.data,offset,READ_SIZE);
+				
+				if(read <= 0)
+					return false;
+				
+				sync.wrote(read);
+			}
+			// result < 0 means a gap in the data, the next page is searched for
+		}
+	}
+	
+	/**
+	 * Decodes up to the specified number of frames.
+	 * @param out The destination of the interleaved stereo samples.
+	 * @param offset The offset, in samples, into the destination array.
+	 * @param frames The maximum number of frames to decode.
+	 * @return The number of frames decoded, or -1 if the end of the stream was reached.
+	 * @throws IOException
+	 */
+	public int read(short[] out, int offset, int frames) throws IOException {
+		while(true) {
+			int available = dsp.synthesis_pcmout(pcm,index);
+			
+			if(available > 0) {
+				int n = Math.min(available,frames);
+				float[] left = pcm[0][0], right = pcm[0][info.channels > 1 ? 1 : 0];
+				int li = index[0], ri = index[info.channels > 1 ? 1 : 0];
+				
+				for(int a = 0; a < n; a++) {
+					out[offset++] = toShort(left[li+a]);
+					out[offset++] = toShort(right[ri+a]);
+				}
+				
+				dsp.synthesis_read(n);
+				return n;
+			}
+			
+			if(endOfStream)
+				return -1;
+			
+			int result = stream.packetout(packet);
+			
+			if(result == 1) {
+				if(block.synthesis(packet) == 0)
+					dsp.synthesis_blockin(block);
+			}
+			else if(result == 0) {
+				if(stream.eof() != 0 || !nextPage()) {
+					endOfStream = true;
+					continue;
+				}
+				
+				stream.pagein(page);
+			}
+		}
+	}
+	
+	private static short toShort(float sample) {
+		int s = (int)(sample * 32767f);
+		if(s > Short.MAX_VALUE)
+			return Short.MAX_VALUE;
+		if(s < Short.MIN_VALUE)
+			return Short.MIN_VALUE;
+		return (short)s;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		stream.clear();
+		block.clear();
+		dsp.clear();
+		info.clear();
+		sync.clear();
+		in.close();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.ra4king.gameutils;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A persistent cache of decoded image pixels, used by Art to skip image decoding on warm starts.<br>
+ * Each entry holds the width, height, and image type followed by the raw int pixels, which are bulk copied
+ * straight into a new BufferedImage.
+ * @author Roi Atalla
+ */
+public class PixelCache extends DiskCache<BufferedImage> {
+	private static final int MAGIC = 0x47555043;
+	private static final int VERSION = 1;
+	
+	private final int opaqueType, translucentType;
+	
+	/**
+	 * Initializes this object. The pixel formats are the ones used by compatible images of the current display,
+	 * or TYPE_INT_RGB and TYPE_INT_ARGB if they are not int based or there is no display.
+	 * @param dir The directory where cached pixels are stored. It is created if it does not exist.
+	 * @throws IOException If the directory cannot be created.
+	 */
+	public PixelCache(File dir) throws IOException {
+		this(dir,getCompatibleType(Transparency.OPAQUE,BufferedImage.TYPE_INT_RGB),getCompatibleType(Transparency.TRANSLUCENT,BufferedImage.TYPE_INT_ARGB));
+	}
+	
+	/**
+	 * Initializes this object.
+	 * @param dir The directory where cached pixels are stored. It is created if it does not exist.
+	 * @param opaqueType The BufferedImage type used for opaque images, must be TYPE_INT_RGB, TYPE_INT_ARGB, or TYPE_INT_ARGB_PRE.
+	 * @param translucentType The BufferedImage type used for images with alpha, must be TYPE_INT_ARGB or TYPE_INT_ARGB_PRE.
+	 * @throws IOException If the directory cannot be created.
+	 */
+	public PixelCache(File dir, int opaqueType, int translucentType) throws IOException {
+		super(dir,".px","pixels",MAGIC,VERSION);
+		
+		if(!isIntType(opaqueType))
+			throw new IllegalArgumentException("Unsupported opaque image type: " + opaqueType);
+		if(translucentType != BufferedImage.TYPE_INT_ARGB && translucentType != BufferedImage.TYPE_INT_ARGB_PRE)
+			throw new IllegalArgumentException("Unsupported translucent image type: " + translucentType);
+		
+		this.opaqueType = opaqueType;
+		this.translucentType = translucentType;
+	}
+	
+	private static boolean isIntType(int type) {
+		return type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE;
+	}
+	
+	private static int getCompatibleType(int transparency, int fallback) {
+		if(GraphicsEnvironment.isHeadless())
+			return fallback;
+		
+		try{
+			int type = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+					.createCompatibleImage(1,1,transparency).getType();
+			
+			if(transparency == Transparency.OPAQUE ? isIntType(type) : type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE)
+				return type;
+		}
+		catch(Exception exc) {}
+		
+		return fallback;
+	}
+	
+	@Override
+	String getFormat() {
+		return "_" + opaqueType + "_" + translucentType;
+	}
+	
+	@Override
+	BufferedImage load(byte[] source) throws IOException {
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(source));
+		if(decoded == null)
+			throw new IOException("Unsupported image format.");
+		
+		return convert(decoded);
+	}
+	
+	private BufferedImage convert(BufferedImage image) {
+		int type = image.getTransparency() == Transparency.OPAQUE ? opaqueType : translucentType;
+		
+		if(image.getType() == type)
+			return image;
+		
+		BufferedImage converted = new BufferedImage(image.getWidth(),image.getHeight(),type);
+		Graphics2D g = converted.createGraphics();
+		g.drawImage(image,0,0,null);
+		g.dispose();
+		return converted;
+	}
+	
+	@Override
+	BufferedImage read(ByteBuffer buffer) {
+		if(buffer.remaining() < 12)
+			return null;
+		
+		int width = buffer.getInt();
+		int height = buffer.getInt();
+		int type = buffer.getInt();
+		
+		if(width <= 0 || height <= 0 || !isIntType(type) || buffer.remaining() != 4L*width*height)
+			return null;
+		
+		BufferedImage image = new BufferedImage(width,height,type);
+		buffer.asIntBuffer().get(((DataBufferInt)image.getRaster().getDataBuffer()).getData());
+		return image;
+	}
+	
+	@Override
+	int getSize(BufferedImage image) {
+		int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		
+		// Decoded images wrap their whole raster, anything else would not match the header
+		if(pixels.length != image.getWidth()*image.getHeight())
+			return -1;
+		
+		return 12 + 4*pixels.length;
+	}
+	
+	@Override
+	void write(BufferedImage image, ByteBuffer buffer) {
+		buffer.putInt(image.getWidth()).putInt(image.getHeight()).putInt(image.getType());
+		buffer.asIntBuffer().put(((DataBufferInt)image.getRaster().getDataBuffer()).getData());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.ra4king.gameutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A persistent cache of decoded audio, used by SoundMixer to skip decoding and format conversion on warm starts.<br>
+ * Each entry holds the sample rate, channel count, and frame count followed by the interleaved 16-bit samples in
+ * SoundMixer.FORMAT, which are bulk copied straight into new Samples. Sound stores its decoded clips in the same
+ * directory, in their own format.
+ * @author Roi Atalla
+ */
+public class SampleCache extends DiskCache<SoundMixer.Samples> {
+	private static final int MAGIC = 0x47555053;
+	private static final int VERSION = 1;
+	
+	/**
+	 * Initializes this object.
+	 * @param dir The directory where decoded samples are stored. It is created if it does not exist.
+	 * @throws IOException If the directory cannot be created.
+	 */
+	public SampleCache(File dir) throws IOException {
+		super(dir,".pcm","samples",MAGIC,VERSION);
+	}
+	
+	@Override
+	String getFormat() {
+		return "_" + SoundMixer.SAMPLE_RATE + "_" + SoundMixer.CHANNELS;
+	}
+	
+	@Override
+	SoundMixer.Samples load(byte[] source) throws IOException {
+		return SoundMixer.Samples.decode(source);
+	}
+	
+	@Override
+	SoundMixer.Samples read(ByteBuffer buffer) {
+		if(buffer.remaining() < 12)
+			return null;
+		
+		int rate = buffer.getInt();
+		int channels = buffer.getInt();
+		int frames = buffer.getInt();
+		
+		if(rate != SoundMixer.SAMPLE_RATE || channels != SoundMixer.CHANNELS || frames < 0 ||
+				buffer.remaining() != 2L*channels*frames)
+			return null;
+		
+		short[] data = new short[frames*channels];
+		buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(data);
+		return new SoundMixer.Samples(data);
+	}
+	
+	@Override
+	int getSize(SoundMixer.Samples samples) {
+		return 12 + 2*samples.getData().length;
+	}
+	
+	@Override
+	void write(SoundMixer.Samples samples, ByteBuffer buffer) {
+		buffer.putInt(SoundMixer.SAMPLE_RATE).putInt(SoundMixer.CHANNELS).putInt(samples.getFrames());
+		buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(samples.getData());
+	}
+}
\ No newline at end of file
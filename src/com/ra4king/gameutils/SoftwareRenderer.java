@@ -0,0 +1,284 @@
+package com.ra4king.gameutils;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * A software renderer that draws directly into the int[] raster of a TYPE_INT_RGB framebuffer.<br>
+ * Sprites are copied with tight loops instead of going through the Java2D loops, which avoids most of the per-call
+ * overhead of drawImage when there is no hardware acceleration. The framebuffer is presented with a single drawImage.
+ * @author Roi Atalla
+ */
+public class SoftwareRenderer {
+	private BufferedImage framebuffer;
+	private int[] pixels;
+	private int width, height;
+	private int clipX1, clipY1, clipX2, clipY2;
+	
+	/**
+	 * Initializes this object with a framebuffer of the specified size.
+	 * @param width The width of the framebuffer.
+	 * @param height The height of the framebuffer.
+	 */
+	public SoftwareRenderer(int width, int height) {
+		resize(width,height);
+	}
+	
+	/**
+	 * Reallocates the framebuffer if the size is different. The clip is reset.
+	 * @param width The new width of the framebuffer.
+	 * @param height The new height of the framebuffer.
+	 */
+	public void resize(int width, int height) {
+		if(width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Width and height must be positive.");
+		
+		if(framebuffer == null || this.width != width || this.height != height) {
+			framebuffer = new BufferedImage(width,height,BufferedImage.TYPE_INT_RGB);
+			pixels = ((DataBufferInt)framebuffer.getRaster().getDataBuffer()).getData();
+			this.width = width;
+			this.height = height;
+		}
+		
+		resetClip();
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * Returns the framebuffer image.
+	 * @return The framebuffer image.
+	 */
+	public BufferedImage getFramebuffer() {
+		return framebuffer;
+	}
+	
+	/**
+	 * Returns the backing pixel array of the framebuffer. Each int is an RGB pixel, rows are stored top to bottom.
+	 * @return The backing pixel array of the framebuffer.
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+	
+	/**
+	 * Restricts all drawing to the specified rectangle, intersected with the framebuffer bounds.
+	 * @param x The leftmost X position of the clip.
+	 * @param y The topmost Y position of the clip.
+	 * @param width The width of the clip.
+	 * @param height The height of the clip.
+	 */
+	public void setClip(int x, int y, int width, int height) {
+		clipX1 = Math.max(0,x);
+		clipY1 = Math.max(0,y);
+		clipX2 = Math.min(this.width,x+width);
+		clipY2 = Math.min(this.height,y+height);
+	}
+	
+	/**
+	 * Resets the clip to the framebuffer bounds.
+	 */
+	public void resetClip() {
+		clipX1 = clipY1 = 0;
+		clipX2 = width;
+		clipY2 = height;
+	}
+	
+	/**
+	 * Fills the entire framebuffer with the specified color, ignoring the clip.
+	 * @param rgb The color in 0xRRGGBB format.
+	 */
+	public void clear(int rgb) {
+		Arrays.fill(pixels,rgb);
+	}
+	
+	/**
+	 * Fills the rectangle with the specified opaque color.
+	 * @param x The leftmost X position.
+	 * @param y The topmost Y position.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 * @param rgb The color in 0xRRGGBB format.
+	 */
+	public void fillRect(int x, int y, int width, int height, int rgb) {
+		int x1 = Math.max(x,clipX1), y1 = Math.max(y,clipY1);
+		int x2 = Math.min(x+width,clipX2), y2 = Math.min(y+height,clipY2);
+		
+		if(x1 >= x2 || y1 >= y2)
+			return;
+		
+		final int[] pixels = this.pixels;
+		for(int row = y1; row < y2; row++) {
+			int off = row*this.width;
+			Arrays.fill(pixels,off+x1,off+x2,rgb);
+		}
+	}
+	
+	/**
+	 * Draws the sprite with its top left corner at the specified position. The copy loop used depends on
+	 * the transparency of the sprite: OPAQUE rows are copied with System.arraycopy, BITMASK pixels with an alpha of 0
+	 * are skipped, and TRANSLUCENT pixels are alpha blended.
+	 * @param sprite The sprite to draw.
+	 * @param x The X position in the framebuffer.
+	 * @param y The Y position in the framebuffer.
+	 */
+	public void draw(Sprite sprite, int x, int y) {
+		int x1 = Math.max(x,clipX1), y1 = Math.max(y,clipY1);
+		int x2 = Math.min(x+sprite.width,clipX2), y2 = Math.min(y+sprite.height,clipY2);
+		
+		if(x1 >= x2 || y1 >= y2)
+			return;
+		
+		int w = x2-x1;
+		int srcOff = (y1-y)*sprite.width + (x1-x);
+		int dstOff = y1*width + x1;
+		
+		switch(sprite.transparency) {
+			case Transparency.OPAQUE:
+				copyOpaque(sprite.pixels,srcOff,sprite.width,pixels,dstOff,width,w,y2-y1);
+				break;
+			case Transparency.BITMASK:
+				copyBitmask(sprite.pixels,srcOff,sprite.width,pixels,dstOff,width,w,y2-y1);
+				break;
+			default:
+				blend(sprite.pixels,srcOff,sprite.width,pixels,dstOff,width,w,y2-y1);
+		}
+	}
+	
+	private static void copyOpaque(int[] src, int srcOff, int srcScan, int[] dst, int dstOff, int dstScan, int w, int h) {
+		for(int row = 0; row < h; row++) {
+			System.arraycopy(src,srcOff,dst,dstOff,w);
+			srcOff += srcScan;
+			dstOff += dstScan;
+		}
+	}
+	
+	private static void copyBitmask(int[] src, int srcOff, int srcScan, int[] dst, int dstOff, int dstScan, int w, int h) {
+		for(int row = 0; row < h; row++) {
+			for(int a = 0; a < w; a++) {
+				int p = src[srcOff+a];
+				if(p >>> 24 != 0)
+					dst[dstOff+a] = p;
+			}
+			
+			srcOff += srcScan;
+			dstOff += dstScan;
+		}
+	}
+	
+	private static void blend(int[] src, int srcOff, int srcScan, int[] dst, int dstOff, int dstScan, int w, int h) {
+		for(int row = 0; row < h; row++) {
+			for(int a = 0; a < w; a++) {
+				int p = src[srcOff+a];
+				int alpha = p >>> 24;
+				
+				if(alpha == 0)
+					continue;
+				
+				if(alpha == 255) {
+					dst[dstOff+a] = p;
+					continue;
+				}
+				
+				// Source is premultiplied, so dst = src + dst * (1 - srcAlpha), two channels at a time
+				int d = dst[dstOff+a];
+				int inv = 256-alpha;
+				int rb = (((d & 0xff00ff) * inv) >>> 8) & 0xff00ff;
+				int g = (((d & 0x00ff00) * inv) >>> 8) & 0x00ff00;
+				dst[dstOff+a] = (p & 0xffffff) + rb + g;
+			}
+			
+			srcOff += srcScan;
+			dstOff += dstScan;
+		}
+	}
+	
+	/**
+	 * Creates a Graphics2D context that draws into the framebuffer through Java2D.
+	 * It can be freely mixed with the direct drawing methods of this class.
+	 * @return A Graphics2D context that draws into the framebuffer.
+	 */
+	public Graphics2D createGraphics() {
+		return framebuffer.createGraphics();
+	}
+	
+	/**
+	 * Draws the framebuffer at 0,0 on the specified Graphics context.
+	 * @param g The Graphics context to present to, usually the BufferStrategy's draw Graphics.
+	 */
+	public void present(Graphics g) {
+		g.drawImage(framebuffer,0,0,null);
+	}
+	
+	/**
+	 * Converts the image to a Sprite, which stores premultiplied ARGB pixels. The transparency is detected from the
+	 * alpha channel so that the fastest copy loop can be used when drawing.
+	 * @param image The image to convert.
+	 * @return The Sprite holding a copy of the image's pixels.
+	 */
+	public static Sprite createSprite(Image image) {
+		int width = image.getWidth(null), height = image.getHeight(null);
+		
+		BufferedImage argb = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = argb.createGraphics();
+		g.drawImage(image,0,0,null);
+		g.dispose();
+		
+		int[] pixels = ((DataBufferInt)argb.getRaster().getDataBuffer()).getData();
+		
+		int transparency = Transparency.OPAQUE;
+		for(int p : pixels) {
+			int alpha = p >>> 24;
+			if(alpha == 0)
+				transparency = Transparency.BITMASK;
+			else if(alpha != 255) {
+				transparency = Transparency.TRANSLUCENT;
+				break;
+			}
+		}
+		
+		return new Sprite(pixels,width,height,transparency);
+	}
+	
+	/**
+	 * An image stored as premultiplied ARGB pixels that can be drawn by a SoftwareRenderer.
+	 */
+	public static class Sprite {
+		private final int[] pixels;
+		private final int width, height;
+		private final int transparency;
+		
+		private Sprite(int[] pixels, int width, int height, int transparency) {
+			this.pixels = pixels;
+			this.width = width;
+			this.height = height;
+			this.transparency = transparency;
+		}
+		
+		public int getWidth() {
+			return width;
+		}
+		
+		public int getHeight() {
+			return height;
+		}
+		
+		/**
+		 * @return The transparency of this sprite, one of the constants in java.awt.Transparency.
+		 */
+		public int getTransparency() {
+			return transparency;
+		}
+	}
+}
\ No newline at end of file
@@ -1,57 +1,195 @@
 package com.ra4king.gameutils;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.UnsupportedAudioFileException;
 
 /**
- * A class that stores sound clips.
+ * A class that stores sound clips.<br>
+ * Clips keep the sample rate and channel count of their file, so mono or low rate sounds are not stored at the size
+ * of SoundMixer's FORMAT. Ogg Vorbis and other compressed encodings are decoded to 16-bit PCM when loaded.
  * @author Roi Atalla
  */
 public class Sound extends Assets<Clip> {
 	private volatile boolean on = true;
+	private volatile SampleCache sampleCache;
+	private volatile ClipCache clipCache;
 	
 	Sound() {}
 	
+	/**
+	 * Sets the persistent cache of decoded samples. When set, Ogg Vorbis clips are decoded through the cache so that
+	 * unchanged sounds are not decoded again on the next start. Their entries are stored in the cache's directory
+	 * in the clip's own format, next to the SoundMixer entries.
+	 * @param sampleCache The SampleCache to use, or null to always decode.
+	 * @throws IOException If the cache directory cannot be created.
+	 */
+	public void setSampleCache(SampleCache sampleCache) throws IOException {
+		clipCache = sampleCache == null ? null : new ClipCache(sampleCache.getDirectory());
+		this.sampleCache = sampleCache;
+	}
+	
+	public SampleCache getSampleCache() {
+		return sampleCache;
+	}
+	
 	@Override
 	public Clip extract(URL url) throws IOException {
 		try{
-			Clip clip;
+			return decode(readBytes(url));
+		}
+		catch(IOException exc) {
+			throw new IOException("Error loading clip: " + url,exc);
+		}
+	}
+	
+	@Override
+	protected boolean supportsDecode() {
+		return true;
+	}
+	
+	@Override
+	protected Clip decode(byte[] data) throws IOException {
+		Pcm pcm;
+		if(data.length >= 4 && data[0] == 'O' && data[1] == 'g' && data[2] == 'g' && data[3] == 'S') {
+			ClipCache clipCache = this.clipCache;
+			pcm = clipCache != null ? clipCache.decode(data) : decodeOgg(data);
+		}
+		else
+			pcm = decodePcm(data);
+		
+		try{
+			Clip clip = AudioSystem.getClip();
+			clip.open(pcm.format,pcm.data,0,pcm.length);
+			return clip;
+		}
+		catch(Exception exc) {
+			throw new IOException("Error opening clip.",exc);
+		}
+	}
+	
+	/**
+	 * Decodes Ogg Vorbis into 16-bit PCM at its own sample rate, keeping mono as mono.
+	 */
+	private static Pcm decodeOgg(byte[] data) throws IOException {
+		try(OggStream in = new OggStream(new ByteArrayInputStream(data))) {
+			int channels = Math.min(in.getChannels(),2);
+			int frameSize = channels*2;
 			
-			AudioInputStream in = AudioSystem.getAudioInputStream(url);
+			short[] stereo = new short[4096*2];
+			byte[] bytes = new byte[65536*frameSize];
+			int length = 0, read;
 			
-			if(url.getPath().toLowerCase().endsWith(".ogg")) {
-				AudioFormat baseFormat = in.getFormat();
-				AudioFormat  decodedFormat = new AudioFormat(
-						AudioFormat.Encoding.PCM_SIGNED,
-						baseFormat.getSampleRate(),
-						16,
-						baseFormat.getChannels(),
-						baseFormat.getChannels() * 2,
-						baseFormat.getSampleRate(),
-						false);
-				in = AudioSystem.getAudioInputStream(decodedFormat, in);
+			while((read = in.read(stereo,0,4096)) != -1) {
+				if(bytes.length - length < read*frameSize)
+					bytes = Arrays.copyOf(bytes,bytes.length*2);
+				
+				for(int f = 0; f < read; f++) {
+					for(int c = 0; c < channels; c++) {
+						short sample = stereo[f*2+c];
+						bytes[length++] = (byte)sample;
+						bytes[length++] = (byte)(sample >> 8);
+					}
+				}
 			}
 			
-			clip = AudioSystem.getClip();
+			return new Pcm(new AudioFormat(in.getSampleRate(),16,channels,true,false),bytes,length);
+		}
+	}
+	
+	/**
+	 * Reads every other format through AudioSystem. PCM is kept as is, anything else is converted to
+	 * 16-bit PCM at its own sample rate and channel count.
+	 */
+	private static Pcm decodePcm(byte[] data) throws IOException {
+		AudioInputStream in;
+		try{
+			in = AudioSystem.getAudioInputStream(new ByteArrayInputStream(data));
+		}
+		catch(UnsupportedAudioFileException exc) {
+			throw new IOException("Unsupported sound format.",exc);
+		}
+		
+		try{
+			AudioFormat base = in.getFormat();
+			AudioFormat.Encoding encoding = base.getEncoding();
 			
-			clip.open(in);
+			if(!AudioFormat.Encoding.PCM_SIGNED.equals(encoding) && !AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)) {
+				AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,base.getSampleRate(),16,base.getChannels(),
+						base.getChannels()*2,base.getSampleRate(),false);
+				in = AudioSystem.getAudioInputStream(pcm,in);
+			}
 			
-			return clip;
+			// With a known length the PCM is read straight into an array of that size, otherwise the array grows
+			long expected = in.getFrameLength() * in.getFormat().getFrameSize();
+			boolean known = in.getFrameLength() != AudioSystem.NOT_SPECIFIED && expected >= 0 && expected < Integer.MAX_VALUE - 8;
+			byte[] bytes = new byte[known ? (int)expected : 65536];
+			int length = 0, read;
+			
+			while(!known || length < bytes.length) {
+				if(length == bytes.length)
+					bytes = Arrays.copyOf(bytes,bytes.length*2);
+				
+				if((read = in.read(bytes,length,bytes.length - length)) == -1)
+					break;
+				
+				length += read;
+			}
+			
+			// A truncated file may end in the middle of a frame
+			return new Pcm(in.getFormat(),bytes,length - length % in.getFormat().getFrameSize());
 		}
-		catch(IOException exc) {
-			throw exc;
+		catch(IllegalArgumentException exc) {
+			throw new IOException("Unsupported sound format.",exc);
 		}
-		catch(Exception exc) {
-			throw new IOException("Error loading clip: " + url,exc);
+		finally {
+			in.close();
 		}
 	}
 	
+	/**
+	 * Returns the number of bytes of audio data held by the Clip.
+	 * @param clip The Clip.
+	 * @return The number of bytes of audio data held by the Clip.
+	 */
+	@Override
+	protected long sizeOf(Clip clip) {
+		return (long)clip.getFrameLength() * Math.max(0,clip.getFormat().getFrameSize());
+	}
+	
+	/**
+	 * A Clip that is playing or paused is never evicted, so it is not cut off and a paused Clip keeps its position.
+	 * Only Clips that are at their start or played to their end are evicted.
+	 */
+	@Override
+	protected boolean isEvictable(Clip clip) {
+		if(clip.isRunning())
+			return false;
+		
+		int position = clip.getFramePosition();
+		return position == 0 || position >= clip.getFrameLength();
+	}
+	
+	/**
+	 * Releases the line of the evicted Clip. With a budget set, play Clips through their name instead of holding
+	 * on to the Clip object, since an idle Clip may be closed here and decoded again on the next get(String).
+	 */
+	@Override
+	protected void evicted(Clip clip) {
+		clip.stop();
+		clip.close();
+	}
+	
 	/**
 	 * Plays the Clip. If the sound is off, the volume is set to the minimum.
 	 * @param name The name of the Clip to play.
@@ -97,7 +235,7 @@ public class Sound extends Assets<Clip> {
 	/**
 	 * Pauses all currently playing Clips.
 	 */
-	public void pause() {
+	public synchronized void pause() {
 		for(Clip c : assets.values())
 			c.stop();
 	}
@@ -105,7 +243,7 @@ public class Sound extends Assets<Clip> {
 	/**
 	 * Plays all currently paused Clips.
 	 */
-	public void resume() {
+	public synchronized void resume() {
 		for(Clip c : assets.values()) {
 			if(on && c.getMicrosecondPosition() != c.getMicrosecondLength() &&
 					c.getMicrosecondPosition() != 0)
@@ -138,7 +276,7 @@ public class Sound extends Assets<Clip> {
 		}
 	}
 	
-	public void stopAll() {
+	public synchronized void stopAll() {
 		for(String s : assets.keySet())
 			stop(s);
 	}
@@ -147,7 +285,7 @@ public class Sound extends Assets<Clip> {
 	 * Sets the sound on/off.
 	 * @param isOn If true, all currently playing Clips are set to the minimum volume, else they are set to default volume.
 	 */
-	public void setOn(boolean isOn) {
+	public synchronized void setOn(boolean isOn) {
 		on = isOn;
 		
 		for(Clip c : assets.values()) {
@@ -166,4 +304,68 @@ public class Sound extends Assets<Clip> {
 	public boolean isOn() {
 		return on;
 	}
+	
+	private static class Pcm {
+		private final AudioFormat format;
+		private final byte[] data;
+		private final int length;
+		
+		private Pcm(AudioFormat format, byte[] data, int length) {
+			this.format = format;
+			this.data = data;
+			this.length = length;
+		}
+	}
+	
+	/**
+	 * Stores decoded Ogg Vorbis clips in their own format: the sample rate, channel count, and byte length
+	 * followed by the 16-bit little endian PCM.
+	 */
+	private static class ClipCache extends DiskCache<Pcm> {
+		private static final int MAGIC = 0x4755534c;
+		private static final int VERSION = 1;
+		
+		private ClipCache(File dir) throws IOException {
+			super(dir,".clip","clip",MAGIC,VERSION);
+		}
+		
+		@Override
+		String getFormat() {
+			return "";
+		}
+		
+		@Override
+		Pcm load(byte[] source) throws IOException {
+			return decodeOgg(source);
+		}
+		
+		@Override
+		Pcm read(ByteBuffer buffer) {
+			if(buffer.remaining() < 12)
+				return null;
+			
+			float rate = buffer.getFloat();
+			int channels = buffer.getInt();
+			int length = buffer.getInt();
+			
+			if(rate <= 0 || (channels != 1 && channels != 2) || length < 0 || length % (channels*2) != 0 ||
+					buffer.remaining() != length)
+				return null;
+			
+			byte[] data = new byte[length];
+			buffer.get(data);
+			return new Pcm(new AudioFormat(rate,16,channels,true,false),data,length);
+		}
+		
+		@Override
+		int getSize(Pcm pcm) {
+			return 12 + pcm.length;
+		}
+		
+		@Override
+		void write(Pcm pcm, ByteBuffer buffer) {
+			buffer.putFloat(pcm.format.getSampleRate()).putInt(pcm.format.getChannels()).putInt(pcm.length);
+			buffer.put(pcm.data,0,pcm.length);
+		}
+	}
 }
\ No newline at end of file
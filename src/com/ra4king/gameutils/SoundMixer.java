@@ -0,0 +1,814 @@
+package com.ra4king.gameutils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * A software mixer that plays sounds through a single output line.<br>
+ * <br>
+ * Sounds are decoded once into shared Samples in the canonical FORMAT and any number of voices can play the same
+ * Samples at the same time, each with its own gain and pan. The number of voices is fixed; when all are busy, a new sound
+ * steals the voice with the lowest priority, oldest first. The mixing thread allocates nothing after it is started.<br>
+ * <br>
+ * Music is streamed from Ogg Vorbis files with playMusic, with gapless looping and crossfades.<br>
+ * <br>
+ * The mixer can run against NULL_OUTPUT for headless use, or be driven manually through mix(byte[],int,int) to mix
+ * faster than real time.
+ * @author Roi Atalla
+ */
+public class SoundMixer extends Assets<SoundMixer.Samples> {
+	public static final int SAMPLE_RATE = 44100;
+	public static final int CHANNELS = 2;
+	
+	private static final int MUSIC_BUFFER_FRAMES = 16384;
+	
+	/**
+	 * The format of all mixed output: 44.1 kHz, stereo, signed 16-bit little endian.
+	 */
+	public static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE,16,CHANNELS,true,false);
+	
+	/**
+	 * An Output that discards all data, blocking for as long as a line would take to play it, so sounds and music still
+	 * advance in real time and the mixing thread does not spin when no line is available.
+	 */
+	public static final Output NULL_OUTPUT = new Output() {
+		@Override
+		public void open(AudioFormat format, int bufferSize) {}
+		
+		@Override
+		public void write(byte[] data, int offset, int length) {
+			long nanos = length * 1000000000L / (SAMPLE_RATE * CHANNELS * 2);
+			
+			try{
+				Thread.sleep(nanos / 1000000,(int)(nanos % 1000000));
+			}
+			catch(InterruptedException exc) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		@Override
+		public void close() {}
+	};
+	
+	private final Samples[] samples;
+	private final int[] positions;
+	private final float[] leftGains, rightGains;
+	private final int[] priorities;
+	private final boolean[] looping;
+	private final long[] startOrder;
+	private final int[] generations;
+	private long playCount;
+	
+	private final int chunkFrames;
+	private final int[] accumulator;
+	private final byte[] chunk;
+	
+	private volatile float masterGain = 1;
+	private volatile boolean on = true, paused;
+	
+	private volatile Thread thread;
+	private volatile Output output;
+	
+	private Music music, fadingMusic;
+	
+	private volatile SampleCache sampleCache;
+	
+	/**
+	 * Initializes this object with 32 voices and a mixing chunk of 512 frames.
+	 */
+	public SoundMixer() {
+		this(32,512);
+	}
+	
+	/**
+	 * Initializes this object.
+	 * @param voices The maximum number of sounds that can play at the same time.
+	 * @param chunkFrames The number of frames mixed at a time. Smaller chunks lower the latency.
+	 */
+	public SoundMixer(int voices, int chunkFrames) {
+		if(voices <= 0 || voices > 0xffff)
+			throw new IllegalArgumentException("Voice count must be between 1 and 65535.");
+		if(chunkFrames <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive.");
+		
+		samples = new Samples[voices];
+		positions = new int[voices];
+		leftGains = new float[voices];
+		rightGains = new float[voices];
+		priorities = new int[voices];
+		looping = new boolean[voices];
+		startOrder = new long[voices];
+		generations = new int[voices];
+		
+		this.chunkFrames = chunkFrames;
+		accumulator = new int[chunkFrames*CHANNELS];
+		chunk = new byte[chunkFrames*CHANNELS*2];
+	}
+	
+	/**
+	 * Sets the persistent cache of decoded samples. When set, sounds are decoded through the cache so that
+	 * unchanged sounds are not decoded and converted again on the next start.
+	 * @param sampleCache The SampleCache to use, or null to always decode.
+	 */
+	public void setSampleCache(SampleCache sampleCache) {
+		this.sampleCache = sampleCache;
+	}
+	
+	public SampleCache getSampleCache() {
+		return sampleCache;
+	}
+	
+	@Override
+	public Samples extract(URL url) throws IOException {
+		try{
+			return decode(readBytes(url));
+		}
+		catch(IOException exc) {
+			throw new IOException("Error loading sound: " + url,exc);
+		}
+	}
+	
+	@Override
+	protected boolean supportsDecode() {
+		return true;
+	}
+	
+	@Override
+	protected Samples decode(byte[] data) throws IOException {
+		SampleCache sampleCache = this.sampleCache;
+		if(sampleCache != null)
+			return sampleCache.decode(data);
+		
+		return Samples.decode(data);
+	}
+	
+	@Override
+	protected long sizeOf(Samples s) {
+		return s.data.length * 2L;
+	}
+	
+	/**
+	 * Starts the mixing thread on the default SourceDataLine. If no line is available, NULL_OUTPUT is used.
+	 */
+	public synchronized void start() {
+		if(thread != null)
+			throw new IllegalStateException("Mixer has already been started.");
+		
+		Output output;
+		try{
+			output = lineOutput();
+			output.open(FORMAT,chunk.length*4);
+		}
+		catch(Exception exc) {
+			exc.printStackTrace();
+			output = NULL_OUTPUT;
+		}
+		
+		startThread(output);
+	}
+	
+	/**
+	 * Starts the mixing thread on the specified Output.
+	 * @param output The Output that receives mixed chunks.
+	 * @throws IOException If the Output cannot be opened.
+	 */
+	public synchronized void start(Output output) throws IOException {
+		if(thread != null)
+			throw new IllegalStateException("Mixer has already been started.");
+		
+		output.open(FORMAT,chunk.length*4);
+		startThread(output);
+	}
+	
+	private void startThread(Output output) {
+		this.output = output;
+		
+		Thread t = new Thread("Sound Mixer Thread") {
+			@Override
+			public void run() {
+				final Output output = SoundMixer.this.output;
+				final byte[] chunk = SoundMixer.this.chunk;
+				
+				try{
+					while(thread == this) {
+						mix(chunk,0,chunkFrames);
+						output.write(chunk,0,chunk.length);
+					}
+				}
+				catch(Exception exc) {
+					exc.printStackTrace();
+				}
+			}
+		};
+		t.setDaemon(true);
+		t.setPriority(Thread.MAX_PRIORITY);
+		thread = t;
+		t.start();
+	}
+	
+	/**
+	 * Stops the mixing thread and closes the Output. Playing voices keep their positions.
+	 */
+	public void shutdown() {
+		Thread t;
+		synchronized(this) {
+			t = thread;
+			thread = null;
+		}
+		
+		if(t == null)
+			return;
+		
+		try{
+			t.join(1000);
+		}
+		catch(InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+		
+		try{
+			output.close();
+		}
+		catch(Exception exc) {
+			exc.printStackTrace();
+		}
+	}
+	
+	public boolean isRunning() {
+		return thread != null;
+	}
+	
+	/**
+	 * Plays the sound once at full gain, centered, with priority 0.
+	 * @param name The name of the sound.
+	 * @return The id of the voice playing the sound, or -1 if no voice was available.
+	 */
+	public int play(String name) {
+		return play(name,1,0,0,false);
+	}
+	
+	/**
+	 * Loops the sound at full gain, centered, with priority 0.
+	 * @param name The name of the sound.
+	 * @return The id of the voice playing the sound, or -1 if no voice was available.
+	 */
+	public int loop(String name) {
+		return play(name,1,0,0,true);
+	}
+	
+	/**
+	 * Plays the sound on a free voice, stealing a voice with a lower or equal priority if all are busy.
+	 * The mixing thread is started on the default line if it has not been started.
+	 * @param name The name of the sound.
+	 * @param gain The linear gain, 1.0 being the original volume.
+	 * @param pan The stereo pan, from -1.0 (left) to 1.0 (right).
+	 * @param priority The priority of this voice. Higher priority voices are never stolen by lower priority sounds.
+	 * @param loop If true, the sound loops until stopped.
+	 * @return The id of the voice playing the sound, or -1 if the sound does not exist or no voice was available.
+	 */
+	public int play(String name, float gain, float pan, int priority, boolean loop) {
+		Samples s = get(name);
+		if(s == null)
+			return -1;
+		
+		if(thread == null) {
+			synchronized(this) {
+				if(thread == null)
+					start();
+			}
+		}
+		
+		return play(s,gain,pan,priority,loop);
+	}
+	
+	/**
+	 * Streams the Ogg Vorbis file as music, replacing the current music.
+	 * @param file The path of the file relative to res/.
+	 * @param loop If true, the music loops without a gap until stopped.
+	 * @param crossfade The duration in milliseconds of the crossfade from the current music, 0 for none.
+	 * @return The Music that is playing.
+	 * @throws IOException If the file cannot be found.
+	 */
+	public Music playMusic(String file, boolean loop, long crossfade) throws IOException {
+		URL url = getResource(file);
+		if(url == null)
+			throw new IOException("Resource not found: " + file);
+		
+		return playMusic(url,loop,crossfade);
+	}
+	
+	/**
+	 * Streams the Ogg Vorbis file as music, replacing the current music. Only one piece of music plays at a time,
+	 * except during a crossfade. The mixing thread is started on the default line if it has not been started.
+	 * @param url The URL of the Ogg Vorbis file.
+	 * @param loop If true, the music loops without a gap until stopped.
+	 * @param crossfade The duration in milliseconds of the crossfade from the current music, 0 for none.
+	 * @return The Music that is playing.
+	 */
+	public synchronized Music playMusic(URL url, boolean loop, long crossfade) {
+		if(thread == null)
+			start();
+		
+		Music m = new Music(url,loop,MUSIC_BUFFER_FRAMES);
+		m.start();
+		
+		int frames = toFrames(crossfade);
+		
+		if(fadingMusic != null)
+			fadingMusic.close();
+		fadingMusic = null;
+		
+		if(music != null) {
+			music.fade(0,frames,true);
+			if(frames > 0)
+				fadingMusic = music;
+		}
+		
+		if(frames > 0) {
+			m.fade(0,0,false);
+			m.fade(1,frames,false);
+		}
+		
+		music = m;
+		return m;
+	}
+	
+	/**
+	 * Stops the current music.
+	 * @param fade The duration in milliseconds of the fade out, 0 to stop immediately.
+	 */
+	public synchronized void stopMusic(long fade) {
+		if(music == null)
+			return;
+		
+		int frames = toFrames(fade);
+		
+		if(fadingMusic != null)
+			fadingMusic.close();
+		fadingMusic = null;
+		
+		music.fade(0,frames,true);
+		if(frames > 0)
+			fadingMusic = music;
+		
+		music = null;
+	}
+	
+	/**
+	 * @return The current music, or null if none is playing.
+	 */
+	public synchronized Music getMusic() {
+		if(music != null && music.isDone())
+			music = null;
+		
+		return music;
+	}
+	
+	private static int toFrames(long millis) {
+		return (int)Math.max(0,Math.min(Integer.MAX_VALUE,millis * SAMPLE_RATE / 1000));
+	}
+	
+	/**
+	 * Plays the Samples on a free voice. See play(String,float,float,int,boolean).
+	 * This does not start the mixing thread.
+	 */
+	public synchronized int play(Samples s, float gain, float pan, int priority, boolean loop) {
+		int voice = -1;
+		
+		for(int a = 0; a < samples.length; a++) {
+			if(samples[a] == null) {
+				voice = a;
+				break;
+			}
+			
+			if(priorities[a] <= priority && (voice == -1 || priorities[a] < priorities[voice] ||
+					(priorities[a] == priorities[voice] && startOrder[a] < startOrder[voice])))
+				voice = a;
+		}
+		
+		if(voice == -1)
+			return -1;
+		
+		samples[voice] = s;
+		positions[voice] = 0;
+		priorities[voice] = priority;
+		looping[voice] = loop;
+		startOrder[voice] = playCount++;
+		generations[voice] = (generations[voice] + 1) & 0x7fff;
+		setGains(voice,gain,pan);
+		
+		return generations[voice] << 16 | voice;
+	}
+	
+	private void setGains(int voice, float gain, float pan) {
+		pan = Math.max(-1,Math.min(1,pan));
+		leftGains[voice] = gain * Math.min(1,1-pan);
+		rightGains[voice] = gain * Math.min(1,1+pan);
+	}
+	
+	private int getVoice(int id) {
+		if(id < 0)
+			return -1;
+		
+		int voice = id & 0xffff;
+		if(voice >= samples.length || samples[voice] == null || generations[voice] != id >>> 16)
+			return -1;
+		
+		return voice;
+	}
+	
+	/**
+	 * Returns true if the voice is still playing the sound it was given by play.
+	 * @param id The id returned by play.
+	 * @return True if the voice is still playing, false if it finished, was stopped, or was stolen.
+	 */
+	public synchronized boolean isPlaying(int id) {
+		return getVoice(id) != -1;
+	}
+	
+	/**
+	 * Changes the gain and pan of a playing voice.
+	 * @param id The id returned by play.
+	 * @param gain The linear gain.
+	 * @param pan The stereo pan, from -1.0 (left) to 1.0 (right).
+	 */
+	public synchronized void setGain(int id, float gain, float pan) {
+		int voice = getVoice(id);
+		if(voice != -1)
+			setGains(voice,gain,pan);
+	}
+	
+	/**
+	 * Stops the voice.
+	 * @param id The id returned by play.
+	 */
+	public synchronized void stop(int id) {
+		int voice = getVoice(id);
+		if(voice != -1)
+			samples[voice] = null;
+	}
+	
+	/**
+	 * Stops every voice playing the specified sound.
+	 * @param name The name of the sound.
+	 */
+	public synchronized void stop(String name) {
+		Samples s = assets.get(name);
+		if(s == null)
+			return;
+		
+		for(int a = 0; a < samples.length; a++)
+			if(samples[a] == s)
+				samples[a] = null;
+	}
+	
+	public synchronized void stopAll() {
+		Arrays.fill(samples,null);
+	}
+	
+	/**
+	 * Pauses all voices, silence is output until resume() is called.
+	 */
+	public void pause() {
+		paused = true;
+	}
+	
+	public void resume() {
+		paused = false;
+	}
+	
+	/**
+	 * Sets the sound on/off. When off, voices keep playing silently.
+	 * @param isOn If true, the mixed sound is output, else silence is output.
+	 */
+	public void setOn(boolean isOn) {
+		on = isOn;
+	}
+	
+	public boolean isOn() {
+		return on;
+	}
+	
+	public void setMasterGain(float gain) {
+		masterGain = gain;
+	}
+	
+	public float getMasterGain() {
+		return masterGain;
+	}
+	
+	/**
+	 * @return The number of voices currently playing.
+	 */
+	public synchronized int getActiveVoices() {
+		int count = 0;
+		for(Samples s : samples)
+			if(s != null)
+				count++;
+		return count;
+	}
+	
+	public int getMaxVoices() {
+		return samples.length;
+	}
+	
+	/**
+	 * Mixes the next frames of all voices into the array as signed 16-bit little endian stereo.
+	 * This is called by the mixing thread, but can be called directly when the thread is not running.
+	 * @param out The destination array.
+	 * @param offset The offset in bytes into the destination array.
+	 * @param frames The number of frames to mix, at most the chunk size given to the constructor.
+	 */
+	public synchronized void mix(byte[] out, int offset, int frames) {
+		if(frames > chunkFrames)
+			throw new IllegalArgumentException("Cannot mix more than " + chunkFrames + " frames at a time.");
+		
+		final int[] acc = accumulator;
+		final int length = frames*CHANNELS;
+		Arrays.fill(acc,0,length,0);
+		
+		if(!paused) {
+			final float master = on ? masterGain : 0;
+			
+			for(int v = 0; v < samples.length; v++) {
+				Samples s = samples[v];
+				if(s == null)
+					continue;
+				
+				final short[] data = s.data;
+				final int total = s.frames;
+				final float left = leftGains[v] * master, right = rightGains[v] * master;
+				int pos = positions[v];
+				
+				int frame = 0;
+				while(frame < frames) {
+					if(pos >= total) {
+						if(looping[v] && total > 0)
+							pos = 0;
+						else {
+							samples[v] = null;
+							break;
+						}
+					}
+					
+					int n = Math.min(frames-frame,total-pos);
+					int src = pos*CHANNELS, dst = frame*CHANNELS;
+					for(int a = 0; a < n; a++) {
+						acc[dst++] += (int)(data[src++] * left);
+						acc[dst++] += (int)(data[src++] * right);
+					}
+					
+					frame += n;
+					pos += n;
+				}
+				
+				positions[v] = pos;
+			}
+			
+			if(music != null && !music.mix(acc,frames,master)) {
+				music.close();
+				music = null;
+			}
+			
+			if(fadingMusic != null && !fadingMusic.mix(acc,frames,master)) {
+				fadingMusic.close();
+				fadingMusic = null;
+			}
+		}
+		
+		for(int a = 0, b = offset; a < length; a++) {
+			int sample = acc[a];
+			if(sample > Short.MAX_VALUE)
+				sample = Short.MAX_VALUE;
+			else if(sample < Short.MIN_VALUE)
+				sample = Short.MIN_VALUE;
+			
+			out[b++] = (byte)sample;
+			out[b++] = (byte)(sample >> 8);
+		}
+	}
+	
+	/**
+	 * Returns an Output that writes to the default SourceDataLine of the system.
+	 * @return An Output backed by a SourceDataLine.
+	 */
+	public static Output lineOutput() {
+		return new Output() {
+			private SourceDataLine line;
+			
+			@Override
+			public void open(AudioFormat format, int bufferSize) throws IOException {
+				try{
+					line = AudioSystem.getSourceDataLine(format);
+					line.open(format,bufferSize);
+					line.start();
+				}
+				catch(Exception exc) {
+					throw new IOException("Cannot open audio line.",exc);
+				}
+			}
+			
+			@Override
+			public void write(byte[] data, int offset, int length) {
+				line.write(data,offset,length);
+			}
+			
+			@Override
+			public void close() {
+				line.drain();
+				line.close();
+			}
+		};
+	}
+	
+	/**
+	 * The destination of mixed audio.
+	 */
+	public interface Output {
+		/**
+		 * Opens this Output.
+		 * @param format The format of the data that will be written.
+		 * @param bufferSize The suggested buffer size in bytes.
+		 * @throws IOException
+		 */
+		void open(AudioFormat format, int bufferSize) throws IOException;
+		
+		/**
+		 * Writes mixed data. This should block until the data is consumed, as the mixing thread writes the next chunk as
+		 * soon as it returns.
+		 */
+		void write(byte[] data, int offset, int length) throws IOException;
+		
+		void close() throws IOException;
+	}
+	
+	/**
+	 * Decoded PCM audio in the canonical FORMAT, shared by all voices that play it.
+	 */
+	public static class Samples {
+		private final short[] data;
+		private final int frames;
+		
+		/**
+		 * Initializes this object.
+		 * @param data Interleaved stereo samples at SAMPLE_RATE.
+		 */
+		public Samples(short[] data) {
+			if(data.length % CHANNELS != 0)
+				throw new IllegalArgumentException("Data must hold whole stereo frames.");
+			
+			this.data = data;
+			frames = data.length / CHANNELS;
+		}
+		
+		/**
+		 * @return The interleaved stereo samples. This is not a copy.
+		 */
+		public short[] getData() {
+			return data;
+		}
+		
+		public int getFrames() {
+			return frames;
+		}
+		
+		/**
+		 * Decodes an entire sound file, converting it to the canonical FORMAT. Ogg Vorbis files are decoded with OggStream,
+		 * every other format goes through AudioSystem.
+		 * @param data The bytes of the sound file.
+		 * @return The decoded Samples.
+		 * @throws IOException If the format is not supported.
+		 */
+		public static Samples decode(byte[] data) throws IOException {
+			if(data.length >= 4 && data[0] == 'O' && data[1] == 'g' && data[2] == 'g' && data[3] == 'S')
+				return decode(new OggStream(new ByteArrayInputStream(data)));
+			
+			try{
+				return decode(AudioSystem.getAudioInputStream(new ByteArrayInputStream(data)));
+			}
+			catch(IOException exc) {
+				throw exc;
+			}
+			catch(Exception exc) {
+				throw new IOException("Unsupported sound format.",exc);
+			}
+		}
+		
+		/**
+		 * Decodes the entire Ogg Vorbis stream, converting it to the canonical FORMAT.
+		 * @param in The stream to decode. It is closed when done.
+		 * @return The decoded Samples.
+		 * @throws IOException
+		 */
+		public static Samples decode(OggStream in) throws IOException {
+			try{
+				short[] stereo = new short[65536*CHANNELS];
+				int frames = 0, read;
+				
+				while(true) {
+					if(stereo.length - frames*CHANNELS < 4096*CHANNELS)
+						stereo = Arrays.copyOf(stereo,stereo.length*2);
+					
+					if((read = in.read(stereo,frames*CHANNELS,4096)) == -1)
+						break;
+					
+					frames += read;
+				}
+				
+				if(in.getSampleRate() != SAMPLE_RATE)
+					return new Samples(resample(stereo,frames,in.getSampleRate()));
+				
+				return new Samples(Arrays.copyOf(stereo,frames*CHANNELS));
+			}
+			finally {
+				in.close();
+			}
+		}
+		
+		/**
+		 * Decodes the entire stream, converting it to the canonical FORMAT.
+		 * Mono is duplicated into both channels, extra channels are dropped, and other sample rates are linearly resampled.
+		 * @param in The stream to decode. It is closed when done.
+		 * @return The decoded Samples.
+		 * @throws IOException
+		 */
+		public static Samples decode(AudioInputStream in) throws IOException {
+			try{
+				AudioFormat base = in.getFormat();
+				int channels = base.getChannels();
+				float rate = base.getSampleRate();
+				
+				if(channels <= 0)
+					throw new IOException("Unknown channel count.");
+				if(rate <= 0)
+					rate = SAMPLE_RATE;
+				
+				AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,rate,16,channels,channels*2,rate,false);
+				if(!base.matches(pcm))
+					in = AudioSystem.getAudioInputStream(pcm,in);
+				
+				byte[] bytes = readAll(in);
+				int sourceFrames = bytes.length / (channels*2);
+				
+				short[] stereo = new short[sourceFrames*CHANNELS];
+				for(int f = 0; f < sourceFrames; f++) {
+					int b = f*channels*2;
+					short l = (short)((bytes[b] & 0xff) | (bytes[b+1] << 8));
+					short r = channels == 1 ? l : (short)((bytes[b+2] & 0xff) | (bytes[b+3] << 8));
+					stereo[f*2] = l;
+					stereo[f*2+1] = r;
+				}
+				
+				if(Math.round(rate) != SAMPLE_RATE)
+					stereo = resample(stereo,sourceFrames,rate);
+				
+				return new Samples(stereo);
+			}
+			finally {
+				in.close();
+			}
+		}
+		
+		private static short[] resample(short[] stereo, int sourceFrames, float rate) {
+			if(sourceFrames == 0)
+				return new short[0];
+			
+			double step = rate / SAMPLE_RATE;
+			int frames = (int)Math.floor((sourceFrames-1) / step) + 1;
+			short[] out = new short[frames*CHANNELS];
+			
+			for(int f = 0; f < frames; f++) {
+				double pos = f*step;
+				int i = (int)pos;
+				int j = Math.min(i+1,sourceFrames-1);
+				double t = pos-i;
+				
+				for(int c = 0; c < CHANNELS; c++) {
+					double a = stereo[i*CHANNELS+c], b = stereo[j*CHANNELS+c];
+					out[f*CHANNELS+c] = (short)Math.round(a + (b-a)*t);
+				}
+			}
+			
+			return out;
+		}
+		
+		private static byte[] readAll(InputStream in) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(),8192));
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1)
+				out.write(buffer,0,read);
+			return out.toByteArray();
+		}
+	}
+}
\ No newline at end of file
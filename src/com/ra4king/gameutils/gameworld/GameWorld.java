@@ -14,22 +14,34 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 import com.ra4king.gameutils.Art;
+import com.ra4king.gameutils.Assets;
 import com.ra4king.gameutils.BasicScreen;
 import com.ra4king.gameutils.Entity;
 import com.ra4king.gameutils.Game;
+import com.ra4king.gameutils.jfr.EntityUpdateEvent;
+import com.ra4king.gameutils.jfr.JFR;
+import com.ra4king.gameutils.jfr.WorldDrawEvent;
+import com.ra4king.gameutils.jfr.WorldUpdateEvent;
+import com.ra4king.gameutils.tiledmap.CollisionLayer;
 import com.ra4king.gameutils.util.Bag;
 
 /**
- * A GameWorld is a container of Entities. It has a z-buffer that goes in back-to-front order, 0 being the back.
+ * A GameWorld is a container of Entities. It has a z-buffer that goes in back-to-front order, 0 being the back.<br>
+ * Walls and other solid tiles belong in a CollisionLayer rather than in the world as Entities: Entities moved with
+ * move are stopped by its solid cells, and only look at the cells around them.
  * @author Roi Atalla
  */
 public class GameWorld extends BasicScreen {
 	private ArrayList<Bag<Entity>> entities;
 	private ArrayList<Temp> temps;
 	private Map<Entity, Map<Class<? extends Entity>, CollisionListener<? extends Entity>>> collisionListeners;
+	private Map<Entity, TileCollisionListener> tileCollisionListeners;
+	private CollisionLayer collisionLayer;
 	
 	private Image bg;
 	private String bgImage;
+	private Assets<Image>.Handle bgHandle;
+	private WorldProfiler profiler;
 	private double xOffset, yOffset;
 	private boolean hasInited, hasShown;
 	private volatile boolean isLooping;
@@ -42,6 +54,7 @@ public class GameWorld extends BasicScreen {
 		entities.add(new Bag<Entity>());
 		
 		collisionListeners = new HashMap<>();
+		tileCollisionListeners = new HashMap<>();
 		
 		temps = new ArrayList<>();
 		
@@ -151,37 +164,44 @@ public class GameWorld extends BasicScreen {
 	public void update(long deltaTime) {
 		//for(Entity e : getEntities())
 		
+		WorldUpdateEvent updateEvent = JFR.AVAILABLE ? new WorldUpdateEvent() : null;
+		if(updateEvent != null)
+			updateEvent.begin();
+		int count = 0, zIndex = 0;
+		
+		WorldProfiler profiler = this.profiler;
+		boolean profiling = profiler != null && profiler.beginUpdate();
+		long last = profiling ? System.nanoTime() : 0;
+		
 		preLoop();
 		
 		try {
 			for(Bag<Entity> b : entities) {
 				Entity lastE = null;
 				try {
-					for(final Entity e : b) {
-						if(!e.isAlive()) {
-							remove(e);
-							continue;
-						}
-						
-						if(collisionListeners.containsKey(e)) {
-							final Map<Class<? extends Entity>, CollisionListener<? extends Entity>> map = collisionListeners.get(e);
-							getEntities().stream().filter(entity -> map.containsKey(entity.getClass()) && entity.intersects(e)).forEach(entity -> {
-								@SuppressWarnings("unchecked")
-								CollisionListener<Entity> listener = (CollisionListener<Entity>)map.get(entity.getClass());
-								listener.collide(entity);
-							});
+					// The profiled loop is picked once per layer, so frames that are not timed skip it entirely
+					if(profiling) {
+						for(Entity e : b) {
+							lastE = e;
+							
+							if(updateEntity(e,deltaTime,zIndex)) {
+								count++;
+								
+								// One timestamp per Entity: the time since the previous one includes this Entity's collision checks
+								long now = System.nanoTime();
+								profiler.recordUpdate(e,zIndex,now - last);
+								last = now;
+							}
+							else
+								last = System.nanoTime(); // The removal of a dead Entity is not charged to the next one
 						}
-						
-						lastE = e;
-						try{
-							e.update(deltaTime);
-						}
-						catch(Exception exc) {
-							exc.printStackTrace();
-						}
-						
-						if(!e.isAlive()) {
-							remove(e);
+					}
+					else {
+						for(Entity e : b) {
+							lastE = e;
+							
+							if(updateEntity(e,deltaTime,zIndex))
+								count++;
 						}
 					}
 				}
@@ -190,13 +210,76 @@ public class GameWorld extends BasicScreen {
 					System.out.println(lastE);
 					//throw exc;
 				}
+				
+				zIndex++;
 			}
 		}
 		finally {
 			postLoop();
+			
+			if(updateEvent != null) {
+				updateEvent.end();
+				if(updateEvent.shouldCommit()) {
+					updateEvent.entities = count;
+					updateEvent.layers = entities.size();
+					updateEvent.commit();
+				}
+			}
 		}
 	}
 	
+	/**
+	 * Runs the collision listeners and the update of the Entity, removing it if it is dead.
+	 * @return False if the Entity was already dead and was skipped.
+	 */
+	private boolean updateEntity(final Entity e, long deltaTime, int zIndex) {
+		if(!e.isAlive()) {
+			remove(e);
+			return false;
+		}
+		
+		if(collisionListeners.containsKey(e)) {
+			final Map<Class<? extends Entity>, CollisionListener<? extends Entity>> map = collisionListeners.get(e);
+			getEntities().stream().filter(entity -> map.containsKey(entity.getClass()) && entity.intersects(e)).forEach(entity -> {
+				@SuppressWarnings("unchecked")
+				CollisionListener<Entity> listener = (CollisionListener<Entity>)map.get(entity.getClass());
+				listener.collide(entity);
+			});
+		}
+		
+		if(collisionLayer != null) {
+			TileCollisionListener listener = tileCollisionListeners.get(e);
+			if(listener != null)
+				collisionLayer.forEachSolid(e.getX(),e.getY(),e.getWidth(),e.getHeight(),listener::collide);
+		}
+		
+		EntityUpdateEvent entityEvent = JFR.AVAILABLE ? new EntityUpdateEvent() : null;
+		if(entityEvent != null)
+			entityEvent.begin();
+		
+		try{
+			e.update(deltaTime);
+		}
+		catch(Exception exc) {
+			exc.printStackTrace();
+		}
+		
+		if(entityEvent != null) {
+			entityEvent.end();
+			if(entityEvent.shouldCommit()) {
+				entityEvent.entityClass = e.getClass();
+				entityEvent.zIndex = zIndex;
+				entityEvent.commit();
+			}
+		}
+		
+		if(!e.isAlive()) {
+			remove(e);
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * Draws the background then all the Entities in z-index order.
 	 * @param g The Graphics context to draw to the screen.
@@ -205,38 +288,85 @@ public class GameWorld extends BasicScreen {
 	public void draw(Graphics2D g) {
 		g = (Graphics2D)g.create();
 		
-		Image bg = (this.bg == null ? getGame().getArt().get(bgImage) : this.bg);
+		Image bg = (this.bg == null ? getArtBackground() : this.bg);
 		
 		if(bg != null)
 			g.drawImage(bg,0,0,getWidth(),getHeight(),0,0,bg.getWidth(null),bg.getHeight(null),null);
 		
 		//for(Entity e : getEntities())
 		
+		WorldDrawEvent drawEvent = JFR.AVAILABLE ? new WorldDrawEvent() : null;
+		if(drawEvent != null)
+			drawEvent.begin();
+		int count = 0, zIndex = 0;
+		
+		WorldProfiler profiler = this.profiler;
+		boolean profiling = profiler != null && profiler.beginDraw();
+		long last = profiling ? System.nanoTime() : 0;
+		
 		preLoop();
 		
 		g.translate(xOffset, yOffset);
 		
 		try{
-			for(Bag<Entity> b : entities)
-				for(Entity e : b) {
-					if(!e.isAlive()) {
-						remove(e);
-						continue;
-					}
-					
-					try {
-						e.draw((Graphics2D)g.create());
+			for(Bag<Entity> b : entities) {
+				if(profiling) {
+					for(Entity e : b) {
+						if(drawEntity(e,g)) {
+							count++;
+							
+							long now = System.nanoTime();
+							profiler.recordDraw(e,zIndex,now - last);
+							last = now;
+						}
+						else
+							last = System.nanoTime();
 					}
-					catch(Exception exc) {
-						exc.printStackTrace();
+				}
+				else {
+					for(Entity e : b) {
+						if(drawEntity(e,g))
+							count++;
 					}
 				}
+				
+				zIndex++;
+			}
 		}
 		finally {
 			postLoop();
+			
+			if(drawEvent != null) {
+				drawEvent.end();
+				if(drawEvent.shouldCommit()) {
+					drawEvent.entities = count;
+					drawEvent.layers = entities.size();
+					drawEvent.commit();
+				}
+			}
 		}
 	}
 	
+	/**
+	 * Draws the Entity, removing it if it is dead.
+	 * @return False if the Entity was dead and was skipped.
+	 */
+	private boolean drawEntity(Entity e, Graphics2D g) {
+		if(!e.isAlive()) {
+			remove(e);
+			return false;
+		}
+		
+		try {
+			e.draw((Graphics2D)g.create());
+		}
+		catch(Exception exc) {
+			exc.printStackTrace();
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * Adds the Entity with a z-index of 0.
 	 * @param e The Entity to be added.
@@ -298,6 +428,50 @@ public class GameWorld extends BasicScreen {
 		}
 	}
 	
+	/**
+	 * Registers a listener called with the solid cells of the CollisionLayer that the Entity overlaps before each of its
+	 * updates, and with the cells that stop it when it is moved with move. Replaces the Entity's previous listener.
+	 * @param entity The Entity.
+	 * @param listener The listener, or null to remove it.
+	 */
+	public void registerTileCollision(Entity entity, TileCollisionListener listener) {
+		if(listener == null)
+			tileCollisionListeners.remove(entity);
+		else
+			tileCollisionListeners.put(entity, listener);
+	}
+	
+	/**
+	 * Sets the solid cells that Entities collide against.
+	 * @param collisionLayer The CollisionLayer, or null to remove it.
+	 */
+	public void setCollisionLayer(CollisionLayer collisionLayer) {
+		this.collisionLayer = collisionLayer;
+	}
+	
+	public CollisionLayer getCollisionLayer() {
+		return collisionLayer;
+	}
+	
+	/**
+	 * Moves the Entity, stopping it against the solid cells of the CollisionLayer and calling its tile collision
+	 * listener with the cells that stopped it. Without a CollisionLayer the Entity moves freely.
+	 * @param e The Entity to move.
+	 * @param dx The distance along the x axis.
+	 * @param dy The distance along the y axis.
+	 * @return A combination of CollisionLayer.BLOCKED_X and CollisionLayer.BLOCKED_Y, 0 if the Entity moved the whole
+	 *         distance.
+	 */
+	public int move(Entity e, double dx, double dy) {
+		if(collisionLayer == null) {
+			e.translate(dx, dy);
+			return 0;
+		}
+		
+		TileCollisionListener listener = tileCollisionListeners.get(e);
+		return collisionLayer.move(e, dx, dy, listener == null ? null : listener::collide);
+	}
+	
 	public boolean replace(Entity old, Entity e) {
 		if(isLooping) {
 			int i = temps.indexOf(old);
@@ -431,6 +605,7 @@ public class GameWorld extends BasicScreen {
 	public void setBackground(String s) {
 		bg = null;
 		bgImage = s;
+		bgHandle = null;
 	}
 	
 	/**
@@ -439,6 +614,7 @@ public class GameWorld extends BasicScreen {
 	 */
 	public void setBackground(Image bg) {
 		bgImage = null;
+		bgHandle = null;
 		
 		this.bg = Art.createCompatibleImage(bg);
 	}
@@ -451,6 +627,7 @@ public class GameWorld extends BasicScreen {
 	 */
 	public void setBackground(Color color) {
 		bgImage = null;
+		bgHandle = null;
 		
 		bg = Art.createCompatibleImage(1, 1, color.getAlpha() == 0 || color.getAlpha() == 255 ? (color.getAlpha() == 0 ? Transparency.BITMASK : Transparency.OPAQUE) : Transparency.TRANSLUCENT);
 		Graphics g = bg.getGraphics();
@@ -459,13 +636,23 @@ public class GameWorld extends BasicScreen {
 		g.dispose();
 	}
 	
+	private Image getArtBackground() {
+		if(bgImage == null)
+			return null;
+		
+		if(bgHandle == null)
+			bgHandle = getGame().getArt().getHandle(bgImage);
+		
+		return bgHandle.get();
+	}
+	
 	/**
 	 * Returns the background image.
 	 * @return The image used as the background.
 	 */
 	public Image getBackgroundImage() {
 		if(bg == null)
-			return getGame().getArt().get(bgImage);
+			return getArtBackground();
 		return bg;
 	}
 	
@@ -476,6 +663,18 @@ public class GameWorld extends BasicScreen {
 		return getEntities().size();
 	}
 	
+	/**
+	 * Attaches a profiler that times the update and draw of every Entity on sampled frames.
+	 * @param profiler The profiler, or null to stop profiling.
+	 */
+	public void setProfiler(WorldProfiler profiler) {
+		this.profiler = profiler;
+	}
+	
+	public WorldProfiler getProfiler() {
+		return profiler;
+	}
+	
 	public void setXOffset(double xOffset) {
 		this.xOffset = xOffset;
 	}
@@ -525,4 +724,8 @@ public class GameWorld extends BasicScreen {
 	public interface CollisionListener<T extends Entity> {
 		void collide(T t);
 	}
+	
+	public interface TileCollisionListener {
+		void collide(int x, int y);
+	}
 }
@@ -0,0 +1,450 @@
+package com.ra4king.gameutils.gameworld;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.ra4king.gameutils.Entity;
+
+/**
+ * A sampling profiler for GameWorld that accumulates the time and number of calls of Entity.update and Entity.draw,
+ * per Entity class and per z-index.<br>
+ * Only one frame out of every sample interval is timed. On the other frames the cost is a single counter check, and
+ * a timed frame reads the clock once per Entity, so the profiler can be left attached in release builds. The snapshot
+ * period is also only checked on timed frames. Counters live in preallocated primitive arrays indexed by a slot per Entity class, so a timed frame does
+ * not allocate either.<br>
+ * The counters are only touched on the game thread. Other threads should read the Snapshot published every snapshot
+ * period with getLastSnapshot() or a SnapshotListener.
+ * @author Roi Atalla
+ */
+public class WorldProfiler {
+	private final ClassValue<Integer> slots = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			return addClass(type);
+		}
+	};
+	
+	private Class<?>[] classes;
+	private long[] updateNanos, updateCalls, drawNanos, drawCalls;
+	private int classCount;
+	
+	private Class<?> lastClass;
+	private int lastSlot;
+	
+	private long[] layerUpdateNanos, layerUpdateCalls, layerDrawNanos, layerDrawCalls;
+	private int layerCount;
+	
+	private int sampleInterval;
+	private int updateCountdown, drawCountdown;
+	private int sampledUpdates, sampledDraws;
+	
+	private long snapshotPeriod;
+	private long periodStart;
+	private volatile Snapshot lastSnapshot;
+	private SnapshotListener listener;
+	
+	/**
+	 * Initializes this object, timing one frame out of every 32 and publishing a snapshot every second.
+	 */
+	public WorldProfiler() {
+		this(32,1000);
+	}
+	
+	/**
+	 * Initializes this object.
+	 * @param sampleInterval One frame out of this many is timed. 1 times every frame.
+	 * @param snapshotPeriod The time in milliseconds between published snapshots, or 0 to only take them manually.
+	 */
+	public WorldProfiler(int sampleInterval, long snapshotPeriod) {
+		setSampleInterval(sampleInterval);
+		setSnapshotPeriod(snapshotPeriod);
+		
+		classes = new Class<?>[32];
+		updateNanos = new long[32];
+		updateCalls = new long[32];
+		drawNanos = new long[32];
+		drawCalls = new long[32];
+		
+		layerUpdateNanos = new long[8];
+		layerUpdateCalls = new long[8];
+		layerDrawNanos = new long[8];
+		layerDrawCalls = new long[8];
+		
+		periodStart = System.nanoTime();
+	}
+	
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+	
+	/**
+	 * @param sampleInterval One frame out of this many is timed. 1 times every frame.
+	 */
+	public void setSampleInterval(int sampleInterval) {
+		if(sampleInterval < 1)
+			throw new IllegalArgumentException("Sample interval must be at least 1.");
+		
+		this.sampleInterval = sampleInterval;
+		updateCountdown = drawCountdown = 0;
+	}
+	
+	public long getSnapshotPeriod() {
+		return snapshotPeriod;
+	}
+	
+	/**
+	 * @param snapshotPeriod The time in milliseconds between published snapshots, or 0 to only take them manually.
+	 */
+	public void setSnapshotPeriod(long snapshotPeriod) {
+		if(snapshotPeriod < 0)
+			throw new IllegalArgumentException("Snapshot period cannot be negative.");
+		
+		this.snapshotPeriod = snapshotPeriod;
+	}
+	
+	public SnapshotListener getSnapshotListener() {
+		return listener;
+	}
+	
+	/**
+	 * @param listener Called on the game thread with every periodic snapshot, may be null.
+	 */
+	public void setSnapshotListener(SnapshotListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * @return The last periodic snapshot, or null if none was taken yet.
+	 */
+	public Snapshot getLastSnapshot() {
+		return lastSnapshot;
+	}
+	
+	/**
+	 * Called by GameWorld at the start of update.
+	 * @return True if this frame's updates should be timed.
+	 */
+	boolean beginUpdate() {
+		if(--updateCountdown > 0)
+			return false;
+		
+		updateCountdown = sampleInterval;
+		
+		if(snapshotPeriod > 0 && System.nanoTime() - periodStart >= snapshotPeriod * 1000000) {
+			Snapshot snapshot = snapshot(true);
+			lastSnapshot = snapshot;
+			
+			if(listener != null) {
+				try{
+					listener.snapshotTaken(snapshot);
+				}
+				catch(Exception exc) {
+					exc.printStackTrace();
+				}
+			}
+		}
+		
+		sampledUpdates++;
+		return true;
+	}
+	
+	/**
+	 * Called by GameWorld at the start of draw.
+	 * @return True if this frame's draws should be timed.
+	 */
+	boolean beginDraw() {
+		if(--drawCountdown > 0)
+			return false;
+		
+		drawCountdown = sampleInterval;
+		sampledDraws++;
+		return true;
+	}
+	
+	void recordUpdate(Entity e, int zIndex, long nanos) {
+		int slot = getSlot(e.getClass());
+		updateNanos[slot] += nanos;
+		updateCalls[slot]++;
+		
+		ensureLayer(zIndex);
+		layerUpdateNanos[zIndex] += nanos;
+		layerUpdateCalls[zIndex]++;
+	}
+	
+	void recordDraw(Entity e, int zIndex, long nanos) {
+		int slot = getSlot(e.getClass());
+		drawNanos[slot] += nanos;
+		drawCalls[slot]++;
+		
+		ensureLayer(zIndex);
+		layerDrawNanos[zIndex] += nanos;
+		layerDrawCalls[zIndex]++;
+	}
+	
+	private int getSlot(Class<?> type) {
+		// Neighbouring entities are usually of the same class, which skips the ClassValue lookup
+		if(type != lastClass) {
+			lastClass = type;
+			lastSlot = slots.get(type);
+		}
+		
+		return lastSlot;
+	}
+	
+	private int addClass(Class<?> type) {
+		if(classCount == classes.length) {
+			int capacity = classes.length * 2;
+			classes = Arrays.copyOf(classes,capacity);
+			updateNanos = Arrays.copyOf(updateNanos,capacity);
+			updateCalls = Arrays.copyOf(updateCalls,capacity);
+			drawNanos = Arrays.copyOf(drawNanos,capacity);
+			drawCalls = Arrays.copyOf(drawCalls,capacity);
+		}
+		
+		classes[classCount] = type;
+		return classCount++;
+	}
+	
+	private void ensureLayer(int zIndex) {
+		if(zIndex < layerCount)
+			return;
+		
+		if(zIndex >= layerUpdateNanos.length) {
+			int capacity = Math.max(zIndex + 1,layerUpdateNanos.length * 2);
+			layerUpdateNanos = Arrays.copyOf(layerUpdateNanos,capacity);
+			layerUpdateCalls = Arrays.copyOf(layerUpdateCalls,capacity);
+			layerDrawNanos = Arrays.copyOf(layerDrawNanos,capacity);
+			layerDrawCalls = Arrays.copyOf(layerDrawCalls,capacity);
+		}
+		
+		layerCount = zIndex + 1;
+	}
+	
+	/**
+	 * Copies the counters. This must be called on the game thread.
+	 * @param reset If true, the counters are cleared and a new period starts.
+	 * @return The counters accumulated since the last reset.
+	 */
+	public Snapshot snapshot(boolean reset) {
+		long now = System.nanoTime();
+		
+		List<Entry> entries = new ArrayList<>(classCount);
+		for(int a = 0; a < classCount; a++)
+			if(updateCalls[a] > 0 || drawCalls[a] > 0)
+				entries.add(new Entry(classes[a],-1,updateNanos[a],updateCalls[a],drawNanos[a],drawCalls[a]));
+		
+		List<Entry> layers = new ArrayList<>(layerCount);
+		for(int a = 0; a < layerCount; a++)
+			layers.add(new Entry(null,a,layerUpdateNanos[a],layerUpdateCalls[a],layerDrawNanos[a],layerDrawCalls[a]));
+		
+		Snapshot snapshot = new Snapshot((now - periodStart) / 1000000,sampledUpdates,sampledDraws,entries,layers);
+		
+		if(reset) {
+			Arrays.fill(updateNanos,0,classCount,0);
+			Arrays.fill(updateCalls,0,classCount,0);
+			Arrays.fill(drawNanos,0,classCount,0);
+			Arrays.fill(drawCalls,0,classCount,0);
+			
+			Arrays.fill(layerUpdateNanos,0,layerCount,0);
+			Arrays.fill(layerUpdateCalls,0,layerCount,0);
+			Arrays.fill(layerDrawNanos,0,layerCount,0);
+			Arrays.fill(layerDrawCalls,0,layerCount,0);
+			
+			sampledUpdates = sampledDraws = 0;
+			periodStart = now;
+		}
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Clears the counters and starts a new period.
+	 */
+	public void reset() {
+		snapshot(true);
+	}
+	
+	/**
+	 * Receives the periodic snapshots.
+	 * @author Roi Atalla
+	 */
+	public interface SnapshotListener {
+		void snapshotTaken(Snapshot snapshot);
+	}
+	
+	/**
+	 * What a snapshot is sorted by.
+	 * @author Roi Atalla
+	 */
+	public enum Metric {
+		UPDATE, DRAW, TOTAL;
+		
+		long of(Entry e) {
+			switch(this) {
+				case UPDATE: return e.updateNanos;
+				case DRAW: return e.drawNanos;
+				default: return e.updateNanos + e.drawNanos;
+			}
+		}
+	}
+	
+	/**
+	 * The counters of a single Entity class or z-index over the sampled frames.
+	 * @author Roi Atalla
+	 */
+	public static class Entry {
+		private final Class<?> entityClass;
+		private final int zIndex;
+		private final long updateNanos, updateCalls, drawNanos, drawCalls;
+		
+		Entry(Class<?> entityClass, int zIndex, long updateNanos, long updateCalls, long drawNanos, long drawCalls) {
+			this.entityClass = entityClass;
+			this.zIndex = zIndex;
+			this.updateNanos = updateNanos;
+			this.updateCalls = updateCalls;
+			this.drawNanos = drawNanos;
+			this.drawCalls = drawCalls;
+		}
+		
+		/**
+		 * @return The Entity class, or null if this is a z-index entry.
+		 */
+		public Class<?> getEntityClass() {
+			return entityClass;
+		}
+		
+		/**
+		 * @return The z-index, or -1 if this is an Entity class entry.
+		 */
+		public int getZIndex() {
+			return zIndex;
+		}
+		
+		public long getUpdateNanos() {
+			return updateNanos;
+		}
+		
+		public long getUpdateCalls() {
+			return updateCalls;
+		}
+		
+		public long getDrawNanos() {
+			return drawNanos;
+		}
+		
+		public long getDrawCalls() {
+			return drawCalls;
+		}
+		
+		public long getTotalNanos() {
+			return updateNanos + drawNanos;
+		}
+		
+		public String getName() {
+			return entityClass == null ? "z-index " + zIndex : entityClass.getName();
+		}
+	}
+	
+	/**
+	 * An immutable copy of the profiler's counters.
+	 * @author Roi Atalla
+	 */
+	public static class Snapshot {
+		private final long duration;
+		private final int sampledUpdates, sampledDraws;
+		private final List<Entry> entries, layers;
+		
+		Snapshot(long duration, int sampledUpdates, int sampledDraws, List<Entry> entries, List<Entry> layers) {
+			this.duration = duration;
+			this.sampledUpdates = sampledUpdates;
+			this.sampledDraws = sampledDraws;
+			this.entries = entries;
+			this.layers = layers;
+		}
+		
+		/**
+		 * @return The time in milliseconds covered by this snapshot.
+		 */
+		public long getDuration() {
+			return duration;
+		}
+		
+		/**
+		 * @return The number of updates that were timed.
+		 */
+		public int getSampledUpdates() {
+			return sampledUpdates;
+		}
+		
+		/**
+		 * @return The number of draws that were timed.
+		 */
+		public int getSampledDraws() {
+			return sampledDraws;
+		}
+		
+		/**
+		 * @return An unmodifiable list of the counters of every Entity class that was timed.
+		 */
+		public List<Entry> getEntries() {
+			return Collections.unmodifiableList(entries);
+		}
+		
+		/**
+		 * @return An unmodifiable list of the counters of every z-index, in order.
+		 */
+		public List<Entry> getLayers() {
+			return Collections.unmodifiableList(layers);
+		}
+		
+		/**
+		 * Returns the most expensive Entity classes.
+		 * @param n The maximum number of entries returned.
+		 * @param metric The time the entries are sorted by.
+		 * @return The entries in descending order of time.
+		 */
+		public List<Entry> top(int n, Metric metric) {
+			List<Entry> sorted = new ArrayList<>(entries);
+			sorted.sort(Comparator.comparingLong(metric::of).reversed());
+			return sorted.subList(0,Math.min(Math.max(n,0),sorted.size()));
+		}
+		
+		/**
+		 * Formats the top Entity classes and every z-index as a table. Times are the average per timed frame.
+		 * @param n The maximum number of Entity classes listed.
+		 * @return The report.
+		 */
+		public String report(int n) {
+			StringBuilder s = new StringBuilder();
+			s.append(String.format("%d ms, %d updates and %d draws sampled%n",duration,sampledUpdates,sampledDraws));
+			s.append(String.format("%-48s %12s %10s %12s %10s%n","","update us","calls","draw us","calls"));
+			
+			for(Entry e : top(n,Metric.TOTAL))
+				append(s,e);
+			
+			for(Entry e : layers)
+				append(s,e);
+			
+			return s.toString();
+		}
+		
+		private void append(StringBuilder s, Entry e) {
+			double updates = Math.max(sampledUpdates,1), draws = Math.max(sampledDraws,1);
+			
+			String name = e.getName();
+			if(name.length() > 48)
+				name = "..." + name.substring(name.length() - 45);
+			
+			s.append(String.format("%-48s %12.2f %10.1f %12.2f %10.1f%n",name,
+					e.updateNanos / updates / 1000,e.updateCalls / updates,e.drawNanos / draws / 1000,e.drawCalls / draws));
+		}
+		
+		@Override
+		public String toString() {
+			return report(10);
+		}
+	}
+}
\ No newline at end of file
@@ -9,6 +9,7 @@ import java.awt.Transparency;
 import java.util.ArrayList;
 
 import com.ra4king.gameutils.Art;
+import com.ra4king.gameutils.Assets;
 import com.ra4king.gameutils.BasicScreen;
 import com.ra4king.gameutils.Game;
 
@@ -21,6 +22,7 @@ public class MenuPage extends BasicScreen {
 	private ArrayList<Widget> widgets;
 	private Image bg;
 	private String bgImage;
+	private Assets<Image>.Handle bgHandle;
 	private boolean hasInited;
 	
 	public MenuPage() {
@@ -96,7 +98,7 @@ public class MenuPage extends BasicScreen {
 	 */
 	@Override
 	public void draw(Graphics2D g) {
-		Image bg = (this.bg == null ? getGame().getArt().get(bgImage) : this.bg);
+		Image bg = (this.bg == null ? getArtBackground() : this.bg);
 		
 		if(bg != null)
 			g.drawImage(bg,0,0,getWidth(),getHeight(),0,0,bg.getWidth(null),bg.getHeight(null),null);
@@ -155,6 +157,7 @@ public class MenuPage extends BasicScreen {
 	public void setBackground(String s) {
 		bg = null;
 		bgImage = s;
+		bgHandle = null;
 	}
 	
 	/**
@@ -163,6 +166,7 @@ public class MenuPage extends BasicScreen {
 	 */
 	public void setBackground(Image bg) {
 		bgImage = null;
+		bgHandle = null;
 		
 		if(bg == null)
 			this.bg = null;
@@ -178,6 +182,7 @@ public class MenuPage extends BasicScreen {
 	 */
 	public void setBackground(Color color) {
 		bgImage = null;
+		bgHandle = null;
 		
 		if(color == null)
 			bg = null;
@@ -189,6 +194,16 @@ public class MenuPage extends BasicScreen {
 		}
 	}
 	
+	private Image getArtBackground() {
+		if(bgImage == null)
+			return null;
+		
+		if(bgHandle == null)
+			bgHandle = getGame().getArt().getHandle(bgImage);
+		
+		return bgHandle.get();
+	}
+	
 	/**
 	 * Returns the background image.
 	 * @return The image used as the background.
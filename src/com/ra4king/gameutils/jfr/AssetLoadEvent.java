@@ -0,0 +1,28 @@
+package com.ra4king.gameutils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The loading and decoding of one asset by an Assets store.
+ * @author Roi Atalla
+ */
+@Name("com.ra4king.gameutils.AssetLoad")
+@Label("Asset Load")
+@Category({ "GameUtils", "Assets" })
+@Enabled(false)
+public class AssetLoadEvent extends Event {
+	@Label("Store")
+	public Class<?> store;
+	
+	@Label("URL")
+	public String url;
+	
+	@Label("Decoded Size")
+	@DataAmount
+	public long size;
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.ra4king.gameutils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A single Entity.update call inside GameWorld.update that took longer than the threshold, 1 ms unless
+ * configured otherwise in the recording settings.
+ * @author Roi Atalla
+ */
+@Name("com.ra4king.gameutils.SlowEntityUpdate")
+@Label("Slow Entity Update")
+@Category({ "GameUtils", "GameWorld" })
+@Description("An Entity.update call that took longer than the threshold")
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+public class EntityUpdateEvent extends Event {
+	@Label("Entity Class")
+	public Class<?> entityClass;
+	
+	@Label("Z-Index")
+	public int zIndex;
+}
\ No newline at end of file
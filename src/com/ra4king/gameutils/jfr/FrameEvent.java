@@ -0,0 +1,46 @@
+package com.ra4king.gameutils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One iteration of the game loop, from processing callbacks to showing the frame, with the time spent in each phase.
+ * The sleep until the next frame is not included.
+ * @author Roi Atalla
+ */
+@Name("com.ra4king.gameutils.Frame")
+@Label("Frame")
+@Category({ "GameUtils", "Game Loop" })
+@Description("One iteration of the game loop with the duration of each phase")
+@Enabled(false)
+@StackTrace(false)
+public class FrameEvent extends Event {
+	@Label("Events Time")
+	@Description("Time spent processing callbacks and input events")
+	@Timespan(Timespan.NANOSECONDS)
+	public long eventsTime;
+	
+	@Label("Update Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long updateTime;
+	
+	@Label("Updates")
+	@Description("Number of update steps run to catch up with real time")
+	public int updates;
+	
+	@Label("Draw Time")
+	@Description("Time spent in paint, including software rendering")
+	@Timespan(Timespan.NANOSECONDS)
+	public long drawTime;
+	
+	@Label("Present Time")
+	@Description("Time spent presenting the frame to the screen")
+	@Timespan(Timespan.NANOSECONDS)
+	public long presentTime;
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.ra4king.gameutils.jfr;
+
+/**
+ * Tells whether the Flight Recorder API is present. The events in this package extend jdk.jfr.Event, which Java 8
+ * runtimes before 8u262 do not have, so they are only created when AVAILABLE is true and are never loaded otherwise.
+ * @author Roi Atalla
+ */
+public final class JFR {
+	public static final boolean AVAILABLE = isAvailable();
+	
+	private JFR() {}
+	
+	private static boolean isAvailable() {
+		try{
+			Class.forName("jdk.jfr.Event");
+			return true;
+		}
+		catch(ClassNotFoundException | LinkageError exc) {
+			return false;
+		}
+	}
+}
\ No newline at end of file
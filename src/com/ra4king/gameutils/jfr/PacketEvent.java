@@ -0,0 +1,36 @@
+package com.ra4king.gameutils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Packet sent or received by a SocketPacketIO or DatagramPacketIO.
+ * @author Roi Atalla
+ */
+@Name("com.ra4king.gameutils.Packet")
+@Label("Packet")
+@Category({ "GameUtils", "Networking" })
+@Enabled(false)
+@StackTrace(false)
+public class PacketEvent extends Event {
+	public static final String SENT = "Sent", RECEIVED = "Received";
+	public static final String TCP = "TCP", UDP = "UDP";
+	
+	@Label("Direction")
+	public String direction;
+	
+	@Label("Transport")
+	public String transport;
+	
+	@Label("Remote Address")
+	public String address;
+	
+	@Label("Payload Size")
+	@DataAmount
+	public int size;
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.ra4king.gameutils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A GameWorld.draw call.
+ * @author Roi Atalla
+ */
+@Name("com.ra4king.gameutils.WorldDraw")
+@Label("World Draw")
+@Category({ "GameUtils", "GameWorld" })
+@Enabled(false)
+@StackTrace(false)
+public class WorldDrawEvent extends Event {
+	@Label("Entities")
+	public int entities;
+	
+	@Label("Layers")
+	public int layers;
+}
\ No newline at end of file
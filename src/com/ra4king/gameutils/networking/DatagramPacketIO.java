@@ -6,6 +6,9 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 
+import com.ra4king.gameutils.jfr.JFR;
+import com.ra4king.gameutils.jfr.PacketEvent;
+
 /**
  * A blocking or non-blocking UDP wrapper that uses NIO.
  * @author Roi Atalla
@@ -99,6 +102,17 @@ public class DatagramPacketIO implements PacketIO {
 		
 		in.flip();
 		
+		if(JFR.AVAILABLE) {
+			PacketEvent event = new PacketEvent();
+			if(event.shouldCommit()) {
+				event.direction = PacketEvent.RECEIVED;
+				event.transport = PacketEvent.UDP;
+				event.address = String.valueOf(address);
+				event.size = in.remaining();
+				event.commit();
+			}
+		}
+		
 		return new Packet((ByteBuffer)ByteBuffer.allocate(in.remaining()).put(in).flip(),address);
 	}
 	
@@ -119,7 +133,25 @@ public class DatagramPacketIO implements PacketIO {
 		if(sa == null)
 			throw new IOException("No address specified.");
 		
-		return channel.send(out, sa) > 0;
+		PacketEvent event = JFR.AVAILABLE ? new PacketEvent() : null;
+		if(event != null)
+			event.begin();
+		
+		int size = out.remaining();
+		boolean sent = channel.send(out, sa) > 0;
+		
+		if(event != null) {
+			event.end();
+			if(event.shouldCommit()) {
+				event.direction = PacketEvent.SENT;
+				event.transport = PacketEvent.UDP;
+				event.address = String.valueOf(sa);
+				event.size = size;
+				event.commit();
+			}
+		}
+		
+		return sent;
 	}
 	
 	public void write(Packet packet, SocketAddress address) throws IOException {
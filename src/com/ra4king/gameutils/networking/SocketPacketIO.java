@@ -6,6 +6,9 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 
+import com.ra4king.gameutils.jfr.JFR;
+import com.ra4king.gameutils.jfr.PacketEvent;
+
 /**
  * A Non-Blocking TCP wrapper.
  * @author Roi Atalla
@@ -107,6 +110,17 @@ public class SocketPacketIO implements PacketIO {
 		
 		Packet packet = new Packet(ByteBuffer.wrap(bytes),getSocketAddress());
 		
+		if(JFR.AVAILABLE) {
+			PacketEvent event = new PacketEvent();
+			if(event.shouldCommit()) {
+				event.direction = PacketEvent.RECEIVED;
+				event.transport = PacketEvent.TCP;
+				event.address = String.valueOf(packet.getAddress());
+				event.size = len;
+				event.commit();
+			}
+		}
+		
 		if(in.remaining() > 0)
 			in.compact();
 		else
@@ -121,16 +135,32 @@ public class SocketPacketIO implements PacketIO {
 		
 		out.clear();
 		
+		PacketEvent event = JFR.AVAILABLE ? new PacketEvent() : null;
+		if(event != null)
+			event.begin();
+		
 		ByteBuffer data = packet.getData();
 		
 		data.flip();
-		out.putInt(data.remaining());
+		int size = data.remaining();
+		out.putInt(size);
 		out.put(data);
 		
 		out.flip();
 		
 		while(out.remaining() > channel.write(out));
 		
+		if(event != null) {
+			event.end();
+			if(event.shouldCommit()) {
+				event.direction = PacketEvent.SENT;
+				event.transport = PacketEvent.TCP;
+				event.address = String.valueOf(getSocketAddress());
+				event.size = size;
+				event.commit();
+			}
+		}
+		
 		return true;
 	}
 	
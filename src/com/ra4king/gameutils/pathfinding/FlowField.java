@@ -0,0 +1,489 @@
+package com.ra4king.gameutils.pathfinding;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.ra4king.gameutils.tiledmap.TiledMap;
+
+/**
+ * The cost of reaching one goal from every cell of a NavGrid, and the direction to step in from each cell. Any number
+ * of units heading to the same goal just follow the directions, instead of each searching for its own path.<br>
+ * The grid is processed in chunks of TiledMap.CHUNK_SIZE cells. Each chunk runs Dijkstra over its own cells, starting
+ * from the costs of the cells around it, and whenever the costs along its border drop its neighbors are processed
+ * again. Chunks are processed in parallel on a ForkJoinPool, in bands of increasing cost until no cost changes.<br>
+ * When a cell of the NavGrid changes, the next update only recomputes what it affects: an opened cell can only lower
+ * costs around it, and a blocked cell only clears the cells whose path went through it.
+ * The field must not be read while update is running.
+ * @author Roi Atalla
+ */
+public class FlowField implements NavGrid.Listener {
+	private static final int SIZE = TiledMap.CHUNK_SIZE;
+	
+	private static final int[] DX = { 1, 1, 0, -1, -1, -1, 0, 1 };
+	private static final int[] DY = { 0, 1, 1, 1, 0, -1, -1, -1 };
+	
+	private final NavGrid grid;
+	private final ForkJoinPool pool;
+	private final int goalX, goalY;
+	private final int width, height;
+	private final int chunksX, chunksY;
+	
+	private final float[] costs;
+	private final byte[] directions;
+	
+	// Chunks to process, the lowest cost that reached each of them, chunks that must restart from all their cells
+	// and chunks whose directions must be recomputed
+	private final boolean[] dirty, full, changed;
+	private final float[] lowest;
+	private int[] blocked = new int[16], resetQueue = new int[64];
+	private int blockedCount;
+	private boolean needsUpdate;
+	
+	private final ThreadLocal<PathSearch> searches = new ThreadLocal<PathSearch>() {
+		@Override
+		protected PathSearch initialValue() {
+			return new PathSearch();
+		}
+	};
+	
+	/**
+	 * Initializes this object on the common ForkJoinPool and computes the field.
+	 * @param grid The grid to search. This object listens to its changes.
+	 * @param goalX The x cell coordinate of the goal.
+	 * @param goalY The y cell coordinate of the goal.
+	 */
+	public FlowField(NavGrid grid, int goalX, int goalY) {
+		this(grid,goalX,goalY,ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Initializes this object and computes the field.
+	 * @param grid The grid to search. This object listens to its changes.
+	 * @param goalX The x cell coordinate of the goal.
+	 * @param goalY The y cell coordinate of the goal.
+	 * @param pool The pool the chunks are processed on.
+	 */
+	public FlowField(NavGrid grid, int goalX, int goalY, ForkJoinPool pool) {
+		if(goalX < 0 || goalX >= grid.getWidth() || goalY < 0 || goalY >= grid.getHeight())
+			throw new IndexOutOfBoundsException("Goal out of bounds: " + goalX + "," + goalY);
+		
+		this.grid = grid;
+		this.pool = pool;
+		this.goalX = goalX;
+		this.goalY = goalY;
+		
+		width = grid.getWidth();
+		height = grid.getHeight();
+		chunksX = (width + SIZE - 1) / SIZE;
+		chunksY = (height + SIZE - 1) / SIZE;
+		
+		costs = new float[width * height];
+		directions = new byte[width * height];
+		Arrays.fill(costs,Float.POSITIVE_INFINITY);
+		Arrays.fill(directions,(byte)-1);
+		
+		dirty = new boolean[chunksX * chunksY];
+		full = new boolean[chunksX * chunksY];
+		changed = new boolean[chunksX * chunksY];
+		lowest = new float[chunksX * chunksY];
+		needsUpdate = true;
+		
+		grid.addListener(this);
+		update();
+	}
+	
+	public NavGrid getGrid() {
+		return grid;
+	}
+	
+	public int getGoalX() {
+		return goalX;
+	}
+	
+	public int getGoalY() {
+		return goalY;
+	}
+	
+	/**
+	 * @return The cost of the shortest path from the cell to the goal, or infinity if it cannot reach the goal.
+	 */
+	public float getCost(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			return Float.POSITIVE_INFINITY;
+		
+		return costs[y * width + x];
+	}
+	
+	/**
+	 * @return True if there is a path from the cell to the goal.
+	 */
+	public boolean isReachable(int x, int y) {
+		return getCost(x,y) != Float.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * @return The direction to step in from the cell, from 0 to 7 clockwise starting at +x, or -1 at the goal or if
+	 *         the goal cannot be reached.
+	 */
+	public int getDirection(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			return -1;
+		
+		return directions[y * width + x];
+	}
+	
+	/**
+	 * @return The x step, -1, 0 or 1, to take from the cell.
+	 */
+	public int getDirectionX(int x, int y) {
+		int d = getDirection(x,y);
+		return d < 0 ? 0 : DX[d];
+	}
+	
+	/**
+	 * @return The y step, -1, 0 or 1, to take from the cell.
+	 */
+	public int getDirectionY(int x, int y) {
+		int d = getDirection(x,y);
+		return d < 0 ? 0 : DY[d];
+	}
+	
+	@Override
+	public void cellChanged(int x, int y) {
+		int i = y * width + x;
+		int c = (y / SIZE) * chunksX + x / SIZE;
+		
+		if(!grid.isWalkable(x,y)) {
+			if(blockedCount == blocked.length)
+				blocked = Arrays.copyOf(blocked,blockedCount * 2);
+			blocked[blockedCount++] = i;
+		}
+		else
+			markFull(c);
+		
+		// Opening or closing a cell changes which diagonal steps are allowed next to it
+		changed[c] = true;
+		needsUpdate = true;
+	}
+	
+	/**
+	 * Stops listening to the NavGrid.
+	 */
+	public void dispose() {
+		grid.removeListener(this);
+	}
+	
+	/**
+	 * Recomputes the parts of the field affected by the cells that changed since the last update.
+	 */
+	public void update() {
+		if(!needsUpdate)
+			return;
+		
+		needsUpdate = false;
+		
+		if(blockedCount > 0) {
+			resetBlocked();
+			blockedCount = 0;
+		}
+		
+		int goal = goalY * width + goalX;
+		if(grid.isWalkable(goalX,goalY) && costs[goal] != 0) {
+			costs[goal] = 0;
+			markFull((goalY / SIZE) * chunksX + goalX / SIZE);
+		}
+		
+		// Chunks are processed in bands of increasing cost, so most of them only run once their cheapest
+		// neighbors are final
+		int[] chunks = new int[dirty.length];
+		while(true) {
+			boolean isDirty = false;
+			float min = Float.POSITIVE_INFINITY;
+			for(int c = 0; c < dirty.length; c++) {
+				if(dirty[c]) {
+					isDirty = true;
+					min = Math.min(min,lowest[c]);
+				}
+			}
+			
+			if(!isDirty)
+				break;
+			
+			float bound = min + SIZE;
+			int count;
+			while((count = collect(chunks,bound)) > 0)
+				pool.invoke(new ChunkTask(chunks,0,count,false));
+		}
+		
+		// Directions depend on the costs of the neighboring chunks too
+		boolean[] redo = new boolean[changed.length];
+		for(int c = 0; c < changed.length; c++) {
+			if(changed[c]) {
+				int cx = c % chunksX, cy = c / chunksX;
+				for(int y = Math.max(0,cy - 1); y <= Math.min(chunksY - 1,cy + 1); y++)
+					for(int x = Math.max(0,cx - 1); x <= Math.min(chunksX - 1,cx + 1); x++)
+						redo[y * chunksX + x] = true;
+				
+				changed[c] = false;
+			}
+		}
+		
+		int count = 0;
+		for(int c = 0; c < redo.length; c++)
+			if(redo[c])
+				chunks[count++] = c;
+		
+		if(count > 0)
+			pool.invoke(new ChunkTask(chunks,0,count,true));
+	}
+	
+	/**
+	 * Takes the dirty chunks reached by a cost up to the bound.
+	 */
+	private int collect(int[] chunks, float bound) {
+		int count = 0;
+		for(int c = 0; c < dirty.length; c++) {
+			if(dirty[c] && lowest[c] <= bound) {
+				dirty[c] = false;
+				lowest[c] = Float.POSITIVE_INFINITY;
+				chunks[count++] = c;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Marks the chunk to be processed. Chunks processed at the same time may race on the lowest cost, which at
+	 * worst delays the chunk to a later band.
+	 */
+	private void markDirty(int c, float cost) {
+		if(!dirty[c] || cost < lowest[c]) {
+			lowest[c] = dirty[c] ? Math.min(lowest[c],cost) : cost;
+			dirty[c] = true;
+		}
+	}
+	
+	/**
+	 * Marks the chunk to be processed first, starting from all its cells because its costs no longer agree with each
+	 * other.
+	 */
+	private void markFull(int c) {
+		markDirty(c,Float.NEGATIVE_INFINITY);
+		full[c] = true;
+	}
+	
+	/**
+	 * Clears the cost of every cell whose path went through a newly blocked cell, or through a diagonal step that
+	 * one now forbids. The paths of all other cells still exist, so their costs are still valid.
+	 */
+	private void resetBlocked() {
+		int size = 0;
+		
+		for(int b = 0; b < blockedCount; b++) {
+			int i = blocked[b];
+			if(grid.isWalkable(i % width,i / width))
+				continue;
+			
+			size = reset(size,i);
+			
+			int x = i % width, y = i / width;
+			for(int d = 0; d < 8; d++) {
+				int nx = x + DX[d], ny = y + DY[d];
+				if(nx < 0 || nx >= width || ny < 0 || ny >= height)
+					continue;
+				
+				int n = ny * width + nx;
+				int direction = directions[n];
+				if(direction >= 0 && costs[n] != Float.POSITIVE_INFINITY && !canStep(nx,ny,DX[direction],DY[direction]))
+					size = reset(size,n);
+			}
+		}
+		
+		// Then every cell whose direction leads to a cleared cell
+		while(size > 0) {
+			int i = resetQueue[--size];
+			int x = i % width, y = i / width;
+			
+			for(int d = 0; d < 8; d++) {
+				int nx = x - DX[d], ny = y - DY[d];
+				if(nx < 0 || nx >= width || ny < 0 || ny >= height)
+					continue;
+				
+				int n = ny * width + nx;
+				if(directions[n] == d && costs[n] != Float.POSITIVE_INFINITY)
+					size = reset(size,n);
+			}
+		}
+	}
+	
+	private int reset(int size, int i) {
+		if(costs[i] == Float.POSITIVE_INFINITY)
+			return size;
+		
+		costs[i] = Float.POSITIVE_INFINITY;
+		
+		int c = (i / width / SIZE) * chunksX + (i % width) / SIZE;
+		markFull(c);
+		changed[c] = true;
+		
+		if(size == resetQueue.length)
+			resetQueue = Arrays.copyOf(resetQueue,size * 2);
+		resetQueue[size++] = i;
+		return size;
+	}
+	
+	private boolean canStep(int x, int y, int dx, int dy) {
+		return grid.isWalkable(x + dx,y + dy) && (dx == 0 || dy == 0 || (grid.isWalkable(x + dx,y) && grid.isWalkable(x,y + dy)));
+	}
+	
+	/**
+	 * Runs Dijkstra over the chunk, starting from the cells whose cost can be lowered from the cells around it, or
+	 * from all its cells if it is full.
+	 */
+	private void relax(PathSearch search, int c) {
+		boolean isFull = full[c];
+		full[c] = false;
+		
+		int minX = (c % chunksX) * SIZE, minY = (c / chunksX) * SIZE;
+		int chunkWidth = Math.min(SIZE,width - minX), chunkHeight = Math.min(SIZE,height - minY);
+		
+		search.begin(chunkWidth * chunkHeight);
+		
+		for(int ly = 0; ly < chunkHeight; ly++) {
+			for(int lx = 0; lx < chunkWidth; lx++) {
+				int x = minX + lx, y = minY + ly;
+				if(!grid.isWalkable(x,y))
+					continue;
+				
+				float current = costs[y * width + x];
+				float best = current;
+				
+				// Only the cells on the border have neighbors outside the chunk
+				if(lx == 0 || ly == 0 || lx == chunkWidth - 1 || ly == chunkHeight - 1) {
+					for(int d = 0; d < 8; d++) {
+						int nx = lx + DX[d], ny = ly + DY[d];
+						if(nx >= 0 && nx < chunkWidth && ny >= 0 && ny < chunkHeight)
+							continue;
+						
+						if(canStep(x,y,DX[d],DY[d])) {
+							float cost = costs[(y + DY[d]) * width + x + DX[d]] + ((d & 1) == 0 ? 1 : PathSearch.SQRT2);
+							if(cost < best)
+								best = cost;
+						}
+					}
+				}
+				
+				if(best < current || (isFull && best != Float.POSITIVE_INFINITY))
+					search.push(ly * chunkWidth + lx,best,0,-1);
+			}
+		}
+		
+		int node;
+		while((node = search.poll()) >= 0) {
+			int lx = node % chunkWidth, ly = node / chunkWidth;
+			int x = minX + lx, y = minY + ly;
+			float cost = search.getCost(node);
+			
+			// Otherwise the chunk's costs already agree with each other, so only lowered cells spread
+			int i = y * width + x;
+			if(cost < costs[i]) {
+				costs[i] = cost;
+				changed[c] = true;
+				
+				if(lx == 0 || ly == 0 || lx == chunkWidth - 1 || ly == chunkHeight - 1)
+					wakeNeighbors(c,lx,ly,chunkWidth,chunkHeight,cost);
+			}
+			else if(!isFull || cost > costs[i])
+				continue;
+			
+			for(int d = 0; d < 8; d++) {
+				int nx = lx + DX[d], ny = ly + DY[d];
+				if(nx >= 0 && nx < chunkWidth && ny >= 0 && ny < chunkHeight && canStep(x,y,DX[d],DY[d]))
+					search.push(ny * chunkWidth + nx,cost + ((d & 1) == 0 ? 1 : PathSearch.SQRT2),0,node);
+			}
+		}
+	}
+	
+	/**
+	 * Marks the chunks next to a border cell whose cost dropped, so they are processed in the next wave.
+	 */
+	private void wakeNeighbors(int c, int lx, int ly, int chunkWidth, int chunkHeight, float cost) {
+		int cx = c % chunksX, cy = c / chunksX;
+		int fromX = lx == 0 ? -1 : 0, toX = lx == chunkWidth - 1 ? 1 : 0;
+		int fromY = ly == 0 ? -1 : 0, toY = ly == chunkHeight - 1 ? 1 : 0;
+		
+		for(int dy = fromY; dy <= toY; dy++) {
+			for(int dx = fromX; dx <= toX; dx++) {
+				int nx = cx + dx, ny = cy + dy;
+				if((dx != 0 || dy != 0) && nx >= 0 && nx < chunksX && ny >= 0 && ny < chunksY)
+					markDirty(ny * chunksX + nx,cost);
+			}
+		}
+	}
+	
+	/**
+	 * Points every cell of the chunk toward its neighbor on the shortest path to the goal.
+	 */
+	private void computeDirections(int c) {
+		int minX = (c % chunksX) * SIZE, minY = (c / chunksX) * SIZE;
+		int maxX = Math.min(width,minX + SIZE), maxY = Math.min(height,minY + SIZE);
+		
+		for(int y = minY; y < maxY; y++) {
+			for(int x = minX; x < maxX; x++) {
+				int i = y * width + x;
+				
+				int direction = -1;
+				if(costs[i] != 0 && costs[i] != Float.POSITIVE_INFINITY) {
+					float best = Float.POSITIVE_INFINITY;
+					for(int d = 0; d < 8; d++) {
+						if(canStep(x,y,DX[d],DY[d])) {
+							float cost = costs[(y + DY[d]) * width + x + DX[d]] + ((d & 1) == 0 ? 1 : PathSearch.SQRT2);
+							if(cost < best) {
+								best = cost;
+								direction = d;
+							}
+						}
+					}
+				}
+				
+				directions[i] = (byte)direction;
+			}
+		}
+	}
+	
+	/**
+	 * Processes a range of chunks, splitting it in half until it is small.
+	 */
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int[] chunks;
+		private final int from, to;
+		private final boolean directions;
+		
+		ChunkTask(int[] chunks, int from, int to, boolean directions) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.directions = directions;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from > 2) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ChunkTask(chunks,from,mid,directions),new ChunkTask(chunks,mid,to,directions));
+				return;
+			}
+			
+			PathSearch search = directions ? null : searches.get();
+			for(int a = from; a < to; a++) {
+				if(directions)
+					computeDirections(chunks[a]);
+				else
+					relax(search,chunks[a]);
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.ra4king.gameutils.pathfinding;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Keeps the FlowFields of the most recently used goals of a NavGrid. When there are more than the capacity, the field
+ * used the longest time ago is disposed.<br>
+ * Fields stay in sync with the NavGrid and are updated when they are returned by get.
+ * @author Roi Atalla
+ */
+public class FlowFieldCache {
+	private final NavGrid grid;
+	private final ForkJoinPool pool;
+	private final LinkedHashMap<Integer,FlowField> fields;
+	private int capacity;
+	
+	/**
+	 * Initializes this object on the common ForkJoinPool.
+	 * @param grid The grid to search.
+	 * @param capacity The maximum number of fields kept.
+	 */
+	public FlowFieldCache(NavGrid grid, int capacity) {
+		this(grid,capacity,ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Initializes this object.
+	 * @param grid The grid to search.
+	 * @param capacity The maximum number of fields kept.
+	 * @param pool The pool the fields are computed on.
+	 */
+	public FlowFieldCache(NavGrid grid, int capacity, ForkJoinPool pool) {
+		this.grid = grid;
+		this.pool = pool;
+		
+		fields = new LinkedHashMap<Integer,FlowField>(16,0.75f,true);
+		setCapacity(capacity);
+	}
+	
+	public NavGrid getGrid() {
+		return grid;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Sets the maximum number of fields kept, disposing the least recently used ones if there are more.
+	 */
+	public void setCapacity(int capacity) {
+		if(capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive.");
+		
+		this.capacity = capacity;
+		evict();
+	}
+	
+	/**
+	 * @return The number of fields kept.
+	 */
+	public int size() {
+		return fields.size();
+	}
+	
+	/**
+	 * Returns the field of the goal, computing it if it is not cached, or updating it if the grid has changed.
+	 * @param goalX The x cell coordinate of the goal.
+	 * @param goalY The y cell coordinate of the goal.
+	 * @return The up to date field.
+	 */
+	public FlowField get(int goalX, int goalY) {
+		if(goalX < 0 || goalX >= grid.getWidth() || goalY < 0 || goalY >= grid.getHeight())
+			throw new IndexOutOfBoundsException("Goal out of bounds: " + goalX + "," + goalY);
+		
+		Integer key = goalY * grid.getWidth() + goalX;
+		
+		FlowField field = fields.get(key);
+		if(field == null) {
+			field = new FlowField(grid,goalX,goalY,pool);
+			fields.put(key,field);
+			evict();
+		}
+		else
+			field.update();
+		
+		return field;
+	}
+	
+	/**
+	 * Disposes the field of the goal if it is cached.
+	 */
+	public void remove(int goalX, int goalY) {
+		FlowField field = fields.remove(goalY * grid.getWidth() + goalX);
+		if(field != null)
+			field.dispose();
+	}
+	
+	/**
+	 * Disposes every field.
+	 */
+	public void clear() {
+		for(FlowField field : fields.values())
+			field.dispose();
+		
+		fields.clear();
+	}
+	
+	private void evict() {
+		Iterator<FlowField> it = fields.values().iterator();
+		while(fields.size() > capacity) {
+			it.next().dispose();
+			it.remove();
+		}
+	}
+}
\ No newline at end of file
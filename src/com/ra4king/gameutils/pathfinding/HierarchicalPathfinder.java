@@ -0,0 +1,551 @@
+package com.ra4king.gameutils.pathfinding;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Hierarchical pathfinding (HPA*) for large maps.<br>
+ * The grid is split into square clusters. Wherever two neighboring clusters share an open stretch of border, a pair
+ * of entrance nodes is placed across it, and the nodes of each cluster are linked with the cost of the shortest path
+ * between them inside the cluster. A query searches this small abstract graph and then refines each step with a
+ * search bounded to one cluster, so its cost barely depends on the size of the map. Paths are near optimal, usually
+ * within a few percent of A*.<br>
+ * When a cell of the NavGrid changes, only the borders and clusters around it are rebuilt, the next time update or a
+ * query runs. Queries may run on several threads at once, each with its own PathSearch, as long as update and
+ * the NavGrid are not used at the same time.
+ * @author Roi Atalla
+ */
+public class HierarchicalPathfinder implements NavGrid.Listener {
+	private final NavGrid grid;
+	private final int clusterSize;
+	private final int clustersX, clustersY;
+	
+	// Abstract nodes, recycled through a free list
+	private int[] nodeCell;
+	private int[] nodeRefs;
+	private int[][] edgeTo;
+	private float[][] edgeCost;
+	private int[] edgeCount;
+	private int nodeCapacity, freeNode = -1;
+	private final HashMap<Integer,Integer> nodeAt = new HashMap<>();
+	
+	// Pairs of entrance nodes per border: vertical borders are to the right of a cluster, horizontal ones below it
+	private final int[][] verticalBorders, horizontalBorders;
+	private final boolean[] dirtyVertical, dirtyHorizontal, dirtyClusters;
+	private boolean isDirty;
+	
+	/**
+	 * Initializes this object with clusters of 16x16 cells and builds the abstract graph.
+	 * @param grid The grid to search. This object listens to its changes.
+	 */
+	public HierarchicalPathfinder(NavGrid grid) {
+		this(grid,16);
+	}
+	
+	/**
+	 * Initializes this object and builds the abstract graph.
+	 * @param grid The grid to search. This object listens to its changes.
+	 * @param clusterSize The number of cells on each side of a cluster.
+	 */
+	public HierarchicalPathfinder(NavGrid grid, int clusterSize) {
+		if(clusterSize < 2)
+			throw new IllegalArgumentException("Cluster size must be at least 2.");
+		
+		this.grid = grid;
+		this.clusterSize = clusterSize;
+		
+		clustersX = (grid.getWidth() + clusterSize - 1) / clusterSize;
+		clustersY = (grid.getHeight() + clusterSize - 1) / clusterSize;
+		
+		nodeCapacity = 64;
+		nodeCell = new int[nodeCapacity];
+		nodeRefs = new int[nodeCapacity];
+		edgeTo = new int[nodeCapacity][];
+		edgeCost = new float[nodeCapacity][];
+		edgeCount = new int[nodeCapacity];
+		Arrays.fill(nodeCell,-1);
+		
+		verticalBorders = new int[clustersX * clustersY][];
+		horizontalBorders = new int[clustersX * clustersY][];
+		dirtyVertical = new boolean[clustersX * clustersY];
+		dirtyHorizontal = new boolean[clustersX * clustersY];
+		dirtyClusters = new boolean[clustersX * clustersY];
+		
+		Arrays.fill(dirtyVertical,true);
+		Arrays.fill(dirtyHorizontal,true);
+		isDirty = true;
+		
+		grid.addListener(this);
+		update();
+	}
+	
+	public NavGrid getGrid() {
+		return grid;
+	}
+	
+	public int getClusterSize() {
+		return clusterSize;
+	}
+	
+	/**
+	 * @return The number of nodes in the abstract graph.
+	 */
+	public int getNodeCount() {
+		return nodeAt.size();
+	}
+	
+	@Override
+	public void cellChanged(int x, int y) {
+		int cx = x / clusterSize, cy = y / clusterSize;
+		int c = cy * clustersX + cx;
+		
+		dirtyClusters[c] = true;
+		
+		if(x % clusterSize == clusterSize - 1 && cx < clustersX - 1)
+			dirtyVertical[c] = true;
+		if(x % clusterSize == 0 && cx > 0)
+			dirtyVertical[c - 1] = true;
+		if(y % clusterSize == clusterSize - 1 && cy < clustersY - 1)
+			dirtyHorizontal[c] = true;
+		if(y % clusterSize == 0 && cy > 0)
+			dirtyHorizontal[c - clustersX] = true;
+		
+		isDirty = true;
+	}
+	
+	/**
+	 * Stops listening to the NavGrid.
+	 */
+	public void dispose() {
+		grid.removeListener(this);
+	}
+	
+	/**
+	 * Rebuilds the borders and clusters affected by the cells that changed since the last update.
+	 * @param search The buffers used to compute the costs inside the clusters.
+	 */
+	public void update(PathSearch search) {
+		if(!isDirty)
+			return;
+		
+		for(int c = 0; c < dirtyVertical.length; c++) {
+			if(dirtyVertical[c]) {
+				rebuildBorder(c,true);
+				dirtyVertical[c] = false;
+			}
+			
+			if(dirtyHorizontal[c]) {
+				rebuildBorder(c,false);
+				dirtyHorizontal[c] = false;
+			}
+		}
+		
+		for(int c = 0; c < dirtyClusters.length; c++) {
+			if(dirtyClusters[c]) {
+				rebuildCluster(search,c);
+				dirtyClusters[c] = false;
+			}
+		}
+		
+		isDirty = false;
+	}
+	
+	/**
+	 * Rebuilds the borders and clusters affected by the cells that changed since the last update.
+	 */
+	public void update() {
+		if(isDirty)
+			update(new PathSearch());
+	}
+	
+	private void rebuildBorder(int c, boolean vertical) {
+		int cx = c % clustersX, cy = c / clustersX;
+		if(vertical ? cx == clustersX - 1 : cy == clustersY - 1)
+			return;
+		
+		int[] old = vertical ? verticalBorders[c] : horizontalBorders[c];
+		if(old != null) {
+			for(int a = 0; a < old.length; a += 2) {
+				removeEdge(old[a],old[a + 1]);
+				removeEdge(old[a + 1],old[a]);
+				release(old[a]);
+				release(old[a + 1]);
+			}
+		}
+		
+		// The cells on this cluster's side of the border, and the step across it
+		int x0, y0, stepX, stepY, length;
+		if(vertical) {
+			x0 = (cx + 1) * clusterSize - 1;
+			y0 = cy * clusterSize;
+			stepX = 0;
+			stepY = 1;
+			length = Math.min(clusterSize,grid.getHeight() - y0);
+		}
+		else {
+			x0 = cx * clusterSize;
+			y0 = (cy + 1) * clusterSize - 1;
+			stepX = 1;
+			stepY = 0;
+			length = Math.min(clusterSize,grid.getWidth() - x0);
+		}
+		
+		int acrossX = stepY, acrossY = stepX;
+		
+		int[] pairs = new int[4 * length];
+		int count = 0;
+		
+		// Each open stretch gets one entrance in its middle, or two at its ends if it is long
+		int start = -1;
+		for(int a = 0; a <= length; a++) {
+			boolean open = a < length && grid.isWalkable(x0 + a * stepX,y0 + a * stepY) &&
+					grid.isWalkable(x0 + a * stepX + acrossX,y0 + a * stepY + acrossY);
+			
+			if(open && start < 0)
+				start = a;
+			else if(!open && start >= 0) {
+				int end = a - 1;
+				
+				if(end - start + 1 >= 6) {
+					count = addEntrance(pairs,count,x0 + start * stepX,y0 + start * stepY,acrossX,acrossY);
+					count = addEntrance(pairs,count,x0 + end * stepX,y0 + end * stepY,acrossX,acrossY);
+				}
+				else {
+					int mid = (start + end) / 2;
+					count = addEntrance(pairs,count,x0 + mid * stepX,y0 + mid * stepY,acrossX,acrossY);
+				}
+				
+				start = -1;
+			}
+		}
+		
+		int[] border = Arrays.copyOf(pairs,count);
+		if(vertical)
+			verticalBorders[c] = border;
+		else
+			horizontalBorders[c] = border;
+		
+		dirtyClusters[c] = true;
+		dirtyClusters[vertical ? c + 1 : c + clustersX] = true;
+	}
+	
+	private int addEntrance(int[] pairs, int count, int x, int y, int acrossX, int acrossY) {
+		int a = acquire(y * grid.getWidth() + x);
+		int b = acquire((y + acrossY) * grid.getWidth() + x + acrossX);
+		
+		addEdge(a,b,1,true);
+		addEdge(b,a,1,true);
+		
+		pairs[count++] = a;
+		pairs[count++] = b;
+		return count;
+	}
+	
+	private int acquire(int cell) {
+		Integer existing = nodeAt.get(cell);
+		if(existing != null) {
+			nodeRefs[existing]++;
+			return existing;
+		}
+		
+		int node;
+		if(freeNode >= 0) {
+			node = freeNode;
+			freeNode = nodeRefs[node];
+		}
+		else {
+			node = nodeAt.size();
+			if(node == nodeCapacity) {
+				nodeCapacity *= 2;
+				nodeCell = Arrays.copyOf(nodeCell,nodeCapacity);
+				nodeRefs = Arrays.copyOf(nodeRefs,nodeCapacity);
+				edgeTo = Arrays.copyOf(edgeTo,nodeCapacity);
+				edgeCost = Arrays.copyOf(edgeCost,nodeCapacity);
+				edgeCount = Arrays.copyOf(edgeCount,nodeCapacity);
+			}
+		}
+		
+		nodeCell[node] = cell;
+		nodeRefs[node] = 1;
+		edgeCount[node] = 0;
+		if(edgeTo[node] == null) {
+			edgeTo[node] = new int[8];
+			edgeCost[node] = new float[8];
+		}
+		
+		nodeAt.put(cell,node);
+		return node;
+	}
+	
+	private void release(int node) {
+		if(--nodeRefs[node] > 0)
+			return;
+		
+		nodeAt.remove(nodeCell[node]);
+		nodeCell[node] = -1;
+		edgeCount[node] = 0;
+		
+		// A free node's refs hold the next free node
+		nodeRefs[node] = freeNode;
+		freeNode = node;
+	}
+	
+	private void addEdge(int from, int to, float cost, boolean inter) {
+		int n = edgeCount[from];
+		if(n == edgeTo[from].length) {
+			edgeTo[from] = Arrays.copyOf(edgeTo[from],n * 2);
+			edgeCost[from] = Arrays.copyOf(edgeCost[from],n * 2);
+		}
+		
+		// Crossing edges are marked by a negative cost
+		edgeTo[from][n] = to;
+		edgeCost[from][n] = inter ? -cost : cost;
+		edgeCount[from] = n + 1;
+	}
+	
+	private void removeEdge(int from, int to) {
+		int n = edgeCount[from];
+		int[] targets = edgeTo[from];
+		float[] costs = edgeCost[from];
+		
+		for(int a = 0; a < n; a++) {
+			if(targets[a] == to && costs[a] < 0) {
+				targets[a] = targets[n - 1];
+				costs[a] = costs[n - 1];
+				edgeCount[from] = n - 1;
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Collects the nodes of the cluster from its four borders into the array.
+	 * @return The number of nodes.
+	 */
+	private int getClusterNodes(int c, int[] out) {
+		int cx = c % clustersX, cy = c / clustersX;
+		int count = 0;
+		
+		count = collect(verticalBorders[c],0,out,count);
+		if(cx > 0)
+			count = collect(verticalBorders[c - 1],1,out,count);
+		count = collect(horizontalBorders[c],0,out,count);
+		if(cy > 0)
+			count = collect(horizontalBorders[c - clustersX],1,out,count);
+		
+		return count;
+	}
+	
+	private int collect(int[] border, int side, int[] out, int count) {
+		if(border == null)
+			return count;
+		
+		outer:
+		for(int a = side; a < border.length; a += 2) {
+			int node = border[a];
+			for(int b = 0; b < count; b++)
+				if(out[b] == node)
+					continue outer;
+			
+			out[count++] = node;
+		}
+		
+		return count;
+	}
+	
+	private int[] clusterNodes = new int[64];
+	
+	private void rebuildCluster(PathSearch search, int c) {
+		int cx = c % clustersX, cy = c / clustersX;
+		int minX = cx * clusterSize, minY = cy * clusterSize;
+		int maxX = Math.min(grid.getWidth(),minX + clusterSize), maxY = Math.min(grid.getHeight(),minY + clusterSize);
+		
+		if(clusterNodes.length < 8 * clusterSize)
+			clusterNodes = new int[8 * clusterSize];
+		
+		int count = getClusterNodes(c,clusterNodes);
+		
+		// Drop the old edges inside the cluster, keeping the crossing ones
+		for(int a = 0; a < count; a++) {
+			int node = clusterNodes[a];
+			int n = 0;
+			for(int e = 0; e < edgeCount[node]; e++) {
+				if(edgeCost[node][e] < 0) {
+					edgeTo[node][n] = edgeTo[node][e];
+					edgeCost[node][n] = edgeCost[node][e];
+					n++;
+				}
+			}
+			edgeCount[node] = n;
+		}
+		
+		int width = grid.getWidth();
+		for(int a = 0; a < count; a++) {
+			int from = clusterNodes[a];
+			search.flood(grid,minX,minY,maxX,maxY,nodeCell[from] % width,nodeCell[from] / width);
+			
+			for(int b = 0; b < count; b++) {
+				if(a == b)
+					continue;
+				
+				int to = clusterNodes[b];
+				float cost = search.getCost(nodeCell[to] % width,nodeCell[to] / width);
+				if(cost != Float.POSITIVE_INFINITY)
+					addEdge(from,to,cost,false);
+			}
+		}
+	}
+	
+	/**
+	 * Finds a path, first trying a search inside the cluster if both ends are in the same one.
+	 * The abstract graph must be up to date, see update.
+	 * @param search The buffers of the calling thread.
+	 * @return The path, or null if there is none.
+	 */
+	public Path findPath(PathSearch search, int startX, int startY, int goalX, int goalY) {
+		if(!grid.isWalkable(startX,startY) || !grid.isWalkable(goalX,goalY))
+			return null;
+		
+		int width = grid.getWidth();
+		int startCluster = (startY / clusterSize) * clustersX + startX / clusterSize;
+		int goalCluster = (goalY / clusterSize) * clustersX + goalX / clusterSize;
+		
+		if(startCluster == goalCluster) {
+			Path path = searchCluster(search,startCluster,startX,startY,goalX,goalY);
+			if(path != null)
+				return path;
+		}
+		
+		// Connect the start and the goal to the nodes of their clusters
+		search.reserveEndpoints(8 * clusterSize);
+		int[] startNodes = search.startNodes, goalNodes = search.goalNodes;
+		float[] startCosts = search.startCosts, goalCosts = search.goalCosts;
+		
+		int startCount = getClusterNodes(startCluster,startNodes);
+		int goalCount = getClusterNodes(goalCluster,goalNodes);
+		
+		connect(search,startCluster,startX,startY,startNodes,startCosts,startCount);
+		connect(search,goalCluster,goalX,goalY,goalNodes,goalCosts,goalCount);
+		
+		// Abstract A*, the start and the goal are the two ids after the nodes
+		int capacity = nodeCapacity;
+		int start = capacity, goal = capacity + 1;
+		
+		search.begin(capacity + 2);
+		search.push(start,0,PathSearch.octile(goalX - startX,goalY - startY),-1);
+		
+		int node;
+		while((node = search.poll()) >= 0 && node != goal) {
+			float cost = search.getCost(node);
+			
+			if(node == start) {
+				for(int a = 0; a < startCount; a++)
+					if(startCosts[a] != Float.POSITIVE_INFINITY)
+						pushNode(search,startNodes[a],cost + startCosts[a],node,goalX,goalY);
+				continue;
+			}
+			
+			for(int e = 0; e < edgeCount[node]; e++)
+				pushNode(search,edgeTo[node][e],cost + Math.abs(edgeCost[node][e]),node,goalX,goalY);
+			
+			for(int a = 0; a < goalCount; a++)
+				if(goalNodes[a] == node && goalCosts[a] != Float.POSITIVE_INFINITY)
+					search.push(goal,cost + goalCosts[a],0,node);
+		}
+		
+		if(node != goal)
+			return null;
+		
+		int length = 0;
+		for(int n = goal; n >= 0; n = search.getParent(n))
+			length++;
+		
+		int[] route = new int[length];
+		for(int n = goal, i = length - 1; n >= 0; n = search.getParent(n), i--)
+			route[i] = n == start ? startY * width + startX : n == goal ? goalY * width + goalX : nodeCell[n];
+		
+		return refine(search,route);
+	}
+	
+	private void pushNode(PathSearch search, int node, float cost, int from, int goalX, int goalY) {
+		int cell = nodeCell[node];
+		int width = grid.getWidth();
+		search.push(node,cost,PathSearch.octile(goalX - cell % width,goalY - cell / width),from);
+	}
+	
+	private void connect(PathSearch search, int c, int x, int y, int[] nodes, float[] costs, int count) {
+		int minX = (c % clustersX) * clusterSize, minY = (c / clustersX) * clusterSize;
+		search.flood(grid,minX,minY,Math.min(grid.getWidth(),minX + clusterSize),Math.min(grid.getHeight(),minY + clusterSize),x,y);
+		
+		int width = grid.getWidth();
+		for(int a = 0; a < count; a++)
+			costs[a] = search.getCost(nodeCell[nodes[a]] % width,nodeCell[nodes[a]] / width);
+	}
+	
+	private Path searchCluster(PathSearch search, int c, int startX, int startY, int goalX, int goalY) {
+		int minX = (c % clustersX) * clusterSize, minY = (c / clustersX) * clusterSize;
+		int maxX = Math.min(grid.getWidth(),minX + clusterSize), maxY = Math.min(grid.getHeight(),minY + clusterSize);
+		
+		if(!search.search(grid,minX,minY,maxX,maxY,startX,startY,goalX,goalY,false))
+			return null;
+		
+		return search.toPath(startX,startY,goalX,goalY);
+	}
+	
+	/**
+	 * Turns the route of abstract nodes into cells. Consecutive nodes are either neighbors across a border or in
+	 * the same cluster.
+	 */
+	private Path refine(PathSearch search, int[] route) {
+		int width = grid.getWidth();
+		
+		int[] xs = new int[64], ys = new int[64];
+		int count = 1;
+		float cost = 0;
+		xs[0] = route[0] % width;
+		ys[0] = route[0] / width;
+		
+		for(int a = 1; a < route.length; a++) {
+			int x = route[a] % width, y = route[a] / width;
+			int px = xs[count - 1], py = ys[count - 1];
+			
+			if(x == px && y == py)
+				continue;
+			
+			int c = (y / clusterSize) * clustersX + x / clusterSize;
+			int pc = (py / clusterSize) * clustersX + px / clusterSize;
+			
+			if(c != pc) {
+				if(count == xs.length) {
+					xs = Arrays.copyOf(xs,count * 2);
+					ys = Arrays.copyOf(ys,count * 2);
+				}
+				
+				xs[count] = x;
+				ys[count] = y;
+				count++;
+				cost += 1;
+				continue;
+			}
+			
+			Path segment = searchCluster(search,c,px,py,x,y);
+			if(segment == null)
+				throw new IllegalStateException("Abstract graph is out of date, call update first.");
+			
+			if(count + segment.size() > xs.length) {
+				xs = Arrays.copyOf(xs,Math.max(count * 2,count + segment.size()));
+				ys = Arrays.copyOf(ys,xs.length);
+			}
+			
+			for(int i = 1; i < segment.size(); i++) {
+				xs[count] = segment.getX(i);
+				ys[count] = segment.getY(i);
+				count++;
+			}
+			
+			cost += segment.getCost();
+		}
+		
+		return new Path(Arrays.copyOf(xs,count),Arrays.copyOf(ys,count),cost);
+	}
+}
\ No newline at end of file
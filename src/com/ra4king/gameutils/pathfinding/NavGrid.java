@@ -0,0 +1,119 @@
+package com.ra4king.gameutils.pathfinding;
+
+import java.util.ArrayList;
+
+import com.ra4king.gameutils.tiledmap.TiledMap;
+
+/**
+ * The walkable cells of a grid, stored as one bit per cell, that the pathfinders search.<br>
+ * Movement is 8-directional: straight steps cost 1 and diagonal steps cost sqrt(2). A diagonal step is only allowed
+ * when both cells it passes between are walkable, so paths never cut corners.<br>
+ * The game keeps the grid in sync with its map by calling setBlocked when a cell changes. The grid must not be
+ * modified while a search is running on another thread.
+ * @author Roi Atalla
+ */
+public class NavGrid {
+	private final int width, height;
+	private final long[] blocked;
+	private final ArrayList<Listener> listeners = new ArrayList<>();
+	
+	/**
+	 * Initializes this object with every cell walkable.
+	 * @param width The number of cells across.
+	 * @param height The number of cells down.
+	 */
+	public NavGrid(int width, int height) {
+		if(width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Width and height must be positive.");
+		
+		this.width = width;
+		this.height = height;
+		
+		blocked = new long[(int)(((long)width * height + 63) >> 6)];
+	}
+	
+	/**
+	 * Initializes this object with the size of the map and the blocked cells reported by the test.
+	 * @param map The map.
+	 * @param test Returns true for the cells that cannot be walked through.
+	 */
+	public NavGrid(TiledMap map, CellTest test) {
+		this(map.getCellXNum(),map.getCellYNum());
+		fill(test);
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return True if the cell is inside the grid and walkable.
+	 */
+	public boolean isWalkable(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			return false;
+		
+		int i = y * width + x;
+		return (blocked[i >> 6] & (1L << i)) == 0;
+	}
+	
+	/**
+	 * Blocks or unblocks the cell, notifying the listeners if it changed.
+	 * @param x The x cell coordinate.
+	 * @param y The y cell coordinate.
+	 * @param isBlocked True if the cell cannot be walked through.
+	 */
+	public void setBlocked(int x, int y, boolean isBlocked) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new IndexOutOfBoundsException("Cell out of bounds: " + x + "," + y);
+		
+		int i = y * width + x;
+		long bit = 1L << i;
+		
+		if(((blocked[i >> 6] & bit) != 0) == isBlocked)
+			return;
+		
+		blocked[i >> 6] ^= bit;
+		
+		for(Listener l : listeners)
+			l.cellChanged(x,y);
+	}
+	
+	/**
+	 * Sets every cell from the test.
+	 * @param test Returns true for the cells that cannot be walked through.
+	 */
+	public void fill(CellTest test) {
+		for(int y = 0; y < height; y++)
+			for(int x = 0; x < width; x++)
+				setBlocked(x,y,test.isBlocked(x,y));
+	}
+	
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Tells whether a cell is blocked.
+	 * @author Roi Atalla
+	 */
+	public interface CellTest {
+		boolean isBlocked(int x, int y);
+	}
+	
+	/**
+	 * Notified when a cell is blocked or unblocked.
+	 * @author Roi Atalla
+	 */
+	public interface Listener {
+		void cellChanged(int x, int y);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.ra4king.gameutils.pathfinding;
+
+/**
+ * A path through a NavGrid: every cell from the start to the goal, both included.
+ * @author Roi Atalla
+ */
+public class Path {
+	private final int[] xs, ys;
+	private final float cost;
+	
+	Path(int[] xs, int[] ys, float cost) {
+		this.xs = xs;
+		this.ys = ys;
+		this.cost = cost;
+	}
+	
+	/**
+	 * @return The number of cells.
+	 */
+	public int size() {
+		return xs.length;
+	}
+	
+	public int getX(int index) {
+		return xs[index];
+	}
+	
+	public int getY(int index) {
+		return ys[index];
+	}
+	
+	/**
+	 * @return The length of the path, 1 per straight step and sqrt(2) per diagonal step.
+	 */
+	public float getCost() {
+		return cost;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("Path[cost=").append(cost).append(':');
+		for(int a = 0; a < xs.length; a++)
+			s.append(" (").append(xs[a]).append(',').append(ys[a]).append(')');
+		return s.append(']').toString();
+	}
+}
\ No newline at end of file
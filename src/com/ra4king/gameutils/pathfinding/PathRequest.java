@@ -0,0 +1,44 @@
+package com.ra4king.gameutils.pathfinding;
+
+/**
+ * One query of a batch given to Pathfinder.findPaths. The path is set once the batch has completed.
+ * @author Roi Atalla
+ */
+public class PathRequest {
+	private final int startX, startY, goalX, goalY;
+	private volatile Path path;
+	
+	public PathRequest(int startX, int startY, int goalX, int goalY) {
+		this.startX = startX;
+		this.startY = startY;
+		this.goalX = goalX;
+		this.goalY = goalY;
+	}
+	
+	public int getStartX() {
+		return startX;
+	}
+	
+	public int getStartY() {
+		return startY;
+	}
+	
+	public int getGoalX() {
+		return goalX;
+	}
+	
+	public int getGoalY() {
+		return goalY;
+	}
+	
+	/**
+	 * @return The path found, or null if there is none or the batch has not completed.
+	 */
+	public Path getPath() {
+		return path;
+	}
+	
+	void setPath(Path path) {
+		this.path = path;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,450 @@
+package com.ra4king.gameutils.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * The buffers of one search thread: primitive arrays for the costs, parents and the binary heap of the open set,
+ * which are reused by every query instead of allocating node objects. A generation counter marks which entries
+ * belong to the current query, so nothing is cleared between queries.<br>
+ * A PathSearch must only be used by one thread at a time. The arrays grow to the largest area searched, which is the
+ * whole grid for A* and JPS but only one cluster for the searches of HierarchicalPathfinder.
+ * @author Roi Atalla
+ */
+public class PathSearch {
+	static final float SQRT2 = (float)Math.sqrt(2);
+	
+	private float[] g, f;
+	private int[] parent, heapIndex, seen, closed;
+	private int[] heap;
+	private int heapSize, generation;
+	
+	// The area of the current grid search
+	private NavGrid grid;
+	private int minX, minY, maxX, maxY, areaWidth;
+	private int goalX, goalY;
+	private boolean isFlooding;
+	
+	// The cluster nodes the start and the goal of a HierarchicalPathfinder query connect to, with their costs
+	int[] startNodes = new int[0], goalNodes = new int[0];
+	float[] startCosts = new float[0], goalCosts = new float[0];
+	
+	public PathSearch() {
+		allocate(256);
+	}
+	
+	private void allocate(int capacity) {
+		g = new float[capacity];
+		f = new float[capacity];
+		parent = new int[capacity];
+		heapIndex = new int[capacity];
+		seen = new int[capacity];
+		closed = new int[capacity];
+		heap = new int[capacity];
+		generation = 0;
+	}
+	
+	/**
+	 * Starts a search over node ids from 0 to capacity - 1.
+	 */
+	void begin(int capacity) {
+		if(capacity > g.length)
+			allocate(Math.max(capacity,g.length + (g.length >> 1)));
+		
+		if(++generation == Integer.MAX_VALUE) {
+			Arrays.fill(seen,0);
+			Arrays.fill(closed,0);
+			generation = 1;
+		}
+		
+		heapSize = 0;
+	}
+	
+	/**
+	 * Grows the endpoint buffers of HierarchicalPathfinder to hold the nodes of a cluster.
+	 */
+	void reserveEndpoints(int capacity) {
+		if(capacity > startNodes.length) {
+			startNodes = new int[capacity];
+			goalNodes = new int[capacity];
+			startCosts = new float[capacity];
+			goalCosts = new float[capacity];
+		}
+	}
+	
+	/**
+	 * Opens the node, or lowers its cost if it is already open with a higher one. Closed nodes are ignored.
+	 */
+	void push(int node, float cost, float estimate, int from) {
+		if(closed[node] == generation)
+			return;
+		
+		if(seen[node] != generation) {
+			seen[node] = generation;
+			g[node] = cost;
+			f[node] = cost + estimate;
+			parent[node] = from;
+			
+			heap[heapSize] = node;
+			heapIndex[node] = heapSize;
+			siftUp(heapSize++);
+		}
+		else if(cost < g[node]) {
+			f[node] += cost - g[node];
+			g[node] = cost;
+			parent[node] = from;
+			siftUp(heapIndex[node]);
+		}
+	}
+	
+	/**
+	 * Closes and returns the open node with the lowest estimate, or -1 if none are open.
+	 */
+	int poll() {
+		if(heapSize == 0)
+			return -1;
+		
+		int node = heap[0];
+		int last = heap[--heapSize];
+		if(heapSize > 0) {
+			heap[0] = last;
+			heapIndex[last] = 0;
+			siftDown(0);
+		}
+		
+		closed[node] = generation;
+		return node;
+	}
+	
+	boolean isClosed(int node) {
+		return closed[node] == generation;
+	}
+	
+	/**
+	 * @return The cost of the node, or infinity if it was not reached.
+	 */
+	float getCost(int node) {
+		return seen[node] == generation ? g[node] : Float.POSITIVE_INFINITY;
+	}
+	
+	int getParent(int node) {
+		return parent[node];
+	}
+	
+	private void siftUp(int i) {
+		int node = heap[i];
+		float key = f[node];
+		
+		while(i > 0) {
+			int p = (i - 1) >> 1;
+			if(f[heap[p]] <= key)
+				break;
+			
+			heap[i] = heap[p];
+			heapIndex[heap[i]] = i;
+			i = p;
+		}
+		
+		heap[i] = node;
+		heapIndex[node] = i;
+	}
+	
+	private void siftDown(int i) {
+		int node = heap[i];
+		float key = f[node];
+		
+		while(true) {
+			int c = 2 * i + 1;
+			if(c >= heapSize)
+				break;
+			
+			if(c + 1 < heapSize && f[heap[c + 1]] < f[heap[c]])
+				c++;
+			
+			if(f[heap[c]] >= key)
+				break;
+			
+			heap[i] = heap[c];
+			heapIndex[heap[i]] = i;
+			i = c;
+		}
+		
+		heap[i] = node;
+		heapIndex[node] = i;
+	}
+	
+	static float octile(int dx, int dy) {
+		dx = Math.abs(dx);
+		dy = Math.abs(dy);
+		return dx < dy ? dy + (SQRT2 - 1) * dx : dx + (SQRT2 - 1) * dy;
+	}
+	
+	/**
+	 * Finds the shortest path with A*.
+	 * @return The path, or null if there is none.
+	 */
+	public Path findPath(NavGrid grid, int startX, int startY, int goalX, int goalY) {
+		return findPath(grid,startX,startY,goalX,goalY,false);
+	}
+	
+	/**
+	 * Finds the shortest path with Jump Point Search, which only opens the cells where the path may turn. It returns
+	 * a path of the same cost as A* but is much faster on open maps.
+	 * @return The path, or null if there is none.
+	 */
+	public Path findPathJPS(NavGrid grid, int startX, int startY, int goalX, int goalY) {
+		return findPath(grid,startX,startY,goalX,goalY,true);
+	}
+	
+	private Path findPath(NavGrid grid, int startX, int startY, int goalX, int goalY, boolean jps) {
+		if(!search(grid,0,0,grid.getWidth(),grid.getHeight(),startX,startY,goalX,goalY,jps))
+			return null;
+		
+		return toPath(startX,startY,goalX,goalY);
+	}
+	
+	/**
+	 * Runs A* or JPS inside the area, with node ids local to the area.
+	 * @return True if the goal was reached.
+	 */
+	boolean search(NavGrid grid, int minX, int minY, int maxX, int maxY, int startX, int startY, int goalX, int goalY, boolean jps) {
+		this.grid = grid;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.goalX = goalX;
+		this.goalY = goalY;
+		isFlooding = false;
+		areaWidth = maxX - minX;
+		
+		if(!isWalkable(startX,startY) || !isWalkable(goalX,goalY))
+			return false;
+		
+		begin(areaWidth * (maxY - minY));
+		
+		int goal = index(goalX,goalY);
+		push(index(startX,startY),0,octile(goalX - startX,goalY - startY),-1);
+		
+		int node;
+		while((node = poll()) >= 0) {
+			if(node == goal)
+				return true;
+			
+			int x = node % areaWidth + minX, y = node / areaWidth + minY;
+			
+			if(jps)
+				expandJump(node,x,y);
+			else
+				expand(node,x,y);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Runs Dijkstra from the start over the whole area. The cost of any cell is then read with getCost(x, y).
+	 */
+	void flood(NavGrid grid, int minX, int minY, int maxX, int maxY, int startX, int startY) {
+		this.grid = grid;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		isFlooding = true;
+		areaWidth = maxX - minX;
+		
+		begin(areaWidth * (maxY - minY));
+		
+		if(!isWalkable(startX,startY))
+			return;
+		
+		push(index(startX,startY),0,0,-1);
+		
+		int node;
+		while((node = poll()) >= 0)
+			expand(node,node % areaWidth + minX,node / areaWidth + minY);
+	}
+	
+	/**
+	 * @return The cost of the cell in the last search or flood, or infinity if it was not reached.
+	 */
+	float getCost(int x, int y) {
+		if(x < minX || x >= maxX || y < minY || y >= maxY)
+			return Float.POSITIVE_INFINITY;
+		
+		return getCost(index(x,y));
+	}
+	
+	private int index(int x, int y) {
+		return (y - minY) * areaWidth + (x - minX);
+	}
+	
+	private boolean isWalkable(int x, int y) {
+		return x >= minX && x < maxX && y >= minY && y < maxY && grid.isWalkable(x,y);
+	}
+	
+	private float estimate(int x, int y) {
+		return isFlooding ? 0 : octile(goalX - x,goalY - y);
+	}
+	
+	private void expand(int node, int x, int y) {
+		float cost = g[node];
+		
+		for(int dx = -1; dx <= 1; dx++) {
+			for(int dy = -1; dy <= 1; dy++) {
+				if(dx == 0 && dy == 0)
+					continue;
+				
+				int nx = x + dx, ny = y + dy;
+				if(!isWalkable(nx,ny))
+					continue;
+				
+				if(dx != 0 && dy != 0) {
+					if(!isWalkable(nx,y) || !isWalkable(x,ny))
+						continue;
+					
+					push(index(nx,ny),cost + SQRT2,estimate(nx,ny),node);
+				}
+				else
+					push(index(nx,ny),cost + 1,estimate(nx,ny),node);
+			}
+		}
+	}
+	
+	private void expandJump(int node, int x, int y) {
+		int p = parent[node];
+		
+		if(p < 0) {
+			for(int dx = -1; dx <= 1; dx++)
+				for(int dy = -1; dy <= 1; dy++)
+					if((dx != 0 || dy != 0) && (dx == 0 || dy == 0 || (isWalkable(x + dx,y) && isWalkable(x,y + dy))))
+						jump(node,x,y,dx,dy);
+			return;
+		}
+		
+		int dx = Integer.signum(x - (p % areaWidth + minX));
+		int dy = Integer.signum(y - (p / areaWidth + minY));
+		
+		if(dx != 0 && dy != 0) {
+			boolean vertical = isWalkable(x,y + dy), horizontal = isWalkable(x + dx,y);
+			
+			if(vertical)
+				jump(node,x,y,0,dy);
+			if(horizontal)
+				jump(node,x,y,dx,0);
+			if(vertical && horizontal)
+				jump(node,x,y,dx,dy);
+		}
+		else if(dx != 0) {
+			boolean next = isWalkable(x + dx,y), up = isWalkable(x,y - 1), down = isWalkable(x,y + 1);
+			
+			if(next) {
+				jump(node,x,y,dx,0);
+				if(up)
+					jump(node,x,y,dx,-1);
+				if(down)
+					jump(node,x,y,dx,1);
+			}
+			
+			if(up)
+				jump(node,x,y,0,-1);
+			if(down)
+				jump(node,x,y,0,1);
+		}
+		else {
+			boolean next = isWalkable(x,y + dy), left = isWalkable(x - 1,y), right = isWalkable(x + 1,y);
+			
+			if(next) {
+				jump(node,x,y,0,dy);
+				if(left)
+					jump(node,x,y,-1,dy);
+				if(right)
+					jump(node,x,y,1,dy);
+			}
+			
+			if(left)
+				jump(node,x,y,-1,0);
+			if(right)
+				jump(node,x,y,1,0);
+		}
+	}
+	
+	private void jump(int node, int x, int y, int dx, int dy) {
+		int point = findJumpPoint(x + dx,y + dy,dx,dy);
+		if(point < 0)
+			return;
+		
+		int jx = point % areaWidth + minX, jy = point / areaWidth + minY;
+		push(point,g[node] + octile(jx - x,jy - y),octile(goalX - jx,goalY - jy),node);
+	}
+	
+	/**
+	 * Walks from the cell in the direction until reaching the goal, a cell with a forced neighbor, or a wall.
+	 * @return The node id of the jump point, or -1 if there is none.
+	 */
+	private int findJumpPoint(int x, int y, int dx, int dy) {
+		while(true) {
+			if(!isWalkable(x,y))
+				return -1;
+			
+			if(x == goalX && y == goalY)
+				return index(x,y);
+			
+			if(dx != 0 && dy != 0) {
+				// A diagonal move stops where a straight move from it would find a jump point
+				if(findJumpPoint(x + dx,y,dx,0) >= 0 || findJumpPoint(x,y + dy,0,dy) >= 0)
+					return index(x,y);
+				
+				if(!isWalkable(x + dx,y) || !isWalkable(x,y + dy))
+					return -1;
+			}
+			else {
+				if(dx != 0) {
+					if((isWalkable(x,y - 1) && !isWalkable(x - dx,y - 1)) || (isWalkable(x,y + 1) && !isWalkable(x - dx,y + 1)))
+						return index(x,y);
+				}
+				else if((isWalkable(x - 1,y) && !isWalkable(x - 1,y - dy)) || (isWalkable(x + 1,y) && !isWalkable(x + 1,y - dy)))
+					return index(x,y);
+			}
+			
+			x += dx;
+			y += dy;
+		}
+	}
+	
+	/**
+	 * Builds the path of the last search by walking the parents back from the goal and filling in the straight or
+	 * diagonal lines between jump points.
+	 */
+	Path toPath(int startX, int startY, int goalX, int goalY) {
+		int goal = index(goalX,goalY);
+		
+		int count = 1;
+		for(int node = goal; parent[node] >= 0; node = parent[node]) {
+			int p = parent[node];
+			count += Math.max(Math.abs(node % areaWidth - p % areaWidth),Math.abs(node / areaWidth - p / areaWidth));
+		}
+		
+		int[] xs = new int[count], ys = new int[count];
+		int i = count - 1;
+		xs[i] = goalX;
+		ys[i] = goalY;
+		
+		for(int node = goal; parent[node] >= 0; node = parent[node]) {
+			int p = parent[node];
+			int px = p % areaWidth + minX, py = p / areaWidth + minY;
+			int x = node % areaWidth + minX, y = node / areaWidth + minY;
+			int dx = Integer.signum(px - x), dy = Integer.signum(py - y);
+			
+			while(x != px || y != py) {
+				x += dx;
+				y += dy;
+				i--;
+				xs[i] = x;
+				ys[i] = y;
+			}
+		}
+		
+		return new Path(xs,ys,g[goal]);
+	}
+}
\ No newline at end of file
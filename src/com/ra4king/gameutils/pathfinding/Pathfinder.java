@@ -0,0 +1,195 @@
+package com.ra4king.gameutils.pathfinding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds paths through a NavGrid, one at a time on the calling thread or in batches on a pool of worker threads.<br>
+ * Every thread keeps its own PathSearch, so queries do not allocate search buffers. The NavGrid must not be modified
+ * while a query or batch is running.
+ * @author Roi Atalla
+ */
+public class Pathfinder {
+	/**
+	 * The search algorithm.
+	 * @author Roi Atalla
+	 */
+	public enum Algorithm {
+		/**
+		 * Plain A*, optimal.
+		 */
+		ASTAR,
+		/**
+		 * Jump Point Search, optimal and usually much faster than A* on open maps.
+		 */
+		JPS,
+		/**
+		 * HierarchicalPathfinder, near optimal and the fastest on large maps.
+		 */
+		HIERARCHICAL
+	}
+	
+	private final NavGrid grid;
+	private final Algorithm algorithm;
+	private final HierarchicalPathfinder hierarchical;
+	private final int threads;
+	private ExecutorService executor;
+	
+	private final ThreadLocal<PathSearch> searches = new ThreadLocal<PathSearch>() {
+		@Override
+		protected PathSearch initialValue() {
+			return new PathSearch();
+		}
+	};
+	
+	/**
+	 * Initializes this object with one worker thread per processor.
+	 * @param grid The grid to search.
+	 * @param algorithm The search algorithm.
+	 */
+	public Pathfinder(NavGrid grid, Algorithm algorithm) {
+		this(grid,algorithm,Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Initializes this object.
+	 * @param grid The grid to search.
+	 * @param algorithm The search algorithm.
+	 * @param threads The number of worker threads used by findPaths, created when first needed.
+	 */
+	public Pathfinder(NavGrid grid, Algorithm algorithm, int threads) {
+		if(threads <= 0)
+			throw new IllegalArgumentException("Threads must be positive.");
+		
+		this.grid = grid;
+		this.algorithm = algorithm;
+		this.threads = threads;
+		
+		hierarchical = algorithm == Algorithm.HIERARCHICAL ? new HierarchicalPathfinder(grid) : null;
+	}
+	
+	public NavGrid getGrid() {
+		return grid;
+	}
+	
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+	
+	/**
+	 * @return The HierarchicalPathfinder, or null if the algorithm is not HIERARCHICAL.
+	 */
+	public HierarchicalPathfinder getHierarchicalPathfinder() {
+		return hierarchical;
+	}
+	
+	/**
+	 * Finds a path on the calling thread.
+	 * @return The path, or null if there is none.
+	 */
+	public Path findPath(int startX, int startY, int goalX, int goalY) {
+		PathSearch search = searches.get();
+		
+		if(hierarchical != null)
+			hierarchical.update(search);
+		
+		return find(search,startX,startY,goalX,goalY);
+	}
+	
+	private Path find(PathSearch search, int startX, int startY, int goalX, int goalY) {
+		switch(algorithm) {
+			case ASTAR:
+				return search.findPath(grid,startX,startY,goalX,goalY);
+			case JPS:
+				return search.findPathJPS(grid,startX,startY,goalX,goalY);
+			default:
+				return hierarchical.findPath(search,startX,startY,goalX,goalY);
+		}
+	}
+	
+	/**
+	 * Finds the paths of all the requests on the worker threads and blocks until they are done.
+	 * @param requests The requests, whose paths are set when this method returns.
+	 */
+	public void findPaths(final List<PathRequest> requests) {
+		if(requests.isEmpty())
+			return;
+		
+		if(hierarchical != null)
+			hierarchical.update(searches.get());
+		
+		int workers = Math.min(threads,requests.size());
+		if(workers == 1) {
+			PathSearch search = searches.get();
+			for(PathRequest r : requests)
+				r.setPath(find(search,r.getStartX(),r.getStartY(),r.getGoalX(),r.getGoalY()));
+			return;
+		}
+		
+		synchronized(this) {
+			if(executor == null) {
+				executor = Executors.newFixedThreadPool(threads,new ThreadFactory() {
+					private int count;
+					
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r,"Pathfinder Worker " + (count++));
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			}
+		}
+		
+		// Workers take the next request from a shared counter, so a few long queries do not hold up the batch
+		final AtomicInteger next = new AtomicInteger();
+		ArrayList<Callable<Void>> tasks = new ArrayList<>(workers);
+		for(int a = 0; a < workers; a++) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					PathSearch search = searches.get();
+					
+					int i;
+					while((i = next.getAndIncrement()) < requests.size()) {
+						PathRequest r = requests.get(i);
+						r.setPath(find(search,r.getStartX(),r.getStartY(),r.getGoalX(),r.getGoalY()));
+					}
+					
+					return null;
+				}
+			});
+		}
+		
+		try{
+			for(Future<Void> f : executor.invokeAll(tasks))
+				f.get();
+		}
+		catch(InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException exc) {
+			throw new IllegalStateException("Error finding paths.",exc.getCause());
+		}
+	}
+	
+	/**
+	 * Shuts down the worker threads and stops listening to the NavGrid.
+	 */
+	public synchronized void close() {
+		if(executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		
+		if(hierarchical != null)
+			hierarchical.dispose();
+	}
+}
\ No newline at end of file
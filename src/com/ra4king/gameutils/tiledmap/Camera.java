@@ -9,6 +9,19 @@ public class Camera {
 		screenHeight = height;
 	}
 	
+	public int getScreenWidth() {
+		return screenWidth;
+	}
+	
+	public int getScreenHeight() {
+		return screenHeight;
+	}
+	
+	public void setScreenSize(int width, int height) {
+		screenWidth = width;
+		screenHeight = height;
+	}
+	
 	public void centerAt(int x, int y) {
 		xOffset = -x+screenWidth/2;
 		yOffset = -y+screenHeight/2;
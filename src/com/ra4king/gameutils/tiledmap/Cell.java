@@ -6,11 +6,22 @@ import java.awt.Rectangle;
 import com.ra4king.gameutils.Element;
 import com.ra4king.gameutils.Screen;
 
+/**
+ * An element of a TiledMap with its own state.<br>
+ * Cells start awake and are updated every frame until they sleep. A Cell that is inert most of the time should sleep,
+ * in its constructor if it starts inert, and be woken by a timer, by a neighbor or by game code.
+ * @author Roi Atalla
+ */
 public abstract class Cell implements Element {
 	private TiledMap parent;
 	private int x, y;
 	private Rectangle bounds;
 	
+	// The scheduling state, managed by TiledMap
+	boolean sleeping, timed;
+	long wakeTime;
+	int activeIndex = -1, timerIndex = -1;
+	
 	public Cell() {
 		bounds = new Rectangle();
 	}
@@ -29,6 +40,87 @@ public abstract class Cell implements Element {
 		return parent;
 	}
 	
+	/**
+	 * Called by TiledMap.set to store the location without moving the Cell in the map again.
+	 */
+	void place(TiledMap parent, int x, int y) {
+		this.parent = parent;
+		this.x = x;
+		this.y = y;
+	}
+	
+	/**
+	 * A static Cell always looks the same, so TiledMap draws it once into a cached image of its chunk instead of
+	 * calling draw every frame. It must only draw inside its bounds, which are clipped to the map's area, and must
+	 * call markDirty when its appearance changes. The value must not change while the Cell is in a TiledMap.
+	 * @return False by default, true if this Cell is static.
+	 */
+	public boolean isStatic() {
+		return false;
+	}
+	
+	/**
+	 * Tells the parent that this static Cell's appearance changed, so its chunk is drawn again.
+	 */
+	public void markDirty() {
+		if(parent != null)
+			parent.invalidate(x,y);
+	}
+	
+	public boolean isSleeping() {
+		return sleeping;
+	}
+	
+	/**
+	 * Stops calling update until wake is called.
+	 */
+	public void sleep() {
+		sleep(-1);
+	}
+	
+	/**
+	 * Stops calling update until the time passes or wake is called.
+	 * @param millis The time in milliseconds, measured by the deltaTime passed to TiledMap.update, or -1 to sleep until
+	 * woken up.
+	 */
+	public void sleep(long millis) {
+		sleeping = true;
+		
+		if(parent != null)
+			parent.schedule(this,millis);
+		else {
+			timed = millis >= 0;
+			wakeTime = millis;
+		}
+	}
+	
+	/**
+	 * Resumes calling update every frame.
+	 */
+	public void wake() {
+		sleeping = timed = false;
+		
+		if(parent != null)
+			parent.activate(this);
+	}
+	
+	/**
+	 * Called by TiledMap.notifyNeighbors when the adjacent location changed. Wakes this Cell by default.
+	 * @param x The x cell coordinate of the location that changed.
+	 * @param y The y cell coordinate of the location that changed.
+	 */
+	public void neighborChanged(int x, int y) {
+		wake();
+	}
+	
+	/**
+	 * Calls neighborChanged on the up to 8 Cells around this one.
+	 */
+	public void notifyNeighbors() {
+		if(parent != null)
+			parent.notifyNeighbors(x,y);
+	}
+	
 	public int getCellX() {
 		return x;
 	}
@@ -0,0 +1,126 @@
+package com.ra4king.gameutils.tiledmap;
+
+/**
+ * The tiles and Cells of one chunk while it is outside a TiledMap: filled in by a ChunkGenerator or a ChunkStore when
+ * it is loaded, and taken out of the map when it is unloaded.<br>
+ * Locations are local to the chunk, from 0 to getWidth() - 1 and getHeight() - 1. Chunks on the right and bottom
+ * edges of the map are smaller than CHUNK_SIZE.
+ * @author Roi Atalla
+ */
+public class ChunkData {
+	private final int chunkX, chunkY;
+	private final int width, height;
+	
+	// Column by column, like the chunks of TiledMap, and only allocated while they hold something
+	short[] tiles;
+	Cell[] cells;
+	boolean isGenerated;
+	
+	ChunkData(int chunkX, int chunkY, int width, int height) {
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		this.width = width;
+		this.height = height;
+	}
+	
+	public int getChunkX() {
+		return chunkX;
+	}
+	
+	public int getChunkY() {
+		return chunkY;
+	}
+	
+	/**
+	 * @return The x cell coordinate of the chunk's left column in the map.
+	 */
+	public int getLeft() {
+		return chunkX * TiledMap.CHUNK_SIZE;
+	}
+	
+	/**
+	 * @return The y cell coordinate of the chunk's top row in the map.
+	 */
+	public int getTop() {
+		return chunkY * TiledMap.CHUNK_SIZE;
+	}
+	
+	/**
+	 * @return The number of columns of the chunk inside the map.
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * @return The number of rows of the chunk inside the map.
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return True if the chunk holds no tiles and no Cells.
+	 */
+	public boolean isEmpty() {
+		return tiles == null && cells == null;
+	}
+	
+	private int index(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new IndexOutOfBoundsException("Cell out of bounds: " + x + "," + y);
+		
+		return (x * TiledMap.CHUNK_SIZE) + y;
+	}
+	
+	/**
+	 * @return The id of the tile at the location, or 0 if there is none.
+	 */
+	public int getTileId(int x, int y) {
+		int i = index(x,y);
+		return tiles == null ? 0 : tiles[i] & 0xFFFF;
+	}
+	
+	/**
+	 * Sets the tile at the location. Ids are checked against the TileTypes registered with the map when the chunk is
+	 * loaded into it.
+	 * @param id The id returned by TiledMap.registerTileType, or 0 to clear the tile.
+	 */
+	public void setTile(int x, int y, int id) {
+		int i = index(x,y);
+		
+		if(id < 0 || id > 0xFFFF)
+			throw new IllegalArgumentException("Invalid tile type id: " + id);
+		
+		if(tiles == null) {
+			if(id == 0)
+				return;
+			
+			tiles = new short[TiledMap.CHUNK_SIZE * TiledMap.CHUNK_SIZE];
+		}
+		
+		tiles[i] = (short)id;
+	}
+	
+	public Cell getCell(int x, int y) {
+		int i = index(x,y);
+		return cells == null ? null : cells[i];
+	}
+	
+	/**
+	 * Sets the Cell at the location. It is added to the map, and initialized, when the chunk is loaded.
+	 * @param e The Cell, or null to clear the location.
+	 */
+	public void setCell(int x, int y, Cell e) {
+		int i = index(x,y);
+		
+		if(cells == null) {
+			if(e == null)
+				return;
+			
+			cells = new Cell[TiledMap.CHUNK_SIZE * TiledMap.CHUNK_SIZE];
+		}
+		
+		cells[i] = e;
+	}
+}
\ No newline at end of file
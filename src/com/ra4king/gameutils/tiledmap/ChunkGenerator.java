@@ -0,0 +1,14 @@
+package com.ra4king.gameutils.tiledmap;
+
+/**
+ * Creates the content of the chunks of a streamed TiledMap that were never saved.
+ * @author Roi Atalla
+ */
+public interface ChunkGenerator {
+	/**
+	 * Fills in a new chunk. Called on a background thread, so it must not use the map except to read the TileTypes
+	 * registered before streaming started.
+	 * @param data The empty chunk to fill in.
+	 */
+	void generate(ChunkData data);
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.ra4king.gameutils.tiledmap;
+
+import java.io.IOException;
+
+/**
+ * Saves the chunks of a streamed TiledMap when they are unloaded and loads them back when they are needed again.<br>
+ * Both methods are called on background threads, possibly several at once for different chunks, but never at once
+ * for the same chunk.
+ * @author Roi Atalla
+ */
+public interface ChunkStore {
+	/**
+	 * Fills in the chunk if it was saved.
+	 * @param data The empty chunk to fill in.
+	 * @return True if the chunk was saved before, false if it must be generated.
+	 */
+	boolean load(ChunkData data) throws IOException;
+	
+	/**
+	 * Saves the chunk, replacing any saved version of it.
+	 * @param data The chunk, which may be empty.
+	 */
+	void save(ChunkData data) throws IOException;
+}
\ No newline at end of file
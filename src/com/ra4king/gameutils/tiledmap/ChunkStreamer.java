@@ -0,0 +1,450 @@
+package com.ra4king.gameutils.tiledmap;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Streams the chunks of a TiledMap in and out around its Camera, so only the area near the view is kept in memory.<br>
+ * Each update, the chunks within the residency radius of the visible chunks that are not loaded yet are requested.
+ * They are loaded from the ChunkStore, or created by the ChunkGenerator if they were never saved, on background threads
+ * and added to the map on the game thread once ready. Chunks that move out of the radius are taken out of the map and,
+ * if they were generated, modified or hold Cells, saved to the ChunkStore on a background thread. Without a ChunkStore they are
+ * discarded and generated again the next time they are needed.<br>
+ * Reading an unloaded chunk returns nothing. Writing to it requests it and queues the write, which is applied on the
+ * game thread once the chunk is added to the map, so the game loop never waits on the ChunkStore.<br>
+ * Cells of unloaded chunks are not updated. They keep their remaining sleep time, and the game must not change them
+ * while they are being saved.
+ * @author Roi Atalla
+ */
+public class ChunkStreamer {
+	private static final byte LOADED = 1, MODIFIED = 2;
+	
+	private final ChunkStore store;
+	private final ChunkGenerator generator;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	
+	private TiledMap map;
+	private int xChunks, yChunks;
+	private byte[] states;
+	private int[] loaded = new int[64];
+	private int loadedCount;
+	private final HashMap<Integer,CompletableFuture<ChunkData>> loading = new HashMap<>();
+	private final HashMap<Integer,CompletableFuture<Void>> saving = new HashMap<>();
+	private final HashMap<Integer,ArrayList<Runnable>> edits = new HashMap<>();
+	private int[] installed = new int[16];
+	private long[] order = new long[64];
+	
+	private int residencyRadius = 2;
+	private int maxLoadedChunks;
+	private boolean saveGenerated = true;
+	private final Rectangle visible = new Rectangle();
+	
+	/**
+	 * Initializes this object with one worker thread less than the number of processors.
+	 * @param store The store chunks are saved to and loaded from, or null to discard unloaded chunks.
+	 * @param generator The generator of chunks that were never saved, or null to start them empty.
+	 */
+	public ChunkStreamer(ChunkStore store, ChunkGenerator generator) {
+		this(store,generator,null);
+	}
+	
+	/**
+	 * Initializes this object.
+	 * @param store The store chunks are saved to and loaded from, or null to discard unloaded chunks.
+	 * @param generator The generator of chunks that were never saved, or null to start them empty.
+	 * @param executor The ExecutorService chunks are loaded, generated and saved on. It is not shut down by close. If
+	 *            null, a pool of daemon threads is created.
+	 */
+	public ChunkStreamer(ChunkStore store, ChunkGenerator generator, ExecutorService executor) {
+		this.store = store;
+		this.generator = generator;
+		
+		ownsExecutor = executor == null;
+		if(executor == null) {
+			executor = Executors.newFixedThreadPool(Math.max(1,Runtime.getRuntime().availableProcessors() - 1),new ThreadFactory() {
+				private int count;
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r,"Chunk Streamer Worker " + (count++));
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		
+		this.executor = executor;
+	}
+	
+	public TiledMap getMap() {
+		return map;
+	}
+	
+	public int getResidencyRadius() {
+		return residencyRadius;
+	}
+	
+	/**
+	 * Sets how far around the visible chunks chunks are kept loaded. Chunks are unloaded one chunk further out, so
+	 * moving back and forth across a border does not load and unload the same chunks.
+	 * @param residencyRadius The number of chunks kept on each side of the visible ones.
+	 */
+	public void setResidencyRadius(int residencyRadius) {
+		if(residencyRadius < 0)
+			throw new IllegalArgumentException("Residency radius cannot be negative.");
+		
+		this.residencyRadius = residencyRadius;
+	}
+	
+	public int getMaxLoadedChunks() {
+		return maxLoadedChunks;
+	}
+	
+	/**
+	 * Caps the number of loaded chunks, which bounds the memory used by the map: each chunk takes about 2KB for its
+	 * tiles and 4KB plus its Cells if it has any. When there are more, the chunks furthest from the view are unloaded
+	 * first and chunks that are not visible are not requested. Visible chunks are always loaded.
+	 * @param maxLoadedChunks The maximum number of loaded chunks, or 0 to only use the residency radius.
+	 */
+	public void setMaxLoadedChunks(int maxLoadedChunks) {
+		if(maxLoadedChunks < 0)
+			throw new IllegalArgumentException("Max loaded chunks cannot be negative.");
+		
+		this.maxLoadedChunks = maxLoadedChunks;
+	}
+	
+	public boolean isSavingGenerated() {
+		return saveGenerated;
+	}
+	
+	/**
+	 * Sets whether chunks created by the ChunkGenerator are saved when unloaded even if they were not modified. A
+	 * generator that always creates the same content for a chunk, from a seed for example, does not need them saved.
+	 * @param saveGenerated True by default, false to only save generated chunks that were modified or hold Cells.
+	 */
+	public void setSavingGenerated(boolean saveGenerated) {
+		this.saveGenerated = saveGenerated;
+	}
+	
+	/**
+	 * @return The number of chunks in the map.
+	 */
+	public int getLoadedChunkCount() {
+		return loadedCount;
+	}
+	
+	/**
+	 * @return The number of chunks being loaded or generated.
+	 */
+	public int getLoadingChunkCount() {
+		return loading.size();
+	}
+	
+	/**
+	 * @param chunkX The x chunk coordinate, the x cell coordinate divided by CHUNK_SIZE.
+	 * @param chunkY The y chunk coordinate, the y cell coordinate divided by CHUNK_SIZE.
+	 * @return True if the chunk is in the map.
+	 */
+	public boolean isLoaded(int chunkX, int chunkY) {
+		return map != null && (states[chunkX * yChunks + chunkY] & LOADED) != 0;
+	}
+	
+	/**
+	 * Called by TiledMap.setChunkStreamer. The chunks the map already has are considered loaded and modified.
+	 */
+	void attach(TiledMap map, int xChunks, int yChunks) {
+		if(this.map != null)
+			throw new IllegalStateException("ChunkStreamer is already used by a TiledMap.");
+		
+		this.map = map;
+		this.xChunks = xChunks;
+		this.yChunks = yChunks;
+		
+		states = new byte[xChunks * yChunks];
+		
+		for(int c = 0; c < states.length; c++)
+			if(map.hasChunk(c))
+				addLoaded(c,true);
+	}
+	
+	/**
+	 * Called by TiledMap.setChunkStreamer. The chunks that are loaded stay in the map, and the queued writes are
+	 * applied first, waiting for their chunks to load.
+	 */
+	void detach() {
+		applyAllEdits();
+		
+		for(CompletableFuture<ChunkData> future : loading.values())
+			future.cancel(false);
+		loading.clear();
+		
+		map = null;
+		states = null;
+		loadedCount = 0;
+	}
+	
+	private void addLoaded(int c, boolean isModified) {
+		if(loadedCount == loaded.length)
+			loaded = Arrays.copyOf(loaded,loadedCount * 2);
+		
+		loaded[loadedCount++] = c;
+		states[c] = isModified ? LOADED | MODIFIED : LOADED;
+	}
+	
+	/**
+	 * Called by TiledMap before the chunk is written to.
+	 * @return True if the chunk is loaded. If not, it is requested and the write must be passed to defer.
+	 */
+	boolean modify(int c) {
+		if((states[c] & LOADED) == 0) {
+			if(!loading.containsKey(c))
+				loading.put(c,request(c));
+			
+			return false;
+		}
+		
+		states[c] |= MODIFIED;
+		return true;
+	}
+	
+	/**
+	 * Called by TiledMap to queue a write to a chunk that is not loaded yet. Writes are applied in order once the
+	 * chunk is added to the map.
+	 */
+	void defer(int c, Runnable edit) {
+		ArrayList<Runnable> list = edits.get(c);
+		if(list == null)
+			edits.put(c,list = new ArrayList<>());
+		
+		list.add(edit);
+	}
+	
+	private void applyEdits(int c) {
+		ArrayList<Runnable> list = edits.remove(c);
+		if(list == null)
+			return;
+		
+		for(Runnable edit : list) {
+			try{
+				edit.run();
+			}
+			catch(Exception exc) {
+				exc.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Loads the chunks that have queued writes, blocking the calling thread, and applies the writes.
+	 */
+	private void applyAllEdits() {
+		while(!edits.isEmpty()) {
+			int c = edits.keySet().iterator().next();
+			
+			CompletableFuture<ChunkData> future = loading.remove(c);
+			if(future != null)
+				install(c,future.join());
+			
+			applyEdits(c);
+		}
+	}
+	
+	private CompletableFuture<ChunkData> request(int c) {
+		final int cx = c / yChunks, cy = c % yChunks;
+		final int width = Math.min(TiledMap.CHUNK_SIZE,map.getCellXNum() - cx * TiledMap.CHUNK_SIZE);
+		final int height = Math.min(TiledMap.CHUNK_SIZE,map.getCellYNum() - cy * TiledMap.CHUNK_SIZE);
+		
+		// A chunk that is still being saved is loaded once the save is done
+		CompletableFuture<Void> saved = saving.get(c);
+		if(saved == null)
+			return CompletableFuture.supplyAsync(() -> load(cx,cy,width,height),executor);
+		
+		return saved.thenApplyAsync(v -> load(cx,cy,width,height),executor);
+	}
+	
+	private ChunkData load(int cx, int cy, int width, int height) {
+		ChunkData data = new ChunkData(cx,cy,width,height);
+		
+		try{
+			if(store != null && store.load(data))
+				return data;
+			
+			if(generator != null)
+				generator.generate(data);
+			
+			data.isGenerated = true;
+			return data;
+		}
+		catch(Exception exc) {
+			// The chunk starts empty and is only saved if modified, so a chunk that failed to load is not overwritten
+			new Exception("Error loading chunk: " + cx + "," + cy,exc).printStackTrace();
+			return new ChunkData(cx,cy,width,height);
+		}
+	}
+	
+	private void install(int c, ChunkData data) {
+		addLoaded(c,data.isGenerated && saveGenerated);
+		map.installChunk(data);
+	}
+	
+	private void unload(int c) {
+		ChunkData data = map.extractChunk(c / yChunks,c % yChunks);
+		boolean isModified = (states[c] & MODIFIED) != 0;
+		states[c] = 0;
+		
+		if(store == null || (!isModified && data.cells == null))
+			return;
+		
+		saving.put(c,CompletableFuture.runAsync(() -> {
+			try{
+				store.save(data);
+			}
+			catch(Exception exc) {
+				new Exception("Error saving chunk: " + data.getChunkX() + "," + data.getChunkY(),exc).printStackTrace();
+			}
+		},executor));
+	}
+	
+	/**
+	 * Called by TiledMap.update: adds the chunks that finished loading, then requests and unloads chunks around the
+	 * Camera.
+	 */
+	void update() {
+		saving.values().removeIf(CompletableFuture::isDone);
+		
+		int installedCount = 0;
+		Iterator<Map.Entry<Integer,CompletableFuture<ChunkData>>> it = loading.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<Integer,CompletableFuture<ChunkData>> entry = it.next();
+			if(entry.getValue().isDone()) {
+				it.remove();
+				install(entry.getKey(),entry.getValue().join());
+				
+				if(installedCount == installed.length)
+					installed = Arrays.copyOf(installed,installedCount * 2);
+				installed[installedCount++] = entry.getKey();
+			}
+		}
+		
+		// The queued writes may request other chunks, so they are applied once loading is no longer iterated
+		if(!edits.isEmpty())
+			for(int a = 0; a < installedCount; a++)
+				applyEdits(installed[a]);
+		
+		if(map.getCamera() == null || map.getVisibleCells(visible).isEmpty())
+			return;
+		
+		int vx0 = visible.x >> TiledMap.CHUNK_SHIFT, vx1 = (visible.x + visible.width - 1) >> TiledMap.CHUNK_SHIFT;
+		int vy0 = visible.y >> TiledMap.CHUNK_SHIFT, vy1 = (visible.y + visible.height - 1) >> TiledMap.CHUNK_SHIFT;
+		
+		// The visible chunks are requested first, then the ones around them, nearest first
+		for(int r = 0; r <= residencyRadius; r++) {
+			for(int cx = Math.max(0,vx0 - r); cx <= Math.min(xChunks - 1,vx1 + r); cx++) {
+				for(int cy = Math.max(0,vy0 - r); cy <= Math.min(yChunks - 1,vy1 + r); cy++) {
+					int c = cx * yChunks + cy;
+					if(states[c] != 0 || loading.containsKey(c))
+						continue;
+					
+					if(r > 0 && maxLoadedChunks > 0 && loadedCount + loading.size() >= maxLoadedChunks)
+						continue;
+					
+					loading.put(c,request(c));
+				}
+			}
+		}
+		
+		int keep = residencyRadius + 1;
+		for(int a = 0; a < loadedCount; ) {
+			int c = loaded[a];
+			int cx = c / yChunks, cy = c % yChunks;
+			
+			if(cx < vx0 - keep || cx > vx1 + keep || cy < vy0 - keep || cy > vy1 + keep) {
+				unload(c);
+				loaded[a] = loaded[--loadedCount];
+			}
+			else
+				a++;
+		}
+		
+		if(maxLoadedChunks > 0 && loadedCount > maxLoadedChunks) {
+			// Sort the chunks by distance from the view, the furthest last
+			long[] order = this.order;
+			if(order.length < loadedCount)
+				this.order = order = new long[Math.max(loadedCount,order.length * 2)];
+			
+			for(int a = 0; a < loadedCount; a++) {
+				int c = loaded[a];
+				int cx = c / yChunks, cy = c % yChunks;
+				int distance = Math.max(Math.max(vx0 - cx,cx - vx1),Math.max(vy0 - cy,cy - vy1));
+				order[a] = ((long)distance << 32) | c;
+			}
+			Arrays.sort(order,0,loadedCount);
+			
+			for(int a = loadedCount - 1; a >= 0 && loadedCount > maxLoadedChunks && order[a] >> 32 > 0; a--) {
+				int c = (int)order[a];
+				unload(c);
+				
+				for(int b = 0; b < loadedCount; b++) {
+					if(loaded[b] == c) {
+						loaded[b] = loaded[--loadedCount];
+						break;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Applies the queued writes, then saves every loaded chunk that was modified or holds Cells and waits for the pending
+	 * saves, blocking the calling thread. This should be called before the game exits.
+	 */
+	public void flush() {
+		if(map != null)
+			applyAllEdits();
+		
+		for(CompletableFuture<Void> future : saving.values())
+			future.join();
+		saving.clear();
+		
+		if(store == null || map == null)
+			return;
+		
+		for(int a = 0; a < loadedCount; a++) {
+			int c = loaded[a];
+			
+			ChunkData data = map.copyChunk(c / yChunks,c % yChunks);
+			if((states[c] & MODIFIED) == 0 && data.cells == null)
+				continue;
+			
+			try{
+				store.save(data);
+				states[c] &= ~MODIFIED;
+			}
+			catch(Exception exc) {
+				new Exception("Error saving chunk: " + data.getChunkX() + "," + data.getChunkY(),exc).printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Flushes, removes this streamer from its map and shuts down the worker threads if they were created by it.
+	 */
+	public void close() {
+		flush();
+		
+		if(map != null)
+			map.setChunkStreamer(null);
+		
+		if(ownsExecutor)
+			executor.shutdown();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,474 @@
+package com.ra4king.gameutils.tiledmap;
+
+import com.ra4king.gameutils.Entity;
+
+/**
+ * The solid cells of a map, stored as one bit per cell, that Entities collide against instead of walls being Entities
+ * themselves.<br>
+ * Cell (x,y) covers the rectangle from (x * cellWidth, y * cellHeight) to ((x + 1) * cellWidth, (y + 1) * cellHeight).
+ * Queries only look at the cells a rectangle overlaps or sweeps through, so their cost depends on the size of the
+ * Entity and its movement, not on the size of the map or the number of walls. Rectangles that only touch the edge of a
+ * cell do not overlap it.<br>
+ * The game keeps the layer in sync with its map by calling setSolid when a cell changes.
+ * @author Roi Atalla
+ */
+public class CollisionLayer {
+	/**
+	 * Returned by move when the movement was stopped along the x axis, the y axis, or both.
+	 */
+	public static final int BLOCKED_X = 1, BLOCKED_Y = 2;
+	
+	// Coordinates that are within this fraction of a cell of its edge are on the edge, so an Entity moved flush against
+	// a wall does not overlap it because of rounding errors.
+	private static final double EPSILON = 1e-7;
+	private static final int NONE = Integer.MIN_VALUE;
+	
+	private final int width, height;
+	private final double cellWidth, cellHeight;
+	private final long[] solid;
+	private boolean isEdgeSolid = true;
+	
+	/**
+	 * Initializes this object with no solid cells.
+	 * @param width The number of cells across.
+	 * @param height The number of cells down.
+	 * @param cellWidth The width of a cell.
+	 * @param cellHeight The height of a cell.
+	 */
+	public CollisionLayer(int width, int height, double cellWidth, double cellHeight) {
+		if(width < 0 || height < 0)
+			throw new IllegalArgumentException("The number of cells cannot be negative.");
+		if(!(cellWidth > 0) || !(cellHeight > 0))
+			throw new IllegalArgumentException("Invalid cell size: " + cellWidth + "x" + cellHeight);
+		
+		this.width = width;
+		this.height = height;
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+		
+		solid = new long[(int)(((long)width * height + 63) >> 6)];
+	}
+	
+	/**
+	 * Initializes this object with the size of the map and the solid cells reported by the test.
+	 * @param map The map.
+	 * @param test Returns true for the solid cells.
+	 */
+	public CollisionLayer(TiledMap map, TileTest test) {
+		this(map.getCellXNum(),map.getCellYNum(),map.CELL_WIDTH,map.CELL_HEIGHT);
+		fill(test);
+	}
+	
+	/**
+	 * Initializes this object with the size of the map, making the tiles of the TileTypes solid. The TileTypes are
+	 * registered with the map if needed.
+	 * @param map The map.
+	 * @param solidTypes The TileTypes of the solid tiles.
+	 */
+	public CollisionLayer(TiledMap map, TileType ... solidTypes) {
+		this(map.getCellXNum(),map.getCellYNum(),map.CELL_WIDTH,map.CELL_HEIGHT);
+		
+		int max = 0;
+		int[] ids = new int[solidTypes.length];
+		for(int a = 0; a < solidTypes.length; a++)
+			max = Math.max(max,ids[a] = map.registerTileType(solidTypes[a]));
+		
+		boolean[] isSolid = new boolean[max + 1];
+		for(int id : ids)
+			isSolid[id] = true;
+		
+		fill((x,y) -> {
+			int id = map.getTileId(x,y);
+			return id < isSolid.length && isSolid[id];
+		});
+	}
+	
+	/**
+	 * @return The number of cells across.
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * @return The number of cells down.
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	public double getCellWidth() {
+		return cellWidth;
+	}
+	
+	public double getCellHeight() {
+		return cellHeight;
+	}
+	
+	public boolean isEdgeSolid() {
+		return isEdgeSolid;
+	}
+	
+	/**
+	 * Sets whether the cells outside the layer are solid, keeping Entities inside the map. True by default.
+	 */
+	public void setEdgeSolid(boolean isEdgeSolid) {
+		this.isEdgeSolid = isEdgeSolid;
+	}
+	
+	/**
+	 * @return True if the cell is solid. Cells outside the layer are solid if isEdgeSolid is true.
+	 */
+	public boolean isSolid(int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			return isEdgeSolid;
+		
+		long i = (long)y * width + x;
+		return (solid[(int)(i >> 6)] & (1L << i)) != 0;
+	}
+	
+	/**
+	 * Makes the cell solid or empty.
+	 * @param x The x cell coordinate.
+	 * @param y The y cell coordinate.
+	 * @param isSolid True if Entities cannot move through the cell.
+	 */
+	public void setSolid(int x, int y, boolean isSolid) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new IndexOutOfBoundsException("Cell out of bounds: " + x + "," + y);
+		
+		long i = (long)y * width + x;
+		if(isSolid)
+			solid[(int)(i >> 6)] |= 1L << i;
+		else
+			solid[(int)(i >> 6)] &= ~(1L << i);
+	}
+	
+	/**
+	 * Sets every cell from the test.
+	 * @param test Returns true for the solid cells.
+	 */
+	public void fill(TileTest test) {
+		for(int y = 0; y < height; y++)
+			for(int x = 0; x < width; x++)
+				setSolid(x,y,test.isSolid(x,y));
+	}
+	
+	/**
+	 * @return True if the rectangle overlaps a solid cell.
+	 */
+	public boolean isSolid(double x, double y, double width, double height) {
+		int c0 = firstColumn(x), c1 = lastColumn(x,width);
+		
+		for(int r = firstRow(y), r1 = lastRow(y,height); r <= r1; r++)
+			if(isRowSolid(r,c0,c1))
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Visits every solid cell the rectangle overlaps, row by row.
+	 * @param visitor Called with the coordinates of each solid cell, which are outside the layer for the solid cells
+	 *            past its edge.
+	 * @return The number of cells visited.
+	 */
+	public int forEachSolid(double x, double y, double width, double height, TileVisitor visitor) {
+		int c0 = firstColumn(x), c1 = lastColumn(x,width);
+		
+		int count = 0;
+		for(int r = firstRow(y), r1 = lastRow(y,height); r <= r1; r++)
+			count += visitRow(r,c0,c1,visitor);
+		
+		return count;
+	}
+	
+	/**
+	 * Sweeps the rectangle along the x axis.
+	 * @return The distance the rectangle can move towards dx before it touches a solid cell, dx if it touches none.
+	 */
+	public double sweepX(double x, double y, double width, double height, double dx) {
+		int c = blockingColumn(x,y,width,height,dx);
+		if(c == NONE)
+			return dx;
+		
+		return dx > 0 ? Math.min(dx,c * cellWidth - (x + width)) : Math.max(dx,(c + 1) * cellWidth - x);
+	}
+	
+	/**
+	 * Sweeps the rectangle along the y axis.
+	 * @return The distance the rectangle can move towards dy before it touches a solid cell, dy if it touches none.
+	 */
+	public double sweepY(double x, double y, double width, double height, double dy) {
+		int r = blockingRow(x,y,width,height,dy);
+		if(r == NONE)
+			return dy;
+		
+		return dy > 0 ? Math.min(dy,r * cellHeight - (y + height)) : Math.max(dy,(r + 1) * cellHeight - y);
+	}
+	
+	/**
+	 * Moves the Entity along the x axis then the y axis, stopping it flush against the solid cells in its way so it
+	 * slides along walls. It cannot skip over a cell, however far it moves.
+	 * @return A combination of BLOCKED_X and BLOCKED_Y, 0 if the Entity moved the whole distance.
+	 */
+	public int move(Entity e, double dx, double dy) {
+		return move(e,dx,dy,null);
+	}
+	
+	/**
+	 * Moves the Entity like move(Entity,double,double), visiting the solid cells that stopped it.
+	 * @param contacts Called with the coordinates of each solid cell the Entity was stopped against, may be null.
+	 * @return A combination of BLOCKED_X and BLOCKED_Y, 0 if the Entity moved the whole distance.
+	 */
+	public int move(Entity e, double dx, double dy, TileVisitor contacts) {
+		double x = e.getX(), y = e.getY(), w = e.getWidth(), h = e.getHeight();
+		int blocked = 0;
+		
+		int c = blockingColumn(x,y,w,h,dx);
+		if(c != NONE) {
+			blocked |= BLOCKED_X;
+			
+			if(contacts != null)
+				visitColumn(c,firstRow(y),lastRow(y,h),contacts);
+			
+			x = dx > 0 ? Math.min(x + dx,c * cellWidth - w) : Math.max(x + dx,(c + 1) * cellWidth);
+		}
+		else
+			x += dx;
+		
+		int r = blockingRow(x,y,w,h,dy);
+		if(r != NONE) {
+			blocked |= BLOCKED_Y;
+			
+			if(contacts != null)
+				visitRow(r,firstColumn(x),lastColumn(x,w),contacts);
+			
+			y = dy > 0 ? Math.min(y + dy,r * cellHeight - h) : Math.max(y + dy,(r + 1) * cellHeight);
+		}
+		else
+			y += dy;
+		
+		e.setLocation(x,y);
+		
+		return blocked;
+	}
+	
+	private int firstColumn(double x) {
+		return (int)Math.floor(x / cellWidth + EPSILON);
+	}
+	
+	private int lastColumn(double x, double width) {
+		return Math.max(firstColumn(x),(int)Math.ceil((x + width) / cellWidth - EPSILON) - 1);
+	}
+	
+	private int firstRow(double y) {
+		return (int)Math.floor(y / cellHeight + EPSILON);
+	}
+	
+	private int lastRow(double y, double height) {
+		return Math.max(firstRow(y),(int)Math.ceil((y + height) / cellHeight - EPSILON) - 1);
+	}
+	
+	/**
+	 * @return The nearest solid column the rectangle enters when moved by dx, or NONE.
+	 */
+	private int blockingColumn(double x, double y, double w, double h, double dx) {
+		if(dx == 0)
+			return NONE;
+		
+		int r0 = firstRow(y), r1 = lastRow(y,h);
+		
+		if(dx > 0) {
+			int first = (int)Math.ceil((x + w) / cellWidth - EPSILON);
+			int last = (int)Math.ceil((x + w + dx) / cellWidth - EPSILON) - 1;
+			if(!isEdgeSolid) {
+				first = Math.max(first,0);
+				last = Math.min(last,width - 1);
+			}
+			
+			for(int c = first; c <= last; c++)
+				if(isColumnSolid(c,r0,r1))
+					return c;
+		}
+		else {
+			int first = firstColumn(x) - 1;
+			int last = firstColumn(x + dx);
+			if(!isEdgeSolid) {
+				first = Math.min(first,width - 1);
+				last = Math.max(last,0);
+			}
+			
+			for(int c = first; c >= last; c--)
+				if(isColumnSolid(c,r0,r1))
+					return c;
+		}
+		
+		return NONE;
+	}
+	
+	/**
+	 * @return The nearest solid row the rectangle enters when moved by dy, or NONE.
+	 */
+	private int blockingRow(double x, double y, double w, double h, double dy) {
+		if(dy == 0)
+			return NONE;
+		
+		int c0 = firstColumn(x), c1 = lastColumn(x,w);
+		
+		if(dy > 0) {
+			int first = (int)Math.ceil((y + h) / cellHeight - EPSILON);
+			int last = (int)Math.ceil((y + h + dy) / cellHeight - EPSILON) - 1;
+			if(!isEdgeSolid) {
+				first = Math.max(first,0);
+				last = Math.min(last,height - 1);
+			}
+			
+			for(int r = first; r <= last; r++)
+				if(isRowSolid(r,c0,c1))
+					return r;
+		}
+		else {
+			int first = firstRow(y) - 1;
+			int last = firstRow(y + dy);
+			if(!isEdgeSolid) {
+				first = Math.min(first,height - 1);
+				last = Math.max(last,0);
+			}
+			
+			for(int r = first; r >= last; r--)
+				if(isRowSolid(r,c0,c1))
+					return r;
+		}
+		
+		return NONE;
+	}
+	
+	private boolean isColumnSolid(int c, int r0, int r1) {
+		if(c < 0 || c >= width || r0 < 0 || r1 >= height) {
+			if(isEdgeSolid)
+				return true;
+			if(c < 0 || c >= width)
+				return false;
+			
+			r0 = Math.max(r0,0);
+			r1 = Math.min(r1,height - 1);
+		}
+		
+		for(long i = (long)r0 * width + c, end = (long)r1 * width + c; i <= end; i += width)
+			if((solid[(int)(i >> 6)] & (1L << i)) != 0)
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Tests a run of cells a word at a time, since rows are contiguous.
+	 */
+	private boolean isRowSolid(int r, int c0, int c1) {
+		if(r < 0 || r >= height || c0 < 0 || c1 >= width) {
+			if(isEdgeSolid)
+				return true;
+			if(r < 0 || r >= height)
+				return false;
+			
+			c0 = Math.max(c0,0);
+			c1 = Math.min(c1,width - 1);
+			if(c0 > c1)
+				return false;
+		}
+		
+		long start = (long)r * width + c0, end = (long)r * width + c1;
+		int w0 = (int)(start >> 6), w1 = (int)(end >> 6);
+		long first = -1L << start, last = -1L >>> (63 - (end & 63));
+		
+		if(w0 == w1)
+			return (solid[w0] & first & last) != 0;
+		
+		if((solid[w0] & first) != 0)
+			return true;
+		
+		for(int w = w0 + 1; w < w1; w++)
+			if(solid[w] != 0)
+				return true;
+		
+		return (solid[w1] & last) != 0;
+	}
+	
+	private int visitColumn(int c, int r0, int r1, TileVisitor visitor) {
+		int count = 0;
+		for(int r = r0; r <= r1; r++) {
+			if(isSolid(c,r)) {
+				visitor.visit(c,r);
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Visits the solid cells of a run a word at a time, skipping the empty ones.
+	 */
+	private int visitRow(int r, int c0, int c1, TileVisitor visitor) {
+		if(r < 0 || r >= height) {
+			if(!isEdgeSolid)
+				return 0;
+			
+			for(int c = c0; c <= c1; c++)
+				visitor.visit(c,r);
+			return c1 - c0 + 1;
+		}
+		
+		int count = 0;
+		
+		if(c0 < 0 || c1 >= width) {
+			if(isEdgeSolid) {
+				for(int c = c0; c <= Math.min(c1,-1); c++, count++)
+					visitor.visit(c,r);
+				for(int c = Math.max(c0,width); c <= c1; c++, count++)
+					visitor.visit(c,r);
+			}
+			
+			c0 = Math.max(c0,0);
+			c1 = Math.min(c1,width - 1);
+			if(c0 > c1)
+				return count;
+		}
+		
+		long start = (long)r * width + c0, end = (long)r * width + c1;
+		long base = (long)r * width;
+		
+		for(int w = (int)(start >> 6), w1 = (int)(end >> 6); w <= w1; w++) {
+			long bits = solid[w];
+			if(w == start >> 6)
+				bits &= -1L << start;
+			if(w == w1)
+				bits &= -1L >>> (63 - (end & 63));
+			
+			while(bits != 0) {
+				visitor.visit((int)(((long)w << 6) + Long.numberOfTrailingZeros(bits) - base),r);
+				bits &= bits - 1;
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Tells whether a cell is solid.
+	 * @author Roi Atalla
+	 */
+	public interface TileTest {
+		boolean isSolid(int x, int y);
+	}
+	
+	/**
+	 * Receives the solid cells found by a query.
+	 * @author Roi Atalla
+	 */
+	public interface TileVisitor {
+		void visit(int x, int y);
+	}
+}
\ No newline at end of file
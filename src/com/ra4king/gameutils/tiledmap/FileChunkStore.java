@@ -0,0 +1,144 @@
+package com.ra4king.gameutils.tiledmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Saves each chunk to its own compressed file in a directory.<br>
+ * Tiles are saved as their ids, so the TileTypes must be registered in the same order every time the map is created.
+ * Cells are saved through a CellSerializer. A file is written under a temporary name and then renamed over the old
+ * one, so an interrupted save leaves the previous version intact.
+ * @author Roi Atalla
+ */
+public class FileChunkStore implements ChunkStore {
+	private static final int MAGIC = 0x52434b31;
+	
+	private final File directory;
+	private final CellSerializer serializer;
+	
+	/**
+	 * Initializes this object for maps without Cells.
+	 * @param directory The directory the files are saved in, created if needed.
+	 */
+	public FileChunkStore(File directory) {
+		this(directory,null);
+	}
+	
+	/**
+	 * Initializes this object.
+	 * @param directory The directory the files are saved in, created if needed.
+	 * @param serializer The serializer of the Cells, or null if the map has none.
+	 */
+	public FileChunkStore(File directory, CellSerializer serializer) {
+		this.directory = directory;
+		this.serializer = serializer;
+	}
+	
+	public File getDirectory() {
+		return directory;
+	}
+	
+	private File getFile(ChunkData data) {
+		return new File(directory,data.getChunkX() + "_" + data.getChunkY() + ".chunk");
+	}
+	
+	@Override
+	public boolean load(ChunkData data) throws IOException {
+		File file = getFile(data);
+		if(!file.exists())
+			return false;
+		
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(file))))) {
+			if(in.readInt() != MAGIC)
+				throw new IOException("Invalid chunk file: " + file);
+			
+			if(in.readBoolean()) {
+				for(int x = 0; x < data.getWidth(); x++)
+					for(int y = 0; y < data.getHeight(); y++)
+						data.setTile(x,y,in.readUnsignedShort());
+			}
+			
+			int count = in.readInt();
+			if(count > 0 && serializer == null)
+				throw new IOException("Chunk file has Cells but there is no CellSerializer: " + file);
+			
+			for(int a = 0; a < count; a++) {
+				int x = in.readUnsignedByte(), y = in.readUnsignedByte();
+				data.setCell(x,y,serializer.read(in));
+			}
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public void save(ChunkData data) throws IOException {
+		int count = 0;
+		if(data.cells != null)
+			for(Cell e : data.cells)
+				if(e != null)
+					count++;
+		
+		if(count > 0 && serializer == null)
+			throw new IOException("Cannot save Cells without a CellSerializer.");
+		
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create directory: " + directory);
+		
+		File file = getFile(data);
+		File temp = new File(directory,file.getName() + ".tmp");
+		
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(temp))))) {
+			out.writeInt(MAGIC);
+			
+			out.writeBoolean(data.tiles != null);
+			if(data.tiles != null) {
+				for(int x = 0; x < data.getWidth(); x++)
+					for(int y = 0; y < data.getHeight(); y++)
+						out.writeShort(data.getTileId(x,y));
+			}
+			
+			out.writeInt(count);
+			for(int x = 0; x < data.getWidth() && count > 0; x++) {
+				for(int y = 0; y < data.getHeight(); y++) {
+					Cell e = data.getCell(x,y);
+					if(e != null) {
+						out.writeByte(x);
+						out.writeByte(y);
+						serializer.write(out,e);
+					}
+				}
+			}
+		}
+		
+		Files.move(temp.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Writes and reads the state of Cells.
+	 * @author Roi Atalla
+	 */
+	public interface CellSerializer {
+		/**
+		 * Writes the Cell, including whatever is needed to know its class when it is read.
+		 */
+		void write(DataOutput out, Cell e) throws IOException;
+		
+		/**
+		 * Reads a Cell written by write.
+		 */
+		Cell read(DataInput in) throws IOException;
+	}
+}
\ No newline at end of file
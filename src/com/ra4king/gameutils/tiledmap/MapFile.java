@@ -0,0 +1,280 @@
+package com.ra4king.gameutils.tiledmap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A map file written by MapFileWriter, read through a memory mapping so opening it costs nothing and only the chunks
+ * that are read are paged in.<br>
+ * The file starts with a header holding the size of the map, the size of its cells and the names of its layers. It
+ * is followed by a directory with an entry per chunk of each layer, then the tile ids of the chunks, each stored
+ * either uncompressed, deflated, or as a single id when the whole chunk is one tile. Tile ids are the ids of
+ * TiledMap.registerTileType, so the TileTypes must be registered in the same order as when the file was written.<br>
+ * A TiledMap shows one layer at a time: it can be loaded whole with load, or streamed by passing getGenerator to a
+ * ChunkStreamer. The methods that read chunks may be called from several threads at once.
+ * @author Roi Atalla
+ */
+public class MapFile implements Closeable {
+	static final int MAGIC = 0x52414d50;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 24;
+	static final int ENTRY_SIZE = 16;
+	static final int EMPTY = 0, RAW = 1, DEFLATE = 2, FILL = 3;
+	
+	// Files over 2GB are mapped in 1GB segments that no directory entry or chunk crosses
+	static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+	
+	private final File file;
+	private final MappedByteBuffer[] segments;
+	private final int width, height;
+	private final int cellWidth, cellHeight;
+	private final int xChunks, yChunks;
+	private final String[] layerNames;
+	private final long directory;
+	
+	/**
+	 * Maps the file and reads its header.
+	 * @param file The file written by MapFileWriter.
+	 */
+	public MapFile(File file) throws IOException {
+		this.file = file;
+		
+		try(RandomAccessFile raf = new RandomAccessFile(file,"r"); FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			if(size < HEADER_SIZE)
+				throw new IOException("Not a map file: " + file);
+			
+			segments = new MappedByteBuffer[(int)((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for(int a = 0; a < segments.length; a++) {
+				long start = (long)a << SEGMENT_SHIFT;
+				segments[a] = channel.map(FileChannel.MapMode.READ_ONLY,start,Math.min(1L << SEGMENT_SHIFT,size - start));
+			}
+		}
+		
+		ByteBuffer header = segments[0].duplicate();
+		if(header.getInt() != MAGIC)
+			throw new IOException("Not a map file: " + file);
+		
+		int version = header.getShort();
+		if(version != VERSION)
+			throw new IOException("Unsupported map file version " + version + ": " + file);
+		
+		int chunkSize = header.getShort();
+		if(chunkSize != TiledMap.CHUNK_SIZE)
+			throw new IOException("Unsupported chunk size " + chunkSize + ": " + file);
+		
+		width = header.getInt();
+		height = header.getInt();
+		cellWidth = header.getShort() & 0xFFFF;
+		cellHeight = header.getShort() & 0xFFFF;
+		layerNames = new String[header.getShort() & 0xFFFF];
+		header.getShort();
+		
+		for(int a = 0; a < layerNames.length; a++) {
+			byte[] bytes = new byte[header.getShort() & 0xFFFF];
+			header.get(bytes);
+			layerNames[a] = new String(bytes,StandardCharsets.UTF_8);
+		}
+		
+		xChunks = (width + TiledMap.CHUNK_SIZE - 1) / TiledMap.CHUNK_SIZE;
+		yChunks = (height + TiledMap.CHUNK_SIZE - 1) / TiledMap.CHUNK_SIZE;
+		directory = (header.position() + 15) & ~15L;
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * @return The number of cells across.
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * @return The number of cells down.
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	public int getCellWidth() {
+		return cellWidth;
+	}
+	
+	public int getCellHeight() {
+		return cellHeight;
+	}
+	
+	public int getLayerCount() {
+		return layerNames.length;
+	}
+	
+	public String getLayerName(int layer) {
+		return layerNames[layer];
+	}
+	
+	/**
+	 * @return The index of the first layer with the name, or -1 if there is none.
+	 */
+	public int getLayer(String name) {
+		for(int a = 0; a < layerNames.length; a++)
+			if(layerNames[a].equals(name))
+				return a;
+		return -1;
+	}
+	
+	/**
+	 * @return A new empty TiledMap with the size of this map.
+	 */
+	public TiledMap createMap() {
+		return new TiledMap(width,height,cellWidth,cellHeight);
+	}
+	
+	private ByteBuffer segment(long position) {
+		return segments[(int)(position >>> SEGMENT_SHIFT)];
+	}
+	
+	/**
+	 * Reads the tile ids of a chunk, column by column.
+	 * @param layer The layer.
+	 * @param chunkX The x chunk coordinate, the x cell coordinate divided by CHUNK_SIZE.
+	 * @param chunkY The y chunk coordinate, the y cell coordinate divided by CHUNK_SIZE.
+	 * @return CHUNK_SIZE * CHUNK_SIZE ids, 0 outside the map, or null if the chunk has no tiles.
+	 */
+	public short[] readChunk(int layer, int chunkX, int chunkY) throws IOException {
+		if(layer < 0 || layer >= layerNames.length)
+			throw new IndexOutOfBoundsException("Invalid layer: " + layer);
+		if(chunkX < 0 || chunkX >= xChunks || chunkY < 0 || chunkY >= yChunks)
+			throw new IndexOutOfBoundsException("Chunk out of bounds: " + chunkX + "," + chunkY);
+		
+		long entry = directory + (((long)layer * xChunks + chunkX) * yChunks + chunkY) * ENTRY_SIZE;
+		ByteBuffer buffer = segment(entry);
+		int index = (int)(entry & SEGMENT_MASK);
+		
+		long offset = buffer.getLong(index);
+		int length = buffer.getInt(index + 8);
+		int encoding = buffer.get(index + 12);
+		
+		if(encoding == EMPTY)
+			return null;
+		
+		short[] tiles = new short[TiledMap.CHUNK_SIZE * TiledMap.CHUNK_SIZE];
+		
+		switch(encoding) {
+			case FILL: {
+				int columns = Math.min(TiledMap.CHUNK_SIZE,width - chunkX * TiledMap.CHUNK_SIZE);
+				int rows = Math.min(TiledMap.CHUNK_SIZE,height - chunkY * TiledMap.CHUNK_SIZE);
+				for(int x = 0; x < columns; x++)
+					for(int y = 0; y < rows; y++)
+						tiles[x * TiledMap.CHUNK_SIZE + y] = (short)length;
+				break;
+			}
+			case RAW: {
+				ByteBuffer data = segment(offset).duplicate();
+				data.position((int)(offset & SEGMENT_MASK));
+				data.asShortBuffer().get(tiles);
+				break;
+			}
+			case DEFLATE: {
+				ByteBuffer data = segment(offset).duplicate();
+				data.position((int)(offset & SEGMENT_MASK));
+				
+				byte[] compressed = new byte[length];
+				data.get(compressed);
+				
+				byte[] raw = new byte[tiles.length * 2];
+				Inflater inflater = new Inflater();
+				try{
+					inflater.setInput(compressed);
+					if(inflater.inflate(raw) != raw.length)
+						throw new IOException("Corrupt chunk " + chunkX + "," + chunkY + " in layer " + layer + ": " + file);
+				}
+				catch(DataFormatException exc) {
+					throw new IOException("Corrupt chunk " + chunkX + "," + chunkY + " in layer " + layer + ": " + file,exc);
+				}
+				finally {
+					inflater.end();
+				}
+				
+				ByteBuffer.wrap(raw).asShortBuffer().get(tiles);
+				break;
+			}
+			default:
+				throw new IOException("Unknown chunk encoding " + encoding + ": " + file);
+		}
+		
+		return tiles;
+	}
+	
+	/**
+	 * Reads the id of one tile. Reading whole chunks with readChunk is much faster.
+	 * @return The id of the tile, or 0 if there is none.
+	 */
+	public int getTileId(int layer, int x, int y) throws IOException {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new IndexOutOfBoundsException("Cell out of bounds: " + x + "," + y);
+		
+		short[] tiles = readChunk(layer,x / TiledMap.CHUNK_SIZE,y / TiledMap.CHUNK_SIZE);
+		return tiles == null ? 0 : tiles[(x % TiledMap.CHUNK_SIZE) * TiledMap.CHUNK_SIZE + y % TiledMap.CHUNK_SIZE] & 0xFFFF;
+	}
+	
+	/**
+	 * Sets the tiles of the map from a layer, reading the whole layer. The map must be this map's size.
+	 */
+	public void load(TiledMap map, int layer) throws IOException {
+		if(map.getCellXNum() != width || map.getCellYNum() != height)
+			throw new IllegalArgumentException("Map size " + map.getCellXNum() + "x" + map.getCellYNum() + " does not match " + width + "x" + height);
+		
+		for(int cx = 0; cx < xChunks; cx++) {
+			for(int cy = 0; cy < yChunks; cy++) {
+				short[] tiles = readChunk(layer,cx,cy);
+				if(tiles == null)
+					continue;
+				
+				int left = cx * TiledMap.CHUNK_SIZE, top = cy * TiledMap.CHUNK_SIZE;
+				for(int x = left; x < Math.min(width,left + TiledMap.CHUNK_SIZE); x++)
+					for(int y = top; y < Math.min(height,top + TiledMap.CHUNK_SIZE); y++)
+						map.setTile(x,y,tiles[(x - left) * TiledMap.CHUNK_SIZE + y - top] & 0xFFFF);
+			}
+		}
+	}
+	
+	/**
+	 * Returns a generator that fills chunks from a layer, for a ChunkStreamer that only reads the chunks near the
+	 * view. Errors are thrown as UncheckedIOException, which the streamer reports.
+	 */
+	public ChunkGenerator getGenerator(final int layer) {
+		if(layer < 0 || layer >= layerNames.length)
+			throw new IndexOutOfBoundsException("Invalid layer: " + layer);
+		
+		return data -> {
+			try{
+				data.tiles = readChunk(layer,data.getChunkX(),data.getChunkY());
+			}
+			catch(IOException exc) {
+				throw new UncheckedIOException(exc);
+			}
+		};
+	}
+	
+	/**
+	 * Releases the mapping once it is garbage collected. The MapFile must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		for(int a = 0; a < segments.length; a++)
+			segments[a] = null;
+	}
+}
\ No newline at end of file
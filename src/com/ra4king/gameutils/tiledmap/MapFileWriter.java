@@ -0,0 +1,248 @@
+package com.ra4king.gameutils.tiledmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.Deflater;
+
+/**
+ * Builds a map in memory, layer by layer, and writes it in the format read by MapFile.<br>
+ * Only the chunks that hold a tile are allocated.
+ * @author Roi Atalla
+ */
+public class MapFileWriter {
+	private final int width, height;
+	private final int cellWidth, cellHeight;
+	private final int xChunks, yChunks;
+	private final ArrayList<String> layerNames = new ArrayList<>();
+	private final ArrayList<short[][]> layers = new ArrayList<>();
+	
+	/**
+	 * Initializes this object with no layers.
+	 * @param width The number of cells across.
+	 * @param height The number of cells down.
+	 * @param cellWidth The width of a cell in pixels.
+	 * @param cellHeight The height of a cell in pixels.
+	 */
+	public MapFileWriter(int width, int height, int cellWidth, int cellHeight) {
+		if(width < 0 || height < 0)
+			throw new IllegalArgumentException("The number of cells cannot be negative.");
+		if(cellWidth <= 0 || cellWidth > 0xFFFF || cellHeight <= 0 || cellHeight > 0xFFFF)
+			throw new IllegalArgumentException("Invalid cell size: " + cellWidth + "x" + cellHeight);
+		
+		this.width = width;
+		this.height = height;
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+		
+		xChunks = (width + TiledMap.CHUNK_SIZE - 1) / TiledMap.CHUNK_SIZE;
+		yChunks = (height + TiledMap.CHUNK_SIZE - 1) / TiledMap.CHUNK_SIZE;
+	}
+	
+	/**
+	 * Initializes this object with a single layer named "tiles" holding the tiles of the map.
+	 * @param map The map to copy.
+	 */
+	public MapFileWriter(TiledMap map) {
+		this(map.getCellXNum(),map.getCellYNum(),map.CELL_WIDTH,map.CELL_HEIGHT);
+		
+		int layer = addLayer("tiles");
+		for(int cx = 0; cx < xChunks; cx++) {
+			for(int cy = 0; cy < yChunks; cy++) {
+				short[] tiles = map.copyChunk(cx,cy).tiles;
+				if(tiles != null)
+					layers.get(layer)[cx * yChunks + cy] = tiles;
+			}
+		}
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public int getLayerCount() {
+		return layers.size();
+	}
+	
+	public String getLayerName(int layer) {
+		return layerNames.get(layer);
+	}
+	
+	/**
+	 * Adds an empty layer.
+	 * @param name The name of the layer.
+	 * @return The index of the layer.
+	 */
+	public int addLayer(String name) {
+		if(layers.size() == 0xFFFF)
+			throw new IllegalStateException("Too many layers.");
+		
+		layerNames.add(name);
+		layers.add(new short[xChunks * yChunks][]);
+		return layers.size() - 1;
+	}
+	
+	/**
+	 * Sets the tile at the location in the layer.
+	 * @param id The tile id, from 0 for no tile to 65535.
+	 */
+	public void setTile(int layer, int x, int y, int id) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new IndexOutOfBoundsException("Cell out of bounds: " + x + "," + y);
+		if(id < 0 || id > 0xFFFF)
+			throw new IllegalArgumentException("Invalid tile type id: " + id);
+		
+		short[][] chunks = layers.get(layer);
+		int c = (x / TiledMap.CHUNK_SIZE) * yChunks + y / TiledMap.CHUNK_SIZE;
+		if(chunks[c] == null) {
+			if(id == 0)
+				return;
+			
+			chunks[c] = new short[TiledMap.CHUNK_SIZE * TiledMap.CHUNK_SIZE];
+		}
+		
+		chunks[c][(x % TiledMap.CHUNK_SIZE) * TiledMap.CHUNK_SIZE + y % TiledMap.CHUNK_SIZE] = (short)id;
+	}
+	
+	public int getTileId(int layer, int x, int y) {
+		if(x < 0 || x >= width || y < 0 || y >= height)
+			throw new IndexOutOfBoundsException("Cell out of bounds: " + x + "," + y);
+		
+		short[] chunk = layers.get(layer)[(x / TiledMap.CHUNK_SIZE) * yChunks + y / TiledMap.CHUNK_SIZE];
+		return chunk == null ? 0 : chunk[(x % TiledMap.CHUNK_SIZE) * TiledMap.CHUNK_SIZE + y % TiledMap.CHUNK_SIZE] & 0xFFFF;
+	}
+	
+	/**
+	 * Writes the map, replacing the file.
+	 * @param file The file to write.
+	 * @param compress True to deflate the chunks that get smaller, false to store them uncompressed so they are read
+	 *            straight from the mapped file.
+	 */
+	public void write(File file, boolean compress) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(MapFile.HEADER_SIZE + layers.size() * (2 + 0xFFFF));
+		header.putInt(MapFile.MAGIC);
+		header.putShort((short)MapFile.VERSION);
+		header.putShort((short)TiledMap.CHUNK_SIZE);
+		header.putInt(width);
+		header.putInt(height);
+		header.putShort((short)cellWidth);
+		header.putShort((short)cellHeight);
+		header.putShort((short)layers.size());
+		header.putShort((short)0);
+		
+		for(String name : layerNames) {
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			if(bytes.length > 0xFFFF)
+				throw new IllegalArgumentException("Layer name too long: " + name);
+			
+			header.putShort((short)bytes.length);
+			header.put(bytes);
+		}
+		
+		// Directory entries are 16 bytes aligned to 16, so none crosses a segment of the mapped file
+		long directory = (header.position() + 15) & ~15L;
+		long position = directory + (long)layers.size() * xChunks * yChunks * MapFile.ENTRY_SIZE;
+		
+		try(RandomAccessFile raf = new RandomAccessFile(file,"rw"); FileChannel channel = raf.getChannel()) {
+			raf.setLength(0);
+			
+			header.flip();
+			writeFully(channel,header,0);
+			
+			ByteBuffer entries = ByteBuffer.allocate(yChunks * MapFile.ENTRY_SIZE);
+			ByteBuffer raw = ByteBuffer.allocate(TiledMap.CHUNK_SIZE * TiledMap.CHUNK_SIZE * 2);
+			byte[] deflated = new byte[raw.capacity() + 64];
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+			
+			try{
+				for(int layer = 0; layer < layers.size(); layer++) {
+					short[][] chunks = layers.get(layer);
+					
+					for(int cx = 0; cx < xChunks; cx++) {
+						entries.clear();
+						
+						for(int cy = 0; cy < yChunks; cy++) {
+							short[] tiles = chunks[cx * yChunks + cy];
+							
+							int encoding = MapFile.EMPTY, length = 0;
+							ByteBuffer blob = null;
+							
+							if(tiles != null && !isFilled(tiles,0)) {
+								raw.clear();
+								raw.asShortBuffer().put(tiles);
+								raw.limit(raw.capacity());
+								
+								if(isFilled(tiles,tiles[0])) {
+									encoding = MapFile.FILL;
+									length = tiles[0] & 0xFFFF;
+								}
+								else {
+									encoding = MapFile.RAW;
+									length = raw.capacity();
+									blob = raw;
+									
+									if(compress) {
+										deflater.reset();
+										deflater.setInput(raw.array(),0,raw.capacity());
+										deflater.finish();
+										int size = deflater.deflate(deflated);
+										
+										if(deflater.finished() && size < length) {
+											encoding = MapFile.DEFLATE;
+											length = size;
+											blob = ByteBuffer.wrap(deflated,0,size);
+										}
+									}
+								}
+							}
+							
+							long offset = 0;
+							if(blob != null) {
+								// A blob never crosses a segment either
+								if(position >>> MapFile.SEGMENT_SHIFT != (position + length - 1) >>> MapFile.SEGMENT_SHIFT)
+									position = ((position >>> MapFile.SEGMENT_SHIFT) + 1) << MapFile.SEGMENT_SHIFT;
+								
+								offset = position;
+								writeFully(channel,blob,position);
+								position += length;
+							}
+							
+							entries.putLong(offset);
+							entries.putInt(length);
+							entries.put((byte)encoding);
+							entries.put((byte)0).putShort((short)0);
+						}
+						
+						entries.flip();
+						writeFully(channel,entries,directory + ((long)layer * xChunks + cx) * yChunks * MapFile.ENTRY_SIZE);
+					}
+				}
+			}
+			finally {
+				deflater.end();
+			}
+			
+			raf.setLength(Math.max(position,directory + (long)layers.size() * xChunks * yChunks * MapFile.ENTRY_SIZE));
+		}
+	}
+	
+	private static boolean isFilled(short[] tiles, int id) {
+		for(short tile : tiles)
+			if(tile != (short)id)
+				return false;
+		return true;
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining())
+			position += channel.write(buffer,position);
+	}
+}
\ No newline at end of file
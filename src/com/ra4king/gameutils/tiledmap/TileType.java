@@ -0,0 +1,40 @@
+package com.ra4king.gameutils.tiledmap;
+
+import java.awt.Graphics2D;
+
+/**
+ * The shared behavior of every tile of one kind, such as grass or wall. A TiledMap stores tiles as a packed array
+ * of ids registered with registerTileType, so a tile costs 2 bytes instead of a Cell object. Tiles that need their
+ * own state should be Cells instead.<br>
+ * A static tile is drawn under any Cell at the same location, and a tile that is not static under any Cell that is not
+ * static either. Tiles that are not static are drawn every frame on top of the cached chunk images, so they appear
+ * above static Cells.
+ * @author Roi Atalla
+ */
+public abstract class TileType {
+	/**
+	 * A static TileType always looks the same, so its tiles are drawn once into the cached chunk images. If its
+	 * appearance changes, TiledMap.invalidateAll must be called. The value must not change once registered.<br>
+	 * Tiles that are not static are drawn over the cached images, which may be opaque with a chunk background color,
+	 * so they cannot be drawn under static Cells.
+	 * @return True by default, false if the tiles must be drawn every frame.
+	 */
+	public boolean isStatic() {
+		return true;
+	}
+	
+	/**
+	 * Called once per TiledMap.update, not once per tile.
+	 * @param deltaTime The time passed since the last call to it.
+	 */
+	public void update(long deltaTime) {}
+	
+	/**
+	 * Draws one tile.
+	 * @param g The Graphics context, translated to the map's origin.
+	 * @param map The TiledMap containing the tile.
+	 * @param x The x cell coordinate of the tile, drawn at x * map.CELL_WIDTH.
+	 * @param y The y cell coordinate of the tile, drawn at y * map.CELL_HEIGHT.
+	 */
+	public abstract void draw(Graphics2D g, TiledMap map, int x, int y);
+}
\ No newline at end of file
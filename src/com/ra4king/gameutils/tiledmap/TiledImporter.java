@@ -0,0 +1,294 @@
+package com.ra4king.gameutils.tiledmap;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Imports maps made with the Tiled editor into a MapFileWriter.<br>
+ * Tile ids are Tiled's global ids, so the game registers the TileType of global id n as the n-th TileType. Flip and
+ * rotation flags are dropped.
+ * @author Roi Atalla
+ */
+public class TiledImporter {
+	private static final int FLAGS = 0xF0000000;
+	
+	private TiledImporter() {}
+	
+	/**
+	 * Imports every tile layer of a TMX file, including the layers in groups, in order. Layers may be encoded as XML,
+	 * CSV or base64, uncompressed or compressed with zlib or gzip. Infinite maps are cropped to the chunks they use.
+	 * Object and image layers are skipped.
+	 * @param file The TMX file.
+	 * @return The writer holding the layers.
+	 */
+	public static MapFileWriter importTmx(File file) throws IOException {
+		Document document;
+		try{
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl",true);
+			document = factory.newDocumentBuilder().parse(file);
+		}
+		catch(ParserConfigurationException | SAXException exc) {
+			throw new IOException("Invalid TMX file: " + file,exc);
+		}
+		
+		Element map = document.getDocumentElement();
+		if(!map.getTagName().equals("map"))
+			throw new IOException("Invalid TMX file: " + file);
+		
+		if(!"orthogonal".equals(map.getAttribute("orientation")))
+			throw new IOException("Only orthogonal maps are supported: " + file);
+		
+		ArrayList<Element> layers = new ArrayList<>();
+		findLayers(map,layers);
+		
+		// Tiles of every layer as x, y, id triples, with the bounds of the chunks of an infinite map
+		ArrayList<int[]> tiles = new ArrayList<>();
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		
+		for(Element layer : layers) {
+			Element data = getChild(layer,"data");
+			if(data == null)
+				throw new IOException("Layer without data: " + layer.getAttribute("name"));
+			
+			IntList list = new IntList();
+			
+			ArrayList<Element> chunks = getChildren(data,"chunk");
+			if(chunks.isEmpty())
+				readData(data,0,0,getInt(layer,"width"),getInt(layer,"height"),list);
+			else
+				for(Element chunk : chunks) {
+					int x = getInt(chunk,"x"), y = getInt(chunk,"y"), width = getInt(chunk,"width"), height = getInt(chunk,"height");
+					readData(chunk,x,y,width,height,list);
+					
+					minX = Math.min(minX,x);
+					minY = Math.min(minY,y);
+					maxX = Math.max(maxX,x + width - 1);
+					maxY = Math.max(maxY,y + height - 1);
+				}
+			
+			tiles.add(list.toArray());
+		}
+		
+		boolean isInfinite = "1".equals(map.getAttribute("infinite"));
+		int width = isInfinite ? Math.max(0,maxX - minX + 1) : getInt(map,"width");
+		int height = isInfinite ? Math.max(0,maxY - minY + 1) : getInt(map,"height");
+		int offsetX = isInfinite && width > 0 ? minX : 0, offsetY = isInfinite && height > 0 ? minY : 0;
+		
+		MapFileWriter writer = new MapFileWriter(width,height,getInt(map,"tilewidth"),getInt(map,"tileheight"));
+		
+		for(int a = 0; a < layers.size(); a++) {
+			int layer = writer.addLayer(layers.get(a).getAttribute("name"));
+			
+			int[] values = tiles.get(a);
+			for(int b = 0; b < values.length; b += 3) {
+				int x = values[b] - offsetX, y = values[b + 1] - offsetY;
+				if(x >= 0 && x < width && y >= 0 && y < height)
+					writer.setTile(layer,x,y,values[b + 2]);
+			}
+		}
+		
+		return writer;
+	}
+	
+	/**
+	 * Imports a single layer from a CSV file, one row of comma separated ids per line.
+	 * @param file The CSV file.
+	 * @param cellWidth The width of a cell in pixels.
+	 * @param cellHeight The height of a cell in pixels.
+	 * @param idOffset Added to every id. Negative ids are empty tiles. Tiled's CSV export numbers tiles from 0 with -1
+	 *            for empty tiles, which needs an offset of 1, while the CSV data of a TMX file uses global ids.
+	 * @return The writer holding a layer named after the file.
+	 */
+	public static MapFileWriter importCsv(File file, int cellWidth, int cellHeight, int idOffset) throws IOException {
+		ArrayList<int[]> rows = new ArrayList<>();
+		int width = 0;
+		
+		try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				line = line.trim();
+				if(line.isEmpty())
+					continue;
+				
+				String[] cells = line.split(",");
+				int[] row = new int[cells.length];
+				int count = 0;
+				for(String cell : cells) {
+					cell = cell.trim();
+					if(!cell.isEmpty())
+						row[count++] = parseId(cell,idOffset);
+				}
+				
+				rows.add(row.length == count ? row : Arrays.copyOf(row,count));
+				width = Math.max(width,count);
+			}
+		}
+		
+		String name = file.getName();
+		if(name.toLowerCase().endsWith(".csv"))
+			name = name.substring(0,name.length() - 4);
+		
+		MapFileWriter writer = new MapFileWriter(width,rows.size(),cellWidth,cellHeight);
+		int layer = writer.addLayer(name);
+		
+		for(int y = 0; y < rows.size(); y++) {
+			int[] row = rows.get(y);
+			for(int x = 0; x < row.length; x++)
+				writer.setTile(layer,x,y,row[x]);
+		}
+		
+		return writer;
+	}
+	
+	private static int parseId(String value, int idOffset) throws IOException {
+		long id;
+		try{
+			id = Long.parseLong(value);
+		}
+		catch(NumberFormatException exc) {
+			throw new IOException("Invalid tile id: " + value);
+		}
+		
+		if(id < 0)
+			return 0;
+		
+		return checkId((int)(id & ~FLAGS & 0xFFFFFFFFL) + idOffset);
+	}
+	
+	private static int checkId(int id) throws IOException {
+		if(id < 0 || id > 0xFFFF)
+			throw new IOException("Tile id out of range: " + id);
+		return id;
+	}
+	
+	private static void findLayers(Element parent, ArrayList<Element> layers) {
+		for(Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if(!(node instanceof Element))
+				continue;
+			
+			Element element = (Element)node;
+			if(element.getTagName().equals("layer"))
+				layers.add(element);
+			else if(element.getTagName().equals("group"))
+				findLayers(element,layers);
+		}
+	}
+	
+	/**
+	 * Reads the ids of a data or chunk element, adding the non empty ones as x, y, id triples.
+	 */
+	private static void readData(Element element, int left, int top, int width, int height, IntList out) throws IOException {
+		Element data = element.getTagName().equals("chunk") ? (Element)element.getParentNode() : element;
+		String encoding = data.getAttribute("encoding");
+		String compression = data.getAttribute("compression");
+		
+		int[] ids = new int[width * height];
+		
+		if(encoding.isEmpty()) {
+			ArrayList<Element> tiles = getChildren(element,"tile");
+			for(int a = 0; a < Math.min(ids.length,tiles.size()); a++) {
+				String gid = tiles.get(a).getAttribute("gid");
+				ids[a] = gid.isEmpty() ? 0 : parseId(gid,0);
+			}
+		}
+		else if(encoding.equals("csv")) {
+			String[] values = element.getTextContent().split(",");
+			int count = 0;
+			for(String value : values) {
+				value = value.trim();
+				if(!value.isEmpty() && count < ids.length)
+					ids[count++] = parseId(value,0);
+			}
+		}
+		else if(encoding.equals("base64")) {
+			byte[] bytes = Base64.getMimeDecoder().decode(element.getTextContent().trim());
+			
+			if(compression.equals("zlib") || compression.equals("gzip")) {
+				try(InputStream in = compression.equals("zlib") ? new InflaterInputStream(new ByteArrayInputStream(bytes)) : new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+					ByteArrayOutputStream inflated = new ByteArrayOutputStream(ids.length * 4);
+					byte[] buffer = new byte[8192];
+					int read;
+					while((read = in.read(buffer)) != -1)
+						inflated.write(buffer,0,read);
+					bytes = inflated.toByteArray();
+				}
+			}
+			else if(!compression.isEmpty())
+				throw new IOException("Unsupported compression: " + compression);
+			
+			ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+			for(int a = 0; a < ids.length && buffer.remaining() >= 4; a++)
+				ids[a] = checkId(buffer.getInt() & ~FLAGS);
+		}
+		else
+			throw new IOException("Unsupported encoding: " + encoding);
+		
+		for(int a = 0; a < ids.length; a++) {
+			if(ids[a] != 0) {
+				out.add(left + a % width);
+				out.add(top + a / width);
+				out.add(ids[a]);
+			}
+		}
+	}
+	
+	private static int getInt(Element element, String name) throws IOException {
+		try{
+			return Integer.parseInt(element.getAttribute(name));
+		}
+		catch(NumberFormatException exc) {
+			throw new IOException("Invalid " + name + " attribute of " + element.getTagName() + ": " + element.getAttribute(name));
+		}
+	}
+	
+	private static Element getChild(Element parent, String name) {
+		for(Node node = parent.getFirstChild(); node != null; node = node.getNextSibling())
+			if(node instanceof Element && ((Element)node).getTagName().equals(name))
+				return (Element)node;
+		return null;
+	}
+	
+	private static ArrayList<Element> getChildren(Element parent, String name) {
+		ArrayList<Element> children = new ArrayList<>();
+		for(Node node = parent.getFirstChild(); node != null; node = node.getNextSibling())
+			if(node instanceof Element && ((Element)node).getTagName().equals(name))
+				children.add((Element)node);
+		return children;
+	}
+	
+	private static class IntList {
+		private int[] values = new int[48];
+		private int size;
+		
+		void add(int value) {
+			if(size == values.length)
+				values = Arrays.copyOf(values,size * 2);
+			values[size++] = value;
+		}
+		
+		int[] toArray() {
+			return Arrays.copyOf(values,size);
+		}
+	}
+}
\ No newline at end of file
@@ -1,24 +1,103 @@
 package com.ra4king.gameutils.tiledmap;
 
 
+import java.awt.AlphaComposite;
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.Transparency;
 import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 
+import com.ra4king.gameutils.Art;
 import com.ra4king.gameutils.BasicScreen;
 import com.ra4king.gameutils.Game;
 
+/**
+ * A grid of Cells drawn through a Camera.<br>
+ * Cells are stored in square chunks of CHUNK_SIZE x CHUNK_SIZE that are only allocated once a Cell is set in them and
+ * freed when their last Cell is removed, so large sparse maps only pay for the areas that are used. draw only visits
+ * the cells under the Camera's view.<br>
+ * Besides Cells, each location can hold a tile: an id of a shared TileType, stored in a packed array per chunk. Tiles
+ * cost 2 bytes each, so most of a large map should be tiles, with Cells only where per-tile state is needed.<br>
+ * update only calls the Cells that are awake, kept in an active set, so its cost depends on how many Cells are doing
+ * something rather than on the size of the map. Sleeping Cells are woken by a timer, a neighbor or game code.<br>
+ * Static Cells, see Cell.isStatic, are drawn once into a cached image of their chunk, which is then drawn with a single
+ * drawImage per visible chunk. Setting or removing a static Cell, or calling its markDirty, only redraws its own chunk.
+ * The other Cells and tiles are drawn every frame on top of the cached images. Only a limited number of chunk images are kept,
+ * the least recently drawn ones are reused first.<br>
+ * Cached images are translucent by default. When static tiles or Cells cover the whole map, as a ground layer does, a chunk
+ * background color makes them opaque, which is much cheaper to draw without hardware acceleration.<br>
+ * A ChunkStreamer keeps only the chunks around the Camera in memory, loading and saving the others in the background.
+ * @author Roi Atalla
+ */
 public class TiledMap extends BasicScreen {
-	private Cell[][] map;
+	/**
+	 * The number of cells on each side of a chunk.
+	 */
+	public static final int CHUNK_SIZE = 32;
+	static final int CHUNK_SHIFT = 5;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	
+	private final int xCells, yCells;
+	private final int xChunks, yChunks;
+	private Chunk[] chunks;
+	private int chunkCount;
+	private int maxCellWidth, maxCellHeight;
+	private final Rectangle visible = new Rectangle();
+	
+	private TileType[] tileTypes;
+	private boolean[] staticTileTypes;
+	private int tileTypeCount;
+	private final IdentityHashMap<TileType,Integer> tileIds = new IdentityHashMap<>();
+	
+	private Cell[] active, updating;
+	private int activeCount;
+	private Cell[] timers;
+	private int timerCount;
+	private long time;
+	
+	private final ArrayList<Chunk> cached = new ArrayList<>();
+	private int chunkCacheSize;
+	private Color chunkBackground;
+	private long frame;
+	
+	private ChunkStreamer streamer;
+	
 	private Camera camera;
 	private boolean hasInited, hasShown;
 	
 	public final int CELL_WIDTH, CELL_HEIGHT;
 	
 	public TiledMap(int xCells, int yCells, int cellWidth, int cellHeight) {
-		map = new Cell[xCells][yCells];
+		if(xCells < 0 || yCells < 0)
+			throw new IllegalArgumentException("The number of cells cannot be negative.");
+		
+		this.xCells = xCells;
+		this.yCells = yCells;
+		
+		xChunks = (xCells + CHUNK_MASK) >> CHUNK_SHIFT;
+		yChunks = (yCells + CHUNK_MASK) >> CHUNK_SHIFT;
+		chunks = new Chunk[xChunks * yChunks];
 		
 		CELL_WIDTH = cellWidth;
 		CELL_HEIGHT = cellHeight;
+		
+		maxCellWidth = cellWidth;
+		maxCellHeight = cellHeight;
+		
+		active = new Cell[64];
+		updating = new Cell[64];
+		timers = new Cell[16];
+		
+		// Id 0 is an empty location
+		tileTypes = new TileType[16];
+		staticTileTypes = new boolean[16];
+		tileTypeCount = 1;
 	}
 	
 	@Override
@@ -29,43 +108,567 @@ public class TiledMap extends BasicScreen {
 		
 		hasInited = true;
 		
-		for(Cell[] ea : map)
-			for(Cell e : ea)
-				if(e != null)
-					e.init(this);
+		for(Chunk chunk : chunks)
+			if(chunk != null && chunk.cells != null)
+				for(Cell e : chunk.cells)
+					if(e != null)
+						e.init(this);
 	}
 	
 	public Camera getCamera() {
 		return camera;
 	}
 	
+	/**
+	 * Replaces the camera created by init, or sets one when the map is used without a Game.
+	 * @param camera The new camera.
+	 */
+	public void setCamera(Camera camera) {
+		if(camera == null)
+			throw new IllegalArgumentException("Camera cannot be null.");
+		
+		this.camera = camera;
+	}
+	
+	private void checkBounds(int x, int y) {
+		if(x < 0 || x >= xCells || y < 0 || y >= yCells)
+			throw new IndexOutOfBoundsException("Cell out of bounds: " + x + "," + y);
+	}
+	
+	private static int cellIndex(int x, int y) {
+		return ((x & CHUNK_MASK) << CHUNK_SHIFT) | (y & CHUNK_MASK);
+	}
+	
+	/**
+	 * Sets the Cell at the location, replacing any Cell already there. If a ChunkStreamer has not loaded the chunk yet,
+	 * the write is queued until it is.
+	 * @param x The x cell coordinate.
+	 * @param y The y cell coordinate.
+	 * @param e The Cell to set. If null, the Cell at the location is removed.
+	 * @return The Cell that was set.
+	 */
 	public Cell set(int x, int y, Cell e) {
-		map[x][y] = e;
+		checkBounds(x,y);
+		
+		if(e == null) {
+			remove(x,y);
+			return null;
+		}
+		
+		// A Cell that is already in this map leaves its old location
+		if(e.getParent() == this && (e.getCellX() != x || e.getCellY() != y) && get(e.getCellX(),e.getCellY()) == e)
+			remove(e.getCellX(),e.getCellY());
+		
+		int c = (x >> CHUNK_SHIFT) * yChunks + (y >> CHUNK_SHIFT);
+		if(streamer != null && !streamer.modify(c)) {
+			streamer.defer(c,() -> set(x,y,e));
+			return e;
+		}
+		
+		Chunk chunk = chunks[c];
+		if(chunk == null) {
+			chunks[c] = chunk = new Chunk();
+			chunkCount++;
+		}
+		
+		if(chunk.cells == null)
+			chunk.cells = new Cell[CHUNK_SIZE * CHUNK_SIZE];
+		
+		int i = cellIndex(x,y);
+		Cell old = chunk.cells[i];
+		if(old == null)
+			chunk.count++;
+		else if(!old.isStatic())
+			chunk.dynamicCount--;
+		
+		chunk.cells[i] = e;
+		if(!e.isStatic())
+			chunk.dynamicCount++;
+		
+		if(old != null && old != e)
+			unschedule(old);
+		
+		if(place(e,x,y))
+			invalidateAll();
+		else if(e.isStatic() || (old != null && old.isStatic()))
+			invalidate(x,y);
+		
+		return e;
+	}
+	
+	/**
+	 * Places the Cell, which was just stored in its chunk, and schedules and initializes it.
+	 * @return True if the Cell is larger than any before it, in which case every chunk image must be redrawn.
+	 */
+	private boolean place(Cell e, int x, int y) {
+		e.place(this,x,y);
+		
+		if(!e.sleeping)
+			activate(e);
+		else if(e.timed && e.timerIndex < 0) {
+			// The remaining time was kept while the Cell was outside the map
+			e.wakeTime += time;
+			addTimer(e);
+		}
 		
 		if(hasInited)
 			e.init(this);
 		if(hasShown)
 			e.show();
 		
-		e.setLocation(x, y);
+		// Cells larger than CELL_WIDTH x CELL_HEIGHT extend up and to the left, which widens the culling margin
+		if(e.getWidth() > maxCellWidth || e.getHeight() > maxCellHeight) {
+			maxCellWidth = Math.max(maxCellWidth,e.getWidth());
+			maxCellHeight = Math.max(maxCellHeight,e.getHeight());
+			return true;
+		}
 		
-		return e;
+		return false;
 	}
 	
 	public Cell get(int x, int y) {
-		return map[x][y];
+		checkBounds(x,y);
+		
+		Chunk chunk = chunks[(x >> CHUNK_SHIFT) * yChunks + (y >> CHUNK_SHIFT)];
+		return chunk == null || chunk.cells == null ? null : chunk.cells[cellIndex(x,y)];
 	}
 	
 	public void move(int x, int y, int newX, int newY) {
+		checkBounds(x,y);
+		
+		// The Cell being moved is only known once its chunk is loaded
+		int c = (x >> CHUNK_SHIFT) * yChunks + (y >> CHUNK_SHIFT);
+		if(streamer != null && !streamer.modify(c)) {
+			streamer.defer(c,() -> move(x,y,newX,newY));
+			return;
+		}
+		
 		set(newX,newY,remove(x,y));
 	}
 	
+	/**
+	 * Removes the Cell at the location. If a ChunkStreamer has not loaded the chunk yet, the removal is queued until it is.
+	 * @param x The x cell coordinate.
+	 * @param y The y cell coordinate.
+	 * @return The Cell that was removed, or null if there was none or the removal was queued.
+	 */
 	public Cell remove(int x, int y) {
-		Cell e = map[x][y];
-		map[x][y] = null;
+		checkBounds(x,y);
+		
+		int c = (x >> CHUNK_SHIFT) * yChunks + (y >> CHUNK_SHIFT);
+		if(streamer != null && !streamer.modify(c)) {
+			streamer.defer(c,() -> remove(x,y));
+			return null;
+		}
+		
+		Chunk chunk = chunks[c];
+		if(chunk == null || chunk.cells == null)
+			return null;
+		
+		int i = cellIndex(x,y);
+		Cell e = chunk.cells[i];
+		if(e == null)
+			return null;
+		
+		chunk.cells[i] = null;
+		if(e.isStatic())
+			invalidate(x,y);
+		else
+			chunk.dynamicCount--;
+		
+		unschedule(e);
+		
+		if(--chunk.count == 0) {
+			chunk.cells = null;
+			release(c);
+		}
+		
 		return e;
 	}
 	
+	private boolean contains(Cell e) {
+		return e.getParent() == this && get(e.getCellX(),e.getCellY()) == e;
+	}
+	
+	/**
+	 * Adds the Cell to the active set if it is in this map, canceling its timer.
+	 */
+	void activate(Cell e) {
+		if(e.timerIndex >= 0)
+			removeTimer(e);
+		
+		if(e.activeIndex >= 0 || !contains(e))
+			return;
+		
+		if(activeCount == active.length)
+			active = Arrays.copyOf(active,activeCount * 2);
+		
+		active[activeCount] = e;
+		e.activeIndex = activeCount++;
+	}
+	
+	/**
+	 * Removes the Cell from the active set and wakes it up after the time, or never if it is negative.
+	 */
+	void schedule(Cell e, long millis) {
+		deactivate(e);
+		
+		if(e.timerIndex >= 0)
+			removeTimer(e);
+		
+		e.timed = millis >= 0;
+		
+		if(!contains(e))
+			e.wakeTime = millis;
+		else if(e.timed) {
+			e.wakeTime = time + millis;
+			addTimer(e);
+		}
+	}
+	
+	/**
+	 * Takes a Cell that leaves the map out of the active set and the timers, keeping its remaining sleep time.
+	 */
+	private void unschedule(Cell e) {
+		deactivate(e);
+		
+		if(e.timerIndex >= 0) {
+			removeTimer(e);
+			e.wakeTime -= time;
+		}
+	}
+	
+	private void deactivate(Cell e) {
+		int i = e.activeIndex;
+		if(i < 0)
+			return;
+		
+		Cell last = active[--activeCount];
+		active[i] = last;
+		last.activeIndex = i;
+		active[activeCount] = null;
+		
+		e.activeIndex = -1;
+	}
+	
+	private void addTimer(Cell e) {
+		if(timerCount == timers.length)
+			timers = Arrays.copyOf(timers,timerCount * 2);
+		
+		timers[timerCount] = e;
+		siftUp(timerCount++);
+	}
+	
+	private void removeTimer(Cell e) {
+		int i = e.timerIndex;
+		e.timerIndex = -1;
+		
+		Cell last = timers[--timerCount];
+		timers[timerCount] = null;
+		
+		if(i < timerCount) {
+			timers[i] = last;
+			siftDown(i);
+			siftUp(last.timerIndex);
+		}
+	}
+	
+	private void siftUp(int i) {
+		Cell e = timers[i];
+		
+		while(i > 0) {
+			int p = (i - 1) >> 1;
+			if(timers[p].wakeTime <= e.wakeTime)
+				break;
+			
+			timers[i] = timers[p];
+			timers[i].timerIndex = i;
+			i = p;
+		}
+		
+		timers[i] = e;
+		e.timerIndex = i;
+	}
+	
+	private void siftDown(int i) {
+		Cell e = timers[i];
+		
+		while(true) {
+			int c = 2 * i + 1;
+			if(c >= timerCount)
+				break;
+			
+			if(c + 1 < timerCount && timers[c + 1].wakeTime < timers[c].wakeTime)
+				c++;
+			
+			if(timers[c].wakeTime >= e.wakeTime)
+				break;
+			
+			timers[i] = timers[c];
+			timers[i].timerIndex = i;
+			i = c;
+		}
+		
+		timers[i] = e;
+		e.timerIndex = i;
+	}
+	
+	/**
+	 * Calls neighborChanged on the up to 8 Cells around the location.
+	 * @param x The x cell coordinate of the location that changed.
+	 * @param y The y cell coordinate of the location that changed.
+	 */
+	public void notifyNeighbors(int x, int y) {
+		checkBounds(x,y);
+		
+		for(int nx = Math.max(0,x - 1); nx <= Math.min(xCells - 1,x + 1); nx++) {
+			for(int ny = Math.max(0,y - 1); ny <= Math.min(yCells - 1,y + 1); ny++) {
+				if(nx == x && ny == y)
+					continue;
+				
+				Cell e = get(nx,ny);
+				if(e != null)
+					e.neighborChanged(x,y);
+			}
+		}
+	}
+	
+	/**
+	 * @return The number of Cells that are awake.
+	 */
+	public int getActiveCount() {
+		return activeCount;
+	}
+	
+	/**
+	 * Frees the chunk if it holds no Cells and no tiles.
+	 */
+	private void release(int c) {
+		Chunk chunk = chunks[c];
+		if(chunk.count > 0 || chunk.tileCount > 0)
+			return;
+		
+		if(chunk.image != null) {
+			cached.remove(chunk);
+			chunk.image = null;
+		}
+		
+		chunks[c] = null;
+		chunkCount--;
+	}
+	
+	/**
+	 * Registers the TileType with this map. Registering the same TileType again returns the same id.
+	 * @param type The TileType to register.
+	 * @return The id of the TileType, from 1 to 65535.
+	 * @throws IllegalStateException If 65535 TileTypes are already registered.
+	 */
+	public int registerTileType(TileType type) {
+		if(type == null)
+			throw new IllegalArgumentException("TileType cannot be null.");
+		
+		Integer id = tileIds.get(type);
+		if(id != null)
+			return id;
+		
+		if(tileTypeCount > 0xFFFF)
+			throw new IllegalStateException("Too many tile types.");
+		
+		if(tileTypeCount == tileTypes.length) {
+			int capacity = Math.min(0x10000,tileTypes.length * 2);
+			tileTypes = Arrays.copyOf(tileTypes,capacity);
+			staticTileTypes = Arrays.copyOf(staticTileTypes,capacity);
+		}
+		
+		tileTypes[tileTypeCount] = type;
+		staticTileTypes[tileTypeCount] = type.isStatic();
+		tileIds.put(type,tileTypeCount);
+		
+		return tileTypeCount++;
+	}
+	
+	/**
+	 * @param id The id returned by registerTileType.
+	 * @return The TileType with the id.
+	 */
+	public TileType getTileType(int id) {
+		if(id <= 0 || id >= tileTypeCount)
+			throw new IllegalArgumentException("Invalid tile type id: " + id);
+		
+		return tileTypes[id];
+	}
+	
+	/**
+	 * Sets the tile at the location, registering the TileType if needed.
+	 * @param x The x cell coordinate.
+	 * @param y The y cell coordinate.
+	 * @param type The TileType, or null to clear the tile.
+	 */
+	public void setTile(int x, int y, TileType type) {
+		setTile(x,y,type == null ? 0 : registerTileType(type));
+	}
+	
+	/**
+	 * Sets the tile at the location. If a ChunkStreamer has not loaded the chunk yet, the write is queued until it is.
+	 * @param x The x cell coordinate.
+	 * @param y The y cell coordinate.
+	 * @param id The id returned by registerTileType, or 0 to clear the tile.
+	 */
+	public void setTile(int x, int y, int id) {
+		checkBounds(x,y);
+		
+		if(id < 0 || id >= tileTypeCount)
+			throw new IllegalArgumentException("Invalid tile type id: " + id);
+		
+		int c = (x >> CHUNK_SHIFT) * yChunks + (y >> CHUNK_SHIFT);
+		if(streamer != null && !streamer.modify(c)) {
+			streamer.defer(c,() -> setTile(x,y,id));
+			return;
+		}
+		
+		Chunk chunk = chunks[c];
+		if(chunk == null) {
+			if(id == 0)
+				return;
+			
+			chunks[c] = chunk = new Chunk();
+			chunkCount++;
+		}
+		
+		if(chunk.tiles == null) {
+			if(id == 0)
+				return;
+			
+			chunk.tiles = new short[CHUNK_SIZE * CHUNK_SIZE];
+		}
+		
+		int i = cellIndex(x,y);
+		int old = chunk.tiles[i] & 0xFFFF;
+		if(old == id)
+			return;
+		
+		if(old != 0) {
+			chunk.tileCount--;
+			if(!staticTileTypes[old])
+				chunk.dynamicTileCount--;
+		}
+		
+		if(id != 0) {
+			chunk.tileCount++;
+			if(!staticTileTypes[id])
+				chunk.dynamicTileCount++;
+		}
+		
+		chunk.tiles[i] = (short)id;
+		
+		if((old != 0 && staticTileTypes[old]) || (id != 0 && staticTileTypes[id]))
+			invalidate(x,y);
+		
+		if(chunk.tileCount == 0) {
+			chunk.tiles = null;
+			release(c);
+		}
+	}
+	
+	/**
+	 * @param x The x cell coordinate.
+	 * @param y The y cell coordinate.
+	 * @return The id of the tile at the location, or 0 if there is none.
+	 */
+	public int getTileId(int x, int y) {
+		checkBounds(x,y);
+		
+		Chunk chunk = chunks[(x >> CHUNK_SHIFT) * yChunks + (y >> CHUNK_SHIFT)];
+		return chunk == null || chunk.tiles == null ? 0 : chunk.tiles[cellIndex(x,y)] & 0xFFFF;
+	}
+	
+	/**
+	 * @param x The x cell coordinate.
+	 * @param y The y cell coordinate.
+	 * @return The TileType of the tile at the location, or null if there is none.
+	 */
+	public TileType getTile(int x, int y) {
+		return tileTypes[getTileId(x,y)];
+	}
+	
+	/**
+	 * Redraws the cached image of the chunk containing the cell the next time it is visible, as well as the chunks
+	 * above and to the left that a large Cell may extend into.
+	 * @param x The x cell coordinate.
+	 * @param y The y cell coordinate.
+	 */
+	public void invalidate(int x, int y) {
+		checkBounds(x,y);
+		
+		int extraX = (maxCellWidth - 1) / CELL_WIDTH, extraY = (maxCellHeight - 1) / CELL_HEIGHT;
+		
+		for(int cx = Math.max(0,x - extraX) >> CHUNK_SHIFT; cx <= x >> CHUNK_SHIFT; cx++) {
+			for(int cy = Math.max(0,y - extraY) >> CHUNK_SHIFT; cy <= y >> CHUNK_SHIFT; cy++) {
+				Chunk chunk = chunks[cx * yChunks + cy];
+				if(chunk != null)
+					chunk.dirty = true;
+			}
+		}
+	}
+	
+	/**
+	 * Redraws every cached chunk image the next time it is visible.
+	 */
+	public void invalidateAll() {
+		for(Chunk chunk : cached)
+			chunk.dirty = true;
+	}
+	
+	public int getChunkCacheSize() {
+		return chunkCacheSize;
+	}
+	
+	/**
+	 * Sets the maximum number of cached chunk images. Each one is CHUNK_SIZE * CELL_WIDTH by CHUNK_SIZE * CELL_HEIGHT
+	 * pixels. If more chunks with static content are visible at once, the extra ones are drawn cell by cell.
+	 * @param chunkCacheSize The maximum number of images, or 0 to use twice the number of chunks that fit on the screen.
+	 */
+	public void setChunkCacheSize(int chunkCacheSize) {
+		if(chunkCacheSize < 0)
+			throw new IllegalArgumentException("Chunk cache size cannot be negative.");
+		
+		this.chunkCacheSize = chunkCacheSize;
+		
+		int limit = getChunkCacheLimit();
+		while(cached.size() > limit)
+			cached.remove(cached.size() - 1).image = null;
+	}
+	
+	public Color getChunkBackground() {
+		return chunkBackground;
+	}
+	
+	/**
+	 * Sets the color the cached chunk images are filled with before their static content is drawn. Only chunks that
+	 * contain static tiles or Cells are cached, so areas without them are not filled.
+	 * @param chunkBackground An opaque color to make the cached images opaque, or null for translucent images.
+	 */
+	public void setChunkBackground(Color chunkBackground) {
+		if(chunkBackground != null && chunkBackground.getAlpha() != 255)
+			throw new IllegalArgumentException("Chunk background must be opaque.");
+		
+		this.chunkBackground = chunkBackground;
+		
+		for(Chunk chunk : cached)
+			chunk.image = null;
+		cached.clear();
+	}
+	
+	private int getChunkCacheLimit() {
+		if(chunkCacheSize > 0)
+			return chunkCacheSize;
+		
+		int chunkWidth = CHUNK_SIZE * CELL_WIDTH, chunkHeight = CHUNK_SIZE * CELL_HEIGHT;
+		int across = camera == null ? 1 : (camera.getScreenWidth() + chunkWidth - 1) / chunkWidth + 1;
+		int down = camera == null ? 1 : (camera.getScreenHeight() + chunkHeight - 1) / chunkHeight + 1;
+		return Math.max(4,across * down * 2);
+	}
+	
 	@Override
 	public int getWidth() {
 		return getGame().getWidth();
@@ -76,78 +679,453 @@ public class TiledMap extends BasicScreen {
 		return getGame().getHeight();
 	}
 	
+	@Override
+	public void resized(int width, int height) {
+		if(camera != null)
+			camera.setScreenSize(width,height);
+	}
+	
 	public int getCellXNum() {
-		return map.length;
+		return xCells;
 	}
 	
 	public int getCellYNum() {
-		try{
-			return map[0].length;
+		return yCells;
+	}
+	
+	/**
+	 * @return The number of chunks that hold at least one Cell or tile.
+	 */
+	public int getChunkCount() {
+		return chunkCount;
+	}
+	
+	public ChunkStreamer getChunkStreamer() {
+		return streamer;
+	}
+	
+	/**
+	 * Starts streaming the chunks of this map around the Camera. The chunks the map already holds stay loaded until
+	 * they are out of range.
+	 * @param streamer The streamer, or null to stop streaming and keep the loaded chunks.
+	 */
+	public void setChunkStreamer(ChunkStreamer streamer) {
+		if(this.streamer != null)
+			this.streamer.detach();
+		
+		this.streamer = streamer;
+		
+		if(streamer != null)
+			streamer.attach(this,xChunks,yChunks);
+	}
+	
+	boolean hasChunk(int c) {
+		return chunks[c] != null;
+	}
+	
+	/**
+	 * Adds the content of a chunk that is not in the map, placing and initializing its Cells.
+	 */
+	void installChunk(ChunkData data) {
+		int cx = data.getChunkX(), cy = data.getChunkY();
+		int c = cx * yChunks + cy;
+		if(chunks[c] != null)
+			throw new IllegalStateException("Chunk is already loaded: " + cx + "," + cy);
+		
+		if(data.isEmpty())
+			return;
+		
+		Chunk chunk = chunks[c] = new Chunk();
+		chunkCount++;
+		
+		if(data.tiles != null) {
+			for(short tile : data.tiles) {
+				int id = tile & 0xFFFF;
+				if(id == 0)
+					continue;
+				
+				if(id >= tileTypeCount)
+					throw new IllegalStateException("Chunk " + cx + "," + cy + " has an unregistered tile type id: " + id);
+				
+				chunk.tileCount++;
+				if(!staticTileTypes[id])
+					chunk.dynamicTileCount++;
+			}
+			
+			if(chunk.tileCount > 0)
+				chunk.tiles = data.tiles;
+		}
+		
+		boolean isLarger = false;
+		if(data.cells != null) {
+			chunk.cells = data.cells;
+			
+			for(int i = 0; i < data.cells.length; i++) {
+				Cell e = data.cells[i];
+				if(e == null)
+					continue;
+				
+				chunk.count++;
+				if(!e.isStatic())
+					chunk.dynamicCount++;
+				
+				isLarger |= place(e,(cx << CHUNK_SHIFT) + (i >> CHUNK_SHIFT),(cy << CHUNK_SHIFT) + (i & CHUNK_MASK));
+			}
+			
+			if(chunk.count == 0)
+				chunk.cells = null;
+		}
+		
+		if(chunk.count == 0 && chunk.tileCount == 0) {
+			chunks[c] = null;
+			chunkCount--;
 		}
-		catch(ArrayIndexOutOfBoundsException exc) {
-			return 0;
+		else if(isLarger)
+			invalidateAll();
+		else if(chunk.hasStatic())
+			invalidate(cx << CHUNK_SHIFT,cy << CHUNK_SHIFT);
+	}
+	
+	/**
+	 * Takes the content of a chunk out of the map. Its Cells are no longer updated but keep their remaining sleep time.
+	 */
+	ChunkData extractChunk(int cx, int cy) {
+		ChunkData data = copyChunk(cx,cy);
+		
+		int c = cx * yChunks + cy;
+		Chunk chunk = chunks[c];
+		if(chunk == null)
+			return data;
+		
+		if(data.cells != null)
+			for(Cell e : data.cells)
+				if(e != null)
+					unschedule(e);
+		
+		// The chunks above and to the left may show large Cells of this one
+		if(chunk.hasStatic())
+			invalidate(cx << CHUNK_SHIFT,cy << CHUNK_SHIFT);
+		
+		chunk.count = chunk.tileCount = 0;
+		release(c);
+		
+		return data;
+	}
+	
+	/**
+	 * Copies the content of a chunk, sharing its Cells.
+	 */
+	ChunkData copyChunk(int cx, int cy) {
+		ChunkData data = new ChunkData(cx,cy,Math.min(CHUNK_SIZE,xCells - (cx << CHUNK_SHIFT)),Math.min(CHUNK_SIZE,yCells - (cy << CHUNK_SHIFT)));
+		
+		Chunk chunk = chunks[cx * yChunks + cy];
+		if(chunk != null) {
+			if(chunk.tiles != null)
+				data.tiles = chunk.tiles.clone();
+			if(chunk.cells != null)
+				data.cells = chunk.cells.clone();
 		}
+		
+		return data;
 	}
 	
 	public void centerCamera(Cell ce) {
 		camera.centerAt(ce.getScreenX()+ce.getWidth()/2,ce.getScreenY()+ce.getHeight()/2);
 	}
 	
+	/**
+	 * Computes the range of cells that may be visible through the camera, including cells to the right and below
+	 * the view that are large enough to extend into it.
+	 * @param r The rectangle to store the range in, as a location in cells and a size in cells. May be null.
+	 * @return The rectangle, which is empty if no cells are visible.
+	 */
+	public Rectangle getVisibleCells(Rectangle r) {
+		if(r == null)
+			r = new Rectangle();
+		
+		int left = -camera.xOffset, top = -camera.yOffset;
+		
+		int x0 = Math.max(0,Math.floorDiv(left,CELL_WIDTH));
+		int y0 = Math.max(0,Math.floorDiv(top,CELL_HEIGHT));
+		int x1 = Math.min(xCells,Math.floorDiv(left + camera.getScreenWidth() + maxCellWidth - CELL_WIDTH - 1,CELL_WIDTH) + 1);
+		int y1 = Math.min(yCells,Math.floorDiv(top + camera.getScreenHeight() + maxCellHeight - CELL_HEIGHT - 1,CELL_HEIGHT) + 1);
+		
+		r.setBounds(x0,y0,Math.max(0,x1 - x0),Math.max(0,y1 - y0));
+		return r;
+	}
+	
 	@Override
 	public void show() {
 		hasShown = true;
 		
-		for(Cell[] ea : map)
-			for(Cell e : ea)
-				if(e != null)
-					e.show();
+		for(Chunk chunk : chunks)
+			if(chunk != null && chunk.cells != null)
+				for(Cell e : chunk.cells)
+					if(e != null)
+						e.show();
 	}
 	
 	@Override
 	public void hide() {
-		for(Cell[] ea : map)
-			for(Cell e : ea)
-				if(e != null)
-					e.hide();
+		for(Chunk chunk : chunks)
+			if(chunk != null && chunk.cells != null)
+				for(Cell e : chunk.cells)
+					if(e != null)
+						e.hide();
 	}
 	
 	@Override
 	public void paused() {
-		for(Cell[] ea : map)
-			for(Cell e : ea)
-				if(e != null)
-					e.paused();
+		for(Chunk chunk : chunks)
+			if(chunk != null && chunk.cells != null)
+				for(Cell e : chunk.cells)
+					if(e != null)
+						e.paused();
 	}
 	
 	@Override
 	public void resumed() {
-		for(Cell[] ea : map)
-			for(Cell e : ea)
-				if(e != null)
-					e.resumed();
+		for(Chunk chunk : chunks)
+			if(chunk != null && chunk.cells != null)
+				for(Cell e : chunk.cells)
+					if(e != null)
+						e.resumed();
 	}
 	
 	@Override
 	public void update(long deltaTime) {
-		for(Cell[] ea : map)
-			for(Cell e : ea)
-				if(e != null)
-					e.update(deltaTime);
+		if(streamer != null)
+			streamer.update();
+		
+		time += deltaTime;
+		
+		while(timerCount > 0 && timers[0].wakeTime <= time) {
+			Cell e = timers[0];
+			e.sleeping = e.timed = false;
+			activate(e);
+		}
+		
+		for(int a = 1; a < tileTypeCount; a++)
+			tileTypes[a].update(deltaTime);
+		
+		// Cells may sleep, wake or move others while updating, so the active set is copied first
+		int count = activeCount;
+		if(updating.length < count)
+			updating = new Cell[active.length];
+		System.arraycopy(active,0,updating,0,count);
+		
+		for(int a = 0; a < count; a++) {
+			Cell e = updating[a];
+			updating[a] = null;
+			
+			if(e.activeIndex >= 0)
+				e.update(deltaTime);
+		}
 	}
 	
+	/**
+	 * Draws the cached images of the visible chunks, then the visible tiles and Cells that are not static
+	 * column by column. All Cells share one Graphics context, so a Cell that changes its transform or clip must
+	 * restore it.
+	 * @param g The Graphics context to draw to the screen.
+	 */
 	@Override
 	public void draw(Graphics2D g) {
-		AffineTransform old = g.getTransform();
+		Rectangle visible = getVisibleCells(this.visible);
+		if(visible.isEmpty())
+			return;
+		
+		int x0 = visible.x, x1 = visible.x + visible.width;
+		int y0 = visible.y, y1 = visible.y + visible.height;
+		
+		frame++;
+		
+		g = (Graphics2D)g.create();
 		
 		AffineTransform at = new AffineTransform();
 		at.translate(camera.xOffset, camera.yOffset);
 		g.setTransform(at);
 		
-		for(Cell[] ea : map)
-			for(Cell e : ea)
-				if(e != null)
-					e.draw((Graphics2D)g.create());
+		try{
+			// The number of extra cells to the right and below whose static Cells may extend into a chunk
+			int extraX = (maxCellWidth - 1) / CELL_WIDTH, extraY = (maxCellHeight - 1) / CELL_HEIGHT;
+			
+			for(int cx = x0 >> CHUNK_SHIFT; cx <= (x1 - 1) >> CHUNK_SHIFT; cx++) {
+				for(int cy = y0 >> CHUNK_SHIFT; cy <= (y1 - 1) >> CHUNK_SHIFT; cy++) {
+					Chunk chunk = chunks[cx * yChunks + cy];
+					boolean hasStatic = chunk != null && chunk.hasStatic();
+					if(!hasStatic && extraX == 0 && extraY == 0)
+						continue;
+					
+					int left = cx << CHUNK_SHIFT, top = cy << CHUNK_SHIFT;
+					int right = Math.min(xCells,left + CHUNK_SIZE + extraX), bottom = Math.min(yCells,top + CHUNK_SIZE + extraY);
+					
+					if(hasStatic) {
+						BufferedImage image = getChunkImage(chunk,left,top,right,bottom);
+						if(image != null) {
+							g.drawImage(image,left * CELL_WIDTH,top * CELL_HEIGHT,null);
+							continue;
+						}
+					}
+					
+					// Every cached image is in use this frame, or only large Cells of the neighbours reach this chunk
+					Shape clip = g.getClip();
+					g.clipRect(left * CELL_WIDTH,top * CELL_HEIGHT,CHUNK_SIZE * CELL_WIDTH,CHUNK_SIZE * CELL_HEIGHT);
+					drawStatic(g,left,right,top,bottom);
+					g.setClip(clip);
+				}
+			}
+			
+			for(int x = x0; x < x1; x++) {
+				int column = (x >> CHUNK_SHIFT) * yChunks;
+				
+				for(int y = y0; y < y1; ) {
+					int end = Math.min(y1,(y | CHUNK_MASK) + 1);
+					
+					Chunk chunk = chunks[column + (y >> CHUNK_SHIFT)];
+					if(chunk != null && chunk.hasDynamic()) {
+						Cell[] cells = chunk.cells;
+						short[] tiles = chunk.tiles;
+						int i = cellIndex(x,y);
+						for(; y < end; y++, i++) {
+							if(tiles != null) {
+								int id = tiles[i] & 0xFFFF;
+								if(id != 0 && !staticTileTypes[id])
+									tileTypes[id].draw(g,this,x,y);
+							}
+							
+							if(cells != null) {
+								Cell e = cells[i];
+								if(e != null && !e.isStatic())
+									e.draw(g);
+							}
+						}
+					}
+					
+					y = end;
+				}
+			}
+		}
+		finally {
+			g.dispose();
+		}
+	}
+	
+	/**
+	 * Returns the up to date image of the static tiles and Cells in the chunk, taking an image from the cache if needed.
+	 * The image covers the chunk's own area, but is drawn from the range of cells that may extend into it.
+	 * @return The image, or null if every cached image was already drawn this frame.
+	 */
+	private BufferedImage getChunkImage(Chunk chunk, int left, int top, int right, int bottom) {
+		chunk.lastDrawn = frame;
 		
-		g.setTransform(old);
+		if(chunk.image == null) {
+			if(cached.size() < getChunkCacheLimit()) {
+				cached.add(chunk);
+				chunk.image = Art.createCompatibleImage(CHUNK_SIZE * CELL_WIDTH,CHUNK_SIZE * CELL_HEIGHT,
+						chunkBackground == null ? Transparency.TRANSLUCENT : Transparency.OPAQUE);
+			}
+			else {
+				int oldest = -1;
+				for(int a = 0; a < cached.size(); a++) {
+					long lastDrawn = cached.get(a).lastDrawn;
+					if(lastDrawn != frame && (oldest < 0 || lastDrawn < cached.get(oldest).lastDrawn))
+						oldest = a;
+				}
+				
+				if(oldest < 0)
+					return null;
+				
+				Chunk victim = cached.set(oldest,chunk);
+				chunk.image = victim.image;
+				victim.image = null;
+			}
+			
+			chunk.dirty = true;
+		}
+		
+		if(chunk.dirty) {
+			Graphics2D g = chunk.image.createGraphics();
+			
+			try{
+				if(chunkBackground == null) {
+					g.setComposite(AlphaComposite.Clear);
+					g.fillRect(0,0,chunk.image.getWidth(),chunk.image.getHeight());
+					g.setComposite(AlphaComposite.SrcOver);
+				}
+				else {
+					g.setColor(chunkBackground);
+					g.fillRect(0,0,chunk.image.getWidth(),chunk.image.getHeight());
+				}
+				
+				g.translate(-left * CELL_WIDTH,-top * CELL_HEIGHT);
+				drawStatic(g,left,right,top,bottom);
+			}
+			finally {
+				g.dispose();
+			}
+			
+			chunk.dirty = false;
+		}
+		
+		return chunk.image;
+	}
+	
+	/**
+	 * Draws the static tiles and Cells in the range column by column.
+	 */
+	private void drawStatic(Graphics2D g, int x0, int x1, int y0, int y1) {
+		for(int x = x0; x < x1; x++) {
+			int column = (x >> CHUNK_SHIFT) * yChunks;
+			
+			for(int y = y0; y < y1; ) {
+				int end = Math.min(y1,(y | CHUNK_MASK) + 1);
+				
+				Chunk chunk = chunks[column + (y >> CHUNK_SHIFT)];
+				if(chunk != null && chunk.hasStatic()) {
+					Cell[] cells = chunk.cells;
+					short[] tiles = chunk.tiles;
+					int i = cellIndex(x,y);
+					for(; y < end; y++, i++) {
+						if(tiles != null) {
+							int id = tiles[i] & 0xFFFF;
+							if(id != 0 && staticTileTypes[id])
+								tileTypes[id].draw(g,this,x,y);
+						}
+						
+						if(cells != null) {
+							Cell e = cells[i];
+							if(e != null && e.isStatic())
+								e.draw(g);
+						}
+					}
+				}
+				
+				y = end;
+			}
+		}
+	}
+	
+	/**
+	 * The Cells and tiles of a CHUNK_SIZE x CHUNK_SIZE area, column by column. Each array is only allocated while it
+	 * holds something.
+	 */
+	private static class Chunk {
+		private Cell[] cells;
+		private short[] tiles;
+		private int count, dynamicCount;
+		private int tileCount, dynamicTileCount;
+		
+		private BufferedImage image;
+		private boolean dirty;
+		private long lastDrawn;
+		
+		boolean hasStatic() {
+			return count != dynamicCount || tileCount != dynamicTileCount;
+		}
+		
+		boolean hasDynamic() {
+			return dynamicCount > 0 || dynamicTileCount > 0;
+		}
 	}
 }
@@ -7,7 +7,8 @@ import java.util.ArrayList;
 import com.ra4king.gameutils.Art;
 
 /**
- * A convenience Animation class used to animate 2D sprites.
+ * A convenience Animation class used to animate 2D sprites.<br>
+ * Each Animation holds its own frames. When many sprites play the same animation, share one AnimationClip instead.
  * @author Roi Atalla
  */
 public class Animation {
@@ -80,6 +81,25 @@ public class Animation {
 				addFrame(col,times[count++]);
 	}
 	
+	/**
+	 * Returns an immutable AnimationClip of the frames added so far.
+	 * @return The new AnimationClip.
+	 */
+	public AnimationClip toClip() {
+		Image images[] = new Image[frames.size()];
+		long times[] = new long[frames.size()];
+		
+		long prev = 0;
+		for(int a = 0; a < images.length; a++) {
+			Frame f = frames.get(a);
+			images[a] = f.i;
+			times[a] = f.time - prev;
+			prev = f.time;
+		}
+		
+		return new AnimationClip(images,times,looping);
+	}
+	
 	/**
 	 * Returns the current image displayed.
 	 * @return The current image displayed.
@@ -0,0 +1,265 @@
+package com.ra4king.gameutils.util;
+
+import java.awt.Image;
+import java.util.Arrays;
+
+import com.ra4king.gameutils.Art;
+
+/**
+ * Immutable animation data that is shared by every sprite playing the same animation.<br>
+ * The frame timeline is stored as a prefix sum of the frame durations, so the frame at any time is found with a
+ * binary search. The playback state lives outside the clip, either in a Cursor per sprite or in an AnimationCursors
+ * that advances many sprites at once.
+ * @author Roi Atalla
+ */
+public class AnimationClip {
+	private final Image[] frames;
+	private final long[] ends;
+	private final long duration;
+	private final boolean looping;
+	
+	/**
+	 * Initializes this object.
+	 * @param frames The frames, in order. The array is copied.
+	 * @param times The duration of each frame in milliseconds.
+	 * @param looping If true, the clip wraps around to the first frame when it ends.
+	 * @throws IllegalArgumentException If the lengths do not match, there are no frames, a duration is negative, or the total duration is 0.
+	 */
+	public AnimationClip(Image[] frames, long[] times, boolean looping) {
+		if(frames.length != times.length)
+			throw new IllegalArgumentException("Frame and duration counts do not match.");
+		if(frames.length == 0)
+			throw new IllegalArgumentException("An AnimationClip needs at least one frame.");
+		
+		this.frames = frames.clone();
+		this.looping = looping;
+		
+		ends = new long[times.length];
+		long total = 0;
+		for(int a = 0; a < times.length; a++) {
+			if(times[a] < 0)
+				throw new IllegalArgumentException("Frame durations cannot be negative.");
+			
+			total += times[a];
+			ends[a] = total;
+		}
+		
+		if(total <= 0)
+			throw new IllegalArgumentException("Total duration must be positive.");
+		
+		duration = total;
+	}
+	
+	/**
+	 * Splits the image into frames of the same duration, left to right, top to bottom.
+	 * @param i The image to be split.
+	 * @param width The width of each frame.
+	 * @param height The height of each frame.
+	 * @param time The duration of each frame.
+	 * @param looping If true, the clip wraps around to the first frame when it ends.
+	 * @return The new AnimationClip.
+	 * @throws IllegalArgumentException If the image cannot be split evenly.
+	 */
+	public static AnimationClip split(Image i, int width, int height, long time, boolean looping) {
+		Image[] frames = flatten(Art.split(i,width,height));
+		
+		long[] times = new long[frames.length];
+		Arrays.fill(times,time);
+		
+		return new AnimationClip(frames,times,looping);
+	}
+	
+	/**
+	 * Splits the image into frames, left to right, top to bottom.
+	 * @param i The image to be split.
+	 * @param width The width of each frame.
+	 * @param height The height of each frame.
+	 * @param times The duration of each frame.
+	 * @param looping If true, the clip wraps around to the first frame when it ends.
+	 * @return The new AnimationClip.
+	 * @throws IllegalArgumentException If the image cannot be split evenly or the length of the array does not equal rows times columns.
+	 */
+	public static AnimationClip split(Image i, int width, int height, long[] times, boolean looping) {
+		Image[] frames = flatten(Art.split(i,width,height));
+		
+		if(frames.length != times.length)
+			throw new IllegalArgumentException("Not enough frame durations supplied.");
+		
+		return new AnimationClip(frames,times,looping);
+	}
+	
+	private static Image[] flatten(Image[][] images) {
+		int count = 0;
+		for(Image[] row : images)
+			count += row.length;
+		
+		Image[] frames = new Image[count];
+		count = 0;
+		for(Image[] row : images)
+			for(Image col : row)
+				frames[count++] = col;
+		
+		return frames;
+	}
+	
+	public int getFrameCount() {
+		return frames.length;
+	}
+	
+	public Image getFrame(int index) {
+		return frames[index];
+	}
+	
+	/**
+	 * @return The time in milliseconds at which the frame stops being displayed, relative to the start of the clip.
+	 */
+	public long getFrameEnd(int index) {
+		return ends[index];
+	}
+	
+	/**
+	 * @return The total duration in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+	
+	public boolean isLooping() {
+		return looping;
+	}
+	
+	/**
+	 * Wraps the time into the clip. Looping clips wrap modulo the duration, other clips are clamped at the duration.
+	 * @param time The time since the clip started, in milliseconds.
+	 * @return The time inside the clip.
+	 */
+	public long wrap(long time) {
+		if(time < 0)
+			return 0;
+		if(time < duration)
+			return time;
+		
+		return looping ? time % duration : duration;
+	}
+	
+	/**
+	 * Returns the index of the frame displayed at the time, using a binary search of the timeline.
+	 * @param time The time since the clip started, in milliseconds.
+	 * @return The frame index, or getFrameCount() if the clip is not looping and has ended.
+	 */
+	public int indexAt(long time) {
+		return search(wrap(time),0);
+	}
+	
+	/**
+	 * Returns the first frame at or after start whose end is past the time, which must already be wrapped.
+	 */
+	int search(long time, int start) {
+		int low = start, high = ends.length;
+		
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(ends[mid] <= time)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * Returns the frame displayed at the time.
+	 * @param time The time since the clip started, in milliseconds.
+	 * @return The frame, or null if the clip is not looping and has ended.
+	 */
+	public Image getFrameAt(long time) {
+		int index = indexAt(time);
+		return index < frames.length ? frames[index] : null;
+	}
+	
+	public boolean isDone(long time) {
+		return !looping && time >= duration;
+	}
+	
+	/**
+	 * @return A new Cursor at the start of this clip.
+	 */
+	public Cursor createCursor() {
+		return new Cursor(this);
+	}
+	
+	/**
+	 * The playback state of a single sprite playing an AnimationClip: just a time and a frame index.
+	 * @author Roi Atalla
+	 */
+	public static class Cursor {
+		private AnimationClip clip;
+		private long time;
+		private int index;
+		
+		public Cursor(AnimationClip clip) {
+			setClip(clip);
+		}
+		
+		public AnimationClip getClip() {
+			return clip;
+		}
+		
+		/**
+		 * Switches to another clip and restarts.
+		 * @param clip The clip to play.
+		 */
+		public void setClip(AnimationClip clip) {
+			if(clip == null)
+				throw new IllegalArgumentException("AnimationClip cannot be null.");
+			
+			this.clip = clip;
+			restart();
+		}
+		
+		public void restart() {
+			time = 0;
+			index = clip.search(0,0);
+		}
+		
+		public long getTime() {
+			return time;
+		}
+		
+		public int getFrameIndex() {
+			return index;
+		}
+		
+		/**
+		 * Returns the current image displayed.
+		 * @return The current image displayed, or null if the clip has ended.
+		 */
+		public Image getFrame() {
+			return index < clip.frames.length ? clip.frames[index] : null;
+		}
+		
+		public boolean isDone() {
+			return index >= clip.frames.length;
+		}
+		
+		/**
+		 * Must be called to update the animation.
+		 * @param deltaTime The time passed since the last call to it.
+		 */
+		public void update(long deltaTime) {
+			if(isDone())
+				return;
+			
+			long t = time + deltaTime;
+			if(t >= clip.duration || deltaTime < 0) {
+				t = clip.wrap(t);
+				index = clip.search(t,0);
+			}
+			else if(clip.ends[index] <= t)
+				index = clip.search(t,index+1);
+			
+			time = t;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,185 @@
+package com.ra4king.gameutils.util;
+
+import java.awt.Image;
+import java.util.Arrays;
+
+/**
+ * The playback state of many sprites stored in parallel primitive arrays, so that thousands of animations
+ * are advanced in one tight loop with update(long) instead of one object per sprite.<br>
+ * Each sprite is identified by the int returned from add. Ids of removed sprites are reused.
+ * @author Roi Atalla
+ */
+public class AnimationCursors {
+	private AnimationClip[] clips;
+	private long[] times;
+	private int[] indices;
+	private boolean[] used;
+	
+	private int[] free;
+	private int freeCount, size, count;
+	
+	/**
+	 * Initializes this object with room for 16 sprites.
+	 */
+	public AnimationCursors() {
+		this(16);
+	}
+	
+	/**
+	 * Initializes this object.
+	 * @param capacity The initial number of sprites. The arrays grow as needed.
+	 */
+	public AnimationCursors(int capacity) {
+		capacity = Math.max(1,capacity);
+		
+		clips = new AnimationClip[capacity];
+		times = new long[capacity];
+		indices = new int[capacity];
+		used = new boolean[capacity];
+		free = new int[capacity];
+	}
+	
+	/**
+	 * Adds a sprite playing the clip from its start.
+	 * @param clip The clip to play.
+	 * @return The id of the sprite.
+	 */
+	public int add(AnimationClip clip) {
+		if(clip == null)
+			throw new IllegalArgumentException("AnimationClip cannot be null.");
+		
+		int id;
+		if(freeCount > 0)
+			id = free[--freeCount];
+		else {
+			if(size == clips.length) {
+				int capacity = clips.length * 2;
+				clips = Arrays.copyOf(clips,capacity);
+				times = Arrays.copyOf(times,capacity);
+				indices = Arrays.copyOf(indices,capacity);
+				used = Arrays.copyOf(used,capacity);
+				free = Arrays.copyOf(free,capacity);
+			}
+			
+			id = size++;
+		}
+		
+		used[id] = true;
+		count++;
+		setClip(id,clip);
+		return id;
+	}
+	
+	/**
+	 * Removes the sprite. Its id may be returned by a later add.
+	 * @param id The id of the sprite.
+	 */
+	public void remove(int id) {
+		check(id);
+		
+		used[id] = false;
+		clips[id] = null;
+		free[freeCount++] = id;
+		count--;
+	}
+	
+	/**
+	 * @return The number of sprites.
+	 */
+	public int size() {
+		return count;
+	}
+	
+	private void check(int id) {
+		if(id < 0 || id >= size || !used[id])
+			throw new IllegalArgumentException("Invalid id: " + id);
+	}
+	
+	/**
+	 * Switches the sprite to another clip and restarts it.
+	 * @param id The id of the sprite.
+	 * @param clip The clip to play.
+	 */
+	public void setClip(int id, AnimationClip clip) {
+		check(id);
+		if(clip == null)
+			throw new IllegalArgumentException("AnimationClip cannot be null.");
+		
+		clips[id] = clip;
+		times[id] = 0;
+		indices[id] = clip.search(0,0);
+	}
+	
+	public AnimationClip getClip(int id) {
+		check(id);
+		return clips[id];
+	}
+	
+	public void restart(int id) {
+		setClip(id,getClip(id));
+	}
+	
+	public long getTime(int id) {
+		check(id);
+		return times[id];
+	}
+	
+	public int getFrameIndex(int id) {
+		check(id);
+		return indices[id];
+	}
+	
+	/**
+	 * Returns the image displayed by the sprite.
+	 * @param id The id of the sprite.
+	 * @return The current image displayed, or null if its clip has ended.
+	 */
+	public Image getFrame(int id) {
+		check(id);
+		
+		AnimationClip clip = clips[id];
+		int index = indices[id];
+		return index < clip.getFrameCount() ? clip.getFrame(index) : null;
+	}
+	
+	public boolean isDone(int id) {
+		check(id);
+		return indices[id] >= clips[id].getFrameCount();
+	}
+	
+	/**
+	 * Advances every sprite by the same time.
+	 * @param deltaTime The time passed since the last call to it.
+	 */
+	public void update(long deltaTime) {
+		final AnimationClip[] clips = this.clips;
+		final long[] times = this.times;
+		final int[] indices = this.indices;
+		
+		for(int a = 0; a < size; a++) {
+			AnimationClip clip = clips[a];
+			if(clip == null)
+				continue;
+			
+			int index = indices[a];
+			int frames = clip.getFrameCount();
+			if(index >= frames)
+				continue;
+			
+			long t = times[a] + deltaTime;
+			if(t >= clip.getDuration() || deltaTime < 0) {
+				t = clip.wrap(t);
+				indices[a] = clip.search(t,0);
+			}
+			else if(clip.getFrameEnd(index) <= t) {
+				// Per-tick deltas usually move at most one frame, so check the next one before searching
+				if(index+1 < frames && clip.getFrameEnd(index+1) > t)
+					indices[a] = index+1;
+				else
+					indices[a] = clip.search(t,index+1);
+			}
+			
+			times[a] = t;
+		}
+	}
+}
\ No newline at end of file
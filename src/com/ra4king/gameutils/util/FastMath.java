@@ -1,47 +1,74 @@
 package com.ra4king.gameutils.util;
 
+/**
+ * Fast table based trigonometry and fast approximations of common functions. Every trigonometric function has a
+ * scalar version and batch versions that work on whole arrays, over double tables or over float tables.<br>
+ * The batch versions are plain counted loops over caller-supplied arrays with no allocation, so many elements are
+ * evaluated per call without per-element call overhead.<br>
+ * <br>
+ * The table resolution is set with setPrecision. The maximum absolute errors with the default 4096 entry sin/cos
+ * table and 128x128 atan2 grid are:<br>
+ * <code>
+ * sin, cos: 1.5e-3 (2 pi / table size) for positive angles, 2.3e-3 (3 pi / table size) for negative angles, as the
+ * multiples of 90 degrees are exact<br>
+ * sinLerp, cosLerp: 3.0e-7 ((2 pi / table size)^2 / 8)<br>
+ * atan2: 7.9e-3 radians (1 / (grid size - 1))<br>
+ * </code>
+ * The approximations have fixed relative errors, independent of the tables:<br>
+ * <code>
+ * sqrt, hypot: exact to within 1 ulp, hypot does not guard against overflow<br>
+ * invSqrt(float): 1.8e-3, invSqrt(double): 5e-6<br>
+ * exp: 1e-9 for results that are normal doubles<br>
+ * pow: 1e-9 * (1 + |y ln x|) for x &gt; 0<br>
+ * </code>
+ * @author Roi Atalla
+ */
 public class FastMath {
 	public static final double PI = Math.PI;
 	public static final double E = Math.E;
 	
 	private static final double RAD = PI/180.0;
 	private static final double DEG = 180.0/PI;
-	private static final double radToIndex, degToIndex;
-	private static final int SIN_MASK = ~(-1 << 12);
-	private static final double[] sin, cos;
+	private static final double TWO_PI = PI * 2.0;
 	
-	private static final int ATAN2_COUNT = (~(-1 << (7 << 1))) + 1;
-	private static final int ATAN2_DIM = (int) Math.sqrt(ATAN2_COUNT);
-	private static final double[] atan2 = new double[ATAN2_COUNT];
+	private static final double LN2 = Math.log(2.0);
+	private static final double LOG2E = 1.0 / LN2;
+	private static final double SQRT2 = Math.sqrt(2.0);
+	private static final double MAX_EXP = Math.log(Double.MAX_VALUE);
 	
-	static {
-		final int SIN_COUNT = SIN_MASK + 1;
-		
-		final double radFull    = PI * 2.0;
-		radToIndex = SIN_COUNT/radFull;
-		degToIndex = SIN_COUNT/360.0;
-		
-		sin = new double[SIN_COUNT];
-		cos = new double[SIN_COUNT];
-		
-		for(int i = 0; i < SIN_COUNT; i++) {
-			sin[i] = Math.sin((i + 0.5)/SIN_COUNT * radFull);
-			cos[i] = Math.cos((i + 0.5)/SIN_COUNT * radFull);
-		}
-		
-		for(int i = 0; i < 360; i += 90) {
-			sin[(int)(i * degToIndex) & SIN_MASK] = Math.sin(i * Math.PI/180.0);
-			cos[(int)(i * degToIndex) & SIN_MASK] = Math.cos(i * Math.PI/180.0);
-		}
+	public static final int DEFAULT_SIN_BITS = 12;
+	public static final int DEFAULT_ATAN2_BITS = 7;
+	
+	private static volatile Tables tables = new Tables(DEFAULT_SIN_BITS,DEFAULT_ATAN2_BITS);
+	
+	/**
+	 * Rebuilds the lookup tables with a new resolution. Calls that are running on other threads finish with the old tables.
+	 * @param sinBits The sin/cos table has 2^sinBits entries, between 4 and 24. The tables take 32 * 2^sinBits bytes,
+	 *            128KB by default and 512MB at 24.
+	 * @param atan2Bits The atan2 grid is 2^atan2Bits on each side, between 2 and 10. The tables take 12 * 4^atan2Bits
+	 *            bytes, 192KB by default and 12MB at 10.
+	 */
+	public static void setPrecision(int sinBits, int atan2Bits) {
+		if(sinBits < 4 || sinBits > 24)
+			throw new IllegalArgumentException("sinBits must be between 4 and 24.");
+		if(atan2Bits < 2 || atan2Bits > 10)
+			throw new IllegalArgumentException("atan2Bits must be between 2 and 10.");
 		
-		for(int i = 0; i < ATAN2_DIM; i++) {
-			for (int j = 0; j < ATAN2_DIM; j++) {
-				double x0 = (double)i/ATAN2_DIM;
-				double y0 = (double)j/ATAN2_DIM;
-				
-				atan2[j * ATAN2_DIM + i] = Math.atan2(y0, x0);
-			}
-		}
+		tables = new Tables(sinBits,atan2Bits);
+	}
+	
+	/**
+	 * @return The number of entries in the sin/cos table.
+	 */
+	public static int getSinTableSize() {
+		return tables.sin.length;
+	}
+	
+	/**
+	 * @return The number of entries on each side of the atan2 grid.
+	 */
+	public static int getAtan2GridSize() {
+		return tables.atan2Dim;
 	}
 	
 	public static final double toDegrees(double rad) {
@@ -53,19 +80,52 @@ public class FastMath {
 	}
 	
 	public static final double sin(double rad) {
-		return sin[(int)(rad * radToIndex) & SIN_MASK];
+		Tables t = tables;
+		return t.sin[(int)(rad * t.radToIndex) & t.sinMask];
 	}
 	
 	public static final double cos(double rad) {
-		return cos[(int)(rad * radToIndex) & SIN_MASK];
+		Tables t = tables;
+		return t.cos[(int)(rad * t.radToIndex) & t.sinMask];
 	}
 	
 	public static final double sinDeg(double deg) {
-		return sin[(int)(deg * degToIndex) & SIN_MASK];
+		Tables t = tables;
+		return t.sin[(int)(deg * t.degToIndex) & t.sinMask];
 	}
 	
 	public static final double cosDeg(double deg) {
-		return cos[(int) (deg * degToIndex) & SIN_MASK];
+		Tables t = tables;
+		return t.cos[(int) (deg * t.degToIndex) & t.sinMask];
+	}
+	
+	/**
+	 * Linearly interpolated sine, much more precise than sin for a few more operations.
+	 * @param rad The angle in radians.
+	 * @return The sine of the angle.
+	 */
+	public static final double sinLerp(double rad) {
+		return lerp(tables,rad,0);
+	}
+	
+	/**
+	 * Linearly interpolated cosine, much more precise than cos for a few more operations.
+	 * @param rad The angle in radians.
+	 * @return The cosine of the angle.
+	 */
+	public static final double cosLerp(double rad) {
+		Tables t = tables;
+		return lerp(t,rad,t.grid.length >> 2);
+	}
+	
+	private static double lerp(Tables t, double rad, int offset) {
+		double index = rad * t.radToIndex;
+		double floor = Math.floor(index);
+		double frac = index - floor;
+		int i = ((int)(long)floor + offset) & t.sinMask;
+		
+		double a = t.grid[i];
+		return a + (t.grid[(i+1) & t.sinMask] - a) * frac;
 	}
 	
 	public static final double atan2Deg(double y, double x) {
@@ -100,11 +160,374 @@ public class FastMath {
 			add = 0.0;
 		}
 		
-		double invDiv = (ATAN2_DIM-1) / ((x < y) ? y : x);
+		Tables t = tables;
+		double invDiv = (t.atan2Dim-1) / ((x < y) ? y : x);
 		
 		int xi = (int) (x * invDiv);
 		int yi = (int) (y * invDiv);
 		
-		return (atan2[yi * ATAN2_DIM + xi] + add) * mul;
+		return (t.atan2[yi * t.atan2Dim + xi] + add) * mul;
+	}
+	
+	/**
+	 * Wraps the angle into [-PI, PI).
+	 * @param rad The angle in radians.
+	 * @return The equivalent angle in [-PI, PI).
+	 */
+	public static final double wrapAngle(double rad) {
+		if(rad >= -PI && rad < PI)
+			return rad;
+		
+		double wrapped = rad - TWO_PI * Math.floor((rad + PI) / TWO_PI);
+		return wrapped >= PI ? wrapped - TWO_PI : wrapped;
+	}
+	
+	/**
+	 * Wraps the angle into [-180, 180).
+	 * @param deg The angle in degrees.
+	 * @return The equivalent angle in [-180, 180).
+	 */
+	public static final double wrapAngleDeg(double deg) {
+		if(deg >= -180.0 && deg < 180.0)
+			return deg;
+		
+		double wrapped = deg - 360.0 * Math.floor((deg + 180.0) / 360.0);
+		return wrapped >= 180.0 ? wrapped - 360.0 : wrapped;
+	}
+	
+	/**
+	 * Square root. Math.sqrt compiles to a single hardware instruction, which no approximation beats,
+	 * so this is exact and only exists for completeness next to invSqrt.
+	 */
+	public static final double sqrt(double x) {
+		return Math.sqrt(x);
+	}
+	
+	/**
+	 * Inverse square root of a positive number, using the bit-level initial guess and one Newton-Raphson step.
+	 * @param x A positive number.
+	 * @return An approximation of 1/sqrt(x) with a maximum relative error of 1.8e-3.
+	 */
+	public static final float invSqrt(float x) {
+		float half = 0.5f * x;
+		float y = Float.intBitsToFloat(0x5f3759df - (Float.floatToRawIntBits(x) >> 1));
+		return y * (1.5f - half * y * y);
+	}
+	
+	/**
+	 * Inverse square root of a positive number, using the bit-level initial guess and two Newton-Raphson steps.
+	 * @param x A positive number.
+	 * @return An approximation of 1/sqrt(x) with a maximum relative error of 5e-6.
+	 */
+	public static final double invSqrt(double x) {
+		double half = 0.5 * x;
+		double y = Double.longBitsToDouble(0x5fe6eb50c7b537a9L - (Double.doubleToRawLongBits(x) >> 1));
+		y = y * (1.5 - half * y * y);
+		return y * (1.5 - half * y * y);
+	}
+	
+	/**
+	 * The length of the vector (x, y), without the overflow and underflow guards that make Math.hypot slow.
+	 * @return sqrt(x*x + y*y), exact to within 1 ulp unless x*x + y*y overflows.
+	 */
+	public static final double hypot(double x, double y) {
+		return Math.sqrt(x*x + y*y);
+	}
+	
+	/**
+	 * e raised to the power of x. The exponent is split into a power of two, built directly in the bits of the result,
+	 * and a remainder in [-0.5, 0.5] evaluated with a polynomial.
+	 * @param x The exponent.
+	 * @return An approximation of e^x with a maximum relative error of 1e-9. Results below the normal range are 0.
+	 */
+	public static final double exp(double x) {
+		if(x != x)
+			return x;
+		if(x > MAX_EXP)
+			return Double.POSITIVE_INFINITY;
+		if(x < -708.39)
+			return 0.0;
+		
+		double t = x * LOG2E;
+		double k = Math.floor(t + 0.5);
+		double r = (t - k) * LN2;
+		
+		// Taylor series of e^r for |r| <= ln(2)/2
+		double p = 1.0 + r * (1.0 + r * (1.0/2 + r * (1.0/6 + r * (1.0/24 + r * (1.0/120 + r * (1.0/720 + r * (1.0/5040 + r * (1.0/40320))))))));
+		
+		// 2^1024 is not a double, so the largest results are scaled in two steps. e^x is finite up to MAX_EXP, so a result
+		// that rounds past the largest double is clamped to it.
+		if(k == 1024)
+			return Math.min(p * 2.0 * Double.longBitsToDouble(2046L << 52),Double.MAX_VALUE);
+		
+		return p * Double.longBitsToDouble((long)(k + 1023) << 52);
+	}
+	
+	/**
+	 * Natural logarithm, from the exponent bits and a series for the mantissa.
+	 */
+	private static double log(double x) {
+		long bits = Double.doubleToRawLongBits(x);
+		int exponent = (int)((bits >>> 52) & 0x7ff) - 1023;
+		double m = Double.longBitsToDouble((bits & 0x000fffffffffffffL) | 0x3ff0000000000000L);
+		
+		if(m > SQRT2) {
+			m *= 0.5;
+			exponent++;
+		}
+		
+		// ln(m) = 2 atanh((m-1)/(m+1)) with |s| <= 0.172
+		double s = (m - 1.0) / (m + 1.0);
+		double s2 = s * s;
+		double series = 2.0 * s * (1.0 + s2 * (1.0/3 + s2 * (1.0/5 + s2 * (1.0/7 + s2 * (1.0/9 + s2 * (1.0/11))))));
+		
+		return exponent * LN2 + series;
+	}
+	
+	/**
+	 * x raised to the power of y, as exp(y * ln(x)).
+	 * @param x The base. Non-positive bases, infinities, NaN and subnormals are passed to Math.pow.
+	 * @param y The exponent.
+	 * @return An approximation of x^y with a maximum relative error of 1e-9 * (1 + |y ln x|).
+	 */
+	public static final double pow(double x, double y) {
+		if(!(x >= Double.MIN_NORMAL && x <= Double.MAX_VALUE) || y != y)
+			return Math.pow(x,y);
+		
+		return exp(y * log(x));
+	}
+	
+	private static void checkBounds(int length, int n) {
+		if(n < 0 || n > length)
+			throw new IndexOutOfBoundsException("Count " + n + " is out of bounds for length " + length);
+	}
+	
+	/**
+	 * Computes the sine of the first n elements.
+	 * @param in The angles in radians.
+	 * @param out The destination, which may be the same array as in.
+	 * @param n The number of elements.
+	 */
+	public static void sin(double[] in, double[] out, int n) {
+		checkBounds(Math.min(in.length,out.length),n);
+		
+		final Tables t = tables;
+		final double[] sin = t.sin;
+		final double radToIndex = t.radToIndex;
+		final int mask = t.sinMask;
+		for(int i = 0; i < n; i++)
+			out[i] = sin[(int)(in[i] * radToIndex) & mask];
+	}
+	
+	/**
+	 * Computes the cosine of the first n elements.
+	 * @param in The angles in radians.
+	 * @param out The destination, which may be the same array as in.
+	 * @param n The number of elements.
+	 */
+	public static void cos(double[] in, double[] out, int n) {
+		checkBounds(Math.min(in.length,out.length),n);
+		
+		final Tables t = tables;
+		final double[] cos = t.cos;
+		final double radToIndex = t.radToIndex;
+		final int mask = t.sinMask;
+		for(int i = 0; i < n; i++)
+			out[i] = cos[(int)(in[i] * radToIndex) & mask];
+	}
+	
+	/**
+	 * Computes both the sine and cosine of the first n elements with a single index computation per element.
+	 * @param in The angles in radians.
+	 * @param sinOut The destination of the sines.
+	 * @param cosOut The destination of the cosines.
+	 * @param n The number of elements.
+	 */
+	public static void sinCos(double[] in, double[] sinOut, double[] cosOut, int n) {
+		checkBounds(Math.min(in.length,Math.min(sinOut.length,cosOut.length)),n);
+		
+		final Tables t = tables;
+		final double[] sin = t.sin, cos = t.cos;
+		final double radToIndex = t.radToIndex;
+		final int mask = t.sinMask;
+		for(int i = 0; i < n; i++) {
+			int index = (int)(in[i] * radToIndex) & mask;
+			sinOut[i] = sin[index];
+			cosOut[i] = cos[index];
+		}
+	}
+	
+	/**
+	 * Computes atan2 over parallel arrays.
+	 * @param y The y coordinates.
+	 * @param x The x coordinates.
+	 * @param out The destination of the angles in radians.
+	 * @param n The number of elements.
+	 */
+	public static void atan2(double[] y, double[] x, double[] out, int n) {
+		checkBounds(Math.min(out.length,Math.min(y.length,x.length)),n);
+		
+		for(int i = 0; i < n; i++)
+			out[i] = atan2(y[i],x[i]);
+	}
+	
+	/**
+	 * Computes the sine of the first n elements using float tables.
+	 * @param in The angles in radians.
+	 * @param out The destination, which may be the same array as in.
+	 * @param n The number of elements.
+	 */
+	public static void sin(float[] in, float[] out, int n) {
+		checkBounds(Math.min(in.length,out.length),n);
+		
+		final Tables t = tables;
+		final float[] sin = t.sinF;
+		final float radToIndex = (float)t.radToIndex;
+		final int mask = t.sinMask;
+		for(int i = 0; i < n; i++)
+			out[i] = sin[(int)(in[i] * radToIndex) & mask];
+	}
+	
+	/**
+	 * Computes the cosine of the first n elements using float tables.
+	 * @param in The angles in radians.
+	 * @param out The destination, which may be the same array as in.
+	 * @param n The number of elements.
+	 */
+	public static void cos(float[] in, float[] out, int n) {
+		checkBounds(Math.min(in.length,out.length),n);
+		
+		final Tables t = tables;
+		final float[] cos = t.cosF;
+		final float radToIndex = (float)t.radToIndex;
+		final int mask = t.sinMask;
+		for(int i = 0; i < n; i++)
+			out[i] = cos[(int)(in[i] * radToIndex) & mask];
+	}
+	
+	/**
+	 * Computes both the sine and cosine of the first n elements using float tables.
+	 * @param in The angles in radians.
+	 * @param sinOut The destination of the sines.
+	 * @param cosOut The destination of the cosines.
+	 * @param n The number of elements.
+	 */
+	public static void sinCos(float[] in, float[] sinOut, float[] cosOut, int n) {
+		checkBounds(Math.min(in.length,Math.min(sinOut.length,cosOut.length)),n);
+		
+		final Tables t = tables;
+		final float[] sin = t.sinF, cos = t.cosF;
+		final float radToIndex = (float)t.radToIndex;
+		final int mask = t.sinMask;
+		for(int i = 0; i < n; i++) {
+			int index = (int)(in[i] * radToIndex) & mask;
+			sinOut[i] = sin[index];
+			cosOut[i] = cos[index];
+		}
+	}
+	
+	/**
+	 * Computes atan2 over parallel arrays using a float table.
+	 * @param y The y coordinates.
+	 * @param x The x coordinates.
+	 * @param out The destination of the angles in radians.
+	 * @param n The number of elements.
+	 */
+	public static void atan2(float[] y, float[] x, float[] out, int n) {
+		checkBounds(Math.min(out.length,Math.min(y.length,x.length)),n);
+		
+		final Tables t = tables;
+		final float[] atan2 = t.atan2F;
+		final int dim = t.atan2Dim;
+		for(int i = 0; i < n; i++) {
+			float yi = y[i], xi = x[i];
+			float add, mul;
+			
+			if(xi < 0f) {
+				xi = -xi;
+				add = (float)-PI;
+				
+				if(yi < 0f) {
+					yi = -yi;
+					mul = 1f;
+				}
+				else
+					mul = -1f;
+			}
+			else {
+				add = 0f;
+				
+				if(yi < 0f) {
+					yi = -yi;
+					mul = -1f;
+				}
+				else
+					mul = 1f;
+			}
+			
+			float invDiv = (dim-1) / ((xi < yi) ? yi : xi);
+			
+			out[i] = (atan2[(int)(yi * invDiv) * dim + (int)(xi * invDiv)] + add) * mul;
+		}
+	}
+	
+	/**
+	 * An immutable set of lookup tables. A new set is swapped in by setPrecision, so readers always see consistent tables.
+	 */
+	private static class Tables {
+		private final int sinMask;
+		private final double radToIndex, degToIndex;
+		private final double[] sin, cos, grid;
+		private final float[] sinF, cosF;
+		
+		private final int atan2Dim;
+		private final double[] atan2;
+		private final float[] atan2F;
+		
+		Tables(int sinBits, int atan2Bits) {
+			final int SIN_COUNT = 1 << sinBits;
+			sinMask = SIN_COUNT - 1;
+			
+			radToIndex = SIN_COUNT/TWO_PI;
+			degToIndex = SIN_COUNT/360.0;
+			
+			sin = new double[SIN_COUNT];
+			cos = new double[SIN_COUNT];
+			grid = new double[SIN_COUNT];
+			
+			for(int i = 0; i < SIN_COUNT; i++) {
+				sin[i] = Math.sin((i + 0.5)/SIN_COUNT * TWO_PI);
+				cos[i] = Math.cos((i + 0.5)/SIN_COUNT * TWO_PI);
+				grid[i] = Math.sin((double)i/SIN_COUNT * TWO_PI);
+			}
+			
+			for(int i = 0; i < 360; i += 90) {
+				sin[(int)(i * degToIndex) & sinMask] = Math.sin(i * Math.PI/180.0);
+				cos[(int)(i * degToIndex) & sinMask] = Math.cos(i * Math.PI/180.0);
+			}
+			
+			atan2Dim = 1 << atan2Bits;
+			atan2 = new double[atan2Dim * atan2Dim];
+			
+			for(int i = 0; i < atan2Dim; i++) {
+				for (int j = 0; j < atan2Dim; j++) {
+					double x0 = (double)i/atan2Dim;
+					double y0 = (double)j/atan2Dim;
+					
+					atan2[j * atan2Dim + i] = Math.atan2(y0, x0);
+				}
+			}
+			
+			sinF = new float[SIN_COUNT];
+			cosF = new float[SIN_COUNT];
+			for(int i = 0; i < SIN_COUNT; i++) {
+				sinF[i] = (float)sin[i];
+				cosF[i] = (float)cos[i];
+			}
+			
+			atan2F = new float[atan2.length];
+			for(int i = 0; i < atan2.length; i++)
+				atan2F[i] = (float)atan2[i];
+		}
 	}
 }
\ No newline at end of file